@@ -0,0 +1,40 @@
+package com.github.ansell.sesamerioextensions.api;
+
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+
+/**
+ * An RDFHandler that can receive statements in batches, for handlers where each call has a fixed
+ * cost, such as a store that adds the statements from each call in a single transaction.
+ * <p>
+ * Parsers that support batches send statements to {@link #handleStatements(Statement[], int, int)}
+ * instead of {@link #handleStatement(Statement)} when the RDFHandler implements this interface.
+ * Parsers that do not support batches call {@link #handleStatement(Statement)} as usual, so it
+ * must also be implemented. Statements are sent in the same order either way.
+ * <p>
+ * For the RDF/JSON-preferred formats, each batch sent by a parser on a single thread contains the
+ * statements for one subject, or part of one if the subject has a very large number of statements.
+ * Batches sent after parsing on multiple threads may contain several subjects.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public interface BatchRDFHandler extends RDFHandler
+{
+    /**
+     * Handles a batch of statements.
+     * <p>
+     * The array may be reused by the parser for the next batch after this method returns, so
+     * implementations must copy any statements that they keep.
+     *
+     * @param statements
+     *            The array containing the statements.
+     * @param offset
+     *            The index of the first statement in the batch.
+     * @param length
+     *            The number of statements in the batch, which is always greater than 0.
+     * @throws RDFHandlerException
+     *             If the RDFHandler could not handle the statements.
+     */
+    void handleStatements(Statement[] statements, int offset, int length) throws RDFHandlerException;
+}
@@ -6,6 +6,7 @@ package com.github.ansell.sesamerioextensions.api;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Locale;
 
 import org.openrdf.rio.RDFFormat;
 
@@ -35,9 +36,96 @@ public class RDFFormatExtensions extends RDFFormat
             "application/rdf+json", "application/json"), Charset.forName("UTF-8"), Arrays.asList("rj", "json"), false,
             true);
     
+    /**
+     * A binary encoding of RDF/JSON, for exchanging RDF between services where the cost of
+     * producing and parsing JSON text is not needed. Documents follow the same subject, predicate
+     * and object structure as RDF/JSON, with repeated URIs, blank nodes and language tags replaced
+     * by references to a dictionary of the terms that have already been seen in the document.
+     * <p>
+     * The file extension <code>.brj</code> is recommended for binary RDF/JSON documents. The media
+     * type is <code>application/x-binary-rdf+json</code>.
+     * </p>
+     */
+    public static final RDFFormat BINARY_RDFJSON = new RDFFormat("Binary RDF/JSON",
+            Arrays.asList("application/x-binary-rdf+json"), null, Arrays.asList("brj"), false, true);
+    
+    /**
+     * A line based variant of RDF/JSON, where each line is a complete RDF/JSON object for a single
+     * subject, so that documents can be split at any line break and the parts processed
+     * independently, or concatenated without being parsed.
+     * <p>
+     * The file extension <code>.rjl</code> is recommended for RDF/JSON Lines documents. The media
+     * type is <code>application/x-rdf+json-lines</code> and the encoding is UTF-8.
+     * </p>
+     */
+    public static final RDFFormat RDFJSON_LINES = new RDFFormat("RDF/JSON Lines",
+            Arrays.asList("application/x-rdf+json-lines"), Charset.forName("UTF-8"), Arrays.asList("rjl"), false,
+            true);
+    
+    /**
+     * The {@link #RDFJSONPREFERRED} format compressed using gzip.
+     * <p>
+     * The file extensions <code>.rj.gz</code> and <code>.json.gz</code> are recommended for gzip
+     * compressed RDF/JSON documents. The media type is <code>application/x-rdf+json+gzip</code>. Use
+     * {@link #getFormatForFileName(String)} to find the format from a file name, as
+     * {@link RDFFormat#forFileName(String)} only matches the last file extension.
+     * </p>
+     */
+    public static final RDFFormat RDFJSONPREFERRED_GZIP = new RDFFormat("RDF/JSON-preferred (gzip)",
+            Arrays.asList("application/x-rdf+json+gzip"), null, Arrays.asList("rj.gz", "json.gz"), false, true);
+    
+    /**
+     * The {@link #RDFJSONPREFERRED} format compressed using Zstandard.
+     * <p>
+     * The file extensions <code>.rj.zst</code> and <code>.json.zst</code> are recommended for
+     * Zstandard compressed RDF/JSON documents. The media type is
+     * <code>application/x-rdf+json+zstd</code>.
+     * </p>
+     */
+    public static final RDFFormat RDFJSONPREFERRED_ZSTD = new RDFFormat("RDF/JSON-preferred (zstd)",
+            Arrays.asList("application/x-rdf+json+zstd"), null, Arrays.asList("rj.zst", "json.zst"), false, true);
+    
     static
     {
         RDFFormat.register(RDFFormatExtensions.RDFJSONPREFERRED);
+        RDFFormat.register(RDFFormatExtensions.BINARY_RDFJSON);
+        RDFFormat.register(RDFFormatExtensions.RDFJSON_LINES);
+        RDFFormat.register(RDFFormatExtensions.RDFJSONPREFERRED_GZIP);
+        RDFFormat.register(RDFFormatExtensions.RDFJSONPREFERRED_ZSTD);
+    }
+    
+    /**
+     * Finds the registered format for the given file name, matching file extensions that contain a
+     * dot, such as <code>rj.gz</code>, against the end of the file name before falling back to
+     * {@link RDFFormat#forFileName(String)}.
+     * 
+     * @param fileName
+     *            The file name to match.
+     * @return The format for the file name, or null if no format matched.
+     */
+    public static RDFFormat getFormatForFileName(final String fileName)
+    {
+        final String lowerCaseName = fileName.toLowerCase(Locale.ENGLISH);
+        RDFFormat result = null;
+        int resultLength = 0;
+        for(final RDFFormat nextFormat : RDFFormat.values())
+        {
+            for(final String nextExtension : nextFormat.getFileExtensions())
+            {
+                if(nextExtension.indexOf('.') >= 0 && nextExtension.length() > resultLength
+                        && lowerCaseName.endsWith("." + nextExtension.toLowerCase(Locale.ENGLISH)))
+                {
+                    result = nextFormat;
+                    resultLength = nextExtension.length();
+                }
+            }
+        }
+        
+        if(result == null)
+        {
+            result = RDFFormat.forFileName(fileName);
+        }
+        return result;
     }
     
     /**
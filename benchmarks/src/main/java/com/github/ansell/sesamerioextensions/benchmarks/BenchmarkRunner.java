@@ -0,0 +1,35 @@
+package com.github.ansell.sesamerioextensions.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the JMH GC profiler enabled, so that allocation rates are reported
+ * alongside operations and bytes per second.
+ * <p>
+ * Accepts the usual JMH command line options, for example, to run only the parse benchmarks for
+ * the largest datasets:
+ *
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar ParseBenchmark -p size=100000
+ * </pre>
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public final class BenchmarkRunner
+{
+    public static void main(final String... args) throws Exception
+    {
+        new Runner(new OptionsBuilder().parent(new CommandLineOptions(args)).addProfiler(GCProfiler.class).build())
+                .run();
+    }
+    
+    /**
+     * Private default constructor.
+     */
+    private BenchmarkRunner()
+    {
+    }
+}
@@ -0,0 +1,27 @@
+package com.github.ansell.sesamerioextensions.benchmarks;
+
+import org.openjdk.jmh.infra.Blackhole;
+import org.openrdf.model.Statement;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+
+/**
+ * An RDFHandler that sends each statement to a JMH {@link Blackhole} so that parsing is not
+ * optimised away, without the cost of storing the statements.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+final class BlackholeHandler extends RDFHandlerBase
+{
+    private final Blackhole blackhole;
+    
+    BlackholeHandler(final Blackhole blackhole)
+    {
+        this.blackhole = blackhole;
+    }
+    
+    @Override
+    public void handleStatement(final Statement st)
+    {
+        this.blackhole.consume(st);
+    }
+}
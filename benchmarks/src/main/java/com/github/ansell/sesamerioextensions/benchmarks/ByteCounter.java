@@ -0,0 +1,29 @@
+package com.github.ansell.sesamerioextensions.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the number of bytes that were parsed or written by a benchmark, which JMH reports as a
+ * secondary result in bytes per unit of time alongside the operations per unit of time.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class ByteCounter
+{
+    /**
+     * The number of bytes processed during the current iteration.
+     */
+    public long bytes;
+    
+    @Setup(Level.Iteration)
+    public void reset()
+    {
+        this.bytes = 0L;
+    }
+}
@@ -0,0 +1,34 @@
+package com.github.ansell.sesamerioextensions.benchmarks;
+
+import java.io.OutputStream;
+
+/**
+ * An OutputStream that discards everything written to it, keeping only a count of the bytes, so
+ * that write benchmarks do not measure the cost of growing a buffer.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+final class CountingOutputStream extends OutputStream
+{
+    private long count;
+    
+    @Override
+    public void write(final int b)
+    {
+        this.count++;
+    }
+    
+    @Override
+    public void write(final byte[] b, final int off, final int len)
+    {
+        this.count += len;
+    }
+    
+    /**
+     * @return The number of bytes written to this stream.
+     */
+    long getCount()
+    {
+        return this.count;
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.ansell.sesamerioextensions.benchmarks;
+
+import java.util.Random;
+
+import org.openrdf.model.Model;
+import org.openrdf.model.Resource;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.XMLSchema;
+
+/**
+ * The shapes of the generated datasets that are used by the benchmarks.
+ * <p>
+ * Datasets are generated using a fixed random seed, so each shape and size always produces the
+ * same statements.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public enum Dataset
+{
+    /**
+     * A small number of subjects that each have 100 predicates, with a mix of URI, plain, language
+     * and typed literal objects.
+     */
+    WIDE_SUBJECTS
+    {
+        @Override
+        void generate(final int size, final ValueFactory vf, final Random random, final Model model)
+        {
+            int count = 0;
+            for(int i = 0; count < size; i++)
+            {
+                final URI subject = vf.createURI(Dataset.NAMESPACE, "subject/" + i);
+                for(int j = 0; j < 100 && count < size; j++, count++)
+                {
+                    model.add(subject, vf.createURI(Dataset.NAMESPACE, "predicate/" + j),
+                            Dataset.randomObject(vf, random, count));
+                }
+            }
+        }
+    },
+    
+    /**
+     * RDF Collections of 50 literals each, so most subjects are blank nodes that are only reachable
+     * through a long chain of rdf:rest links.
+     */
+    DEEP_LISTS
+    {
+        @Override
+        void generate(final int size, final ValueFactory vf, final Random random, final Model model)
+        {
+            int count = 0;
+            for(int i = 0; count < size; i++)
+            {
+                final URI subject = vf.createURI(Dataset.NAMESPACE, "list/" + i);
+                final URI predicate = vf.createURI(Dataset.NAMESPACE, "items");
+                Resource current = vf.createBNode();
+                model.add(subject, predicate, current);
+                count++;
+                for(int j = 0; j < 50 && count < size; j++)
+                {
+                    model.add(current, RDF.FIRST, Dataset.randomLiteral(vf, random, count));
+                    count++;
+                    final Resource next = j == 49 || count + 1 >= size ? RDF.NIL : vf.createBNode();
+                    model.add(current, RDF.REST, next);
+                    count++;
+                    current = next;
+                }
+            }
+        }
+    },
+    
+    /**
+     * Statements that are each in one of a large number of named graphs, with one graph for every
+     * ten statements.
+     */
+    MANY_CONTEXTS
+    {
+        @Override
+        void generate(final int size, final ValueFactory vf, final Random random, final Model model)
+        {
+            final int graphs = Math.max(1, size / 10);
+            for(int count = 0; count < size; count++)
+            {
+                final URI subject = vf.createURI(Dataset.NAMESPACE, "subject/" + (count / 10));
+                final URI predicate = vf.createURI(Dataset.NAMESPACE, "predicate/" + (count % 10));
+                final URI context = vf.createURI(Dataset.NAMESPACE, "graph/" + random.nextInt(graphs));
+                model.add(subject, predicate, Dataset.randomObject(vf, random, count), context);
+            }
+        }
+    };
+    
+    private static final String NAMESPACE = "http://example.org/benchmark/";
+    
+    /**
+     * Generates a dataset with this shape.
+     *
+     * @param size
+     *            The number of statements to generate.
+     * @return A new model containing the statements.
+     */
+    public Model generate(final int size)
+    {
+        final Model result = new LinkedHashModel();
+        this.generate(size, ValueFactoryImpl.getInstance(), new Random(1234L + size), result);
+        return result;
+    }
+    
+    abstract void generate(int size, ValueFactory vf, Random random, Model model);
+    
+    private static Value randomObject(final ValueFactory vf, final Random random, final int count)
+    {
+        if(random.nextInt(4) == 0)
+        {
+            return vf.createURI(Dataset.NAMESPACE, "object/" + random.nextInt(1000));
+        }
+        return Dataset.randomLiteral(vf, random, count);
+    }
+    
+    private static Value randomLiteral(final ValueFactory vf, final Random random, final int count)
+    {
+        switch(random.nextInt(3))
+        {
+            case 0:
+                return vf.createLiteral("Literal value " + count);
+            case 1:
+                return vf.createLiteral("Literal value in English " + count, "en");
+            default:
+                return vf.createLiteral(Integer.toString(random.nextInt()), XMLSchema.INT);
+        }
+    }
+}
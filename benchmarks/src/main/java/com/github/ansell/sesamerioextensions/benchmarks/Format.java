@@ -0,0 +1,191 @@
+package com.github.ansell.sesamerioextensions.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.RDFWriter;
+import org.openrdf.rio.rdfjson.RDFJSONParser;
+import org.openrdf.rio.rdfjson.RDFJSONWriter;
+import org.openrdf.rio.turtle.TurtleParser;
+import org.openrdf.rio.turtle.TurtleWriter;
+
+import com.github.ansell.sesamerioextensions.api.RDFFormatExtensions;
+import com.github.ansell.sesamerioextensions.rdfjson.BinaryRDFJSONParser;
+import com.github.ansell.sesamerioextensions.rdfjson.BinaryRDFJSONWriter;
+import com.github.ansell.sesamerioextensions.rdfjson.RDFJSONPreferredParser;
+import com.github.ansell.sesamerioextensions.rdfjson.RDFJSONPreferredParserSettings;
+import com.github.ansell.sesamerioextensions.rdfjson.RDFJSONPreferredWriter;
+import com.github.ansell.sesamerioextensions.rdfjson.RDFJSONPreferredWriterSettings;
+
+/**
+ * The parser and writer implementations that are compared by the benchmarks.
+ * <p>
+ * Turtle does not support named graphs, so contexts are dropped by {@link #TURTLE} for the
+ * {@link Dataset#MANY_CONTEXTS} dataset.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public enum Format
+{
+    /**
+     * The RDF/JSON-preferred parser and writer from this project.
+     */
+    RDFJSON_PREFERRED
+    {
+        @Override
+        public RDFParser createParser()
+        {
+            return new RDFJSONPreferredParser();
+        }
+        
+        @Override
+        public RDFWriter createWriter(final OutputStream out)
+        {
+            return new RDFJSONPreferredWriter(out, RDFFormatExtensions.RDFJSONPREFERRED);
+        }
+    },
+    
+    /**
+     * The RDF/JSON-preferred parser using the Jackson tokenizer instead of tokenizing UTF-8 bytes
+     * directly, and the RDF/JSON-preferred writer.
+     */
+    RDFJSON_PREFERRED_JACKSON
+    {
+        @Override
+        public RDFParser createParser()
+        {
+            final RDFParser result = new RDFJSONPreferredParser();
+            result.getParserConfig().set(RDFJSONPreferredParserSettings.UTF8_TOKENIZER, false);
+            return result;
+        }
+        
+        @Override
+        public RDFWriter createWriter(final OutputStream out)
+        {
+            return new RDFJSONPreferredWriter(out, RDFFormatExtensions.RDFJSONPREFERRED);
+        }
+    },
+    
+    /**
+     * The RDF/JSON-preferred parser, and the RDF/JSON-preferred writer encoding subjects on one
+     * thread for each available processor.
+     */
+    RDFJSON_PREFERRED_PARALLEL
+    {
+        @Override
+        public RDFParser createParser()
+        {
+            return new RDFJSONPreferredParser();
+        }
+        
+        @Override
+        public RDFWriter createWriter(final OutputStream out)
+        {
+            final RDFWriter result = new RDFJSONPreferredWriter(out, RDFFormatExtensions.RDFJSONPREFERRED);
+            result.getWriterConfig().set(RDFJSONPreferredWriterSettings.WRITE_THREADS,
+                    Runtime.getRuntime().availableProcessors());
+            return result;
+        }
+    },
+    
+    /**
+     * The binary RDF/JSON parser and writer from this project.
+     */
+    BINARY_RDFJSON
+    {
+        @Override
+        public RDFParser createParser()
+        {
+            return new BinaryRDFJSONParser();
+        }
+        
+        @Override
+        public RDFWriter createWriter(final OutputStream out)
+        {
+            return new BinaryRDFJSONWriter(out);
+        }
+    },
+    
+    /**
+     * The RDF/JSON parser and writer from Sesame.
+     */
+    RDFJSON_SESAME
+    {
+        @Override
+        public RDFParser createParser()
+        {
+            return new RDFJSONParser();
+        }
+        
+        @Override
+        public RDFWriter createWriter(final OutputStream out)
+        {
+            return new RDFJSONWriter(out, RDFFormat.RDFJSON);
+        }
+    },
+    
+    /**
+     * The Turtle parser and writer from Sesame.
+     */
+    TURTLE
+    {
+        @Override
+        public RDFParser createParser()
+        {
+            return new TurtleParser();
+        }
+        
+        @Override
+        public RDFWriter createWriter(final OutputStream out)
+        {
+            return new TurtleWriter(out);
+        }
+    };
+    
+    /**
+     * @return A new parser for this format.
+     */
+    public abstract RDFParser createParser();
+    
+    /**
+     * @param out
+     *            The stream to write to.
+     * @return A new writer for this format.
+     */
+    public abstract RDFWriter createWriter(OutputStream out);
+    
+    /**
+     * Writes the given statements to a new RDFWriter for this format.
+     *
+     * @param statements
+     *            The statements to write.
+     * @param out
+     *            The stream to write to.
+     */
+    public void write(final Iterable<Statement> statements, final OutputStream out) throws RDFHandlerException
+    {
+        final RDFWriter writer = this.createWriter(out);
+        writer.startRDF();
+        for(final Statement nextStatement : statements)
+        {
+            writer.handleStatement(nextStatement);
+        }
+        writer.endRDF();
+    }
+    
+    /**
+     * @param statements
+     *            The statements to serialise.
+     * @return The statements serialised in this format.
+     */
+    public byte[] serialise(final Iterable<Statement> statements) throws RDFHandlerException
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        this.write(statements, out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.ansell.sesamerioextensions.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.ansell.sesamerioextensions.rdfjson.RDFJSONPreferredParser;
+import com.github.ansell.sesamerioextensions.rdfjson.RDFJSONPreferredParserSettings;
+
+/**
+ * Measures how parsing with {@link RDFJSONPreferredParserSettings#PARALLEL_THREADS} scales with
+ * the number of threads.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelParseBenchmark
+{
+    @Param({ "WIDE_SUBJECTS", "MANY_CONTEXTS" })
+    public Dataset dataset;
+    
+    @Param({ "1000000" })
+    public int size;
+    
+    @Param({ "1", "2", "4", "8" })
+    public int threads;
+    
+    @Param({ "true", "false" })
+    public boolean preserveOrder;
+    
+    private byte[] document;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        this.document = Format.RDFJSON_PREFERRED.serialise(this.dataset.generate(this.size));
+    }
+    
+    @Benchmark
+    public void parse(final ByteCounter counter, final Blackhole blackhole) throws Exception
+    {
+        final RDFJSONPreferredParser parser = new RDFJSONPreferredParser();
+        parser.getParserConfig().set(RDFJSONPreferredParserSettings.PARALLEL_THREADS, this.threads);
+        parser.getParserConfig().set(RDFJSONPreferredParserSettings.PARALLEL_PRESERVE_ORDER, this.preserveOrder);
+        parser.setRDFHandler(new BlackholeHandler(blackhole));
+        parser.parse(new ByteArrayInputStream(this.document), "http://example.org/benchmark/");
+        counter.bytes += this.document.length;
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.ansell.sesamerioextensions.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openrdf.rio.RDFParser;
+
+/**
+ * Measures parsing of each of the generated datasets from an in-memory document.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark
+{
+    @Param({ "WIDE_SUBJECTS", "DEEP_LISTS", "MANY_CONTEXTS" })
+    public Dataset dataset;
+    
+    @Param({ "1000", "10000", "100000" })
+    public int size;
+    
+    @Param({ "RDFJSON_PREFERRED", "RDFJSON_PREFERRED_JACKSON", "BINARY_RDFJSON", "RDFJSON_SESAME", "TURTLE" })
+    public Format format;
+    
+    private byte[] document;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        this.document = this.format.serialise(this.dataset.generate(this.size));
+    }
+    
+    @Benchmark
+    public void parse(final ByteCounter counter, final Blackhole blackhole) throws Exception
+    {
+        final RDFParser parser = this.format.createParser();
+        parser.setRDFHandler(new BlackholeHandler(blackhole));
+        parser.parse(new ByteArrayInputStream(this.document), "http://example.org/benchmark/");
+        counter.bytes += this.document.length;
+    }
+}
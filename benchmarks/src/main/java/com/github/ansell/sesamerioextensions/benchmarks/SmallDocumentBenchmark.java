@@ -0,0 +1,103 @@
+package com.github.ansell.sesamerioextensions.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openrdf.model.Statement;
+
+import com.github.ansell.sesamerioextensions.rdfjson.RDFJSONPreferredParser;
+import com.github.ansell.sesamerioextensions.rdfjson.RDFJSONPreferredParserFactory;
+import com.github.ansell.sesamerioextensions.rdfjson.RDFJSONPreferredWriter;
+import com.github.ansell.sesamerioextensions.rdfjson.RDFJSONPreferredWriterFactory;
+
+/**
+ * Measures parsing and writing of small RDF/JSON-preferred documents, as served by an endpoint
+ * that handles many requests, comparing a new parser or writer for each document with instances
+ * borrowed from the pools in the factories.
+ * <p>
+ * The difference is mostly in allocation rather than time, so run this benchmark using
+ * {@link BenchmarkRunner} and compare the <code>gc.alloc.rate.norm</code> results, which are the
+ * bytes allocated for each document.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SmallDocumentBenchmark
+{
+    @Param({ "10", "100" })
+    public int size;
+    
+    @Param({ "false", "true" })
+    public boolean pooled;
+    
+    private List<Statement> statements;
+    
+    private byte[] document;
+    
+    private final RDFJSONPreferredParserFactory parserFactory = new RDFJSONPreferredParserFactory();
+    
+    private final RDFJSONPreferredWriterFactory writerFactory = new RDFJSONPreferredWriterFactory();
+    
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        this.statements = new ArrayList<Statement>(Dataset.WIDE_SUBJECTS.generate(this.size));
+        this.document = Format.RDFJSON_PREFERRED.serialise(this.statements);
+    }
+    
+    @Benchmark
+    public void parse(final ByteCounter counter, final Blackhole blackhole) throws Exception
+    {
+        final RDFJSONPreferredParser parser =
+                this.pooled ? this.parserFactory.borrowParser() : (RDFJSONPreferredParser)this.parserFactory
+                        .getParser();
+        parser.setRDFHandler(new BlackholeHandler(blackhole));
+        parser.parse(new ByteArrayInputStream(this.document), "http://example.org/benchmark/");
+        if(this.pooled)
+        {
+            this.parserFactory.releaseParser(parser);
+        }
+        counter.bytes += this.document.length;
+    }
+    
+    @Benchmark
+    public long write(final ByteCounter counter) throws Exception
+    {
+        final CountingOutputStream out = new CountingOutputStream();
+        final RDFJSONPreferredWriter writer =
+                this.pooled ? this.writerFactory.borrowWriter(out) : (RDFJSONPreferredWriter)this.writerFactory
+                        .getWriter(out);
+        writer.startRDF();
+        for(final Statement nextStatement : this.statements)
+        {
+            writer.handleStatement(nextStatement);
+        }
+        writer.endRDF();
+        if(this.pooled)
+        {
+            this.writerFactory.releaseWriter(writer);
+        }
+        counter.bytes += out.getCount();
+        return out.getCount();
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.ansell.sesamerioextensions.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.model.Statement;
+
+/**
+ * Measures writing of each of the generated datasets to a stream that discards its output.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriteBenchmark
+{
+    @Param({ "WIDE_SUBJECTS", "DEEP_LISTS", "MANY_CONTEXTS" })
+    public Dataset dataset;
+    
+    @Param({ "1000", "10000", "100000" })
+    public int size;
+    
+    @Param({ "RDFJSON_PREFERRED", "RDFJSON_PREFERRED_PARALLEL", "BINARY_RDFJSON", "RDFJSON_SESAME", "TURTLE" })
+    public Format format;
+    
+    private List<Statement> statements;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        this.statements = new ArrayList<Statement>(this.dataset.generate(this.size));
+    }
+    
+    @Benchmark
+    public long write(final ByteCounter counter) throws Exception
+    {
+        final CountingOutputStream out = new CountingOutputStream();
+        this.format.write(this.statements, out);
+        counter.bytes += out.getCount();
+        return out.getCount();
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.nio.charset.Charset;
+
+/**
+ * Constants for the binary encoding of RDF/JSON that is read by {@link BinaryRDFJSONParser} and
+ * written by {@link BinaryRDFJSONWriter}.
+ * <p>
+ * A document starts with the {@link #MAGIC} bytes, followed by the maximum size of the term
+ * dictionary as a variable length integer. The rest of the document is a sequence of records,
+ * each starting with a record type byte, that follow the structure of an RDF/JSON document: a
+ * {@link #SUBJECT} record starts a new subject, a {@link #PREDICATE} record starts a new predicate
+ * for the current subject, and an {@link #OBJECT} record contains an object value for the current
+ * subject and predicate, followed by its graph. The document ends with an {@link #END} record.
+ * Subjects and predicates may appear more than once in a document.
+ * <p>
+ * Values start with a value type byte. URIs, blank nodes, datatypes and language tags are terms,
+ * which are written as a variable length integer reference to the term dictionary. A reference of
+ * 0 is followed by the length and UTF-8 bytes of a new term, which is added to the dictionary if
+ * it is not full, and a reference of n refers to the nth term added to the dictionary. Literal
+ * labels are always written as a length followed by UTF-8 bytes. All variable length integers are
+ * unsigned, with 7 bits in each byte, least significant first, and the high bit set on all but the
+ * last byte.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+final class BinaryRDFJSON
+{
+    static final Charset UTF8 = Charset.forName("UTF-8");
+    
+    static final byte[] MAGIC = { 'B', 'R', 'J', 1 };
+    
+    static final int END = 0;
+    static final int SUBJECT = 1;
+    static final int PREDICATE = 2;
+    static final int OBJECT = 3;
+    
+    static final int NULL_VALUE = 0;
+    static final int URI_VALUE = 1;
+    static final int BNODE_VALUE = 2;
+    static final int PLAIN_LITERAL_VALUE = 3;
+    static final int LANGUAGE_LITERAL_VALUE = 4;
+    static final int DATATYPE_LITERAL_VALUE = 5;
+    
+    /**
+     * The maximum number of bytes in a variable length encoding of an int.
+     */
+    static final int MAX_VARINT_BYTES = 5;
+    
+    /**
+     * Private default constructor.
+     */
+    private BinaryRDFJSON()
+    {
+    }
+}
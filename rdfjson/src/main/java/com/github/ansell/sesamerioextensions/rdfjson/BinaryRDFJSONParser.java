@@ -0,0 +1,333 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.Resource;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.helpers.RDFParserBase;
+
+import com.github.ansell.sesamerioextensions.api.RDFFormatExtensions;
+
+/**
+ * RDFParser for the {@link RDFFormatExtensions#BINARY_RDFJSON} format, a binary encoding of
+ * RDF/JSON that is described in {@link BinaryRDFJSON}.
+ * <p>
+ * Each URI, blank node and language tag in the term dictionary is only created once, and is
+ * shared by every statement that refers to it. Statements are sent to the RDFHandler as soon as
+ * each object record has been read.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class BinaryRDFJSONParser extends RDFParserBase implements RDFParser
+{
+    private static final int BUFFER_SIZE = 65536;
+    
+    private final RDFFormat actualFormat;
+    
+    private InputStream in;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    
+    /**
+     * The URIs, blank nodes and language tags in the order that they were added to the
+     * dictionary.
+     */
+    private List<Object> dictionary;
+    private int maxDictionarySize;
+    
+    /**
+     * Creates a parser using {@link RDFFormatExtensions#BINARY_RDFJSON} as the format.
+     */
+    public BinaryRDFJSONParser()
+    {
+        this(RDFFormatExtensions.BINARY_RDFJSON);
+    }
+    
+    /**
+     * Creates a parser that reports the given format.
+     */
+    public BinaryRDFJSONParser(final RDFFormat actualFormat)
+    {
+        this.actualFormat = actualFormat;
+    }
+    
+    @Override
+    public RDFFormat getRDFFormat()
+    {
+        return this.actualFormat;
+    }
+    
+    @Override
+    public void parse(final InputStream inputStream, final String baseUri) throws IOException, RDFParseException,
+        RDFHandlerException
+    {
+        if(this.rdfHandler == null)
+        {
+            throw new IllegalStateException("RDF handler has not been set");
+        }
+        
+        this.clear();
+        this.in = inputStream;
+        this.buffer = new byte[BinaryRDFJSONParser.BUFFER_SIZE];
+        this.position = 0;
+        this.limit = 0;
+        this.dictionary = new ArrayList<Object>();
+        try
+        {
+            this.rdfHandler.startRDF();
+            
+            for(final byte nextMagic : BinaryRDFJSON.MAGIC)
+            {
+                if(this.readByte() != nextMagic)
+                {
+                    this.reportFatalError("Not a binary RDF/JSON document");
+                }
+            }
+            this.maxDictionarySize = this.readVarint();
+            
+            this.parseRecords();
+        }
+        finally
+        {
+            this.clear();
+            this.in = null;
+            this.buffer = null;
+            this.dictionary = null;
+        }
+        
+        this.rdfHandler.endRDF();
+    }
+    
+    /**
+     * @throws UnsupportedOperationException
+     *             As binary RDF/JSON can only be read from an InputStream.
+     */
+    @Override
+    public void parse(final Reader reader, final String baseUri) throws IOException, RDFParseException,
+        RDFHandlerException
+    {
+        throw new UnsupportedOperationException("Binary RDF/JSON can only be read from an InputStream");
+    }
+    
+    private void parseRecords() throws IOException, RDFParseException, RDFHandlerException
+    {
+        Resource subject = null;
+        URI predicate = null;
+        while(true)
+        {
+            final int record = this.readByte();
+            switch(record)
+            {
+                case BinaryRDFJSON.END:
+                    return;
+                case BinaryRDFJSON.SUBJECT:
+                    final Value nextSubject = this.readValue();
+                    if(!(nextSubject instanceof Resource))
+                    {
+                        this.reportFatalError("Expected subject to be a URI or blank node");
+                    }
+                    subject = (Resource)nextSubject;
+                    predicate = null;
+                    break;
+                case BinaryRDFJSON.PREDICATE:
+                    if(subject == null)
+                    {
+                        this.reportFatalError("Found predicate before the first subject");
+                    }
+                    predicate = (URI)this.readTerm(BinaryRDFJSON.URI_VALUE);
+                    break;
+                case BinaryRDFJSON.OBJECT:
+                    if(predicate == null)
+                    {
+                        this.reportFatalError("Found object before the predicate for the current subject");
+                    }
+                    final Value object = this.readValue();
+                    if(object == null)
+                    {
+                        this.reportFatalError("Found null object value");
+                    }
+                    final Value context = this.readValue();
+                    if(context == null)
+                    {
+                        this.rdfHandler.handleStatement(this.createStatement(subject, predicate, object));
+                    }
+                    else if(context instanceof Resource)
+                    {
+                        this.rdfHandler.handleStatement(this.createStatement(subject, predicate, object,
+                                (Resource)context));
+                    }
+                    else
+                    {
+                        this.reportFatalError("Expected graph to be a URI, blank node or null");
+                    }
+                    break;
+                default:
+                    this.reportFatalError("Found unknown record type in binary RDF/JSON document: " + record);
+            }
+        }
+    }
+    
+    private Value readValue() throws IOException, RDFParseException
+    {
+        final int type = this.readByte();
+        switch(type)
+        {
+            case BinaryRDFJSON.NULL_VALUE:
+                return null;
+            case BinaryRDFJSON.URI_VALUE:
+            case BinaryRDFJSON.BNODE_VALUE:
+                return (Value)this.readTerm(type);
+            case BinaryRDFJSON.PLAIN_LITERAL_VALUE:
+                return this.createLiteral(this.readString(), null, null);
+            case BinaryRDFJSON.LANGUAGE_LITERAL_VALUE:
+                final String label = this.readString();
+                return this.createLiteral(label, (String)this.readTerm(BinaryRDFJSON.LANGUAGE_LITERAL_VALUE), null);
+            case BinaryRDFJSON.DATATYPE_LITERAL_VALUE:
+                final String typedLabel = this.readString();
+                return this.createLiteral(typedLabel, null, (URI)this.readTerm(BinaryRDFJSON.URI_VALUE));
+            default:
+                this.reportFatalError("Found unknown value type in binary RDF/JSON document: " + type);
+                return null;
+        }
+    }
+    
+    /**
+     * Reads a term reference, creating the term from the string that follows if it is new.
+     *
+     * @param type
+     *            {@link BinaryRDFJSON#URI_VALUE} or {@link BinaryRDFJSON#BNODE_VALUE} for a URI or
+     *            blank node, or {@link BinaryRDFJSON#LANGUAGE_LITERAL_VALUE} for a language tag.
+     */
+    private Object readTerm(final int type) throws IOException, RDFParseException
+    {
+        final int reference = this.readVarint();
+        if(reference > 0)
+        {
+            if(reference > this.dictionary.size())
+            {
+                this.reportFatalError("Found reference to unknown term: " + reference);
+            }
+            final Object result = this.dictionary.get(reference - 1);
+            if(BinaryRDFJSONParser.termType(result) != type)
+            {
+                this.reportFatalError("Found reference to a term of the wrong type: " + reference);
+            }
+            return result;
+        }
+        
+        final String value = this.readString();
+        final Object result;
+        if(type == BinaryRDFJSON.URI_VALUE)
+        {
+            result = this.createURI(value);
+        }
+        else if(type == BinaryRDFJSON.BNODE_VALUE)
+        {
+            result = this.createBNode(value);
+        }
+        else
+        {
+            result = value;
+        }
+        if(this.dictionary.size() < this.maxDictionarySize)
+        {
+            this.dictionary.add(result);
+        }
+        return result;
+    }
+    
+    private static int termType(final Object term)
+    {
+        if(term instanceof URI)
+        {
+            return BinaryRDFJSON.URI_VALUE;
+        }
+        else if(term instanceof BNode)
+        {
+            return BinaryRDFJSON.BNODE_VALUE;
+        }
+        return BinaryRDFJSON.LANGUAGE_LITERAL_VALUE;
+    }
+    
+    private String readString() throws IOException, RDFParseException
+    {
+        final int length = this.readVarint();
+        this.require(length);
+        final String result = new String(this.buffer, this.position, length, BinaryRDFJSON.UTF8);
+        this.position += length;
+        return result;
+    }
+    
+    private int readVarint() throws IOException, RDFParseException
+    {
+        int result = 0;
+        for(int shift = 0; shift < 32; shift += 7)
+        {
+            final int b = this.readByte();
+            result |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0)
+            {
+                if(result < 0)
+                {
+                    break;
+                }
+                return result;
+            }
+        }
+        this.reportFatalError("Found invalid length or reference in binary RDF/JSON document");
+        return 0;
+    }
+    
+    private int readByte() throws IOException, RDFParseException
+    {
+        if(this.position == this.limit)
+        {
+            this.require(1);
+        }
+        return this.buffer[this.position++] & 0xFF;
+    }
+    
+    /**
+     * Reads from the stream until the given number of bytes are available in the buffer, growing
+     * the buffer as the bytes arrive, so that a corrupt length at the end of a document does not
+     * allocate a buffer for bytes that are not there.
+     */
+    private void require(final int bytes) throws IOException, RDFParseException
+    {
+        if(this.limit - this.position >= bytes)
+        {
+            return;
+        }
+        
+        System.arraycopy(this.buffer, this.position, this.buffer, 0, this.limit - this.position);
+        this.limit -= this.position;
+        this.position = 0;
+        
+        while(this.limit < bytes)
+        {
+            if(this.limit == this.buffer.length)
+            {
+                final byte[] next = new byte[(int)Math.min(bytes, this.buffer.length * 2L)];
+                System.arraycopy(this.buffer, 0, next, 0, this.limit);
+                this.buffer = next;
+            }
+            final int read = this.in.read(this.buffer, this.limit, this.buffer.length - this.limit);
+            if(read == -1)
+            {
+                this.reportFatalError("Unexpected end of binary RDF/JSON document");
+            }
+            this.limit += read;
+        }
+    }
+}
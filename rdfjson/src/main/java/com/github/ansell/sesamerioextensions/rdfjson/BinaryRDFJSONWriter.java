@@ -0,0 +1,289 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFWriter;
+import org.openrdf.rio.RioSetting;
+import org.openrdf.rio.helpers.RDFWriterBase;
+
+import com.github.ansell.sesamerioextensions.api.RDFFormatExtensions;
+
+/**
+ * RDFWriter for the {@link RDFFormatExtensions#BINARY_RDFJSON} format, a binary encoding of
+ * RDF/JSON that is described in {@link BinaryRDFJSON}.
+ * <p>
+ * Statements are written out as they arrive, with a new subject or predicate record each time the
+ * subject or predicate changes, so nothing is buffered apart from the term dictionary, which is
+ * limited to {@link BinaryRDFJSONWriterSettings#DICTIONARY_SIZE} terms. Input that is grouped by
+ * subject and predicate gives the smallest output.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class BinaryRDFJSONWriter extends RDFWriterBase implements RDFWriter
+{
+    private static final int BUFFER_SIZE = 8192;
+    
+    private final OutputStream out;
+    private final RDFFormat actualFormat;
+    private final byte[] buffer = new byte[BinaryRDFJSONWriter.BUFFER_SIZE];
+    private int position;
+    
+    /**
+     * The dictionary references for the terms that have been written, which are URIs, blank nodes
+     * and language tags.
+     */
+    private Map<Object, Integer> dictionary;
+    private int maxDictionarySize;
+    
+    private Resource currentSubject;
+    private URI currentPredicate;
+    
+    public BinaryRDFJSONWriter(final OutputStream out)
+    {
+        this(out, RDFFormatExtensions.BINARY_RDFJSON);
+    }
+    
+    public BinaryRDFJSONWriter(final OutputStream out, final RDFFormat actualFormat)
+    {
+        this.out = out;
+        this.actualFormat = actualFormat;
+    }
+    
+    @Override
+    public void endRDF() throws RDFHandlerException
+    {
+        try
+        {
+            this.ensureCapacity(1);
+            this.buffer[this.position++] = BinaryRDFJSON.END;
+            this.flushBuffer();
+            this.out.flush();
+        }
+        catch(final IOException e)
+        {
+            throw new RDFHandlerException(e);
+        }
+        finally
+        {
+            this.dictionary = null;
+            this.currentSubject = null;
+            this.currentPredicate = null;
+        }
+    }
+    
+    @Override
+    public RDFFormat getRDFFormat()
+    {
+        return this.actualFormat;
+    }
+    
+    @Override
+    public Collection<RioSetting<?>> getSupportedSettings()
+    {
+        final Set<RioSetting<?>> results = new HashSet<RioSetting<?>>(super.getSupportedSettings());
+        
+        results.add(BinaryRDFJSONWriterSettings.DICTIONARY_SIZE);
+        
+        return results;
+    }
+    
+    @Override
+    public void handleComment(final String comment) throws RDFHandlerException
+    {
+        // Comments are ignored.
+    }
+    
+    @Override
+    public void handleNamespace(final String prefix, final String uri) throws RDFHandlerException
+    {
+        // Namespace prefixes are not used in RDF/JSON.
+    }
+    
+    @Override
+    public void handleStatement(final Statement statement) throws RDFHandlerException
+    {
+        try
+        {
+            if(!statement.getSubject().equals(this.currentSubject))
+            {
+                this.currentSubject = statement.getSubject();
+                this.currentPredicate = null;
+                this.ensureCapacity(1);
+                this.buffer[this.position++] = BinaryRDFJSON.SUBJECT;
+                this.writeValue(this.currentSubject);
+            }
+            if(!statement.getPredicate().equals(this.currentPredicate))
+            {
+                this.currentPredicate = statement.getPredicate();
+                this.ensureCapacity(1);
+                this.buffer[this.position++] = BinaryRDFJSON.PREDICATE;
+                this.writeTerm(this.currentPredicate);
+            }
+            this.ensureCapacity(1);
+            this.buffer[this.position++] = BinaryRDFJSON.OBJECT;
+            this.writeValue(statement.getObject());
+            this.writeValue(statement.getContext());
+        }
+        catch(final IOException e)
+        {
+            throw new RDFHandlerException(e);
+        }
+    }
+    
+    @Override
+    public void startRDF() throws RDFHandlerException
+    {
+        this.dictionary = new HashMap<Object, Integer>();
+        this.maxDictionarySize = Math.max(0, this.getWriterConfig().get(BinaryRDFJSONWriterSettings.DICTIONARY_SIZE));
+        this.currentSubject = null;
+        this.currentPredicate = null;
+        this.position = 0;
+        
+        try
+        {
+            this.ensureCapacity(BinaryRDFJSON.MAGIC.length + BinaryRDFJSON.MAX_VARINT_BYTES);
+            System.arraycopy(BinaryRDFJSON.MAGIC, 0, this.buffer, 0, BinaryRDFJSON.MAGIC.length);
+            this.position = BinaryRDFJSON.MAGIC.length;
+            this.writeVarint(this.maxDictionarySize);
+        }
+        catch(final IOException e)
+        {
+            throw new RDFHandlerException(e);
+        }
+    }
+    
+    /**
+     * Writes a value type byte followed by the value, which may be null for the default graph.
+     */
+    private void writeValue(final Value value) throws IOException
+    {
+        this.ensureCapacity(1);
+        if(value == null)
+        {
+            this.buffer[this.position++] = BinaryRDFJSON.NULL_VALUE;
+        }
+        else if(value instanceof URI)
+        {
+            this.buffer[this.position++] = BinaryRDFJSON.URI_VALUE;
+            this.writeTerm(value);
+        }
+        else if(value instanceof BNode)
+        {
+            this.buffer[this.position++] = BinaryRDFJSON.BNODE_VALUE;
+            this.writeTerm(value);
+        }
+        else
+        {
+            final Literal literal = (Literal)value;
+            if(literal.getLanguage() != null)
+            {
+                this.buffer[this.position++] = BinaryRDFJSON.LANGUAGE_LITERAL_VALUE;
+                this.writeString(literal.getLabel());
+                this.writeTerm(literal.getLanguage());
+            }
+            else if(literal.getDatatype() != null)
+            {
+                this.buffer[this.position++] = BinaryRDFJSON.DATATYPE_LITERAL_VALUE;
+                this.writeString(literal.getLabel());
+                this.writeTerm(literal.getDatatype());
+            }
+            else
+            {
+                this.buffer[this.position++] = BinaryRDFJSON.PLAIN_LITERAL_VALUE;
+                this.writeString(literal.getLabel());
+            }
+        }
+    }
+    
+    /**
+     * Writes a reference to the given URI, blank node or language tag, adding it to the dictionary
+     * if it is new and the dictionary is not full.
+     */
+    private void writeTerm(final Object term) throws IOException
+    {
+        final Integer reference = this.dictionary.get(term);
+        if(reference != null)
+        {
+            this.writeVarint(reference);
+            return;
+        }
+        
+        this.writeVarint(0);
+        if(term instanceof BNode)
+        {
+            this.writeString(((BNode)term).getID());
+        }
+        else if(term instanceof URI)
+        {
+            this.writeString(((URI)term).stringValue());
+        }
+        else
+        {
+            this.writeString((String)term);
+        }
+        if(this.dictionary.size() < this.maxDictionarySize)
+        {
+            this.dictionary.put(term, this.dictionary.size() + 1);
+        }
+    }
+    
+    private void writeString(final String value) throws IOException
+    {
+        final byte[] bytes = value.getBytes(BinaryRDFJSON.UTF8);
+        this.writeVarint(bytes.length);
+        if(bytes.length > this.buffer.length - this.position)
+        {
+            this.flushBuffer();
+            if(bytes.length > this.buffer.length)
+            {
+                this.out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, this.buffer, this.position, bytes.length);
+        this.position += bytes.length;
+    }
+    
+    private void writeVarint(final int value) throws IOException
+    {
+        this.ensureCapacity(BinaryRDFJSON.MAX_VARINT_BYTES);
+        int remaining = value;
+        while((remaining & ~0x7F) != 0)
+        {
+            this.buffer[this.position++] = (byte)((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        this.buffer[this.position++] = (byte)remaining;
+    }
+    
+    private void ensureCapacity(final int bytes) throws IOException
+    {
+        if(this.position + bytes > this.buffer.length)
+        {
+            this.flushBuffer();
+        }
+    }
+    
+    private void flushBuffer() throws IOException
+    {
+        if(this.position > 0)
+        {
+            this.out.write(this.buffer, 0, this.position);
+            this.position = 0;
+        }
+    }
+}
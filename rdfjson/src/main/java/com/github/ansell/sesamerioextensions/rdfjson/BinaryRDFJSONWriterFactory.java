@@ -0,0 +1,44 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.OutputStream;
+import java.io.Writer;
+
+import org.kohsuke.MetaInfServices;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFWriter;
+import org.openrdf.rio.RDFWriterFactory;
+
+import com.github.ansell.sesamerioextensions.api.RDFFormatExtensions;
+
+/**
+ * Writer Factory for the BinaryRDFJSONWriter.
+ * 
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+@MetaInfServices(RDFWriterFactory.class)
+public class BinaryRDFJSONWriterFactory implements RDFWriterFactory
+{
+    
+    @Override
+    public RDFFormat getRDFFormat()
+    {
+        return RDFFormatExtensions.BINARY_RDFJSON;
+    }
+    
+    @Override
+    public RDFWriter getWriter(final OutputStream out)
+    {
+        return new BinaryRDFJSONWriter(out, this.getRDFFormat());
+    }
+    
+    /**
+     * @throws UnsupportedOperationException
+     *             As binary RDF/JSON can only be written to an OutputStream.
+     */
+    @Override
+    public RDFWriter getWriter(final Writer writer)
+    {
+        throw new UnsupportedOperationException("Binary RDF/JSON can only be written to an OutputStream");
+    }
+    
+}
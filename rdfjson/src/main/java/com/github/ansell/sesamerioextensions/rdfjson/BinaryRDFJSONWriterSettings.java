@@ -0,0 +1,32 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import org.openrdf.rio.RioSetting;
+import org.openrdf.rio.helpers.RioSettingImpl;
+
+/**
+ * WriterSettings for the {@link BinaryRDFJSONWriter}.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public final class BinaryRDFJSONWriterSettings
+{
+    /**
+     * Integer setting for writer to determine the maximum number of URIs, blank nodes and language
+     * tags that are kept in the term dictionary, which is also the maximum number that the parser
+     * keeps in memory. Terms that are first seen after the dictionary is full are written in full
+     * each time they appear.
+     * <p>
+     * Defaults to 262144.
+     */
+    public static final RioSetting<Integer> DICTIONARY_SIZE = new RioSettingImpl<Integer>(
+            "com.github.ansell.sesamerioextensions.rdfjson.binarydictionarysize",
+            "Maximum number of terms in the dictionary for a binary RDF/JSON document", 262144);
+    
+    /**
+     * Private default constructor.
+     */
+    private BinaryRDFJSONWriterSettings()
+    {
+    }
+    
+}
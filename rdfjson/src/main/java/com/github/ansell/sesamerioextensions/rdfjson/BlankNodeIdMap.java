@@ -0,0 +1,75 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.openrdf.model.BNode;
+
+/**
+ * Gives the blank node for each blank node label in a document, without keeping the blank nodes on
+ * the heap, for the {@link RDFJSONBlankNodeIds#HASH} and {@link RDFJSONBlankNodeIds#OFF_HEAP}
+ * settings.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+abstract class BlankNodeIdMap
+{
+    private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+    
+    /**
+     * The salts for the two halves of the hash of each label.
+     */
+    final long salt1;
+    final long salt2;
+    
+    BlankNodeIdMap()
+    {
+        final Random random = new Random();
+        this.salt1 = random.nextLong();
+        this.salt2 = random.nextLong();
+    }
+    
+    /**
+     * @param label
+     *            A blank node label from the document, without the "_:" prefix.
+     * @return The blank node for the label, which is equal to the blank node returned for the same
+     *         label earlier in the document.
+     * @throws IOException
+     *             If the blank node could not be stored.
+     */
+    abstract BNode get(String label) throws IOException;
+    
+    /**
+     * Releases the resources used for the labels at the end of the document.
+     *
+     * @throws IOException
+     *             If the resources could not be released.
+     */
+    void close() throws IOException
+    {
+        // Nothing to release by default
+    }
+    
+    /**
+     * Hashes a label with the given salt. Each step of the hash can be reversed, so labels of the
+     * same length only have the same hash by chance, and the final mix spreads the bits so that the
+     * low bits can be used for tables.
+     */
+    static long hash(final String label, final long salt)
+    {
+        long result = salt;
+        final int length = label.length();
+        for(int i = 0; i < length; i++)
+        {
+            result = (result ^ label.charAt(i)) * BlankNodeIdMap.MULTIPLIER;
+            result ^= result >>> 29;
+        }
+        result ^= length;
+        result ^= result >>> 33;
+        result *= 0xFF51AFD7ED558CCDL;
+        result ^= result >>> 33;
+        result *= 0xC4CEB9FE1A85EC53L;
+        result ^= result >>> 33;
+        return result;
+    }
+}
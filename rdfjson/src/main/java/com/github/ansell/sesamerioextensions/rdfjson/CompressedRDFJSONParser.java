@@ -0,0 +1,60 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+
+import com.github.ansell.sesamerioextensions.api.RDFFormatExtensions;
+
+/**
+ * RDFParser for compressed RDF/JSON-preferred formats, such as
+ * {@link RDFFormatExtensions#RDFJSONPREFERRED_GZIP}, which decompresses the InputStream and parses
+ * the result in the same way as the {@link RDFJSONPreferredParser}, using the same settings.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class CompressedRDFJSONParser extends RDFJSONPreferredParser
+{
+    private final RDFJSONCompression compression;
+    
+    public CompressedRDFJSONParser(final RDFFormat actualFormat, final RDFJSONCompression compression)
+    {
+        super(actualFormat);
+        this.compression = compression;
+    }
+    
+    @Override
+    public void parse(final InputStream inputStream, final String baseUri) throws IOException, RDFParseException,
+        RDFHandlerException
+    {
+        super.parse(this.compression.decompress(inputStream), baseUri);
+    }
+    
+    /**
+     * Parses the rest of a compressed document from a checkpoint. The offset in the checkpoint is
+     * an offset in the decompressed document, so the document is decompressed from the start, and
+     * the decompressed bytes before the checkpoint are skipped. This is also used for files, which
+     * are decompressed in the same way.
+     */
+    @Override
+    public void parse(final InputStream inputStream, final RDFJSONCheckpoint checkpoint, final String baseUri)
+        throws IOException, RDFParseException, RDFHandlerException
+    {
+        super.parse(this.compression.decompress(inputStream), checkpoint, baseUri);
+    }
+    
+    /**
+     * @throws UnsupportedOperationException
+     *             As compressed RDF/JSON can only be read from an InputStream.
+     */
+    @Override
+    public void parse(final Reader reader, final String baseUri) throws IOException, RDFParseException,
+        RDFHandlerException
+    {
+        throw new UnsupportedOperationException("Compressed RDF/JSON can only be read from an InputStream");
+    }
+}
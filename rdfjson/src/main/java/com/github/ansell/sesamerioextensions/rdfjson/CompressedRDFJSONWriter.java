@@ -0,0 +1,160 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RioSetting;
+
+import com.github.ansell.sesamerioextensions.api.RDFFormatExtensions;
+
+/**
+ * RDFWriter for compressed RDF/JSON-preferred formats, such as
+ * {@link RDFFormatExtensions#RDFJSONPREFERRED_GZIP}, which writes the same document as the
+ * {@link RDFJSONPreferredWriter} and compresses it before writing it to the OutputStream.
+ * <p>
+ * Unless {@link RDFJSONPreferredWriterSettings#BACKGROUND_COMPRESSION} is false, the document is
+ * compressed on a background thread, so that compression does not slow down serialisation. The
+ * end of the compressed stream is written in endRDF, but the OutputStream is not closed. The
+ * writer can be reused for another document with {@link #reset(OutputStream)}, but not with
+ * {@link #reset(Writer)}, as compressed documents can only be written to an OutputStream.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class CompressedRDFJSONWriter extends RDFJSONPreferredWriter
+{
+    private final RDFJSONCompression compression;
+    private CompressingOutputStream stream;
+    
+    /**
+     * Creates a writer that compresses the document using the given compression.
+     *
+     * @param out
+     *            The stream to write the compressed document to.
+     * @param actualFormat
+     *            The format to report from {@link #getRDFFormat()}.
+     * @param compression
+     *            The compression to use.
+     */
+    public CompressedRDFJSONWriter(final OutputStream out, final RDFFormat actualFormat,
+            final RDFJSONCompression compression)
+    {
+        this(new CompressingOutputStream(out, compression), actualFormat, compression);
+    }
+    
+    private CompressedRDFJSONWriter(final CompressingOutputStream stream, final RDFFormat actualFormat,
+            final RDFJSONCompression compression)
+    {
+        super(stream, actualFormat);
+        this.stream = stream;
+        this.compression = compression;
+    }
+    
+    @Override
+    public void endRDF() throws RDFHandlerException
+    {
+        try
+        {
+            super.endRDF();
+            this.stream.finish();
+        }
+        catch(final IOException e)
+        {
+            throw new RDFHandlerException(e);
+        }
+        finally
+        {
+            this.stream.shutdown();
+        }
+    }
+    
+    /**
+     * Stops the compression thread if the statement could not be written, as the document will not
+     * be completed.
+     */
+    @Override
+    public void handleStatement(final Statement statement) throws RDFHandlerException
+    {
+        boolean handled = false;
+        try
+        {
+            super.handleStatement(statement);
+            handled = true;
+        }
+        finally
+        {
+            if(!handled)
+            {
+                this.stream.shutdown();
+            }
+        }
+    }
+    
+    /**
+     * Sets the stream that the next compressed document is written to, abandoning the current
+     * document if endRDF has not been called.
+     */
+    @Override
+    public void reset(final OutputStream out)
+    {
+        if(out == null)
+        {
+            throw new NullPointerException("OutputStream must not be null");
+        }
+        this.stream.shutdown();
+        this.stream = new CompressingOutputStream(out, this.compression);
+        super.reset(this.stream);
+    }
+    
+    /**
+     * @throws UnsupportedOperationException
+     *             Always, as compressed documents can only be written to an OutputStream.
+     */
+    @Override
+    public void reset(final Writer nextWriter)
+    {
+        throw new UnsupportedOperationException("Compressed RDF/JSON can only be written to an OutputStream");
+    }
+    
+    @Override
+    public Collection<RioSetting<?>> getSupportedSettings()
+    {
+        final Set<RioSetting<?>> results = new HashSet<RioSetting<?>>(super.getSupportedSettings());
+        
+        results.add(RDFJSONPreferredWriterSettings.BACKGROUND_COMPRESSION);
+        
+        return results;
+    }
+    
+    @Override
+    public void startRDF() throws RDFHandlerException
+    {
+        try
+        {
+            this.stream.start(this.getWriterConfig().get(RDFJSONPreferredWriterSettings.BACKGROUND_COMPRESSION));
+        }
+        catch(final IOException e)
+        {
+            throw new RDFHandlerException(e);
+        }
+        boolean started = false;
+        try
+        {
+            super.startRDF();
+            started = true;
+        }
+        finally
+        {
+            if(!started)
+            {
+                this.stream.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An OutputStream that compresses the bytes written to it, for {@link CompressedRDFJSONWriter}.
+ * <p>
+ * If compression is done in the background, bytes are collected in a buffer on the writing thread,
+ * and each full buffer is compressed on a separate thread while the next buffer is being filled,
+ * so that serialising and compressing a document use two cores. At most four buffers are waiting
+ * to be compressed at any time, so a writer that is faster than compression is slowed down instead
+ * of using more memory. Errors from compression are thrown on the writing thread from the next
+ * write or flush.
+ * <p>
+ * Each call to {@link #start(boolean)} starts a new compressed stream, which is completed by
+ * {@link #finish()} without closing the underlying stream. The compression thread is stopped by
+ * {@link #shutdown()} or {@link #close()}, and stops by itself if no bytes are written to it for
+ * a few seconds, so that it is not kept if a document is abandoned.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+final class CompressingOutputStream extends OutputStream
+{
+    private static final int BUFFER_SIZE = 65536;
+    
+    private static final int MAX_PENDING = 4;
+    
+    private static final long IDLE_SECONDS = 10;
+    
+    private final OutputStream out;
+    private final RDFJSONCompression compression;
+    
+    private OutputStream compressor;
+    
+    /**
+     * The compression thread, or null if bytes are compressed on the writing thread.
+     */
+    private ExecutorService executor;
+    private Deque<Future<byte[]>> pending;
+    private final Deque<byte[]> freeBuffers = new ArrayDeque<byte[]>();
+    private byte[] buffer;
+    private int position;
+    
+    CompressingOutputStream(final OutputStream out, final RDFJSONCompression compression)
+    {
+        this.out = out;
+        this.compression = compression;
+    }
+    
+    /**
+     * Starts a new compressed stream.
+     *
+     * @param background
+     *            True to compress on a background thread, and false to compress on the writing
+     *            thread.
+     */
+    void start(final boolean background) throws IOException
+    {
+        this.compressor = this.compression.compress(new UnclosedOutputStream(this.out));
+        if(background)
+        {
+            final ThreadFactory threadFactory = new ThreadFactory()
+                {
+                    private final AtomicInteger count = new AtomicInteger();
+                    
+                    @Override
+                    public Thread newThread(final Runnable r)
+                    {
+                        final Thread result = new Thread(r, "rdfjson-compressor-" + this.count.incrementAndGet());
+                        result.setDaemon(true);
+                        return result;
+                    }
+                };
+            // The thread stops when it is idle, so it is not kept if a document is abandoned
+            final ThreadPoolExecutor nextExecutor =
+                    new ThreadPoolExecutor(1, 1, CompressingOutputStream.IDLE_SECONDS, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>(), threadFactory);
+            nextExecutor.allowCoreThreadTimeOut(true);
+            this.executor = nextExecutor;
+            this.pending = new ArrayDeque<Future<byte[]>>();
+            this.buffer = new byte[CompressingOutputStream.BUFFER_SIZE];
+            this.position = 0;
+        }
+    }
+    
+    /**
+     * Compresses any buffered bytes and writes the end of the compressed stream, without closing
+     * the underlying stream.
+     */
+    void finish() throws IOException
+    {
+        this.flush();
+        this.compressor.close();
+        this.compressor = null;
+    }
+    
+    /**
+     * Stops the compression thread, discarding any bytes that have not been compressed.
+     */
+    void shutdown()
+    {
+        if(this.executor != null)
+        {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+        this.pending = null;
+        this.buffer = null;
+        this.freeBuffers.clear();
+    }
+    
+    @Override
+    public void write(final int b) throws IOException
+    {
+        if(this.executor == null)
+        {
+            this.compressor.write(b);
+            return;
+        }
+        
+        if(this.position == this.buffer.length)
+        {
+            this.submitBuffer();
+        }
+        this.buffer[this.position++] = (byte)b;
+    }
+    
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException
+    {
+        if(this.executor == null)
+        {
+            this.compressor.write(b, off, len);
+            return;
+        }
+        
+        int offset = off;
+        int remaining = len;
+        while(remaining > 0)
+        {
+            if(this.position == this.buffer.length)
+            {
+                this.submitBuffer();
+            }
+            final int length = Math.min(remaining, this.buffer.length - this.position);
+            System.arraycopy(b, offset, this.buffer, this.position, length);
+            this.position += length;
+            offset += length;
+            remaining -= length;
+        }
+    }
+    
+    /**
+     * Waits until all of the bytes that have been written are compressed, then flushes the
+     * compressed stream.
+     */
+    @Override
+    public void flush() throws IOException
+    {
+        if(this.executor != null)
+        {
+            this.submitBuffer();
+            while(!this.pending.isEmpty())
+            {
+                this.freeBuffers.add(this.waitFor(this.pending.removeFirst()));
+            }
+        }
+        this.compressor.flush();
+    }
+    
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            if(this.compressor != null)
+            {
+                this.finish();
+            }
+        }
+        finally
+        {
+            this.shutdown();
+            this.out.close();
+        }
+    }
+    
+    /**
+     * Sends the current buffer to the compression thread, waiting for an earlier buffer to finish
+     * if there are already too many waiting.
+     */
+    private void submitBuffer() throws IOException
+    {
+        if(this.position == 0)
+        {
+            return;
+        }
+        
+        while(this.pending.size() >= CompressingOutputStream.MAX_PENDING)
+        {
+            this.freeBuffers.add(this.waitFor(this.pending.removeFirst()));
+        }
+        
+        final OutputStream nextCompressor = this.compressor;
+        final byte[] bytes = this.buffer;
+        final int length = this.position;
+        this.pending.add(this.executor.submit(new Callable<byte[]>()
+            {
+                @Override
+                public byte[] call() throws IOException
+                {
+                    nextCompressor.write(bytes, 0, length);
+                    return bytes;
+                }
+            }));
+        
+        this.buffer = this.freeBuffers.isEmpty() ? new byte[CompressingOutputStream.BUFFER_SIZE] : this.freeBuffers
+                .removeFirst();
+        this.position = 0;
+    }
+    
+    private byte[] waitFor(final Future<byte[]> future) throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch(final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            final InterruptedIOException ioe = new InterruptedIOException("Interrupted while compressing RDF/JSON");
+            ioe.initCause(e);
+            throw ioe;
+        }
+        catch(final ExecutionException e)
+        {
+            WorkerExceptions.rethrowIO(e.getCause());
+            throw new IOException(e.getCause());
+        }
+    }
+    
+    /**
+     * Passes writes straight through to another stream, and flushes instead of closing it, so that
+     * closing a compressor writes the end of the compressed stream without closing the stream that
+     * was given to the writer.
+     */
+    private static final class UnclosedOutputStream extends FilterOutputStream
+    {
+        UnclosedOutputStream(final OutputStream out)
+        {
+            super(out);
+        }
+        
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException
+        {
+            this.out.write(b, off, len);
+        }
+        
+        @Override
+        public void close() throws IOException
+        {
+            this.out.flush();
+        }
+    }
+}
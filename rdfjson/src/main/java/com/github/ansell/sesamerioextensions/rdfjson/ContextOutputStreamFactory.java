@@ -0,0 +1,31 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.openrdf.model.Resource;
+
+/**
+ * Opens the OutputStream that the statements for a single context are written to by the
+ * {@link RDFJSONPartitionedWriter}.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public interface ContextOutputStreamFactory
+{
+    /**
+     * Opens the stream for the given context. This is called at most once for each context, the
+     * first time that statements for the context are written out, and may be called from a
+     * different thread to the thread that is sending statements to the writer.
+     * <p>
+     * The stream is closed by the writer when endRDF is called, so the streams for all of the
+     * contexts in the dataset are open at the same time.
+     *
+     * @param context
+     *            The context, or null for the default graph.
+     * @return A new OutputStream for the context.
+     * @throws IOException
+     *             If the stream could not be opened.
+     */
+    OutputStream openStream(Resource context) throws IOException;
+}
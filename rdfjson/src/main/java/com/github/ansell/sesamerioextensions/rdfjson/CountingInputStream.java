@@ -0,0 +1,68 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An InputStream that counts the bytes that are read from another stream, for
+ * {@link RDFJSONMetrics#getBytes()}.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+final class CountingInputStream extends FilterInputStream
+{
+    private long count;
+    
+    CountingInputStream(final InputStream in)
+    {
+        super(in);
+    }
+    
+    /**
+     * @return The number of bytes that have been read or skipped.
+     */
+    long getCount()
+    {
+        return this.count;
+    }
+    
+    @Override
+    public int read() throws IOException
+    {
+        final int result = super.read();
+        if(result != -1)
+        {
+            this.count++;
+        }
+        return result;
+    }
+    
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException
+    {
+        final int result = super.read(b, off, len);
+        if(result > 0)
+        {
+            this.count += result;
+        }
+        return result;
+    }
+    
+    @Override
+    public long skip(final long n) throws IOException
+    {
+        final long result = super.skip(n);
+        this.count += result;
+        return result;
+    }
+    
+    /**
+     * Marks are not supported, so that bytes are not counted twice.
+     */
+    @Override
+    public boolean markSupported()
+    {
+        return false;
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An OutputStream that counts the bytes that are written to another stream, for
+ * {@link RDFJSONMetrics#getBytes()}.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+final class CountingOutputStream extends FilterOutputStream
+{
+    private long count;
+    
+    CountingOutputStream(final OutputStream out)
+    {
+        super(out);
+    }
+    
+    /**
+     * @return The number of bytes that have been written.
+     */
+    long getCount()
+    {
+        return this.count;
+    }
+    
+    @Override
+    public void write(final int b) throws IOException
+    {
+        this.out.write(b);
+        this.count++;
+    }
+    
+    /**
+     * Writes the whole array to the underlying stream, instead of one byte at a time as
+     * FilterOutputStream does.
+     */
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException
+    {
+        this.out.write(b, off, len);
+        this.count += len;
+    }
+}
@@ -0,0 +1,528 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sorts a stream of statements using a bounded in-memory buffer, spilling sorted runs to temporary
+ * files when the buffer fills up, and merging the runs when the sorted statements are requested.
+ * <p>
+ * The buffer is spilled when it holds a given number of statements, or, if a memory limit is given,
+ * when the estimated size of the statements that it holds reaches the limit.
+ * <p>
+ * The sort is stable, so statements that compare as equal are returned in the order they were
+ * added.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+final class ExternalStatementSorter
+{
+    private static final Logger log = LoggerFactory.getLogger(ExternalStatementSorter.class);
+    
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    
+    /**
+     * The maximum number of runs that are merged at once, to avoid running out of file handles.
+     */
+    private static final int MAX_MERGE_FAN_IN = 64;
+    
+    private static final int NULL_VALUE = 0;
+    private static final int URI_VALUE = 1;
+    private static final int BNODE_VALUE = 2;
+    private static final int PLAIN_LITERAL_VALUE = 3;
+    private static final int LANGUAGE_LITERAL_VALUE = 4;
+    private static final int DATATYPE_LITERAL_VALUE = 5;
+    
+    /**
+     * The estimated number of bytes used by a statement and its slot in the buffer, not including
+     * its values.
+     */
+    private static final long STATEMENT_OVERHEAD = 48;
+    
+    /**
+     * The estimated number of bytes used by a value and its string, not including the characters.
+     */
+    private static final long VALUE_OVERHEAD = 64;
+    
+    private final Comparator<Statement> comparator;
+    private final int bufferSize;
+    private final long memoryLimit;
+    private final File directory;
+    private final ValueFactory vf;
+    private final List<Statement> buffer;
+    
+    /**
+     * The estimated size of the statements in the buffer, which is only tracked if there is a
+     * memory limit.
+     */
+    private long bufferedBytes;
+    private final List<File> runs = new ArrayList<File>();
+    
+    /**
+     * @param comparator
+     *            The order that statements will be returned in.
+     * @param bufferSize
+     *            The maximum number of statements to hold in memory before spilling a sorted run to
+     *            a temporary file.
+     * @param vf
+     *            The ValueFactory used to recreate statements that were spilled to disk.
+     */
+    ExternalStatementSorter(final Comparator<Statement> comparator, final int bufferSize, final ValueFactory vf)
+    {
+        this(comparator, bufferSize, 0L, null, vf);
+    }
+    
+    /**
+     * @param comparator
+     *            The order that statements will be returned in.
+     * @param bufferSize
+     *            The maximum number of statements to hold in memory before spilling a sorted run to
+     *            a temporary file.
+     * @param memoryLimit
+     *            The approximate number of bytes of statements to hold in memory before spilling a
+     *            sorted run to a temporary file, or 0 to only limit the number of statements.
+     * @param directory
+     *            The directory to create temporary files in, or null to use the default temporary
+     *            directory.
+     * @param vf
+     *            The ValueFactory used to recreate statements that were spilled to disk.
+     */
+    ExternalStatementSorter(final Comparator<Statement> comparator, final int bufferSize, final long memoryLimit,
+            final File directory, final ValueFactory vf)
+    {
+        if(bufferSize < 1)
+        {
+            throw new IllegalArgumentException("Sort buffer size must be positive: " + bufferSize);
+        }
+        this.comparator = comparator;
+        this.bufferSize = bufferSize;
+        this.memoryLimit = memoryLimit;
+        this.directory = directory;
+        this.vf = vf;
+        this.buffer = new ArrayList<Statement>(Math.min(bufferSize, 1024));
+    }
+    
+    /**
+     * Adds a statement to be sorted, spilling the buffer to disk if it is full.
+     */
+    void add(final Statement st) throws IOException
+    {
+        this.buffer.add(st);
+        if(this.memoryLimit > 0)
+        {
+            this.bufferedBytes += ExternalStatementSorter.estimateSize(st);
+        }
+        if(this.buffer.size() >= this.bufferSize || (this.memoryLimit > 0 && this.bufferedBytes >= this.memoryLimit))
+        {
+            this.runs.add(this.spill());
+        }
+    }
+    
+    /**
+     * Sends all of the statements that were added to the given handler in sorted order. The sorter
+     * is empty afterwards, but {@link #close()} must still be called to remove temporary files.
+     */
+    void drainTo(final RDFHandler handler) throws IOException, RDFHandlerException
+    {
+        Collections.sort(this.buffer, this.comparator);
+        if(this.runs.isEmpty())
+        {
+            for(final Statement nextStatement : this.buffer)
+            {
+                handler.handleStatement(nextStatement);
+            }
+            this.buffer.clear();
+            this.bufferedBytes = 0;
+            return;
+        }
+        
+        if(!this.buffer.isEmpty())
+        {
+            this.runs.add(this.spill());
+        }
+        
+        // Merge consecutive groups of runs until they can all be merged at once, keeping the runs in
+        // their original order so that the merge remains stable
+        while(this.runs.size() > ExternalStatementSorter.MAX_MERGE_FAN_IN)
+        {
+            final List<File> mergedRuns = new ArrayList<File>();
+            for(int i = 0; i < this.runs.size(); i += ExternalStatementSorter.MAX_MERGE_FAN_IN)
+            {
+                final List<File> group =
+                        new ArrayList<File>(this.runs.subList(i,
+                                Math.min(i + ExternalStatementSorter.MAX_MERGE_FAN_IN, this.runs.size())));
+                if(group.size() == 1)
+                {
+                    mergedRuns.add(group.get(0));
+                    continue;
+                }
+                final File merged = this.createRunFile();
+                mergedRuns.add(merged);
+                final DataOutputStream out = this.openRun(merged);
+                try
+                {
+                    this.merge(group, out, null);
+                }
+                finally
+                {
+                    out.close();
+                }
+                this.deleteAll(group);
+            }
+            this.runs.clear();
+            this.runs.addAll(mergedRuns);
+        }
+        
+        this.merge(this.runs, null, handler);
+        this.deleteAll(this.runs);
+    }
+    
+    /**
+     * Removes any temporary files and statements that are still held by this sorter.
+     */
+    void close()
+    {
+        this.buffer.clear();
+        this.bufferedBytes = 0;
+        this.deleteAll(this.runs);
+    }
+    
+    private File spill() throws IOException
+    {
+        Collections.sort(this.buffer, this.comparator);
+        final File runFile = this.createRunFile();
+        final DataOutputStream out = this.openRun(runFile);
+        try
+        {
+            for(final Statement nextStatement : this.buffer)
+            {
+                ExternalStatementSorter.writeStatement(nextStatement, out);
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+        ExternalStatementSorter.log.debug("Spilled {} statements to {}", this.buffer.size(), runFile);
+        this.buffer.clear();
+        this.bufferedBytes = 0;
+        return runFile;
+    }
+    
+    /**
+     * Merges the given runs, either into the output stream if it is not null, or into the handler.
+     */
+    private void merge(final List<File> runFiles, final DataOutputStream out, final RDFHandler handler)
+        throws IOException, RDFHandlerException
+    {
+        final PriorityQueue<RunCursor> queue = new PriorityQueue<RunCursor>(runFiles.size());
+        final List<RunCursor> cursors = new ArrayList<RunCursor>(runFiles.size());
+        boolean merged = false;
+        try
+        {
+            for(int i = 0; i < runFiles.size(); i++)
+            {
+                final RunCursor cursor = new RunCursor(runFiles.get(i), i);
+                cursors.add(cursor);
+                if(cursor.advance())
+                {
+                    queue.add(cursor);
+                }
+                else
+                {
+                    cursor.close();
+                }
+            }
+            
+            while(!queue.isEmpty())
+            {
+                final RunCursor cursor = queue.poll();
+                if(out != null)
+                {
+                    ExternalStatementSorter.writeStatement(cursor.current, out);
+                }
+                else
+                {
+                    handler.handleStatement(cursor.current);
+                }
+                
+                if(cursor.advance())
+                {
+                    queue.add(cursor);
+                }
+                else
+                {
+                    cursor.close();
+                }
+            }
+            merged = true;
+        }
+        finally
+        {
+            ExternalStatementSorter.closeAll(cursors, merged);
+        }
+    }
+    
+    /**
+     * Closes all of the given cursors, including any that were already closed. If the merge failed,
+     * errors from closing the cursors are logged instead of thrown, so that they do not hide the
+     * exception that stopped the merge.
+     */
+    private static void closeAll(final List<RunCursor> cursors, final boolean merged) throws IOException
+    {
+        IOException failure = null;
+        for(final RunCursor cursor : cursors)
+        {
+            try
+            {
+                cursor.close();
+            }
+            catch(final IOException e)
+            {
+                if(!merged)
+                {
+                    ExternalStatementSorter.log.warn("Could not close temporary sort file after an error", e);
+                }
+                else if(failure == null)
+                {
+                    failure = e;
+                }
+            }
+        }
+        if(failure != null)
+        {
+            throw failure;
+        }
+    }
+    
+    private File createRunFile() throws IOException
+    {
+        final File runFile = File.createTempFile("rdfjson-sort-", ".run", this.directory);
+        runFile.deleteOnExit();
+        return runFile;
+    }
+    
+    private DataOutputStream openRun(final File runFile) throws IOException
+    {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(runFile), 65536));
+    }
+    
+    private void deleteAll(final List<File> files)
+    {
+        for(final File nextFile : files)
+        {
+            if(!nextFile.delete())
+            {
+                ExternalStatementSorter.log.warn("Could not delete temporary sort file: {}", nextFile);
+            }
+        }
+        files.clear();
+    }
+    
+    /**
+     * @return The approximate number of bytes used by the given statement, counting two bytes for
+     *         each character in its values. Values that are shared with other statements are
+     *         counted for each statement, so the estimate is usually too high.
+     */
+    private static long estimateSize(final Statement st)
+    {
+        return ExternalStatementSorter.STATEMENT_OVERHEAD + ExternalStatementSorter.estimateSize(st.getSubject())
+                + ExternalStatementSorter.estimateSize(st.getPredicate())
+                + ExternalStatementSorter.estimateSize(st.getObject())
+                + ExternalStatementSorter.estimateSize(st.getContext());
+    }
+    
+    private static long estimateSize(final Value value)
+    {
+        if(value == null)
+        {
+            return 0;
+        }
+        else if(value instanceof Literal && ((Literal)value).getLanguage() != null)
+        {
+            return 2 * ExternalStatementSorter.VALUE_OVERHEAD + 2L * ((Literal)value).getLabel().length() + 2L
+                    * ((Literal)value).getLanguage().length();
+        }
+        else
+        {
+            return ExternalStatementSorter.VALUE_OVERHEAD + 2L * value.stringValue().length();
+        }
+    }
+    
+    private static void writeStatement(final Statement st, final DataOutputStream out) throws IOException
+    {
+        ExternalStatementSorter.writeValue(st.getSubject(), out);
+        ExternalStatementSorter.writeValue(st.getPredicate(), out);
+        ExternalStatementSorter.writeValue(st.getObject(), out);
+        ExternalStatementSorter.writeValue(st.getContext(), out);
+    }
+    
+    private static void writeValue(final Value value, final DataOutputStream out) throws IOException
+    {
+        if(value == null)
+        {
+            out.writeByte(ExternalStatementSorter.NULL_VALUE);
+        }
+        else if(value instanceof URI)
+        {
+            out.writeByte(ExternalStatementSorter.URI_VALUE);
+            ExternalStatementSorter.writeString(value.stringValue(), out);
+        }
+        else if(value instanceof BNode)
+        {
+            out.writeByte(ExternalStatementSorter.BNODE_VALUE);
+            ExternalStatementSorter.writeString(((BNode)value).getID(), out);
+        }
+        else
+        {
+            final Literal literal = (Literal)value;
+            if(literal.getLanguage() != null)
+            {
+                out.writeByte(ExternalStatementSorter.LANGUAGE_LITERAL_VALUE);
+                ExternalStatementSorter.writeString(literal.getLabel(), out);
+                ExternalStatementSorter.writeString(literal.getLanguage(), out);
+            }
+            else if(literal.getDatatype() != null)
+            {
+                out.writeByte(ExternalStatementSorter.DATATYPE_LITERAL_VALUE);
+                ExternalStatementSorter.writeString(literal.getLabel(), out);
+                ExternalStatementSorter.writeString(literal.getDatatype().stringValue(), out);
+            }
+            else
+            {
+                out.writeByte(ExternalStatementSorter.PLAIN_LITERAL_VALUE);
+                ExternalStatementSorter.writeString(literal.getLabel(), out);
+            }
+        }
+    }
+    
+    /**
+     * Strings are written with an int length prefix, as {@link DataOutputStream#writeUTF(String)}
+     * is limited to 64KB.
+     */
+    private static void writeString(final String value, final DataOutputStream out) throws IOException
+    {
+        final byte[] bytes = value.getBytes(ExternalStatementSorter.UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    private Statement readStatement(final DataInputStream in) throws IOException
+    {
+        final int subjectType = in.read();
+        if(subjectType < 0)
+        {
+            return null;
+        }
+        final Resource subject = (Resource)this.readValue(subjectType, in);
+        final URI predicate = (URI)this.readValue(in.readUnsignedByte(), in);
+        final Value object = this.readValue(in.readUnsignedByte(), in);
+        final Resource context = (Resource)this.readValue(in.readUnsignedByte(), in);
+        if(context == null)
+        {
+            return this.vf.createStatement(subject, predicate, object);
+        }
+        return this.vf.createStatement(subject, predicate, object, context);
+    }
+    
+    private Value readValue(final int type, final DataInputStream in) throws IOException
+    {
+        switch(type)
+        {
+            case NULL_VALUE:
+                return null;
+            case URI_VALUE:
+                return this.vf.createURI(ExternalStatementSorter.readString(in));
+            case BNODE_VALUE:
+                return this.vf.createBNode(ExternalStatementSorter.readString(in));
+            case PLAIN_LITERAL_VALUE:
+                return this.vf.createLiteral(ExternalStatementSorter.readString(in));
+            case LANGUAGE_LITERAL_VALUE:
+                final String label = ExternalStatementSorter.readString(in);
+                return this.vf.createLiteral(label, ExternalStatementSorter.readString(in));
+            case DATATYPE_LITERAL_VALUE:
+                final String typedLabel = ExternalStatementSorter.readString(in);
+                return this.vf.createLiteral(typedLabel, this.vf.createURI(ExternalStatementSorter.readString(in)));
+            default:
+                throw new IOException("Found unknown value type in temporary sort file: " + type);
+        }
+    }
+    
+    private static String readString(final DataInputStream in) throws IOException
+    {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, ExternalStatementSorter.UTF8);
+    }
+    
+    /**
+     * The current position in a sorted run that is being merged. Cursors with equal statements are
+     * ordered by run index to keep the sort stable.
+     */
+    private final class RunCursor implements Comparable<RunCursor>
+    {
+        private final DataInputStream in;
+        private final int index;
+        private Statement current;
+        
+        RunCursor(final File runFile, final int index) throws IOException
+        {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(runFile), 65536));
+            this.index = index;
+        }
+        
+        boolean advance() throws IOException
+        {
+            try
+            {
+                this.current = ExternalStatementSorter.this.readStatement(this.in);
+            }
+            catch(final EOFException e)
+            {
+                throw new IOException("Temporary sort file was truncated", e);
+            }
+            return this.current != null;
+        }
+        
+        void close() throws IOException
+        {
+            this.in.close();
+        }
+        
+        @Override
+        public int compareTo(final RunCursor other)
+        {
+            final int result = ExternalStatementSorter.this.comparator.compare(this.current, other.current);
+            if(result != 0)
+            {
+                return result;
+            }
+            return this.index < other.index ? -1 : (this.index == other.index ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.ValueFactory;
+
+/**
+ * Gives each blank node label an identifier made from the 128 bit salted hash of the label, for the
+ * {@link RDFJSONBlankNodeIds#HASH} setting, so that no state is kept for the labels.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+final class HashedBlankNodeIdMap extends BlankNodeIdMap
+{
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    
+    private final ValueFactory vf;
+    
+    /**
+     * The characters for the next identifier, which are a prefix followed by 32 hexadecimal digits.
+     */
+    private final char[] id = new char[33];
+    
+    HashedBlankNodeIdMap(final ValueFactory vf)
+    {
+        this.vf = vf;
+        this.id[0] = 'h';
+    }
+    
+    @Override
+    BNode get(final String label)
+    {
+        this.writeHex(BlankNodeIdMap.hash(label, this.salt1), 1);
+        this.writeHex(BlankNodeIdMap.hash(label, this.salt2), 17);
+        return this.vf.createBNode(new String(this.id));
+    }
+    
+    private void writeHex(final long value, final int offset)
+    {
+        for(int i = 0; i < 16; i++)
+        {
+            this.id[offset + i] = HashedBlankNodeIdMap.HEX_DIGITS[(int)(value >>> (60 - i * 4)) & 0xF];
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A bounded pool of idle parsers or writers, used by the factories to lend out instances that keep
+ * their buffers between documents.
+ * <p>
+ * Instances are never shared, as each instance is removed from the pool when it is borrowed. If
+ * the pool is empty a new instance is created, and if the pool is full a returned instance is
+ * dropped, so the pool never blocks and only limits the memory kept by idle instances.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+abstract class InstancePool<T>
+{
+    private final ArrayBlockingQueue<T> idle;
+    
+    /**
+     * @param maxIdle
+     *            The maximum number of idle instances that are kept.
+     */
+    InstancePool(final int maxIdle)
+    {
+        this.idle = new ArrayBlockingQueue<T>(Math.max(1, maxIdle));
+    }
+    
+    /**
+     * @return An idle instance, or a new instance if there are no idle instances.
+     */
+    T borrow()
+    {
+        final T result = this.idle.poll();
+        return result != null ? result : this.create();
+    }
+    
+    /**
+     * Resets the given instance and keeps it for the next call to {@link #borrow()}, unless the pool
+     * is already full.
+     */
+    void release(final T instance)
+    {
+        this.reset(instance);
+        this.idle.offer(instance);
+    }
+    
+    /**
+     * @return The number of idle instances.
+     */
+    int size()
+    {
+        return this.idle.size();
+    }
+    
+    /**
+     * @return A new instance.
+     */
+    abstract T create();
+    
+    /**
+     * Returns the given instance to the state of a new instance, apart from its buffers.
+     */
+    abstract void reset(T instance);
+}
@@ -0,0 +1,96 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * A {@link JsonOutput} backed by a Jackson {@link JsonGenerator}, used when writing to a character
+ * Writer.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+final class JacksonJsonOutput implements JsonOutput
+{
+    private final JsonGenerator jg;
+    
+    JacksonJsonOutput(final JsonGenerator jg, final boolean prettyPrint)
+    {
+        this.jg = jg;
+        // Top level values are separated by the line breaks from writeLineBreak instead of spaces
+        this.jg.setRootValueSeparator(null);
+        if(prettyPrint)
+        {
+            this.jg.useDefaultPrettyPrinter();
+        }
+    }
+    
+    @Override
+    public void close() throws IOException
+    {
+        this.jg.close();
+    }
+    
+    @Override
+    public void writeEndArray() throws IOException
+    {
+        this.jg.writeEndArray();
+    }
+    
+    @Override
+    public void writeEndObject() throws IOException
+    {
+        this.jg.writeEndObject();
+    }
+    
+    @Override
+    public void writeFieldName(final String name) throws IOException
+    {
+        this.jg.writeFieldName(name);
+    }
+    
+    @Override
+    public void writeNull() throws IOException
+    {
+        this.jg.writeNull();
+    }
+    
+    @Override
+    public void writeLineBreak() throws IOException
+    {
+        this.jg.writeRaw('\n');
+    }
+    
+    @Override
+    public void writeStartArray() throws IOException
+    {
+        this.jg.writeStartArray();
+    }
+    
+    @Override
+    public void writeStartObject() throws IOException
+    {
+        this.jg.writeStartObject();
+    }
+    
+    @Override
+    public void writeString(final String value) throws IOException
+    {
+        this.jg.writeString(value);
+    }
+    
+    @Override
+    public void writeString(final Reader value) throws IOException
+    {
+        // The generator can only write a string in one piece, so the characters are collected first
+        final StringBuilder result = new StringBuilder();
+        final char[] chunk = new char[1024];
+        int length;
+        while((length = value.read(chunk)) != -1)
+        {
+            result.append(chunk, 0, length);
+        }
+        this.jg.writeString(result.toString());
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * A {@link JsonTokenizer} backed by the Jackson streaming {@link JsonParser}.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+final class JacksonJsonTokenizer implements JsonTokenizer
+{
+    private final JsonParser jp;
+    
+    JacksonJsonTokenizer(final JsonParser jp)
+    {
+        this.jp = jp;
+    }
+    
+    @Override
+    public void close() throws IOException
+    {
+        this.jp.close();
+    }
+    
+    @Override
+    public int getColumnNr()
+    {
+        final JsonLocation location = this.jp.getTokenLocation();
+        return location == null ? -1 : location.getColumnNr();
+    }
+    
+    @Override
+    public int getLineNr()
+    {
+        final JsonLocation location = this.jp.getTokenLocation();
+        return location == null ? -1 : location.getLineNr();
+    }
+    
+    @Override
+    public String getText() throws IOException
+    {
+        return this.jp.getText();
+    }
+    
+    @Override
+    public JsonToken nextToken() throws IOException
+    {
+        return this.jp.nextToken();
+    }
+    
+    @Override
+    public void skipChildren() throws IOException
+    {
+        this.jp.skipChildren();
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * The subset of a JSON generator that is needed by the {@link RDFJSONPreferredWriter}.
+ * <p>
+ * Closing a JsonOutput flushes any buffered content, but does not close the underlying stream or
+ * writer.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+interface JsonOutput extends Closeable
+{
+    void writeStartObject() throws IOException;
+    
+    void writeEndObject() throws IOException;
+    
+    void writeStartArray() throws IOException;
+    
+    void writeEndArray() throws IOException;
+    
+    /**
+     * Writes the name of the next field in the current object.
+     */
+    void writeFieldName(String name) throws IOException;
+    
+    void writeString(String value) throws IOException;
+    
+    /**
+     * Writes a string value from the characters in the given reader, which is read to the end but
+     * not closed.
+     */
+    void writeString(Reader value) throws IOException;
+    
+    void writeNull() throws IOException;
+    
+    /**
+     * Writes a line break after a complete top level value, so that the next top level value starts
+     * on a new line.
+     */
+    void writeLineBreak() throws IOException;
+}
@@ -0,0 +1,55 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * An incremental source of JSON tokens for the {@link RDFJSONPreferredParser}.
+ * <p>
+ * Only the text of the current token is available at any time, so the memory used by a tokenizer
+ * is bounded by the size of the largest token, rather than the size of the document.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+interface JsonTokenizer extends Closeable
+{
+    /**
+     * Moves to the next token.
+     *
+     * @return The next token, or null if the end of the input has been reached.
+     * @throws IOException
+     *             If the input could not be read, or it was not valid JSON.
+     */
+    JsonToken nextToken() throws IOException;
+    
+    /**
+     * @return The text for the current token, which for {@link JsonToken#FIELD_NAME} is the name of
+     *         the field, and for {@link JsonToken#VALUE_STRING} is the decoded string.
+     * @throws IOException
+     *             If the text could not be read, or it was not valid JSON.
+     */
+    String getText() throws IOException;
+    
+    /**
+     * If the current token is {@link JsonToken#START_OBJECT} or {@link JsonToken#START_ARRAY},
+     * moves to the matching {@link JsonToken#END_OBJECT} or {@link JsonToken#END_ARRAY} without
+     * returning the tokens in between, and does nothing otherwise. Implementations may only check
+     * that the skipped content is balanced, rather than that it is valid JSON.
+     *
+     * @throws IOException
+     *             If the input could not be read, or it ended before the matching end token.
+     */
+    void skipChildren() throws IOException;
+    
+    /**
+     * @return The line number of the current token, starting at 1, or -1 if it is not known.
+     */
+    int getLineNr();
+    
+    /**
+     * @return The column number of the current token, starting at 1, or -1 if it is not known.
+     */
+    int getColumnNr();
+}
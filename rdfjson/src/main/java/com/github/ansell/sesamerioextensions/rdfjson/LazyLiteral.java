@@ -0,0 +1,205 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.CharConversionException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.openrdf.model.Literal;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.LiteralImpl;
+
+/**
+ * A {@link StreamingLiteral} that keeps the UTF-8 bytes of its label as they appeared in an
+ * RDF/JSON document, which take half of the memory of a String for mostly ASCII labels, and only
+ * decodes them when the label is used.
+ * <p>
+ * The label is decoded each time {@link #getLabel()} is called, so that the decoded label can be
+ * garbage collected as soon as it is no longer used. Comparisons and hash codes are calculated from
+ * the characters as they are decoded, in small chunks, and match the results for a
+ * {@link LiteralImpl} with the same label.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+final class LazyLiteral extends LiteralImpl implements StreamingLiteral
+{
+    private static final long serialVersionUID = -4906155372611622537L;
+    
+    private static final int CHUNK_SIZE = 1024;
+    
+    /**
+     * The bytes of the label between the quotes in the document, which have been checked to be a
+     * valid JSON string.
+     */
+    private final byte[] bytes;
+    
+    /**
+     * The hash code of the label, which is calculated when it is first needed.
+     */
+    private int hash;
+    
+    /**
+     * @param bytes
+     *            The bytes of the label between the quotes in the document, which must be a valid
+     *            JSON string.
+     * @param language
+     *            The normalised language of the literal, or null if it does not have a language.
+     * @param datatype
+     *            The datatype of the literal, or null if it does not have a datatype.
+     */
+    LazyLiteral(final byte[] bytes, final String language, final URI datatype)
+    {
+        this.bytes = bytes;
+        this.setLanguage(language);
+        this.setDatatype(datatype);
+    }
+    
+    @Override
+    public String getLabel()
+    {
+        try
+        {
+            return Utf8JsonStringReader.decode(this.bytes);
+        }
+        catch(final CharConversionException e)
+        {
+            throw new IllegalStateException("Literal bytes were not checked before it was created", e);
+        }
+    }
+    
+    @Override
+    public String stringValue()
+    {
+        return this.getLabel();
+    }
+    
+    @Override
+    public Reader getLabelReader()
+    {
+        return new Utf8JsonStringReader(this.bytes, 0, this.bytes.length);
+    }
+    
+    @Override
+    public boolean equals(final Object o)
+    {
+        if(this == o)
+        {
+            return true;
+        }
+        if(!(o instanceof Literal))
+        {
+            return false;
+        }
+        
+        final Literal other = (Literal)o;
+        if(this.getDatatype() == null ? other.getDatatype() != null : !this.getDatatype()
+                .equals(other.getDatatype()))
+        {
+            return false;
+        }
+        if(this.getLanguage() == null ? other.getLanguage() != null : !this.getLanguage()
+                .equals(other.getLanguage()))
+        {
+            return false;
+        }
+        if(other instanceof LazyLiteral && Arrays.equals(this.bytes, ((LazyLiteral)other).bytes))
+        {
+            return true;
+        }
+        return LazyLiteral.contentEquals(this.getLabelReader(), other instanceof StreamingLiteral
+                ? ((StreamingLiteral)other).getLabelReader() : new StringReader(other.getLabel()));
+    }
+    
+    @Override
+    public int hashCode()
+    {
+        if(this.hash == 0)
+        {
+            // The same as String.hashCode, without creating the String
+            final Reader reader = this.getLabelReader();
+            final char[] chunk = new char[LazyLiteral.CHUNK_SIZE];
+            int result = 0;
+            int read;
+            while((read = LazyLiteral.read(reader, chunk)) > 0)
+            {
+                for(int i = 0; i < read; i++)
+                {
+                    result = 31 * result + chunk[i];
+                }
+            }
+            this.hash = result;
+        }
+        return this.hash;
+    }
+    
+    @Override
+    public String toString()
+    {
+        final String label = this.getLabel();
+        final StringBuilder result = new StringBuilder(label.length() * 2);
+        result.append('"').append(label).append('"');
+        if(this.getLanguage() != null)
+        {
+            result.append('@').append(this.getLanguage());
+        }
+        if(this.getDatatype() != null)
+        {
+            result.append("^^<").append(this.getDatatype().toString()).append(">");
+        }
+        return result.toString();
+    }
+    
+    /**
+     * Compares the characters from the given readers in chunks.
+     */
+    private static boolean contentEquals(final Reader first, final Reader second)
+    {
+        final char[] firstChunk = new char[LazyLiteral.CHUNK_SIZE];
+        final char[] secondChunk = new char[LazyLiteral.CHUNK_SIZE];
+        while(true)
+        {
+            final int firstRead = LazyLiteral.read(first, firstChunk);
+            final int secondRead = LazyLiteral.read(second, secondChunk);
+            if(firstRead != secondRead)
+            {
+                return false;
+            }
+            else if(firstRead <= 0)
+            {
+                return true;
+            }
+            for(int i = 0; i < firstRead; i++)
+            {
+                if(firstChunk[i] != secondChunk[i])
+                {
+                    return false;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Fills the given chunk from the reader, so that chunks from different readers line up.
+     *
+     * @return The number of characters read, which is less than the size of the chunk only at the
+     *         end of the label.
+     */
+    private static int read(final Reader reader, final char[] chunk)
+    {
+        try
+        {
+            int count = 0;
+            int read;
+            while(count < chunk.length && (read = reader.read(chunk, count, chunk.length - count)) > 0)
+            {
+                count += read;
+            }
+            return count;
+        }
+        catch(final IOException e)
+        {
+            throw new IllegalStateException("Could not read literal label", e);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An InputStream that only returns the lines from another stream that start inside of a range of
+ * byte offsets, for parsing part of an RDF/JSON Lines file.
+ * <p>
+ * A line belongs to the range that contains the offset of its first byte, so a line that crosses
+ * the end of a range is read in full, and a line that crosses the start of a range is skipped, as
+ * it belongs to the previous range. Splitting a file into adjacent ranges therefore returns each
+ * line exactly once.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+final class LineRangeInputStream extends FilterInputStream
+{
+    private final long end;
+    
+    /**
+     * The offset of the next byte from the underlying stream.
+     */
+    private long position;
+    
+    /**
+     * True until the line break before the first line in the range has been read.
+     */
+    private boolean skipping;
+    private boolean finished;
+    
+    /**
+     * @param in
+     *            The stream to read from, which must be positioned at the offset before start, or at
+     *            the first byte if start is 0, so that a line starting exactly at start is found.
+     * @param start
+     *            The offset of the start of the range.
+     * @param end
+     *            The offset of the end of the range, exclusive.
+     */
+    LineRangeInputStream(final InputStream in, final long start, final long end)
+    {
+        super(in);
+        this.position = Math.max(0, start - 1);
+        this.end = end;
+        this.skipping = start > 0;
+        this.finished = start >= end;
+    }
+    
+    @Override
+    public int available() throws IOException
+    {
+        return 0;
+    }
+    
+    @Override
+    public int read() throws IOException
+    {
+        final byte[] next = new byte[1];
+        return this.read(next, 0, 1) == -1 ? -1 : next[0] & 0xFF;
+    }
+    
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException
+    {
+        if(len == 0)
+        {
+            return 0;
+        }
+        
+        while(!this.finished)
+        {
+            final int read = this.in.read(b, off, len);
+            if(read == -1)
+            {
+                this.finished = true;
+                break;
+            }
+            
+            final int limit = off + read;
+            int first = off;
+            if(this.skipping)
+            {
+                while(first < limit && b[first] != '\n')
+                {
+                    first++;
+                }
+                if(first == limit)
+                {
+                    this.position += read;
+                    continue;
+                }
+                first++;
+                this.skipping = false;
+                this.position += first - off;
+                if(this.position >= this.end)
+                {
+                    this.finished = true;
+                    break;
+                }
+            }
+            
+            int kept = limit - first;
+            for(int i = first; i < limit; i++)
+            {
+                if(b[i] == '\n' && this.position + i + 1 - first >= this.end)
+                {
+                    kept = i + 1 - first;
+                    this.finished = true;
+                    break;
+                }
+            }
+            if(first != off)
+            {
+                System.arraycopy(b, first, b, off, kept);
+            }
+            this.position += kept;
+            if(kept > 0)
+            {
+                return kept;
+            }
+        }
+        return -1;
+    }
+    
+    @Override
+    public long skip(final long n) throws IOException
+    {
+        final byte[] skipped = new byte[(int)Math.min(n, 8192)];
+        long result = 0;
+        while(result < n)
+        {
+            final int read = this.read(skipped, 0, (int)Math.min(n - result, skipped.length));
+            if(read == -1)
+            {
+                break;
+            }
+            result += read;
+        }
+        return result;
+    }
+    
+    /**
+     * Marks are not supported, as the position in the range can not be reset.
+     */
+    @Override
+    public boolean markSupported()
+    {
+        return false;
+    }
+}
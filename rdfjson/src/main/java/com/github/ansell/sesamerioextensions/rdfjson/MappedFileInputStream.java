@@ -0,0 +1,136 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An InputStream that reads a file through read-only memory mappings instead of read system calls,
+ * so the operating system page cache does the buffering.
+ * <p>
+ * A single mapping can not be larger than 2GB, so the file is mapped in segments, and the next
+ * segment is only mapped when the previous segment has been read. Reads copy directly from the
+ * mapping into the array given by the caller, without an intermediate buffer.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+final class MappedFileInputStream extends InputStream
+{
+    /**
+     * The default size of each mapped segment, 1GB.
+     */
+    static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+    
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long size;
+    private final int segmentSize;
+    
+    /**
+     * The position in the file of the start of the current segment.
+     */
+    private long segmentStart;
+    private MappedByteBuffer segment;
+    
+    MappedFileInputStream(final File file) throws IOException
+    {
+        this(file, MappedFileInputStream.DEFAULT_SEGMENT_SIZE);
+    }
+    
+    MappedFileInputStream(final File file, final int segmentSize) throws IOException
+    {
+        this.file = new RandomAccessFile(file, "r");
+        this.channel = this.file.getChannel();
+        this.size = this.channel.size();
+        this.segmentSize = segmentSize;
+    }
+    
+    @Override
+    public int available() throws IOException
+    {
+        final long remaining = this.size - this.position();
+        return (int)Math.min(remaining, Integer.MAX_VALUE);
+    }
+    
+    @Override
+    public void close() throws IOException
+    {
+        this.segment = null;
+        this.file.close();
+    }
+    
+    @Override
+    public int read() throws IOException
+    {
+        if(!this.nextSegment())
+        {
+            return -1;
+        }
+        return this.segment.get() & 0xFF;
+    }
+    
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException
+    {
+        if(len == 0)
+        {
+            return 0;
+        }
+        if(!this.nextSegment())
+        {
+            return -1;
+        }
+        final int count = Math.min(len, this.segment.remaining());
+        this.segment.get(b, off, count);
+        return count;
+    }
+    
+    @Override
+    public long skip(final long n) throws IOException
+    {
+        if(n <= 0)
+        {
+            return 0;
+        }
+        final long position = this.position();
+        final long skipped = Math.min(n, this.size - position);
+        this.segment = null;
+        this.segmentStart = position + skipped;
+        return skipped;
+    }
+    
+    /**
+     * @return The position in the file of the next byte to read.
+     */
+    private long position()
+    {
+        return this.segment == null ? this.segmentStart : this.segmentStart + this.segment.position();
+    }
+    
+    /**
+     * Maps the next segment of the file if the current segment has been read.
+     *
+     * @return False if the whole file has been read.
+     */
+    private boolean nextSegment() throws IOException
+    {
+        if(this.segment != null && this.segment.hasRemaining())
+        {
+            return true;
+        }
+        final long position = this.position();
+        if(position >= this.size)
+        {
+            return false;
+        }
+        
+        this.segmentStart = position;
+        this.segment =
+                this.channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(this.segmentSize, this.size - position));
+        return true;
+    }
+}
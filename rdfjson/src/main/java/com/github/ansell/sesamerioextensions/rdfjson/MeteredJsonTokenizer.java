@@ -0,0 +1,90 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * A {@link JsonTokenizer} that records the time spent in another tokenizer, and the length of the
+ * longest string, in an {@link RDFJSONMetrics}. It is only used when metrics are enabled, so that
+ * tokenizers are not slowed down otherwise.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+final class MeteredJsonTokenizer implements JsonTokenizer
+{
+    private final JsonTokenizer tokenizer;
+    private final RDFJSONMetrics metrics;
+    
+    MeteredJsonTokenizer(final JsonTokenizer tokenizer, final RDFJSONMetrics metrics)
+    {
+        this.tokenizer = tokenizer;
+        this.metrics = metrics;
+    }
+    
+    @Override
+    public JsonToken nextToken() throws IOException
+    {
+        final long start = System.nanoTime();
+        try
+        {
+            return this.tokenizer.nextToken();
+        }
+        finally
+        {
+            this.metrics.tokenizeNanos += System.nanoTime() - start;
+        }
+    }
+    
+    @Override
+    public String getText() throws IOException
+    {
+        final long start = System.nanoTime();
+        final String result;
+        try
+        {
+            result = this.tokenizer.getText();
+        }
+        finally
+        {
+            this.metrics.tokenizeNanos += System.nanoTime() - start;
+        }
+        if(result != null)
+        {
+            this.metrics.buffered(result.length());
+        }
+        return result;
+    }
+    
+    @Override
+    public void skipChildren() throws IOException
+    {
+        final long start = System.nanoTime();
+        try
+        {
+            this.tokenizer.skipChildren();
+        }
+        finally
+        {
+            this.metrics.tokenizeNanos += System.nanoTime() - start;
+        }
+    }
+    
+    @Override
+    public int getLineNr()
+    {
+        return this.tokenizer.getLineNr();
+    }
+    
+    @Override
+    public int getColumnNr()
+    {
+        return this.tokenizer.getColumnNr();
+    }
+    
+    @Override
+    public void close() throws IOException
+    {
+        this.tokenizer.close();
+    }
+}
@@ -0,0 +1,248 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.ValueFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Gives each blank node label a sequential number, for the {@link RDFJSONBlankNodeIds#OFF_HEAP}
+ * setting, using an open addressing hash table from the 128 bit salted hash of each label to its
+ * number that is kept outside of the heap.
+ * <p>
+ * The table is split into segments, each of which is a direct ByteBuffer while the table is within
+ * the memory limit, and a mapping of a region of a temporary file when the table grows beyond it,
+ * so that the operating system can page the table out to disk. While the table grows, the old and
+ * new tables both exist, so the new table is only kept in direct buffers if both of them fit
+ * within the memory limit.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+final class OffHeapBlankNodeIdMap extends BlankNodeIdMap
+{
+    private static final Logger log = LoggerFactory.getLogger(OffHeapBlankNodeIdMap.class);
+    
+    /**
+     * The number of bytes for each entry, which are the two halves of the hash of the label,
+     * followed by the number for the label, which is 0 for empty entries.
+     */
+    private static final int ENTRY_BYTES = 24;
+    
+    /**
+     * The number of entries in each segment is at most 2 to the power of this, so that segments
+     * are small enough to allocate and map individually.
+     */
+    private static final int MAX_SEGMENT_BITS = 16;
+    
+    private static final long INITIAL_CAPACITY = 1L << 12;
+    
+    /**
+     * The entries for the table, in segments that are either direct buffers or mapped from a
+     * temporary file.
+     */
+    private static final class Table
+    {
+        private final ByteBuffer[] segments;
+        private final int segmentBits;
+        private final long mask;
+        private final File file;
+        
+        Table(final ByteBuffer[] segments, final int segmentBits, final long capacity, final File file)
+        {
+            this.segments = segments;
+            this.segmentBits = segmentBits;
+            this.mask = capacity - 1;
+            this.file = file;
+        }
+        
+        /**
+         * Finds the number for the given hash, inserting the given number if the hash is not in the
+         * table.
+         *
+         * @return The number for the hash, which is the given number if it was inserted.
+         */
+        long getOrInsert(final long key1, final long key2, final long number)
+        {
+            final int segmentMask = (1 << this.segmentBits) - 1;
+            long index = key1 & this.mask;
+            while(true)
+            {
+                final ByteBuffer segment = this.segments[(int)(index >>> this.segmentBits)];
+                final int position = ((int)index & segmentMask) * OffHeapBlankNodeIdMap.ENTRY_BYTES;
+                final long existing = segment.getLong(position + 16);
+                if(existing == 0)
+                {
+                    segment.putLong(position, key1);
+                    segment.putLong(position + 8, key2);
+                    segment.putLong(position + 16, number);
+                    return number;
+                }
+                else if(segment.getLong(position) == key1 && segment.getLong(position + 8) == key2)
+                {
+                    return existing;
+                }
+                index = (index + 1) & this.mask;
+            }
+        }
+        
+        /**
+         * Copies the entries in this table into the given table.
+         */
+        void copyTo(final Table next)
+        {
+            final int segmentEntries = 1 << this.segmentBits;
+            for(final ByteBuffer nextSegment : this.segments)
+            {
+                for(int i = 0; i < segmentEntries; i++)
+                {
+                    final int position = i * OffHeapBlankNodeIdMap.ENTRY_BYTES;
+                    final long number = nextSegment.getLong(position + 16);
+                    if(number != 0)
+                    {
+                        next.getOrInsert(nextSegment.getLong(position), nextSegment.getLong(position + 8), number);
+                    }
+                }
+            }
+        }
+        
+        /**
+         * Removes the temporary file for the table, if it has one. The memory for direct buffers
+         * and mappings is released when they are garbage collected.
+         */
+        void release()
+        {
+            if(this.file != null && !this.file.delete())
+            {
+                OffHeapBlankNodeIdMap.log.warn("Could not delete temporary blank node file: {}", this.file);
+            }
+        }
+    }
+    
+    private final ValueFactory vf;
+    private final long memoryLimit;
+    private final File directory;
+    
+    /**
+     * The prefix for the identifiers of the blank nodes, which is different for each document.
+     */
+    private final String prefix;
+    private Table table;
+    private long capacity;
+    private long size;
+    
+    /**
+     * @param vf
+     *            The ValueFactory used to create the blank nodes.
+     * @param memoryLimit
+     *            The number of bytes that the table can use before it is moved to a temporary file.
+     * @param directory
+     *            The directory to create the temporary file in, or null to use the default
+     *            temporary directory.
+     */
+    OffHeapBlankNodeIdMap(final ValueFactory vf, final long memoryLimit, final File directory)
+    {
+        this.vf = vf;
+        this.memoryLimit = memoryLimit;
+        this.directory = directory;
+        this.prefix = "o" + Long.toString(new Random().nextLong() & Long.MAX_VALUE, 36) + "x";
+    }
+    
+    @Override
+    BNode get(final String label) throws IOException
+    {
+        if(this.table == null)
+        {
+            this.capacity = OffHeapBlankNodeIdMap.INITIAL_CAPACITY;
+            this.table = this.allocate(this.capacity, 0);
+        }
+        
+        final long next = this.size + 1;
+        final long number =
+                this.table.getOrInsert(BlankNodeIdMap.hash(label, this.salt1), BlankNodeIdMap.hash(label, this.salt2),
+                        next);
+        if(number == next)
+        {
+            this.size = next;
+            // Keep the table at most half full, so that probes stay short
+            if(this.size * 2 > this.capacity)
+            {
+                this.grow();
+            }
+        }
+        return this.vf.createBNode(this.prefix + number);
+    }
+    
+    @Override
+    void close()
+    {
+        if(this.table != null)
+        {
+            this.table.release();
+            this.table = null;
+        }
+        this.size = 0;
+    }
+    
+    private void grow() throws IOException
+    {
+        final long direct = this.table.file == null ? this.capacity * OffHeapBlankNodeIdMap.ENTRY_BYTES : 0;
+        final Table next = this.allocate(this.capacity * 2, direct);
+        this.table.copyTo(next);
+        this.table.release();
+        this.table = next;
+        this.capacity *= 2;
+    }
+    
+    /**
+     * Allocates an empty table with the given capacity, in direct buffers if it fits within the
+     * memory limit along with the given number of bytes that are already in direct buffers, and in
+     * a temporary file otherwise.
+     */
+    private Table allocate(final long nextCapacity, final long direct) throws IOException
+    {
+        final int segmentBits =
+                Math.min(OffHeapBlankNodeIdMap.MAX_SEGMENT_BITS, Long.numberOfTrailingZeros(nextCapacity));
+        final int segmentBytes = (1 << segmentBits) * OffHeapBlankNodeIdMap.ENTRY_BYTES;
+        final ByteBuffer[] segments = new ByteBuffer[(int)(nextCapacity >>> segmentBits)];
+        if(direct + nextCapacity * OffHeapBlankNodeIdMap.ENTRY_BYTES <= this.memoryLimit)
+        {
+            for(int i = 0; i < segments.length; i++)
+            {
+                segments[i] = ByteBuffer.allocateDirect(segmentBytes);
+            }
+            return new Table(segments, segmentBits, nextCapacity, null);
+        }
+        
+        final File file = File.createTempFile("rdfjson-blanknodes-", ".tmp", this.directory);
+        final RandomAccessFile access = new RandomAccessFile(file, "rw");
+        boolean mapped = false;
+        try
+        {
+            // The file is filled with zeros, so every entry starts out empty
+            access.setLength(nextCapacity * OffHeapBlankNodeIdMap.ENTRY_BYTES);
+            final FileChannel channel = access.getChannel();
+            for(int i = 0; i < segments.length; i++)
+            {
+                segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long)i * segmentBytes, segmentBytes);
+            }
+            mapped = true;
+        }
+        finally
+        {
+            // Mappings stay valid after the file is closed
+            access.close();
+            if(!mapped && !file.delete())
+            {
+                OffHeapBlankNodeIdMap.log.warn("Could not delete temporary blank node file: {}", file);
+            }
+        }
+        return new Table(segments, segmentBits, nextCapacity, file);
+    }
+}
@@ -0,0 +1,487 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.rio.ParseErrorListener;
+import org.openrdf.rio.ParserConfig;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+
+import com.github.ansell.sesamerioextensions.api.BatchRDFHandler;
+
+/**
+ * Splits the top level object of an RDF/JSON document into ranges of subjects and parses the
+ * ranges concurrently.
+ * <p>
+ * The input is scanned once on the calling thread, tracking only the nesting depth and whether the
+ * scanner is inside of a string, so ranges are only split at commas between subjects. Each range is
+ * wrapped in braces to make it a complete RDF/JSON document and parsed by its own
+ * {@link RDFJSONPreferredParser} on a worker thread. Blank node identifiers are shared between the
+ * workers so that a blank node referenced from more than one range is the same node.
+ * <p>
+ * RDF/JSON Lines documents are split at line breaks instead, without tracking the nesting depth, as
+ * each line is a complete RDF/JSON object and JSON strings cannot contain unescaped line breaks.
+ * <p>
+ * The statements from each range are sent to the RDFHandler from the calling thread as a single
+ * batch, either in document order, or in the order that ranges finish. At most two ranges per
+ * thread are held in memory at any time.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+final class ParallelChunkParser
+{
+    private static final int READ_BUFFER_SIZE = 65536;
+    
+    private final RDFFormat format;
+    private final ValueFactory valueFactory;
+    private final ParserConfig parserConfig;
+    private final ParseErrorListener errorListener;
+    private final BatchRDFHandler rdfHandler;
+    private final int threads;
+    private final int chunkSize;
+    private final boolean preserveOrder;
+    private final boolean lines;
+    
+    private final ConcurrentMap<String, BNode> sharedBNodes = new ConcurrentHashMap<String, BNode>();
+    
+    private ExecutorService executor;
+    private Deque<Future<ChunkResult>> orderedResults;
+    private CompletionService<ChunkResult> unorderedResults;
+    private int pending;
+    
+    private byte[] chunk;
+    private int chunkLength;
+    private boolean chunkHasContent;
+    private int chunkStartLine;
+    
+    ParallelChunkParser(final RDFFormat format, final ValueFactory valueFactory, final ParserConfig parserConfig,
+            final ParseErrorListener errorListener, final BatchRDFHandler rdfHandler, final boolean lines)
+    {
+        this.format = format;
+        this.valueFactory = valueFactory;
+        this.parserConfig = parserConfig;
+        this.errorListener = errorListener;
+        this.rdfHandler = rdfHandler;
+        this.threads = Math.max(1, parserConfig.get(RDFJSONPreferredParserSettings.PARALLEL_THREADS));
+        this.chunkSize = Math.max(1, parserConfig.get(RDFJSONPreferredParserSettings.PARALLEL_CHUNK_SIZE));
+        this.preserveOrder = parserConfig.get(RDFJSONPreferredParserSettings.PARALLEL_PRESERVE_ORDER);
+        this.lines = lines;
+    }
+    
+    /**
+     * Parses the document from the given stream, which must start with an object after any
+     * whitespace.
+     *
+     * @param in
+     *            The stream to parse, positioned after the opening brace of the top level object, or
+     *            at the start of a line for an RDF/JSON Lines document.
+     * @param startLine
+     *            The line number that the stream is positioned on.
+     */
+    void parse(final InputStream in, final int startLine) throws IOException, RDFParseException,
+        RDFHandlerException
+    {
+        this.executor = Executors.newFixedThreadPool(this.threads, new ThreadFactory()
+            {
+                private final AtomicInteger count = new AtomicInteger();
+                
+                @Override
+                public Thread newThread(final Runnable r)
+                {
+                    final Thread result = new Thread(r, "rdfjson-parallel-parser-" + this.count.incrementAndGet());
+                    result.setDaemon(true);
+                    return result;
+                }
+            });
+        if(this.preserveOrder)
+        {
+            this.orderedResults = new ArrayDeque<Future<ChunkResult>>();
+        }
+        else
+        {
+            this.unorderedResults = new ExecutorCompletionService<ChunkResult>(this.executor);
+        }
+        this.pending = 0;
+        
+        try
+        {
+            this.rdfHandler.startRDF();
+            
+            if(this.lines)
+            {
+                this.scanLines(in, startLine);
+            }
+            else
+            {
+                this.scan(in, startLine);
+            }
+            
+            while(this.pending > 0)
+            {
+                this.deliverNext();
+            }
+        }
+        finally
+        {
+            this.executor.shutdownNow();
+            this.executor = null;
+            this.orderedResults = null;
+            this.unorderedResults = null;
+            this.chunk = null;
+            this.sharedBNodes.clear();
+        }
+        
+        this.rdfHandler.endRDF();
+    }
+    
+    /**
+     * Reads the members of the top level object, submitting a range each time the current range
+     * reaches the chunk size and the scanner is at a comma between two subjects.
+     */
+    private void scan(final InputStream in, final int startLine) throws IOException, RDFParseException,
+        RDFHandlerException
+    {
+        final byte[] buffer = new byte[READ_BUFFER_SIZE];
+        int line = startLine;
+        int depth = 1;
+        boolean inString = false;
+        boolean escaped = false;
+        boolean split = false;
+        
+        this.startChunk(line);
+        
+        int read;
+        while((read = in.read(buffer)) != -1)
+        {
+            int segmentStart = 0;
+            for(int i = 0; i < read; i++)
+            {
+                final byte b = buffer[i];
+                if(inString)
+                {
+                    if(escaped)
+                    {
+                        escaped = false;
+                    }
+                    else if(b == '\\')
+                    {
+                        escaped = true;
+                    }
+                    else if(b == '"')
+                    {
+                        inString = false;
+                    }
+                    continue;
+                }
+                
+                switch(b)
+                {
+                    case '"':
+                        inString = true;
+                        this.chunkHasContent = true;
+                        break;
+                    case '{':
+                    case '[':
+                        depth++;
+                        this.chunkHasContent = true;
+                        break;
+                    case '}':
+                    case ']':
+                        depth--;
+                        if(depth == 0)
+                        {
+                            if(split && !this.chunkHasContent)
+                            {
+                                throw this.emptyRange(line);
+                            }
+                            this.append(buffer, segmentStart, i - segmentStart);
+                            this.submitChunk(true);
+                            return;
+                        }
+                        break;
+                    case ',':
+                        if(depth == 1 && this.chunkLength + i - segmentStart >= this.chunkSize)
+                        {
+                            if(!this.chunkHasContent)
+                            {
+                                throw this.emptyRange(line);
+                            }
+                            this.append(buffer, segmentStart, i - segmentStart);
+                            this.submitChunk(true);
+                            this.startChunk(line);
+                            segmentStart = i + 1;
+                            split = true;
+                        }
+                        break;
+                    case '\n':
+                        line++;
+                        break;
+                    case ' ':
+                    case '\t':
+                    case '\r':
+                        break;
+                    default:
+                        this.chunkHasContent = true;
+                        break;
+                }
+            }
+            this.append(buffer, segmentStart, read - segmentStart);
+        }
+        
+        // Leave the final range unterminated so that the worker reports the premature end
+        this.chunkHasContent = true;
+        this.submitChunk(false);
+    }
+    
+    /**
+     * Reads the lines of an RDF/JSON Lines document, submitting a range each time the current range
+     * reaches the chunk size at the end of a line.
+     */
+    private void scanLines(final InputStream in, final int startLine) throws IOException, RDFParseException,
+        RDFHandlerException
+    {
+        final byte[] buffer = new byte[READ_BUFFER_SIZE];
+        int line = startLine;
+        
+        this.startChunk(line);
+        
+        int read;
+        while((read = in.read(buffer)) != -1)
+        {
+            int segmentStart = 0;
+            for(int i = 0; i < read; i++)
+            {
+                final byte b = buffer[i];
+                if(b == '\n')
+                {
+                    line++;
+                    if(this.chunkLength + i + 1 - segmentStart >= this.chunkSize)
+                    {
+                        this.append(buffer, segmentStart, i + 1 - segmentStart);
+                        this.submitChunk(true);
+                        this.startChunk(line);
+                        segmentStart = i + 1;
+                    }
+                }
+                else if(b != ' ' && b != '\t' && b != '\r')
+                {
+                    this.chunkHasContent = true;
+                }
+            }
+            this.append(buffer, segmentStart, read - segmentStart);
+        }
+        
+        this.submitChunk(true);
+    }
+    
+    /**
+     * Reports a comma at the top level of the document that is not between two subjects, which
+     * would otherwise be dropped along with the empty range that it was split from, even though
+     * the document is not accepted when it is parsed on a single thread.
+     */
+    private RDFParseException emptyRange(final int line)
+    {
+        final String message = "Expected a subject before the comma or the end of the document";
+        if(this.errorListener != null)
+        {
+            this.errorListener.fatalError(message, line, -1);
+        }
+        return new RDFParseException(message, line, -1);
+    }
+    
+    private void startChunk(final int line)
+    {
+        this.chunk = new byte[Math.min(this.chunkSize, READ_BUFFER_SIZE) + 2];
+        if(this.lines)
+        {
+            this.chunkLength = 0;
+        }
+        else
+        {
+            this.chunk[0] = '{';
+            this.chunkLength = 1;
+        }
+        this.chunkHasContent = false;
+        this.chunkStartLine = line;
+    }
+    
+    private void append(final byte[] buffer, final int offset, final int length)
+    {
+        if(this.chunkLength + length + 1 > this.chunk.length)
+        {
+            final byte[] next = new byte[Math.max(this.chunk.length * 2, this.chunkLength + length + 1)];
+            System.arraycopy(this.chunk, 0, next, 0, this.chunkLength);
+            this.chunk = next;
+        }
+        System.arraycopy(buffer, offset, this.chunk, this.chunkLength, length);
+        this.chunkLength += length;
+    }
+    
+    private void submitChunk(final boolean complete) throws IOException, RDFParseException, RDFHandlerException
+    {
+        if(!this.chunkHasContent)
+        {
+            return;
+        }
+        if(complete && !this.lines)
+        {
+            this.chunk[this.chunkLength++] = '}';
+        }
+        
+        while(this.pending >= this.threads * 2)
+        {
+            this.deliverNext();
+        }
+        
+        final Callable<ChunkResult> task =
+                new ChunkTask(this.chunk, this.chunkLength, this.chunkStartLine - 1);
+        if(this.preserveOrder)
+        {
+            this.orderedResults.add(this.executor.submit(task));
+        }
+        else
+        {
+            this.unorderedResults.submit(task);
+        }
+        this.pending++;
+    }
+    
+    /**
+     * Waits for the next range to finish parsing and sends its statements to the RDFHandler.
+     */
+    private void deliverNext() throws IOException, RDFParseException, RDFHandlerException
+    {
+        final ChunkResult result;
+        try
+        {
+            if(this.preserveOrder)
+            {
+                result = this.orderedResults.removeFirst().get();
+            }
+            else
+            {
+                result = this.unorderedResults.take().get();
+            }
+        }
+        catch(final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            final InterruptedIOException ioe = new InterruptedIOException("Interrupted while parsing RDF/JSON");
+            ioe.initCause(e);
+            throw ioe;
+        }
+        catch(final ExecutionException e)
+        {
+            throw this.rethrow(e.getCause());
+        }
+        this.pending--;
+        
+        if(result.statements.length > 0)
+        {
+            this.rdfHandler.handleStatements(result.statements, 0, result.statements.length);
+        }
+        if(result.error != null)
+        {
+            throw this.rethrow(result.error);
+        }
+    }
+    
+    /**
+     * Throws the given exception from a worker if it can be thrown directly, or returns it wrapped
+     * in an RDFParseException otherwise.
+     */
+    private RDFParseException rethrow(final Throwable cause) throws IOException, RDFParseException
+    {
+        if(cause instanceof RDFParseException)
+        {
+            throw (RDFParseException)cause;
+        }
+        WorkerExceptions.rethrowIO(cause);
+        return new RDFParseException(cause);
+    }
+    
+    /**
+     * The statements from a single range of subjects, followed by the error that stopped the range
+     * from being parsed, if there was one.
+     */
+    private static final class ChunkResult
+    {
+        private final Statement[] statements;
+        private final Exception error;
+        
+        ChunkResult(final List<Statement> statements, final Exception error)
+        {
+            this.statements = statements.toArray(new Statement[statements.size()]);
+            this.error = error;
+        }
+    }
+    
+    /**
+     * Parses a single range of subjects into a list of statements.
+     */
+    private final class ChunkTask implements Callable<ChunkResult>
+    {
+        private final byte[] bytes;
+        private final int length;
+        private final int lineOffset;
+        
+        ChunkTask(final byte[] bytes, final int length, final int lineOffset)
+        {
+            this.bytes = bytes;
+            this.length = length;
+            this.lineOffset = lineOffset;
+        }
+        
+        @Override
+        public ChunkResult call()
+        {
+            final List<Statement> results = new ArrayList<Statement>();
+            
+            final RDFJSONPreferredParser parser =
+                    new RDFJSONPreferredParser(ParallelChunkParser.this.format, ParallelChunkParser.this.lines);
+            parser.setValueFactory(ParallelChunkParser.this.valueFactory);
+            parser.setParserConfig(ParallelChunkParser.this.parserConfig);
+            parser.setParseErrorListener(ParallelChunkParser.this.errorListener);
+            parser.setRDFHandler(new RDFHandlerBase()
+                {
+                    @Override
+                    public void handleStatement(final Statement st)
+                    {
+                        results.add(st);
+                    }
+                });
+            try
+            {
+                parser.parseChunk(this.bytes, this.length, this.lineOffset, ParallelChunkParser.this.sharedBNodes);
+            }
+            catch(final Exception e)
+            {
+                return new ChunkResult(results, e);
+            }
+            
+            return new ChunkResult(results, null);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openrdf.model.Model;
+import org.openrdf.model.Resource;
+
+/**
+ * Encodes groups of subjects for an {@link RDFJSONPreferredWriter} concurrently, and writes the
+ * encoded groups to the output in the order that they were added.
+ * <p>
+ * Subjects are collected into batches of roughly {@link #BATCH_STATEMENTS} statements, and each
+ * batch is encoded to a byte array by its own {@link Utf8JsonOutput} on a worker thread, as if it
+ * followed other members of the top level object, so every batch starts with a comma. The batches
+ * are written to the output on the calling thread, which removes the comma from the first batch,
+ * so the document is byte for byte the same as a document encoded on a single thread. At most two
+ * batches per thread are held in memory at any time.
+ * <p>
+ * The models that are added are read by the worker threads, so they must not be modified after
+ * they are added.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+final class ParallelSubjectWriter
+{
+    /**
+     * The approximate number of statements in each batch, which is large enough that the cost of
+     * handing a batch to a worker is small compared to the cost of encoding it.
+     */
+    private static final int BATCH_STATEMENTS = 512;
+    
+    private final Utf8JsonOutput output;
+    private final boolean prettyPrint;
+    private final boolean lines;
+    private final int threads;
+    
+    /**
+     * The measurements for the current document, or null if metrics are not being collected.
+     */
+    private final RDFJSONMetrics metrics;
+    
+    private final ExecutorService executor;
+    private final Deque<Future<EncodedBatch>> pending = new ArrayDeque<Future<EncodedBatch>>();
+    
+    private List<Resource> batchSubjects = new ArrayList<Resource>();
+    private List<Model> batchStatements = new ArrayList<Model>();
+    private int batchSize;
+    
+    /**
+     * @param output
+     *            The output for the document, positioned inside of the top level object, or between
+     *            top level objects if lines is true.
+     * @param prettyPrint
+     *            True if the document is pretty printed.
+     * @param lines
+     *            True if each subject is written as a complete object on its own line.
+     * @param threads
+     *            The number of threads that encode batches concurrently.
+     * @param metrics
+     *            The measurements for the current document, or null if metrics are not being
+     *            collected.
+     */
+    ParallelSubjectWriter(final Utf8JsonOutput output, final boolean prettyPrint, final boolean lines,
+            final int threads, final RDFJSONMetrics metrics)
+    {
+        this.output = output;
+        this.prettyPrint = prettyPrint;
+        this.lines = lines;
+        this.threads = threads;
+        this.metrics = metrics;
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+            {
+                private final AtomicInteger count = new AtomicInteger();
+                
+                @Override
+                public Thread newThread(final Runnable r)
+                {
+                    final Thread result = new Thread(r, "rdfjson-parallel-writer-" + this.count.incrementAndGet());
+                    result.setDaemon(true);
+                    return result;
+                }
+            });
+    }
+    
+    /**
+     * Adds a subject to the current batch, submitting the batch if it is full. Waits for the oldest
+     * batch to be written if the maximum number of batches are already waiting.
+     */
+    void add(final Resource subject, final Model subjectStatements) throws IOException
+    {
+        this.batchSubjects.add(subject);
+        this.batchStatements.add(subjectStatements);
+        this.batchSize += subjectStatements.size();
+        if(this.batchSize >= ParallelSubjectWriter.BATCH_STATEMENTS)
+        {
+            this.submitBatch();
+        }
+    }
+    
+    /**
+     * Submits the current batch and writes all of the remaining batches to the output.
+     */
+    void finish() throws IOException
+    {
+        this.submitBatch();
+        while(!this.pending.isEmpty())
+        {
+            this.writeNext();
+        }
+    }
+    
+    /**
+     * Stops the worker threads, waiting for any batches that are being encoded so that the models
+     * they are reading are not in use afterwards.
+     */
+    void close()
+    {
+        this.executor.shutdownNow();
+        this.pending.clear();
+        try
+        {
+            this.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        catch(final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void submitBatch() throws IOException
+    {
+        if(this.batchSubjects.isEmpty())
+        {
+            return;
+        }
+        
+        while(this.pending.size() >= this.threads * 2)
+        {
+            this.writeNext();
+        }
+        
+        this.pending.add(this.executor.submit(new EncodeTask(this.batchSubjects, this.batchStatements)));
+        this.batchSubjects = new ArrayList<Resource>();
+        this.batchStatements = new ArrayList<Model>();
+        this.batchSize = 0;
+    }
+    
+    /**
+     * Waits for the oldest batch to be encoded and writes it to the output.
+     */
+    private void writeNext() throws IOException
+    {
+        final EncodedBatch result;
+        try
+        {
+            result = this.pending.removeFirst().get();
+        }
+        catch(final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            final InterruptedIOException ioe = new InterruptedIOException("Interrupted while writing RDF/JSON");
+            ioe.initCause(e);
+            throw ioe;
+        }
+        catch(final ExecutionException e)
+        {
+            throw this.rethrow(e.getCause());
+        }
+        
+        this.output.writeFragment(result.bytes, result.bytes.length);
+        if(this.metrics != null)
+        {
+            this.metrics.encodeNanos += result.encodeNanos;
+        }
+    }
+    
+    /**
+     * Throws the given exception from a worker if it can be thrown directly, or returns it wrapped
+     * in an IOException otherwise.
+     */
+    private IOException rethrow(final Throwable cause) throws IOException
+    {
+        WorkerExceptions.rethrowIO(cause);
+        return new IOException(cause);
+    }
+    
+    /**
+     * The encoded bytes for a batch of subjects.
+     */
+    private static final class EncodedBatch
+    {
+        private final byte[] bytes;
+        private final long encodeNanos;
+        
+        EncodedBatch(final byte[] bytes, final long encodeNanos)
+        {
+            this.bytes = bytes;
+            this.encodeNanos = encodeNanos;
+        }
+    }
+    
+    /**
+     * Encodes a batch of subjects to a byte array.
+     */
+    private final class EncodeTask implements Callable<EncodedBatch>
+    {
+        private final List<Resource> subjects;
+        private final List<Model> statements;
+        
+        EncodeTask(final List<Resource> subjects, final List<Model> statements)
+        {
+            this.subjects = subjects;
+            this.statements = statements;
+        }
+        
+        @Override
+        public EncodedBatch call() throws IOException
+        {
+            final long start = System.nanoTime();
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+            final Utf8JsonOutput fragment = new Utf8JsonOutput(bytes, ParallelSubjectWriter.this.prettyPrint);
+            if(!ParallelSubjectWriter.this.lines)
+            {
+                fragment.startFragment();
+            }
+            for(int i = 0; i < this.subjects.size(); i++)
+            {
+                RDFJSONPreferredWriter.writeSubjectJson(fragment, this.subjects.get(i), this.statements.get(i),
+                        ParallelSubjectWriter.this.lines);
+            }
+            fragment.close();
+            return new EncodedBatch(bytes.toByteArray(), System.nanoTime() - start);
+        }
+    }
+}
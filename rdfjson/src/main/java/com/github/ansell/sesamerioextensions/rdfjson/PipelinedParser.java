@@ -0,0 +1,228 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.rio.ParseErrorListener;
+import org.openrdf.rio.ParserConfig;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+
+import com.github.ansell.sesamerioextensions.api.BatchRDFHandler;
+
+/**
+ * Parses a document on a background thread and sends its statements to the RDFHandler on the
+ * calling thread, so that tokenizing and creating values overlaps with the work done by the
+ * RDFHandler.
+ * <p>
+ * The background thread collects statements into batches of
+ * {@link RDFJSONPreferredParserSettings#PIPELINE_BATCH_SIZE} and passes them through a
+ * {@link RingBuffer} that holds at most {@link RDFJSONPreferredParserSettings#PIPELINE_BUFFER_SIZE}
+ * batches, so the parser waits for the RDFHandler when it gets too far ahead. Statements are sent
+ * in document order, and an error from the parser is thrown after the statements before it have
+ * been sent. If the RDFHandler throws an exception, the background thread is stopped before the
+ * exception is thrown from parse.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+final class PipelinedParser
+{
+    private final RDFFormat format;
+    private final boolean lines;
+    private final ValueFactory valueFactory;
+    private final ParserConfig parserConfig;
+    private final ParseErrorListener errorListener;
+    private final BatchRDFHandler rdfHandler;
+    private final int batchSize;
+    private final RingBuffer<Statement[]> batches;
+    
+    PipelinedParser(final RDFFormat format, final boolean lines, final ValueFactory valueFactory,
+            final ParserConfig parserConfig, final ParseErrorListener errorListener, final BatchRDFHandler rdfHandler)
+    {
+        this.format = format;
+        this.lines = lines;
+        this.valueFactory = valueFactory;
+        this.parserConfig = parserConfig;
+        this.errorListener = errorListener;
+        this.rdfHandler = rdfHandler;
+        this.batchSize = Math.max(1, parserConfig.get(RDFJSONPreferredParserSettings.PIPELINE_BATCH_SIZE));
+        this.batches =
+                new RingBuffer<Statement[]>(Math.max(1,
+                        parserConfig.get(RDFJSONPreferredParserSettings.PIPELINE_BUFFER_SIZE)));
+    }
+    
+    /**
+     * Parses the document from the given tokenizer, which is closed by the background thread.
+     */
+    void parse(final JsonTokenizer tokenizer) throws IOException, RDFParseException, RDFHandlerException
+    {
+        final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory()
+            {
+                private final AtomicInteger count = new AtomicInteger();
+                
+                @Override
+                public Thread newThread(final Runnable r)
+                {
+                    final Thread result = new Thread(r, "rdfjson-pipelined-parser-" + this.count.incrementAndGet());
+                    result.setDaemon(true);
+                    return result;
+                }
+            });
+        
+        this.rdfHandler.startRDF();
+        
+        final Future<?> producer = executor.submit(new ProducerTask(tokenizer));
+        try
+        {
+            Statement[] nextBatch;
+            while((nextBatch = this.batches.take()) != null)
+            {
+                this.rdfHandler.handleStatements(nextBatch, 0, nextBatch.length);
+            }
+            if(this.batches.getError() != null)
+            {
+                throw this.rethrow(this.batches.getError());
+            }
+        }
+        finally
+        {
+            this.batches.close();
+            executor.shutdown();
+            // Do not return while the background thread may still be reading from the document
+            this.awaitProducer(producer);
+        }
+        
+        this.rdfHandler.endRDF();
+    }
+    
+    /**
+     * Waits for the background thread to stop, which it does at its next batch once the buffer has
+     * been closed.
+     */
+    private void awaitProducer(final Future<?> producer) throws InterruptedIOException
+    {
+        try
+        {
+            producer.get();
+        }
+        catch(final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            final InterruptedIOException ioe = new InterruptedIOException("Interrupted while parsing RDF/JSON");
+            ioe.initCause(e);
+            throw ioe;
+        }
+        catch(final ExecutionException e)
+        {
+            // Errors from the background thread are passed through the buffer
+        }
+    }
+    
+    /**
+     * Throws the given exception from the background thread if it can be thrown directly, or
+     * returns it wrapped in an RDFParseException otherwise.
+     */
+    private RDFParseException rethrow(final Throwable cause) throws IOException, RDFParseException,
+        RDFHandlerException
+    {
+        if(cause instanceof RDFParseException)
+        {
+            throw (RDFParseException)cause;
+        }
+        else if(cause instanceof RDFHandlerException)
+        {
+            throw (RDFHandlerException)cause;
+        }
+        WorkerExceptions.rethrowIO(cause);
+        return new RDFParseException(cause);
+    }
+    
+    /**
+     * Parses the document on the background thread, sending full batches of statements to the
+     * buffer.
+     */
+    private final class ProducerTask extends RDFHandlerBase implements Callable<Void>
+    {
+        private final JsonTokenizer tokenizer;
+        private Statement[] batch;
+        private int batchLength;
+        
+        ProducerTask(final JsonTokenizer tokenizer)
+        {
+            this.tokenizer = tokenizer;
+        }
+        
+        @Override
+        public Void call()
+        {
+            final RDFJSONPreferredParser parser =
+                    new RDFJSONPreferredParser(PipelinedParser.this.format, PipelinedParser.this.lines);
+            parser.setValueFactory(PipelinedParser.this.valueFactory);
+            parser.setParserConfig(PipelinedParser.this.parserConfig);
+            parser.setParseErrorListener(PipelinedParser.this.errorListener);
+            parser.setRDFHandler(this);
+            this.batch = new Statement[PipelinedParser.this.batchSize];
+            this.batchLength = 0;
+            try
+            {
+                parser.parse(this.tokenizer);
+            }
+            catch(final Throwable e)
+            {
+                PipelinedParser.this.batches.finish(e);
+                return null;
+            }
+            PipelinedParser.this.batches.finish(null);
+            return null;
+        }
+        
+        @Override
+        public void handleStatement(final Statement st) throws RDFHandlerException
+        {
+            this.batch[this.batchLength++] = st;
+            if(this.batchLength == this.batch.length)
+            {
+                this.sendBatch(this.batch);
+                this.batch = new Statement[PipelinedParser.this.batchSize];
+                this.batchLength = 0;
+            }
+        }
+        
+        @Override
+        public void endRDF() throws RDFHandlerException
+        {
+            if(this.batchLength > 0)
+            {
+                this.sendBatch(Arrays.copyOf(this.batch, this.batchLength));
+                this.batchLength = 0;
+            }
+        }
+        
+        private void sendBatch(final Statement[] nextBatch) throws RDFHandlerException
+        {
+            try
+            {
+                if(!PipelinedParser.this.batches.put(nextBatch))
+                {
+                    throw new RDFHandlerException("Parsing was stopped by the RDFHandler");
+                }
+            }
+            catch(final InterruptedIOException e)
+            {
+                throw new RDFHandlerException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+/**
+ * The ways that {@link RDFJSONPreferredParser} can give identifiers to the blank node labels in a
+ * document, selected using {@link RDFJSONPreferredParserSettings#BLANK_NODE_IDS}.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public enum RDFJSONBlankNodeIds
+{
+    /**
+     * Keeps a map from each label to its blank node for the whole document, which is the fastest
+     * for documents whose blank nodes fit comfortably on the heap.
+     */
+    MAP,
+    
+    /**
+     * Derives each identifier from a 128 bit hash of the label with a random salt for each
+     * document, so that no state is kept for the labels at all. Different labels could in theory be
+     * given the same identifier, but the chance of that is negligible even for billions of labels.
+     */
+    HASH,
+    
+    /**
+     * Keeps a table from the 128 bit hash of each label to a number for its blank node in memory
+     * outside of the heap, moving the table to a memory mapped temporary file if it grows larger
+     * than {@link RDFJSONPreferredParserSettings#BLANK_NODE_MEMORY_LIMIT}. The identifiers are short
+     * sequential numbers, as for {@link #MAP}.
+     */
+    OFF_HEAP
+}
@@ -0,0 +1,146 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The position after a subject in an RDF/JSON-preferred or RDF/JSON Lines document, from which the
+ * rest of the document can be parsed using
+ * {@link RDFJSONPreferredParser#parse(java.io.InputStream, RDFJSONCheckpoint, String)}.
+ * <p>
+ * A checkpoint contains the offset in bytes of the position, the line and column of the position
+ * for error messages, and the identifiers of the blank nodes that were created for the blank node
+ * labels in the document before the position, so that the same labels after the position are
+ * parsed as the same blank nodes. Checkpoints are serializable, so that they can be stored until a
+ * failed parse is restarted.
+ * <p>
+ * The checkpoints reported while parsing a document only contain the blank nodes that were created
+ * since the previous checkpoint, along with a reference to the previous checkpoint, so that the
+ * cost of each checkpoint does not grow with the number of blank nodes in the document. The blank
+ * nodes from all of the earlier checkpoints are collected when {@link #getBlankNodes()} is called,
+ * or when the checkpoint is serialized.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public final class RDFJSONCheckpoint implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+    
+    private final long offset;
+    private final int line;
+    private final int column;
+    
+    /**
+     * The checkpoint before this one in the same document, whose blank nodes are also blank nodes
+     * for this checkpoint, or null if there is none.
+     */
+    private final RDFJSONCheckpoint previous;
+    
+    /**
+     * The blank nodes that were created since the previous checkpoint.
+     */
+    private final Map<String, String> blankNodes;
+    
+    /**
+     * Creates a checkpoint.
+     *
+     * @param offset
+     *            The offset in bytes from the start of the document.
+     * @param line
+     *            The line number of the position, starting at 1.
+     * @param column
+     *            The column number of the position in bytes, starting at 1.
+     * @param blankNodes
+     *            The identifiers of the blank nodes created for each blank node label in the
+     *            document before the position, which are copied.
+     */
+    public RDFJSONCheckpoint(final long offset, final int line, final int column, final Map<String, String> blankNodes)
+    {
+        this(offset, line, column, null, new HashMap<String, String>(blankNodes));
+    }
+    
+    /**
+     * Creates a checkpoint that follows another checkpoint in the same document.
+     *
+     * @param previous
+     *            The checkpoint before this one, or null if there is none.
+     * @param addedBlankNodes
+     *            The identifiers of the blank nodes created since the previous checkpoint, which
+     *            are not copied.
+     */
+    RDFJSONCheckpoint(final long offset, final int line, final int column, final RDFJSONCheckpoint previous,
+            final Map<String, String> addedBlankNodes)
+    {
+        this.offset = offset;
+        this.line = line;
+        this.column = column;
+        this.previous = previous;
+        this.blankNodes = addedBlankNodes;
+    }
+    
+    /**
+     * @return The offset in bytes from the start of the document.
+     */
+    public long getOffset()
+    {
+        return this.offset;
+    }
+    
+    /**
+     * @return The line number of the position, starting at 1.
+     */
+    public int getLine()
+    {
+        return this.line;
+    }
+    
+    /**
+     * @return The column number of the position in bytes, starting at 1.
+     */
+    public int getColumn()
+    {
+        return this.column;
+    }
+    
+    /**
+     * @return The identifiers of the blank nodes created for each blank node label in the document
+     *         before the position, keyed by the label without the "_:" prefix, which are collected
+     *         from the earlier checkpoints each time this is called.
+     */
+    public Map<String, String> getBlankNodes()
+    {
+        if(this.previous == null)
+        {
+            return Collections.unmodifiableMap(this.blankNodes);
+        }
+        
+        final Map<String, String> results = new HashMap<String, String>();
+        for(RDFJSONCheckpoint next = this; next != null; next = next.previous)
+        {
+            results.putAll(next.blankNodes);
+        }
+        return Collections.unmodifiableMap(results);
+    }
+    
+    /**
+     * Serializes the checkpoint with all of its blank nodes, instead of the chain of earlier
+     * checkpoints, which could be too long to serialize recursively.
+     */
+    private Object writeReplace()
+    {
+        if(this.previous == null)
+        {
+            return this;
+        }
+        return new RDFJSONCheckpoint(this.offset, this.line, this.column, this.getBlankNodes());
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "RDFJSONCheckpoint [offset=" + this.offset + ", line=" + this.line + ", column=" + this.column
+                + ", blankNodes=" + this.getBlankNodes().size() + "]";
+    }
+}
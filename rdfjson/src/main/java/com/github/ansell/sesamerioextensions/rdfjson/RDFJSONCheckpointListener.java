@@ -0,0 +1,23 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+/**
+ * Receives the {@link RDFJSONCheckpoint checkpoints} for a document that is being parsed, as set
+ * using {@link RDFJSONPreferredParserSettings#CHECKPOINT_LISTENER}.
+ * <p>
+ * Listeners are called on the thread that is parsing the document, after all of the statements for
+ * the subjects before the checkpoint have been sent to the RDFHandler, so a listener can store the
+ * checkpoint once the RDFHandler has stored those statements, for example after committing a
+ * transaction.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public interface RDFJSONCheckpointListener
+{
+    /**
+     * Called after each {@link RDFJSONPreferredParserSettings#CHECKPOINT_INTERVAL} subjects.
+     *
+     * @param checkpoint
+     *            The checkpoint after the last subject.
+     */
+    void checkpoint(RDFJSONCheckpoint checkpoint);
+}
@@ -0,0 +1,91 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.github.ansell.sesamerioextensions.api.RDFFormatExtensions;
+
+/**
+ * The compression methods that are supported by {@link CompressedRDFJSONParser} and
+ * {@link CompressedRDFJSONWriter}.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public enum RDFJSONCompression
+{
+    /**
+     * gzip compression, for the {@link RDFFormatExtensions#RDFJSONPREFERRED_GZIP} format.
+     */
+    GZIP
+    {
+        @Override
+        InputStream decompress(final InputStream in) throws IOException
+        {
+            return new GZIPInputStream(in, RDFJSONCompression.BUFFER_SIZE);
+        }
+        
+        @Override
+        OutputStream compress(final OutputStream out) throws IOException
+        {
+            return new GZIPOutputStream(out, RDFJSONCompression.BUFFER_SIZE);
+        }
+    },
+    
+    /**
+     * Zstandard compression, for the {@link RDFFormatExtensions#RDFJSONPREFERRED_ZSTD} format,
+     * which needs zstd-jni to be on the classpath.
+     */
+    ZSTD
+    {
+        @Override
+        InputStream decompress(final InputStream in) throws IOException
+        {
+            try
+            {
+                return ZstdStreams.decompress(in);
+            }
+            catch(final NoClassDefFoundError e)
+            {
+                throw RDFJSONCompression.zstdMissing(e);
+            }
+        }
+        
+        @Override
+        OutputStream compress(final OutputStream out) throws IOException
+        {
+            try
+            {
+                return ZstdStreams.compress(out);
+            }
+            catch(final NoClassDefFoundError e)
+            {
+                throw RDFJSONCompression.zstdMissing(e);
+            }
+        }
+    };
+    
+    private static final int BUFFER_SIZE = 65536;
+    
+    /**
+     * @param in
+     *            The compressed stream.
+     * @return A stream that decompresses the given stream, and closes it when it is closed.
+     */
+    abstract InputStream decompress(InputStream in) throws IOException;
+    
+    /**
+     * @param out
+     *            The stream to write the compressed bytes to.
+     * @return A stream that compresses the bytes written to it, and writes the end of the
+     *         compressed stream and closes the given stream when it is closed.
+     */
+    abstract OutputStream compress(OutputStream out) throws IOException;
+    
+    private static IOException zstdMissing(final NoClassDefFoundError e)
+    {
+        return new IOException("Zstandard compression requires zstd-jni on the classpath", e);
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+
+import com.github.ansell.sesamerioextensions.api.RDFFormatExtensions;
+
+/**
+ * RDFParser for the {@link RDFFormatExtensions#RDFJSON_LINES} format, where each line is a complete
+ * RDF/JSON object.
+ * <p>
+ * Each line is parsed in the same way as an RDF/JSON-preferred document, using the same settings.
+ * If {@link RDFJSONPreferredParserSettings#PARALLEL_THREADS} is greater than 1, documents read from
+ * an InputStream are split into ranges of lines that are parsed concurrently. Parts of a file can
+ * be parsed independently, for example by different processes, using
+ * {@link #parse(File, long, long, String)}.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class RDFJSONLinesParser extends RDFJSONPreferredParser
+{
+    /**
+     * Creates a parser using {@link RDFFormatExtensions#RDFJSON_LINES} as the format.
+     */
+    public RDFJSONLinesParser()
+    {
+        this(RDFFormatExtensions.RDFJSON_LINES);
+    }
+    
+    /**
+     * Creates a parser that reports the given format.
+     */
+    public RDFJSONLinesParser(final RDFFormat actualFormat)
+    {
+        super(actualFormat, true);
+    }
+    
+    /**
+     * Parses the lines of the given file that start at or after the start offset and before the end
+     * offset. Lines that cross the end offset are read in full, so a file can be split into
+     * adjacent ranges at arbitrary offsets, and each line is parsed exactly once.
+     * <p>
+     * Line numbers in errors are counted from the first line in the range.
+     *
+     * @param file
+     *            The RDF/JSON Lines file to parse.
+     * @param start
+     *            The offset in bytes of the start of the range.
+     * @param end
+     *            The offset in bytes of the end of the range, exclusive.
+     * @param baseUri
+     *            The base URI for the document.
+     * @throws IOException
+     *             If the file could not be read.
+     * @throws RDFParseException
+     *             If a line in the range was not valid RDF/JSON.
+     * @throws RDFHandlerException
+     *             If the RDFHandler threw an exception.
+     */
+    public void parse(final File file, final long start, final long end, final String baseUri)
+        throws IOException, RDFParseException, RDFHandlerException
+    {
+        final FileInputStream in = new FileInputStream(file);
+        try
+        {
+            in.getChannel().position(Math.max(0, start - 1));
+            this.parse(new LineRangeInputStream(in, start, end), baseUri);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import org.kohsuke.MetaInfServices;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.RDFParserFactory;
+
+import com.github.ansell.sesamerioextensions.api.RDFFormatExtensions;
+
+/**
+ * Parser Factory for the RDFJSONLinesParser.
+ * 
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+@MetaInfServices(RDFParserFactory.class)
+public class RDFJSONLinesParserFactory implements RDFParserFactory
+{
+    
+    @Override
+    public RDFParser getParser()
+    {
+        return new RDFJSONLinesParser(this.getRDFFormat());
+    }
+    
+    @Override
+    public RDFFormat getRDFFormat()
+    {
+        return RDFFormatExtensions.RDFJSON_LINES;
+    }
+    
+}
@@ -0,0 +1,43 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.OutputStream;
+import java.io.Writer;
+
+import org.openrdf.rio.RDFFormat;
+
+import com.github.ansell.sesamerioextensions.api.RDFFormatExtensions;
+
+/**
+ * RDFWriter for the {@link RDFFormatExtensions#RDFJSON_LINES} format, where each line is a complete
+ * RDF/JSON object for a single subject.
+ * <p>
+ * Each subject is written out as soon as the subject changes in the incoming statements, so only
+ * the statements for the current subject are kept in memory, and
+ * {@link RDFJSONPreferredWriterSettings#STREAMING} and pretty printing are ignored. If the input is
+ * not grouped by subject, a subject may appear on more than one line, unless
+ * {@link RDFJSONPreferredWriterSettings#SORT_SUBJECTS} is enabled.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class RDFJSONLinesWriter extends RDFJSONPreferredWriter
+{
+    public RDFJSONLinesWriter(final OutputStream out)
+    {
+        this(out, RDFFormatExtensions.RDFJSON_LINES);
+    }
+    
+    public RDFJSONLinesWriter(final OutputStream out, final RDFFormat actualFormat)
+    {
+        super(out, actualFormat, true);
+    }
+    
+    public RDFJSONLinesWriter(final Writer writer)
+    {
+        this(writer, RDFFormatExtensions.RDFJSON_LINES);
+    }
+    
+    public RDFJSONLinesWriter(final Writer writer, final RDFFormat actualFormat)
+    {
+        super(writer, actualFormat, true);
+    }
+}
@@ -0,0 +1,40 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.OutputStream;
+import java.io.Writer;
+
+import org.kohsuke.MetaInfServices;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFWriter;
+import org.openrdf.rio.RDFWriterFactory;
+
+import com.github.ansell.sesamerioextensions.api.RDFFormatExtensions;
+
+/**
+ * Writer Factory for the RDFJSONLinesWriter.
+ * 
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+@MetaInfServices(RDFWriterFactory.class)
+public class RDFJSONLinesWriterFactory implements RDFWriterFactory
+{
+    
+    @Override
+    public RDFFormat getRDFFormat()
+    {
+        return RDFFormatExtensions.RDFJSON_LINES;
+    }
+    
+    @Override
+    public RDFWriter getWriter(final OutputStream out)
+    {
+        return new RDFJSONLinesWriter(out, this.getRDFFormat());
+    }
+    
+    @Override
+    public RDFWriter getWriter(final Writer writer)
+    {
+        return new RDFJSONLinesWriter(writer, this.getRDFFormat());
+    }
+    
+}
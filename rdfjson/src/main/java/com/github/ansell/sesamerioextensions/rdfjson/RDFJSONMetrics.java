@@ -0,0 +1,164 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The measurements for a single RDF/JSON document that was parsed by an
+ * {@link RDFJSONPreferredParser} or written by an {@link RDFJSONPreferredWriter}, which are sent to
+ * the {@link RDFJSONMetricsListener} that is set using
+ * {@link RDFJSONPreferredParserSettings#METRICS_LISTENER} or
+ * {@link RDFJSONPreferredWriterSettings#METRICS_LISTENER}.
+ * <p>
+ * Measurements that do not apply to the direction that the document was processed in are 0.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public final class RDFJSONMetrics
+{
+    long statements;
+    long bytes = -1L;
+    long elapsedNanos;
+    long tokenizeNanos;
+    long valueCreationNanos;
+    long handlerNanos;
+    long encodeNanos;
+    long largestSubject;
+    long bufferHighWater;
+    
+    /**
+     * The number of statements for the current subject, which is used to find the largest subject.
+     */
+    long currentSubjectStatements;
+    
+    RDFJSONMetrics()
+    {
+    }
+    
+    /**
+     * Records the end of the current subject.
+     */
+    void endSubject()
+    {
+        if(this.currentSubjectStatements > this.largestSubject)
+        {
+            this.largestSubject = this.currentSubjectStatements;
+        }
+        this.currentSubjectStatements = 0;
+    }
+    
+    /**
+     * Records the current size of a buffer.
+     */
+    void buffered(final long size)
+    {
+        if(size > this.bufferHighWater)
+        {
+            this.bufferHighWater = size;
+        }
+    }
+    
+    /**
+     * @return The number of statements that were parsed or written.
+     */
+    public long getStatements()
+    {
+        return this.statements;
+    }
+    
+    /**
+     * @return The number of bytes that were read or written, or -1 if the document was read from a
+     *         Reader or written to a Writer.
+     */
+    public long getBytes()
+    {
+        return this.bytes;
+    }
+    
+    /**
+     * @return The time from the start to the end of the document, in nanoseconds. For writers, this
+     *         includes the time between calls to the writer.
+     */
+    public long getElapsedNanos()
+    {
+        return this.elapsedNanos;
+    }
+    
+    /**
+     * @return The time that the parser spent reading JSON tokens and decoding strings, in
+     *         nanoseconds, or 0 if the document was pipelined or parsed in parallel.
+     */
+    public long getTokenizeNanos()
+    {
+        return this.tokenizeNanos;
+    }
+    
+    /**
+     * @return The time that the parser spent creating URIs, blank nodes and literals, in
+     *         nanoseconds, or 0 if the document was pipelined or parsed in parallel.
+     */
+    public long getValueCreationNanos()
+    {
+        return this.valueCreationNanos;
+    }
+    
+    /**
+     * @return The time that the parser spent in calls to the RDFHandler, in nanoseconds.
+     */
+    public long getHandlerNanos()
+    {
+        return this.handlerNanos;
+    }
+    
+    /**
+     * @return The time that the writer spent generating JSON, in nanoseconds.
+     */
+    public long getEncodeNanos()
+    {
+        return this.encodeNanos;
+    }
+    
+    /**
+     * @return The largest number of statements for a single subject.
+     */
+    public long getLargestSubject()
+    {
+        return this.largestSubject;
+    }
+    
+    /**
+     * @return For parsers, the length of the longest string in the document, which is the amount
+     *         of the document that the tokenizer needed to buffer at once. For writers, the largest
+     *         number of statements that were held in memory at once.
+     */
+    public long getBufferHighWater()
+    {
+        return this.bufferHighWater;
+    }
+    
+    /**
+     * @return The number of statements per second over the elapsed time.
+     */
+    public double getStatementsPerSecond()
+    {
+        return RDFJSONMetrics.perSecond(this.statements, this.elapsedNanos);
+    }
+    
+    static double perSecond(final long count, final long nanos)
+    {
+        if(nanos <= 0)
+        {
+            return 0.0;
+        }
+        return count * (double)TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "RDFJSONMetrics [statements=" + this.statements + ", bytes=" + this.bytes + ", elapsedNanos="
+                + this.elapsedNanos + ", tokenizeNanos=" + this.tokenizeNanos + ", valueCreationNanos="
+                + this.valueCreationNanos + ", handlerNanos=" + this.handlerNanos + ", encodeNanos="
+                + this.encodeNanos + ", largestSubject=" + this.largestSubject + ", bufferHighWater="
+                + this.bufferHighWater + "]";
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+/**
+ * Receives the {@link RDFJSONMetrics} for each RDF/JSON document that is parsed or written.
+ * <p>
+ * Listeners are called on the thread that finished the document, after the document has been
+ * parsed or written, including when it failed. A listener that is shared between parsers or
+ * writers that are used concurrently, or that is used by a {@link RDFJSONPartitionedWriter} with
+ * more than one thread, must be thread safe.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public interface RDFJSONMetricsListener
+{
+    /**
+     * Called after a document has been parsed.
+     *
+     * @param metrics
+     *            The measurements for the document.
+     */
+    void parsed(RDFJSONMetrics metrics);
+    
+    /**
+     * Called after a document has been written.
+     *
+     * @param metrics
+     *            The measurements for the document.
+     */
+    void written(RDFJSONMetrics metrics);
+}
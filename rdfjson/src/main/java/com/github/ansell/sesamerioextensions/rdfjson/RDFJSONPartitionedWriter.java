@@ -0,0 +1,405 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFWriter;
+import org.openrdf.rio.RioSetting;
+import org.openrdf.rio.WriterConfig;
+import org.openrdf.rio.helpers.BasicWriterSettings;
+import org.openrdf.rio.helpers.RDFWriterBase;
+
+/**
+ * RDFWriter that writes the statements in each context to a separate RDF/JSON-preferred document,
+ * using an OutputStream for each context that is opened by a {@link ContextOutputStreamFactory}.
+ * <p>
+ * Statements are buffered for each context, up to
+ * {@link RDFJSONPreferredWriterSettings#PARTITION_BUFFER_SIZE} statements, and each full buffer is
+ * sent to a streaming {@link RDFJSONPreferredWriter} for the context. The documents do not contain
+ * the graphs of the statements, as each document only contains a single context. If
+ * {@link RDFJSONPreferredWriterSettings#PARTITION_THREADS} is greater than 1, buffers are written
+ * out concurrently, with at most one buffer for each context being written at a time so that the
+ * statements in each document stay in order.
+ * <p>
+ * The memory used is bounded by the number of contexts multiplied by the buffer size, plus the
+ * statements for the current subject in each context. The stream for each context is kept open
+ * until endRDF is called, as the document for a context cannot be appended to once it has been
+ * closed, so the number of contexts that can be written is limited by the number of streams that
+ * the {@link ContextOutputStreamFactory} can have open at once. If the streams are files, datasets
+ * with more contexts than the open file limit for the process must be sorted by context and
+ * written with a separate writer for each context instead. If
+ * {@link RDFJSONPreferredWriterSettings#SORT_SUBJECTS} or
+ * {@link RDFJSONPreferredWriterSettings#CANONICAL} is enabled, the statements in each context are
+ * grouped by subject using a separate spill-to-disk sort for each context. If
+ * {@link RDFJSONPreferredWriterSettings#METRICS_LISTENER} is set, the listener receives the
+ * metrics for the document for each context.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class RDFJSONPartitionedWriter extends RDFWriterBase implements RDFWriter
+{
+    /**
+     * The number of seconds to wait for the tasks that are writing out partitions to stop after an
+     * error, before the streams are closed anyway.
+     */
+    private static final long SHUTDOWN_SECONDS = 10;
+    
+    private final ContextOutputStreamFactory streamFactory;
+    private final RDFFormat actualFormat;
+    private final ValueFactory vf = ValueFactoryImpl.getInstance();
+    
+    private Map<Resource, Partition> partitions;
+    private int bufferSize;
+    private WriterConfig partitionConfig;
+    private ExecutorService executor;
+    
+    public RDFJSONPartitionedWriter(final ContextOutputStreamFactory streamFactory, final RDFFormat actualFormat)
+    {
+        this.streamFactory = streamFactory;
+        this.actualFormat = actualFormat;
+    }
+    
+    @Override
+    public void endRDF() throws RDFHandlerException
+    {
+        try
+        {
+            for(final Partition nextPartition : this.partitions.values())
+            {
+                this.flush(nextPartition);
+            }
+            for(final Partition nextPartition : this.partitions.values())
+            {
+                this.waitFor(nextPartition);
+                this.submit(nextPartition, new Callable<Void>()
+                    {
+                        @Override
+                        public Void call() throws Exception
+                        {
+                            nextPartition.finish();
+                            return null;
+                        }
+                    });
+            }
+            for(final Partition nextPartition : this.partitions.values())
+            {
+                this.waitFor(nextPartition);
+            }
+        }
+        finally
+        {
+            if(this.executor != null)
+            {
+                this.shutdownExecutor();
+            }
+            for(final Partition nextPartition : this.partitions.values())
+            {
+                nextPartition.closeQuietly();
+            }
+            this.partitions = null;
+            this.partitionConfig = null;
+        }
+    }
+    
+    /**
+     * Stops the tasks that are writing out partitions, waiting for them so that they do not write to
+     * the streams after the streams are closed and report errors that hide the original error.
+     */
+    private void shutdownExecutor()
+    {
+        this.executor.shutdownNow();
+        try
+        {
+            this.executor.awaitTermination(RDFJSONPartitionedWriter.SHUTDOWN_SECONDS, TimeUnit.SECONDS);
+        }
+        catch(final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            this.executor = null;
+        }
+    }
+    
+    @Override
+    public RDFFormat getRDFFormat()
+    {
+        return this.actualFormat;
+    }
+    
+    @Override
+    public Collection<RioSetting<?>> getSupportedSettings()
+    {
+        final Set<RioSetting<?>> results = new HashSet<RioSetting<?>>(super.getSupportedSettings());
+        
+        results.add(BasicWriterSettings.PRETTY_PRINT);
+        results.add(RDFJSONPreferredWriterSettings.SORT_SUBJECTS);
+        results.add(RDFJSONPreferredWriterSettings.SORT_BUFFER_SIZE);
+        results.add(RDFJSONPreferredWriterSettings.SORT_MEMORY_LIMIT);
+        results.add(RDFJSONPreferredWriterSettings.SORT_DIRECTORY);
+        results.add(RDFJSONPreferredWriterSettings.CANONICAL);
+        results.add(RDFJSONPreferredWriterSettings.PARTITION_BUFFER_SIZE);
+        results.add(RDFJSONPreferredWriterSettings.PARTITION_THREADS);
+        results.add(RDFJSONPreferredWriterSettings.METRICS_LISTENER);
+        
+        return results;
+    }
+    
+    @Override
+    public void handleComment(final String comment) throws RDFHandlerException
+    {
+        // Comments are ignored.
+    }
+    
+    @Override
+    public void handleNamespace(final String prefix, final String uri) throws RDFHandlerException
+    {
+        // Namespace prefixes are not used in RDF/JSON.
+    }
+    
+    @Override
+    public void handleStatement(final Statement statement) throws RDFHandlerException
+    {
+        Partition partition = this.partitions.get(statement.getContext());
+        if(partition == null)
+        {
+            partition = new Partition(statement.getContext());
+            this.partitions.put(statement.getContext(), partition);
+        }
+        
+        partition.buffer.add(this.vf.createStatement(statement.getSubject(), statement.getPredicate(),
+                statement.getObject()));
+        if(partition.buffer.size() >= this.bufferSize)
+        {
+            this.flush(partition);
+        }
+    }
+    
+    @Override
+    public void startRDF() throws RDFHandlerException
+    {
+        this.partitions = new LinkedHashMap<Resource, Partition>();
+        this.bufferSize =
+                Math.max(1, this.getWriterConfig().get(RDFJSONPreferredWriterSettings.PARTITION_BUFFER_SIZE));
+        
+        this.partitionConfig = new WriterConfig();
+        this.partitionConfig.set(RDFJSONPreferredWriterSettings.STREAMING, true);
+        this.partitionConfig.set(BasicWriterSettings.PRETTY_PRINT,
+                this.getWriterConfig().get(BasicWriterSettings.PRETTY_PRINT));
+        this.partitionConfig.set(RDFJSONPreferredWriterSettings.SORT_SUBJECTS,
+                this.getWriterConfig().get(RDFJSONPreferredWriterSettings.SORT_SUBJECTS));
+        this.partitionConfig.set(RDFJSONPreferredWriterSettings.SORT_BUFFER_SIZE,
+                this.getWriterConfig().get(RDFJSONPreferredWriterSettings.SORT_BUFFER_SIZE));
+        this.partitionConfig.set(RDFJSONPreferredWriterSettings.SORT_MEMORY_LIMIT,
+                this.getWriterConfig().get(RDFJSONPreferredWriterSettings.SORT_MEMORY_LIMIT));
+        this.partitionConfig.set(RDFJSONPreferredWriterSettings.SORT_DIRECTORY,
+                this.getWriterConfig().get(RDFJSONPreferredWriterSettings.SORT_DIRECTORY));
+        this.partitionConfig.set(RDFJSONPreferredWriterSettings.CANONICAL,
+                this.getWriterConfig().get(RDFJSONPreferredWriterSettings.CANONICAL));
+        this.partitionConfig.set(RDFJSONPreferredWriterSettings.METRICS_LISTENER,
+                this.getWriterConfig().get(RDFJSONPreferredWriterSettings.METRICS_LISTENER));
+        
+        final int threads = this.getWriterConfig().get(RDFJSONPreferredWriterSettings.PARTITION_THREADS);
+        if(threads > 1)
+        {
+            this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+                {
+                    private final AtomicInteger count = new AtomicInteger();
+                    
+                    @Override
+                    public Thread newThread(final Runnable r)
+                    {
+                        final Thread result =
+                                new Thread(r, "rdfjson-partitioned-writer-" + this.count.incrementAndGet());
+                        result.setDaemon(true);
+                        return result;
+                    }
+                });
+        }
+    }
+    
+    /**
+     * Writes out the buffered statements for the given partition, after waiting for the previous
+     * buffer for the partition to be written.
+     */
+    private void flush(final Partition partition) throws RDFHandlerException
+    {
+        if(partition.buffer.isEmpty())
+        {
+            return;
+        }
+        
+        this.waitFor(partition);
+        final List<Statement> statements = partition.buffer;
+        partition.buffer = new ArrayList<Statement>();
+        this.submit(partition, new Callable<Void>()
+            {
+                @Override
+                public Void call() throws Exception
+                {
+                    partition.write(statements);
+                    return null;
+                }
+            });
+    }
+    
+    /**
+     * Runs the given task for the given partition, on the calling thread if there is no executor.
+     * The partition must not have a pending task.
+     */
+    private void submit(final Partition partition, final Callable<Void> task) throws RDFHandlerException
+    {
+        if(this.executor == null)
+        {
+            try
+            {
+                task.call();
+            }
+            catch(final RDFHandlerException e)
+            {
+                throw e;
+            }
+            catch(final RuntimeException e)
+            {
+                throw e;
+            }
+            catch(final Exception e)
+            {
+                throw new RDFHandlerException(e);
+            }
+        }
+        else
+        {
+            partition.pending = this.executor.submit(task);
+        }
+    }
+    
+    /**
+     * Waits for the pending task for the given partition to finish, if there is one.
+     */
+    private void waitFor(final Partition partition) throws RDFHandlerException
+    {
+        final Future<Void> pending = partition.pending;
+        if(pending == null)
+        {
+            return;
+        }
+        partition.pending = null;
+        
+        try
+        {
+            pending.get();
+        }
+        catch(final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            final InterruptedIOException ioe = new InterruptedIOException("Interrupted while writing RDF/JSON");
+            ioe.initCause(e);
+            throw new RDFHandlerException(ioe);
+        }
+        catch(final ExecutionException e)
+        {
+            if(e.getCause() instanceof RDFHandlerException)
+            {
+                throw (RDFHandlerException)e.getCause();
+            }
+            WorkerExceptions.rethrowUnchecked(e.getCause());
+            throw new RDFHandlerException(e.getCause());
+        }
+    }
+    
+    /**
+     * The buffered statements and the document for a single context. The stream and writer are
+     * only used by one task at a time.
+     */
+    private final class Partition
+    {
+        private final Resource context;
+        private List<Statement> buffer = new ArrayList<Statement>();
+        private Future<Void> pending;
+        private OutputStream stream;
+        private RDFJSONPreferredWriter writer;
+        
+        Partition(final Resource context)
+        {
+            this.context = context;
+        }
+        
+        /**
+         * Writes the given statements to the document for this context, opening the stream and
+         * starting the document if this is the first buffer for the context.
+         */
+        void write(final List<Statement> statements) throws IOException, RDFHandlerException
+        {
+            if(this.writer == null)
+            {
+                this.stream = RDFJSONPartitionedWriter.this.streamFactory.openStream(this.context);
+                this.writer = new RDFJSONPreferredWriter(this.stream, RDFJSONPartitionedWriter.this.actualFormat);
+                this.writer.setWriterConfig(RDFJSONPartitionedWriter.this.partitionConfig);
+                this.writer.startRDF();
+            }
+            for(final Statement nextStatement : statements)
+            {
+                this.writer.handleStatement(nextStatement);
+            }
+        }
+        
+        /**
+         * Ends the document for this context and closes the stream.
+         */
+        void finish() throws IOException, RDFHandlerException
+        {
+            if(this.writer == null)
+            {
+                return;
+            }
+            this.writer.endRDF();
+            this.writer = null;
+            final OutputStream toClose = this.stream;
+            this.stream = null;
+            toClose.close();
+        }
+        
+        /**
+         * Closes the stream if it has not been closed by {@link #finish()}, after an error.
+         */
+        void closeQuietly()
+        {
+            if(this.stream != null)
+            {
+                try
+                {
+                    this.stream.close();
+                }
+                catch(final IOException e)
+                {
+                    // Ignored, as an earlier error is already being reported
+                }
+                this.stream = null;
+            }
+        }
+    }
+}
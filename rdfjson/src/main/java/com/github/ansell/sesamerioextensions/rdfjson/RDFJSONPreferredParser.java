@@ -0,0 +1,1732 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.CharConversionException;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.rio.DatatypeHandler;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.RioSetting;
+import org.openrdf.rio.helpers.BasicParserSettings;
+import org.openrdf.rio.helpers.RDFHandlerWrapper;
+import org.openrdf.rio.helpers.RDFJSONParserSettings;
+import org.openrdf.rio.helpers.RDFParserBase;
+import org.openrdf.rio.rdfjson.RDFJSONUtility;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import com.github.ansell.sesamerioextensions.api.BatchRDFHandler;
+import com.github.ansell.sesamerioextensions.api.RDFFormatExtensions;
+
+/**
+ * RDFParser for the RDF/JSON-preferred format.
+ * <p>
+ * The parser is driven one JSON token at a time, and sends each statement to the RDFHandler as
+ * soon as the object value that it was created from has been read, so the memory used while
+ * parsing is bounded by the size of the current token instead of the size of the current subject.
+ * <p>
+ * Documents read from an InputStream are tokenized directly from their UTF-8 bytes, unless
+ * {@link RDFJSONPreferredParserSettings#UTF8_TOKENIZER} is false. If
+ * {@link RDFJSONPreferredParserSettings#PARALLEL_THREADS} is greater than 1, documents read from an
+ * InputStream are split into ranges of subjects that are parsed concurrently. If
+ * {@link RDFJSONPreferredParserSettings#URI_CACHE_SIZE} is greater than 0, URIs that are repeated
+ * in a document are shared instead of being created for each occurrence. Files can be parsed
+ * using {@link #parse(File, String)}, which reads them through memory mappings. If
+ * {@link RDFJSONPreferredParserSettings#METRICS_LISTENER} is set, the time spent in each phase of
+ * parsing is measured and sent to the listener after each document. If
+ * {@link RDFJSONPreferredParserSettings#PIPELINE_BATCH_SIZE} is greater than 0, documents that are
+ * not parsed concurrently are parsed on a background thread, and their statements are sent to the
+ * RDFHandler in batches on the calling thread. If the RDFHandler is a {@link BatchRDFHandler}, the
+ * statements for each subject are sent to it as a batch. If
+ * {@link RDFJSONPreferredParserSettings#SUBJECT_FILTER} or
+ * {@link RDFJSONPreferredParserSettings#PREDICATE_FILTER} is set, the values for other subjects and
+ * predicates are skipped without creating any values, and documents read from an InputStream
+ * compare the subject and predicate keys with the filters without decoding them. Documents that
+ * arrive in fragments can be parsed without blocking using a {@link RDFJSONPreferredPushParser}. If
+ * {@link RDFJSONPreferredParserSettings#CHECKPOINT_LISTENER} is set, checkpoints are reported
+ * between subjects, from which a document can be parsed again using
+ * {@link #parse(InputStream, RDFJSONCheckpoint, String)} if parsing stops part way through.
+ * Documents with very many blank nodes can use {@link RDFJSONPreferredParserSettings#BLANK_NODE_IDS}
+ * to avoid keeping a map of every blank node on the heap, and long literal values can be kept
+ * undecoded until they are used by setting
+ * {@link RDFJSONPreferredParserSettings#LARGE_LITERAL_THRESHOLD}.
+ * <p>
+ * A parser can parse any number of documents, one at a time, and keeps the buffer and string table
+ * of its UTF-8 tokenizer between documents, so reusing parsers, for example using
+ * {@link RDFJSONPreferredParserFactory#borrowParser()}, avoids allocating them for each document.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class RDFJSONPreferredParser extends RDFParserBase implements RDFParser
+{
+    /**
+     * The position of the parser inside of the RDF/JSON structure.
+     */
+    private enum State
+    {
+        DOCUMENT_START,
+        DOCUMENT,
+        SUBJECT_START,
+        SUBJECT,
+        PREDICATE_START,
+        PREDICATE,
+        OBJECT,
+        OBJECT_FIELD,
+        GRAPHS_START,
+        GRAPHS,
+        SKIP,
+        DOCUMENT_END
+    }
+    
+    /**
+     * The maximum number of statements in each batch sent to a {@link BatchRDFHandler}, so that a
+     * subject with a very large number of statements is sent in several batches.
+     */
+    private static final int MAX_BATCH_SIZE = 1024;
+    
+    private final RDFFormat actualFormat;
+    
+    /**
+     * True if the document is a sequence of RDF/JSON objects, each on its own line, instead of a
+     * single RDF/JSON object.
+     */
+    private final boolean lines;
+    private int documentLine;
+    
+    private JsonTokenizer tokenizer;
+    
+    /**
+     * The tokenizer for the last document read from a stream, which is reset for the next document
+     * so that a parser that is reused does not allocate a new buffer and string table each time.
+     */
+    private Utf8JsonTokenizer reusableTokenizer;
+    private State state;
+    private State stateAfterSkip;
+    private int skipDepth;
+    
+    private String subjectString;
+    private Resource subject;
+    private boolean foundPredicate;
+    private String predicateString;
+    private URI predicate;
+    private boolean foundObject;
+    private String objectField;
+    private String objectValue;
+    
+    /**
+     * The undecoded bytes of the value for the current object, instead of the objectValue, if the
+     * value is at least {@link RDFJSONPreferredParserSettings#LARGE_LITERAL_THRESHOLD} bytes long.
+     */
+    private byte[] objectValueBytes;
+    private String objectType;
+    private String objectLanguage;
+    private String objectDatatype;
+    private final List<Resource> objectContexts = new ArrayList<Resource>(2);
+    
+    /**
+     * True if the current object has at least one graph, including graphs that did not match the
+     * context filter.
+     */
+    private boolean objectHasGraphs;
+    
+    /**
+     * The text of the subjects, predicates and contexts that are parsed, or null to parse all of
+     * them. The context filter contains null if the default graph is parsed.
+     */
+    private Utf8StringSet subjectFilter;
+    private Utf8StringSet predicateFilter;
+    private Set<String> contextFilter;
+    
+    /**
+     * True if the value of the current subject or predicate is being skipped by the filters.
+     */
+    private boolean filtered;
+    
+    /**
+     * Blank nodes shared with other parsers working on the same document, or null if this parser is
+     * parsing the whole document.
+     */
+    private ConcurrentMap<String, BNode> sharedBNodes;
+    
+    /**
+     * The blank nodes for the labels in the current document, if they are not kept in a map.
+     */
+    private BlankNodeIdMap blankNodeIds;
+    
+    /**
+     * The current tokenizer if it is a UTF-8 tokenizer, which can give the undecoded bytes of long
+     * literal values.
+     */
+    private Utf8JsonTokenizer utf8Tokenizer;
+    private int largeLiteralThreshold;
+    private int lineOffset;
+    
+    /**
+     * The most recently used URIs in the current document, or null if URIs are not being cached.
+     */
+    private URICache uriCache;
+    
+    /**
+     * The measurements for the current document, or null if metrics are not being collected.
+     */
+    private RDFJSONMetrics metrics;
+    
+    /**
+     * The RDFHandler if it accepts batches of statements, or null if statements are sent to the
+     * RDFHandler one at a time.
+     */
+    private BatchRDFHandler batchHandler;
+    
+    /**
+     * The statements for the current subject that have not been sent to the batchHandler, which is
+     * reused for each batch.
+     */
+    private Statement[] batch;
+    private int batchLength;
+    
+    /**
+     * The listener for the checkpoints in the current document, or null if checkpoints are not
+     * being reported, and the tokenizer that gives the offsets for the checkpoints.
+     */
+    private RDFJSONCheckpointListener checkpointListener;
+    private Utf8JsonTokenizer checkpointTokenizer;
+    private int checkpointInterval;
+    private int subjectsSinceCheckpoint;
+    
+    /**
+     * The last checkpoint in the current document, and the identifiers of the blank nodes created
+     * since then, which are all that the next checkpoint needs to record.
+     */
+    private RDFJSONCheckpoint previousCheckpoint;
+    private Map<String, String> checkpointBlankNodes;
+    
+    /**
+     * The checkpoint that the current document is being parsed from, or null if it is being parsed
+     * from the start.
+     */
+    private RDFJSONCheckpoint resumeCheckpoint;
+    
+    /**
+     * Creates a parser using {@link RDFFormatExtensions#RDFJSONPREFERRED} as the format.
+     */
+    public RDFJSONPreferredParser()
+    {
+        this(RDFFormatExtensions.RDFJSONPREFERRED);
+    }
+    
+    /**
+     * Creates a parser that reports the given format, which must be a variant of RDF/JSON.
+     */
+    public RDFJSONPreferredParser(final RDFFormat actualFormat)
+    {
+        this(actualFormat, false);
+    }
+    
+    /**
+     * Creates a parser that reports the given format, and parses a sequence of RDF/JSON objects,
+     * each on its own line, if lines is true.
+     */
+    RDFJSONPreferredParser(final RDFFormat actualFormat, final boolean lines)
+    {
+        this.actualFormat = actualFormat;
+        this.lines = lines;
+    }
+    
+    @Override
+    public RDFFormat getRDFFormat()
+    {
+        return this.actualFormat;
+    }
+    
+    @Override
+    public Collection<RioSetting<?>> getSupportedSettings()
+    {
+        final Set<RioSetting<?>> results = new HashSet<RioSetting<?>>(super.getSupportedSettings());
+        
+        results.add(RDFJSONParserSettings.FAIL_ON_MULTIPLE_OBJECT_DATATYPES);
+        results.add(RDFJSONParserSettings.FAIL_ON_MULTIPLE_OBJECT_LANGUAGES);
+        results.add(RDFJSONParserSettings.FAIL_ON_MULTIPLE_OBJECT_TYPES);
+        results.add(RDFJSONParserSettings.FAIL_ON_MULTIPLE_OBJECT_VALUES);
+        results.add(RDFJSONParserSettings.FAIL_ON_UNKNOWN_PROPERTY);
+        results.add(RDFJSONParserSettings.SUPPORT_GRAPHS_EXTENSION);
+        results.add(RDFJSONPreferredParserSettings.PARALLEL_THREADS);
+        results.add(RDFJSONPreferredParserSettings.PARALLEL_CHUNK_SIZE);
+        results.add(RDFJSONPreferredParserSettings.PARALLEL_PRESERVE_ORDER);
+        results.add(RDFJSONPreferredParserSettings.UTF8_TOKENIZER);
+        results.add(RDFJSONPreferredParserSettings.URI_CACHE_SIZE);
+        results.add(RDFJSONPreferredParserSettings.METRICS_LISTENER);
+        results.add(RDFJSONPreferredParserSettings.PIPELINE_BATCH_SIZE);
+        results.add(RDFJSONPreferredParserSettings.PIPELINE_BUFFER_SIZE);
+        results.add(RDFJSONPreferredParserSettings.SUBJECT_FILTER);
+        results.add(RDFJSONPreferredParserSettings.PREDICATE_FILTER);
+        results.add(RDFJSONPreferredParserSettings.CONTEXT_FILTER);
+        results.add(RDFJSONPreferredParserSettings.CHECKPOINT_LISTENER);
+        results.add(RDFJSONPreferredParserSettings.CHECKPOINT_INTERVAL);
+        results.add(RDFJSONPreferredParserSettings.BLANK_NODE_IDS);
+        results.add(RDFJSONPreferredParserSettings.BLANK_NODE_MEMORY_LIMIT);
+        results.add(RDFJSONPreferredParserSettings.BLANK_NODE_DIRECTORY);
+        results.add(RDFJSONPreferredParserSettings.LARGE_LITERAL_THRESHOLD);
+        
+        return results;
+    }
+    
+    @Override
+    public void parse(final InputStream inputStream, final String baseUri) throws IOException, RDFParseException,
+        RDFHandlerException
+    {
+        this.checkHandler();
+        final RDFJSONMetricsListener listener =
+                this.getParserConfig().get(RDFJSONPreferredParserSettings.METRICS_LISTENER);
+        if(listener == null)
+        {
+            this.parseStream(inputStream);
+            return;
+        }
+        
+        final CountingInputStream in = new CountingInputStream(inputStream);
+        final long start = this.startMetrics();
+        try
+        {
+            this.parseStream(in);
+        }
+        finally
+        {
+            this.metrics.bytes = in.getCount();
+            this.endMetrics(listener, start);
+        }
+    }
+    
+    @Override
+    public void parse(final Reader reader, final String baseUri) throws IOException, RDFParseException,
+        RDFHandlerException
+    {
+        this.checkHandler();
+        final RDFJSONMetricsListener listener =
+                this.getParserConfig().get(RDFJSONPreferredParserSettings.METRICS_LISTENER);
+        if(listener == null)
+        {
+            this.parseTokens(new JacksonJsonTokenizer(RDFJSONUtility.JSON_FACTORY.createParser(reader)));
+            return;
+        }
+        
+        final long start = this.startMetrics();
+        try
+        {
+            this.parseTokens(new JacksonJsonTokenizer(RDFJSONUtility.JSON_FACTORY.createParser(reader)));
+        }
+        finally
+        {
+            this.endMetrics(listener, start);
+        }
+    }
+    
+    /**
+     * Parses the given file, reading it through memory mappings instead of read system calls, so
+     * that large files are buffered by the operating system page cache rather than being copied
+     * through intermediate buffers. Files larger than 2GB are mapped in segments.
+     *
+     * @param file
+     *            The RDF/JSON file to parse.
+     * @param baseUri
+     *            The base URI for the document.
+     * @throws IOException
+     *             If the file could not be read.
+     * @throws RDFParseException
+     *             If the file was not valid RDF/JSON.
+     * @throws RDFHandlerException
+     *             If the RDFHandler threw an exception.
+     */
+    public void parse(final File file, final String baseUri) throws IOException, RDFParseException,
+        RDFHandlerException
+    {
+        final InputStream in = new MappedFileInputStream(file);
+        try
+        {
+            this.parse(in, baseUri);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+    
+    /**
+     * Parses the rest of a document from a checkpoint that was reported to the
+     * {@link RDFJSONPreferredParserSettings#CHECKPOINT_LISTENER} while parsing the same document, so
+     * that a parse that stopped part way through does not need to start again. The start and the
+     * end of the document are sent to the RDFHandler as usual, but the statements for the subjects
+     * before the checkpoint are not. Further checkpoints are reported if the listener is set.
+     * <p>
+     * The rest of the document is parsed on this thread using the UTF-8 tokenizer.
+     *
+     * @param inputStream
+     *            The stream containing the whole document, which is skipped to the checkpoint.
+     * @param checkpoint
+     *            The checkpoint to parse the document from.
+     * @param baseUri
+     *            The base URI for the document.
+     * @throws IOException
+     *             If the document could not be read, or it ended before the checkpoint.
+     * @throws RDFParseException
+     *             If the rest of the document was not valid RDF/JSON.
+     * @throws RDFHandlerException
+     *             If the RDFHandler threw an exception.
+     */
+    public void parse(final InputStream inputStream, final RDFJSONCheckpoint checkpoint, final String baseUri)
+        throws IOException, RDFParseException, RDFHandlerException
+    {
+        this.checkHandler();
+        long remaining = checkpoint.getOffset();
+        while(remaining > 0)
+        {
+            final long skipped = inputStream.skip(remaining);
+            if(skipped > 0)
+            {
+                remaining -= skipped;
+            }
+            else if(inputStream.read() != -1)
+            {
+                remaining--;
+            }
+            else
+            {
+                throw new EOFException("Document ended before the checkpoint at offset " + checkpoint.getOffset());
+            }
+        }
+        this.parseCheckpointed(new Utf8JsonTokenizer(inputStream), checkpoint);
+    }
+    
+    /**
+     * Parses the rest of the given file from a checkpoint, as for
+     * {@link #parse(InputStream, RDFJSONCheckpoint, String)}, reading the file through memory
+     * mappings, so that the file before the checkpoint is not read.
+     *
+     * @param file
+     *            The file containing the document.
+     * @param checkpoint
+     *            The checkpoint to parse the document from.
+     * @param baseUri
+     *            The base URI for the document.
+     * @throws IOException
+     *             If the file could not be read, or it ended before the checkpoint.
+     * @throws RDFParseException
+     *             If the rest of the document was not valid RDF/JSON.
+     * @throws RDFHandlerException
+     *             If the RDFHandler threw an exception.
+     */
+    public void parse(final File file, final RDFJSONCheckpoint checkpoint, final String baseUri)
+        throws IOException, RDFParseException, RDFHandlerException
+    {
+        final InputStream in = new MappedFileInputStream(file);
+        try
+        {
+            this.parse(in, checkpoint, baseUri);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+    
+    private void parseStream(final InputStream inputStream) throws IOException, RDFParseException,
+        RDFHandlerException
+    {
+        if(this.getParserConfig().get(RDFJSONPreferredParserSettings.PARALLEL_THREADS) > 1 && this.lines)
+        {
+            new ParallelChunkParser(this.getRDFFormat(), this.valueFactory, this.getParserConfig(),
+                    this.getParseErrorListener(), this.createParallelHandler(), true).parse(inputStream, 1);
+        }
+        else if(this.getParserConfig().get(RDFJSONPreferredParserSettings.PARALLEL_THREADS) > 1)
+        {
+            this.parseParallel(inputStream);
+        }
+        else
+        {
+            this.parseTokens(this.createTokenizer(inputStream));
+        }
+    }
+    
+    /**
+     * Parses a complete document from the given tokenizer, on a background thread if pipelining is
+     * enabled, and on this thread otherwise.
+     */
+    private void parseTokens(final JsonTokenizer nextTokenizer) throws IOException, RDFParseException,
+        RDFHandlerException
+    {
+        if(this.getParserConfig().get(RDFJSONPreferredParserSettings.PIPELINE_BATCH_SIZE) > 0)
+        {
+            new PipelinedParser(this.getRDFFormat(), this.lines, this.valueFactory, this.getParserConfig(),
+                    this.getParseErrorListener(), this.createParallelHandler()).parse(nextTokenizer);
+        }
+        else if(nextTokenizer instanceof Utf8JsonTokenizer
+                && this.getParserConfig().get(RDFJSONPreferredParserSettings.CHECKPOINT_LISTENER) != null)
+        {
+            this.parseCheckpointed((Utf8JsonTokenizer)nextTokenizer, null);
+        }
+        else
+        {
+            this.parse(nextTokenizer);
+        }
+    }
+    
+    /**
+     * Parses a document on this thread, reporting checkpoints if the
+     * {@link RDFJSONPreferredParserSettings#CHECKPOINT_LISTENER} is set, and starting from the given
+     * checkpoint if it is not null. The blank nodes for the document are kept in a map, so that
+     * their identifiers can be copied into each checkpoint.
+     */
+    private void parseCheckpointed(final Utf8JsonTokenizer nextTokenizer, final RDFJSONCheckpoint checkpoint)
+        throws IOException, RDFParseException, RDFHandlerException
+    {
+        this.checkpointListener = this.getParserConfig().get(RDFJSONPreferredParserSettings.CHECKPOINT_LISTENER);
+        this.checkpointTokenizer = nextTokenizer;
+        this.checkpointInterval =
+                Math.max(1, this.getParserConfig().get(RDFJSONPreferredParserSettings.CHECKPOINT_INTERVAL));
+        this.subjectsSinceCheckpoint = 0;
+        this.previousCheckpoint = checkpoint;
+        this.checkpointBlankNodes = new HashMap<String, String>();
+        this.sharedBNodes = new ConcurrentHashMap<String, BNode>();
+        if(checkpoint != null)
+        {
+            for(final Map.Entry<String, String> nextBNode : checkpoint.getBlankNodes().entrySet())
+            {
+                this.sharedBNodes.put(nextBNode.getKey(), this.valueFactory.createBNode(nextBNode.getValue()));
+            }
+            nextTokenizer.resume(checkpoint.getOffset(), checkpoint.getLine(), checkpoint.getColumn());
+        }
+        this.resumeCheckpoint = checkpoint;
+        try
+        {
+            this.parse(nextTokenizer);
+        }
+        finally
+        {
+            this.checkpointListener = null;
+            this.checkpointTokenizer = null;
+            this.previousCheckpoint = null;
+            this.checkpointBlankNodes = null;
+            this.sharedBNodes = null;
+            this.resumeCheckpoint = null;
+        }
+    }
+    
+    /**
+     * Counts a subject that has been parsed, and reports a checkpoint after it if checkpoints are
+     * being reported and the interval has been reached.
+     */
+    private void checkpointSubject()
+    {
+        if(this.checkpointListener == null || ++this.subjectsSinceCheckpoint < this.checkpointInterval)
+        {
+            return;
+        }
+        
+        this.subjectsSinceCheckpoint = 0;
+        // Each checkpoint only records the blank nodes since the previous one, which it refers to
+        this.previousCheckpoint =
+                new RDFJSONCheckpoint(this.checkpointTokenizer.getOffset(), this.checkpointTokenizer.getOffsetLineNr(),
+                        this.checkpointTokenizer.getOffsetColumnNr(), this.previousCheckpoint,
+                        this.checkpointBlankNodes);
+        this.checkpointBlankNodes = new HashMap<String, String>();
+        this.checkpointListener.checkpoint(this.previousCheckpoint);
+    }
+    
+    /**
+     * Starts collecting metrics for a new document.
+     *
+     * @return The start time for the document.
+     */
+    private long startMetrics()
+    {
+        this.metrics = new RDFJSONMetrics();
+        return System.nanoTime();
+    }
+    
+    /**
+     * Sends the metrics for the current document to the given listener, and stops collecting
+     * metrics.
+     */
+    private void endMetrics(final RDFJSONMetricsListener listener, final long start)
+    {
+        final RDFJSONMetrics result = this.metrics;
+        this.metrics = null;
+        result.elapsedNanos = System.nanoTime() - start;
+        listener.parsed(result);
+    }
+    
+    /**
+     * Finds the start of the top level object and hands the rest of the stream to a
+     * {@link ParallelChunkParser}. Documents that do not start with an object are parsed on this
+     * thread so that the usual errors are reported.
+     * <p>
+     * If metrics are being collected, only the statements and the time spent in the RDFHandler are
+     * measured, as the ranges are tokenized on other threads.
+     */
+    private void parseParallel(final InputStream inputStream) throws IOException, RDFParseException,
+        RDFHandlerException
+    {
+        final InputStream in = new BufferedInputStream(inputStream);
+        final ByteArrayOutputStream prefix = new ByteArrayOutputStream();
+        int line = 1;
+        int next;
+        while((next = in.read()) != -1)
+        {
+            prefix.write(next);
+            if(next == '{')
+            {
+                new ParallelChunkParser(this.getRDFFormat(), this.valueFactory, this.getParserConfig(),
+                        this.getParseErrorListener(), this.createParallelHandler(), false).parse(in, line);
+                return;
+            }
+            else if(next == '\n')
+            {
+                line++;
+            }
+            else if(next != ' ' && next != '\t' && next != '\r'
+                    && !(prefix.size() <= 3 && (next == 0xEF || next == 0xBB || next == 0xBF)))
+            {
+                break;
+            }
+        }
+        
+        this.parseTokens(this.createTokenizer(new SequenceInputStream(new ByteArrayInputStream(prefix.toByteArray()),
+                in)));
+    }
+    
+    /**
+     * Creates the RDFHandler for a {@link ParallelChunkParser} or a {@link PipelinedParser}.
+     */
+    private BatchRDFHandler createParallelHandler()
+    {
+        return new DeliveryHandler();
+    }
+    
+    /**
+     * Creates a {@link Utf8JsonTokenizer} for the given stream if it is enabled and the stream does
+     * not start with a UTF-16 or UTF-32 encoded character, and a Jackson based tokenizer otherwise.
+     * The UTF-8 tokenizer from the previous document is reused if there is one.
+     */
+    private JsonTokenizer createTokenizer(final InputStream inputStream) throws IOException
+    {
+        if(!this.getParserConfig().get(RDFJSONPreferredParserSettings.UTF8_TOKENIZER))
+        {
+            return new JacksonJsonTokenizer(RDFJSONUtility.JSON_FACTORY.createParser(inputStream));
+        }
+        
+        final PushbackInputStream in = new PushbackInputStream(inputStream, 4);
+        final byte[] prefix = new byte[4];
+        int length = 0;
+        int read;
+        while(length < prefix.length && (read = in.read(prefix, length, prefix.length - length)) != -1)
+        {
+            length += read;
+        }
+        in.unread(prefix, 0, length);
+        
+        if(Utf8JsonTokenizer.isUtf8(prefix, length) && this.reusableTokenizer != null)
+        {
+            this.reusableTokenizer.reset(in);
+            return this.reusableTokenizer;
+        }
+        else if(Utf8JsonTokenizer.isUtf8(prefix, length))
+        {
+            this.reusableTokenizer = new Utf8JsonTokenizer(in);
+            return this.reusableTokenizer;
+        }
+        return new JacksonJsonTokenizer(RDFJSONUtility.JSON_FACTORY.createParser(in));
+    }
+    
+    /**
+     * Parses a range of subjects that has been wrapped in an object, or a range of lines, for a
+     * {@link ParallelChunkParser}.
+     * 
+     * @param bytes
+     *            The UTF-8 bytes for the range.
+     * @param length
+     *            The number of bytes to parse.
+     * @param nextLineOffset
+     *            The number of lines in the document before the range.
+     * @param nextSharedBNodes
+     *            The blank nodes that are shared with the parsers for the other ranges.
+     */
+    void parseChunk(final byte[] bytes, final int length, final int nextLineOffset,
+            final ConcurrentMap<String, BNode> nextSharedBNodes) throws IOException, RDFParseException,
+        RDFHandlerException
+    {
+        this.lineOffset = nextLineOffset;
+        this.sharedBNodes = nextSharedBNodes;
+        try
+        {
+            if(this.getParserConfig().get(RDFJSONPreferredParserSettings.UTF8_TOKENIZER))
+            {
+                this.parse(new Utf8JsonTokenizer(bytes, length));
+            }
+            else
+            {
+                this.parse(new JacksonJsonTokenizer(RDFJSONUtility.JSON_FACTORY.createParser(bytes, 0, length)));
+            }
+        }
+        finally
+        {
+            this.lineOffset = 0;
+            this.sharedBNodes = null;
+        }
+    }
+    
+    void checkHandler()
+    {
+        if(this.rdfHandler == null)
+        {
+            throw new IllegalStateException("RDF handler has not been set");
+        }
+    }
+    
+    /**
+     * Parses a complete RDF/JSON document from the given tokenizer on this thread, closing it
+     * afterwards.
+     */
+    void parse(final JsonTokenizer nextTokenizer) throws IOException, RDFParseException,
+        RDFHandlerException
+    {
+        this.startDocument(nextTokenizer);
+        this.handleTokens(true);
+    }
+    
+    /**
+     * Starts parsing a document from the given tokenizer, which may return
+     * {@link JsonToken#NOT_AVAILABLE} if it is fed its input, and sends the start of the document to
+     * the RDFHandler. The tokens are parsed using {@link #handleTokens(boolean)}.
+     */
+    void startDocument(final JsonTokenizer nextTokenizer) throws RDFHandlerException
+    {
+        this.clear();
+        this.tokenizer = this.metrics == null ? nextTokenizer : new MeteredJsonTokenizer(nextTokenizer, this.metrics);
+        this.state = State.DOCUMENT_START;
+        this.documentLine = 0;
+        if(this.resumeCheckpoint != null)
+        {
+            // Checkpoints are after a subject, inside of the object for the document or the line
+            this.state = State.DOCUMENT;
+            this.documentLine = this.resumeCheckpoint.getLine();
+        }
+        final int uriCacheSize = this.getParserConfig().get(RDFJSONPreferredParserSettings.URI_CACHE_SIZE);
+        this.uriCache = uriCacheSize > 0 ? new URICache(uriCacheSize) : null;
+        this.batchHandler = this.rdfHandler instanceof BatchRDFHandler ? (BatchRDFHandler)this.rdfHandler : null;
+        if(this.batchHandler != null && this.batch == null)
+        {
+            this.batch = new Statement[RDFJSONPreferredParser.MAX_BATCH_SIZE];
+        }
+        this.batchLength = 0;
+        this.subjectFilter =
+                RDFJSONPreferredParser.filterKeys(this.getParserConfig().get(RDFJSONPreferredParserSettings.SUBJECT_FILTER));
+        this.predicateFilter =
+                RDFJSONPreferredParser.filterKeys(this.getParserConfig()
+                        .get(RDFJSONPreferredParserSettings.PREDICATE_FILTER));
+        this.contextFilter =
+                RDFJSONPreferredParser.filterText(this.getParserConfig().get(RDFJSONPreferredParserSettings.CONTEXT_FILTER));
+        this.filtered = false;
+        this.utf8Tokenizer = nextTokenizer instanceof Utf8JsonTokenizer ? (Utf8JsonTokenizer)nextTokenizer : null;
+        this.largeLiteralThreshold =
+                this.getParserConfig().get(RDFJSONPreferredParserSettings.LARGE_LITERAL_THRESHOLD);
+        // Ranges of parallel documents and checkpointed documents use the shared blank nodes instead
+        final RDFJSONBlankNodeIds ids =
+                this.sharedBNodes == null ? this.getParserConfig().get(RDFJSONPreferredParserSettings.BLANK_NODE_IDS)
+                        : RDFJSONBlankNodeIds.MAP;
+        if(ids == RDFJSONBlankNodeIds.HASH)
+        {
+            this.blankNodeIds = new HashedBlankNodeIdMap(this.valueFactory);
+        }
+        else if(ids == RDFJSONBlankNodeIds.OFF_HEAP)
+        {
+            this.blankNodeIds =
+                    new OffHeapBlankNodeIdMap(this.valueFactory, this.getParserConfig().get(
+                            RDFJSONPreferredParserSettings.BLANK_NODE_MEMORY_LIMIT), this.getParserConfig().get(
+                            RDFJSONPreferredParserSettings.BLANK_NODE_DIRECTORY));
+        }
+        this.rdfHandler.startRDF();
+    }
+    
+    /**
+     * Parses the tokens from the current tokenizer until it has no more tokens available, or until
+     * the end of the document. If the end of the input has been reached, or if an exception is
+     * thrown, the tokenizer is closed, and the end of the document is sent to the RDFHandler if it
+     * was complete.
+     *
+     * @param endOfInput
+     *            True if the tokenizer will not return any more tokens after
+     *            {@link JsonToken#NOT_AVAILABLE}, so the document must be complete.
+     */
+    void handleTokens(final boolean endOfInput) throws IOException, RDFParseException, RDFHandlerException
+    {
+        boolean waitingForInput = false;
+        try
+        {
+            JsonToken nextToken;
+            while(this.state != State.DOCUMENT_END && (nextToken = this.tokenizer.nextToken()) != null
+                    && nextToken != JsonToken.NOT_AVAILABLE)
+            {
+                this.handleToken(nextToken);
+            }
+            
+            if(endOfInput && this.state != (this.lines ? State.DOCUMENT_START : State.DOCUMENT_END))
+            {
+                this.fatal("Unexpected end of RDF/JSON document");
+            }
+            waitingForInput = !endOfInput;
+        }
+        catch(final RDFParseException e)
+        {
+            // Send the statements before the error, as they would have been without batches
+            this.flushBatch();
+            throw e;
+        }
+        catch(final JsonParseException e)
+        {
+            this.flushBatch();
+            final JsonLocation location = e.getLocation();
+            if(location != null)
+            {
+                this.reportFatalError(e, this.lineNr(location.getLineNr()), location.getColumnNr());
+            }
+            else
+            {
+                this.reportFatalError(e);
+            }
+        }
+        finally
+        {
+            if(!waitingForInput)
+            {
+                this.endDocument();
+            }
+        }
+        
+        if(endOfInput)
+        {
+            this.rdfHandler.endRDF();
+        }
+    }
+    
+    /**
+     * Closes the current tokenizer and clears the state for the current document, without sending
+     * the end of the document to the RDFHandler.
+     */
+    void endDocument() throws IOException
+    {
+        this.clear();
+        this.tokenizer.close();
+        this.tokenizer = null;
+        this.utf8Tokenizer = null;
+        this.objectValueBytes = null;
+        this.uriCache = null;
+        if(this.batchHandler != null)
+        {
+            Arrays.fill(this.batch, null);
+            this.batchLength = 0;
+            this.batchHandler = null;
+        }
+        if(this.blankNodeIds != null)
+        {
+            final BlankNodeIdMap closing = this.blankNodeIds;
+            this.blankNodeIds = null;
+            closing.close();
+        }
+    }
+    
+    /**
+     * Moves the parser to its next state based on the next token in the document, sending
+     * statements to the RDFHandler as soon as each object value is complete.
+     */
+    private void handleToken(final JsonToken token) throws IOException, RDFParseException, RDFHandlerException
+    {
+        switch(this.state)
+        {
+            case DOCUMENT_START:
+                if(token != JsonToken.START_OBJECT)
+                {
+                    this.fatal("Expected RDF/JSON document to start with an Object");
+                }
+                if(this.lines && this.documentLine > 0 && this.tokenizer.getLineNr() == this.documentLine)
+                {
+                    this.fatal("Expected each RDF/JSON object to start on a new line");
+                }
+                this.documentLine = this.tokenizer.getLineNr();
+                this.state = State.DOCUMENT;
+                break;
+            case DOCUMENT:
+                if(token == JsonToken.END_OBJECT && this.lines)
+                {
+                    if(this.tokenizer.getLineNr() != this.documentLine)
+                    {
+                        this.fatal("Expected each RDF/JSON object to be on a single line");
+                    }
+                    this.state = State.DOCUMENT_START;
+                }
+                else if(token == JsonToken.END_OBJECT)
+                {
+                    this.state = State.DOCUMENT_END;
+                }
+                else
+                {
+                    this.reportLocation(this.lineNr(this.tokenizer.getLineNr()), this.tokenizer.getColumnNr());
+                    this.filtered = this.subjectFilter != null && !this.isInFilter(this.subjectFilter);
+                    if(this.filtered)
+                    {
+                        this.subjectString = null;
+                    }
+                    else
+                    {
+                        this.subjectString = this.tokenizer.getText();
+                        this.subject = this.createResource(this.subjectString);
+                    }
+                    this.state = State.SUBJECT_START;
+                }
+                break;
+            case SUBJECT_START:
+                if(token != JsonToken.START_OBJECT)
+                {
+                    this.fatal("Expected subject value to start with an Object");
+                }
+                if(this.filtered)
+                {
+                    this.tokenizer.skipChildren();
+                    this.filtered = false;
+                    this.state = State.DOCUMENT;
+                    this.checkpointSubject();
+                    break;
+                }
+                this.foundPredicate = false;
+                this.state = State.SUBJECT;
+                break;
+            case SUBJECT:
+                if(token == JsonToken.END_OBJECT)
+                {
+                    if(!this.foundPredicate)
+                    {
+                        this.fatal("No predicate for object: subject=" + this.subjectString);
+                    }
+                    this.flushBatch();
+                    if(this.metrics != null)
+                    {
+                        this.metrics.endSubject();
+                    }
+                    this.state = State.DOCUMENT;
+                    this.checkpointSubject();
+                }
+                else
+                {
+                    this.filtered = this.predicateFilter != null && !this.isInFilter(this.predicateFilter);
+                    if(this.filtered)
+                    {
+                        this.predicateString = null;
+                    }
+                    else
+                    {
+                        this.predicateString = this.tokenizer.getText();
+                        this.predicate = this.createURI(this.predicateString);
+                    }
+                    this.foundPredicate = true;
+                    this.state = State.PREDICATE_START;
+                }
+                break;
+            case PREDICATE_START:
+                if(token != JsonToken.START_ARRAY)
+                {
+                    this.fatal("Expected predicate value to start with an array");
+                }
+                if(this.filtered)
+                {
+                    this.tokenizer.skipChildren();
+                    this.filtered = false;
+                    this.state = State.SUBJECT;
+                    break;
+                }
+                this.foundObject = false;
+                this.state = State.PREDICATE;
+                break;
+            case PREDICATE:
+                if(token == JsonToken.END_ARRAY)
+                {
+                    if(!this.foundObject)
+                    {
+                        this.fatal("No object for predicate: subject=" + this.subjectString + " predicate="
+                                + this.predicateString);
+                    }
+                    this.state = State.SUBJECT;
+                }
+                else if(token == JsonToken.START_OBJECT)
+                {
+                    this.objectValue = null;
+                    this.objectValueBytes = null;
+                    this.objectType = null;
+                    this.objectLanguage = null;
+                    this.objectDatatype = null;
+                    this.objectContexts.clear();
+                    this.objectHasGraphs = false;
+                    this.state = State.OBJECT;
+                }
+                else
+                {
+                    this.fatal("Expected object value to start with an Object: subject=<" + this.subjectString
+                            + "> predicate=<" + this.predicateString + ">");
+                }
+                break;
+            case OBJECT:
+                if(token == JsonToken.END_OBJECT)
+                {
+                    this.handleObject();
+                    this.foundObject = true;
+                    this.state = State.PREDICATE;
+                }
+                else
+                {
+                    this.handleObjectFieldName(this.tokenizer.getText());
+                }
+                break;
+            case OBJECT_FIELD:
+                if(token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY)
+                {
+                    this.fatal("Expected a string for " + this.objectField + ": subject=" + this.subjectString
+                            + " predicate=" + this.predicateString);
+                }
+                if(token == JsonToken.VALUE_STRING && this.isLargeValue())
+                {
+                    // Long values are only decoded when they are used
+                    final byte[] bytes = this.utf8Tokenizer.getStringBytes();
+                    this.handleObjectField(null);
+                    this.objectValueBytes = bytes;
+                }
+                else
+                {
+                    this.handleObjectField(token == JsonToken.VALUE_NULL ? null : this.tokenizer.getText());
+                }
+                this.state = State.OBJECT;
+                break;
+            case GRAPHS_START:
+                if(token == JsonToken.START_ARRAY)
+                {
+                    this.state = State.GRAPHS;
+                }
+                else
+                {
+                    this.error("Expected graphs to start with an array", RDFJSONParserSettings.SUPPORT_GRAPHS_EXTENSION);
+                    this.skipValue(token, State.OBJECT);
+                }
+                break;
+            case GRAPHS:
+                if(token == JsonToken.END_ARRAY)
+                {
+                    this.state = State.OBJECT;
+                }
+                else if(token == JsonToken.VALUE_NULL)
+                {
+                    this.objectHasGraphs = true;
+                    this.addContext(null);
+                }
+                else if(token == JsonToken.VALUE_STRING)
+                {
+                    this.objectHasGraphs = true;
+                    final String nextContext = this.tokenizer.getText();
+                    if(RDFJSONUtility.NULL.equals(nextContext))
+                    {
+                        this.addContext(null);
+                    }
+                    else if(this.contextFilter == null || this.contextFilter.contains(nextContext))
+                    {
+                        this.addContext(this.createResource(nextContext));
+                    }
+                }
+                else
+                {
+                    this.fatal("Expected graph to be a string or null: subject=" + this.subjectString
+                            + " predicate=" + this.predicateString);
+                }
+                break;
+            case SKIP:
+                if(token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY)
+                {
+                    this.skipDepth++;
+                }
+                else if(token == JsonToken.END_OBJECT || token == JsonToken.END_ARRAY)
+                {
+                    this.skipDepth--;
+                }
+                if(this.skipDepth == 0)
+                {
+                    this.state = this.stateAfterSkip;
+                }
+                break;
+            case DOCUMENT_END:
+                break;
+        }
+    }
+    
+    private void handleObjectFieldName(final String fieldName) throws RDFParseException
+    {
+        if(RDFJSONUtility.VALUE.equals(fieldName) || RDFJSONUtility.TYPE.equals(fieldName)
+                || RDFJSONUtility.LANG.equals(fieldName) || RDFJSONUtility.DATATYPE.equals(fieldName))
+        {
+            this.objectField = fieldName;
+            this.state = State.OBJECT_FIELD;
+        }
+        else if(RDFJSONUtility.GRAPHS.equals(fieldName))
+        {
+            this.state = State.GRAPHS_START;
+        }
+        else
+        {
+            this.error("Unrecognised JSON field name for object: subject=" + this.subjectString + " predicate="
+                    + this.predicateString + " fieldname=" + fieldName, RDFJSONParserSettings.FAIL_ON_UNKNOWN_PROPERTY);
+            this.skipDepth = 0;
+            this.stateAfterSkip = State.OBJECT;
+            this.state = State.SKIP;
+        }
+    }
+    
+    private void handleObjectField(final String text) throws RDFParseException
+    {
+        if(RDFJSONUtility.VALUE.equals(this.objectField))
+        {
+            if(this.objectValue != null || this.objectValueBytes != null)
+            {
+                this.error("Multiple values found for a single object" + this.location(),
+                        RDFJSONParserSettings.FAIL_ON_MULTIPLE_OBJECT_VALUES);
+            }
+            this.objectValue = text;
+            this.objectValueBytes = null;
+        }
+        else if(RDFJSONUtility.TYPE.equals(this.objectField))
+        {
+            if(this.objectType != null)
+            {
+                this.error("Multiple types found for a single object" + this.location(),
+                        RDFJSONParserSettings.FAIL_ON_MULTIPLE_OBJECT_TYPES);
+            }
+            this.objectType = text;
+        }
+        else if(RDFJSONUtility.LANG.equals(this.objectField))
+        {
+            if(this.objectLanguage != null)
+            {
+                this.error("Multiple languages found for a single object" + this.location(),
+                        RDFJSONParserSettings.FAIL_ON_MULTIPLE_OBJECT_LANGUAGES);
+            }
+            this.objectLanguage = text;
+        }
+        else
+        {
+            if(this.objectDatatype != null)
+            {
+                this.error("Multiple datatypes found for a single object" + this.location(),
+                        RDFJSONParserSettings.FAIL_ON_MULTIPLE_OBJECT_DATATYPES);
+            }
+            this.objectDatatype = text;
+        }
+    }
+    
+    /**
+     * Creates the object value from the fields that were found, and sends a statement to the
+     * RDFHandler for each of the graphs that the object value was in.
+     */
+    private void handleObject() throws RDFParseException, RDFHandlerException
+    {
+        if(this.objectType == null)
+        {
+            this.fatal("No type for object" + this.location());
+        }
+        if(this.objectValue == null && this.objectValueBytes == null)
+        {
+            this.fatal("No value for object" + this.location());
+        }
+        if(this.contextFilter != null && !this.filterContexts())
+        {
+            return;
+        }
+        if(this.objectValueBytes != null && !RDFJSONUtility.LITERAL.equals(this.objectType))
+        {
+            this.objectValue = this.decodeLargeValue();
+        }
+        
+        Value object = null;
+        if(RDFJSONUtility.LITERAL.equals(this.objectType))
+        {
+            if(this.objectValueBytes != null)
+            {
+                object = this.createLargeLiteral();
+            }
+            else if(this.objectLanguage != null)
+            {
+                object = this.createLiteral(this.objectValue, this.objectLanguage, null);
+            }
+            else if(this.objectDatatype != null)
+            {
+                object = this.createLiteral(this.objectValue, null, this.createURI(this.objectDatatype));
+            }
+            else
+            {
+                object = this.createLiteral(this.objectValue, null, null);
+            }
+        }
+        else if(RDFJSONUtility.BNODE.equals(this.objectType))
+        {
+            if(this.objectLanguage != null)
+            {
+                this.fatal("Language was attached to a blank node object" + this.location());
+            }
+            if(this.objectDatatype != null)
+            {
+                this.fatal("Datatype was attached to a blank node object" + this.location());
+            }
+            object = this.createBNode(this.stripBNodePrefix(this.objectValue));
+        }
+        else if(RDFJSONUtility.URI.equals(this.objectType))
+        {
+            if(this.objectLanguage != null)
+            {
+                this.fatal("Language was attached to a uri object" + this.location());
+            }
+            if(this.objectDatatype != null)
+            {
+                this.fatal("Datatype was attached to a uri object" + this.location());
+            }
+            object = this.createURI(this.objectValue);
+        }
+        else
+        {
+            this.fatal("Unrecognised type for object" + this.location() + " type=" + this.objectType);
+        }
+        
+        if(this.objectContexts.isEmpty())
+        {
+            this.sendStatement(this.createStatement(this.subject, this.predicate, object));
+        }
+        else
+        {
+            for(final Resource nextContext : this.objectContexts)
+            {
+                this.sendStatement(this.createStatement(this.subject, this.predicate, object, nextContext));
+            }
+        }
+    }
+    
+    /**
+     * @return True if the current token is a value for an object that is long enough to be kept
+     *         as bytes until it is used.
+     */
+    private boolean isLargeValue()
+    {
+        return this.largeLiteralThreshold > 0 && this.utf8Tokenizer != null
+                && RDFJSONUtility.VALUE.equals(this.objectField)
+                && this.utf8Tokenizer.getStringLength() >= this.largeLiteralThreshold;
+    }
+    
+    private String decodeLargeValue() throws RDFParseException
+    {
+        try
+        {
+            return Utf8JsonStringReader.decode(this.objectValueBytes);
+        }
+        catch(final CharConversionException e)
+        {
+            throw new RDFParseException(e);
+        }
+    }
+    
+    /**
+     * Creates a literal for a long value that only decodes the value when it is used, unless the
+     * value needs to be verified or normalised for its datatype. Language tags are verified and
+     * normalised in the same way as for other literals.
+     */
+    private Literal createLargeLiteral() throws RDFParseException
+    {
+        if(this.objectLanguage != null)
+        {
+            return new LazyLiteral(this.objectValueBytes, this.createLiteral("", this.objectLanguage, null)
+                    .getLanguage(), null);
+        }
+        else if(this.objectDatatype == null)
+        {
+            return new LazyLiteral(this.objectValueBytes, null, null);
+        }
+        
+        final URI datatype = this.createURI(this.objectDatatype);
+        if(this.isCheckedDatatype(datatype))
+        {
+            return this.createLiteral(this.decodeLargeValue(), null, datatype);
+        }
+        return new LazyLiteral(this.objectValueBytes, null, datatype);
+    }
+    
+    /**
+     * @return True if the value of a literal with the given datatype needs to be decoded to check or
+     *         normalise it when the literal is created.
+     */
+    private boolean isCheckedDatatype(final URI datatype)
+    {
+        if(this.getParserConfig().get(BasicParserSettings.FAIL_ON_UNKNOWN_DATATYPES))
+        {
+            return true;
+        }
+        if(!this.getParserConfig().get(BasicParserSettings.VERIFY_DATATYPE_VALUES)
+                && !this.getParserConfig().get(BasicParserSettings.NORMALIZE_DATATYPE_VALUES))
+        {
+            return false;
+        }
+        for(final DatatypeHandler nextHandler : this.getParserConfig().get(BasicParserSettings.DATATYPE_HANDLERS))
+        {
+            if(nextHandler.isRecognizedDatatype(datatype))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Sends the given statement to the RDFHandler, or adds it to the current batch if the RDFHandler
+     * accepts batches, measuring the time spent in the RDFHandler if metrics are being collected.
+     */
+    private void sendStatement(final Statement statement) throws RDFHandlerException
+    {
+        if(this.batchHandler != null)
+        {
+            this.batch[this.batchLength++] = statement;
+            if(this.batchLength == this.batch.length)
+            {
+                this.flushBatch();
+            }
+        }
+        else if(this.metrics == null)
+        {
+            this.rdfHandler.handleStatement(statement);
+            return;
+        }
+        else
+        {
+            final long start = System.nanoTime();
+            try
+            {
+                this.rdfHandler.handleStatement(statement);
+            }
+            finally
+            {
+                this.metrics.handlerNanos += System.nanoTime() - start;
+            }
+        }
+        
+        if(this.metrics != null)
+        {
+            this.metrics.statements++;
+            this.metrics.currentSubjectStatements++;
+        }
+    }
+    
+    /**
+     * Sends the current batch to the batchHandler, if it contains any statements, measuring the
+     * time spent in the RDFHandler if metrics are being collected.
+     */
+    private void flushBatch() throws RDFHandlerException
+    {
+        if(this.batchLength == 0)
+        {
+            return;
+        }
+        
+        final int length = this.batchLength;
+        this.batchLength = 0;
+        if(this.metrics == null)
+        {
+            this.batchHandler.handleStatements(this.batch, 0, length);
+            return;
+        }
+        
+        final long start = System.nanoTime();
+        try
+        {
+            this.batchHandler.handleStatements(this.batch, 0, length);
+        }
+        finally
+        {
+            this.metrics.handlerNanos += System.nanoTime() - start;
+        }
+    }
+    
+    /**
+     * Removes the default graph from the contexts for the current object if it does not match the
+     * context filter, after the other contexts have been filtered as they were read.
+     *
+     * @return True if the object is in at least one context that matches the filter.
+     */
+    private boolean filterContexts()
+    {
+        if(!this.objectHasGraphs)
+        {
+            return this.contextFilter.contains(null);
+        }
+        if(!this.contextFilter.contains(null))
+        {
+            this.objectContexts.remove(null);
+        }
+        return !this.objectContexts.isEmpty();
+    }
+    
+    /**
+     * Converts the values in a filter to the text that they appear as in RDF/JSON documents.
+     */
+    /**
+     * @return The text of the given subjects or predicates, which can be compared with the bytes of
+     *         the field names in a document, or null if the values are null.
+     */
+    private static Utf8StringSet filterKeys(final Set<? extends Resource> values)
+    {
+        final Set<String> text = RDFJSONPreferredParser.filterText(values);
+        return text == null ? null : new Utf8StringSet(text);
+    }
+    
+    /**
+     * @return True if the current field name is in the given filter, which compares the bytes of the
+     *         field name without decoding it if the document is read from an InputStream.
+     */
+    private boolean isInFilter(final Utf8StringSet filter) throws IOException
+    {
+        if(this.utf8Tokenizer != null)
+        {
+            return this.utf8Tokenizer.isStringIn(filter);
+        }
+        return filter.contains(this.tokenizer.getText());
+    }
+    
+    private static Set<String> filterText(final Set<? extends Resource> values)
+    {
+        if(values == null)
+        {
+            return null;
+        }
+        final Set<String> results = new HashSet<String>();
+        for(final Resource nextValue : values)
+        {
+            if(nextValue == null)
+            {
+                results.add(null);
+            }
+            else if(nextValue instanceof BNode)
+            {
+                results.add("_:" + ((BNode)nextValue).getID());
+            }
+            else
+            {
+                results.add(nextValue.stringValue());
+            }
+        }
+        return results;
+    }
+    
+    private void addContext(final Resource context)
+    {
+        if(!this.objectContexts.contains(context))
+        {
+            this.objectContexts.add(context);
+        }
+    }
+    
+    @Override
+    protected BNode createBNode(final String nodeID) throws RDFParseException
+    {
+        if(this.metrics == null)
+        {
+            return this.createSharedBNode(nodeID);
+        }
+        
+        final long start = System.nanoTime();
+        try
+        {
+            return this.createSharedBNode(nodeID);
+        }
+        finally
+        {
+            this.metrics.valueCreationNanos += System.nanoTime() - start;
+        }
+    }
+    
+    @Override
+    protected URI createURI(final String uri) throws RDFParseException
+    {
+        if(this.metrics == null)
+        {
+            return this.createCachedURI(uri);
+        }
+        
+        final long start = System.nanoTime();
+        try
+        {
+            return this.createCachedURI(uri);
+        }
+        finally
+        {
+            this.metrics.valueCreationNanos += System.nanoTime() - start;
+        }
+    }
+    
+    @Override
+    protected Literal createLiteral(final String label, final String lang, final URI datatype)
+        throws RDFParseException
+    {
+        if(this.metrics == null)
+        {
+            return super.createLiteral(label, lang, datatype);
+        }
+        
+        final long start = System.nanoTime();
+        try
+        {
+            return super.createLiteral(label, lang, datatype);
+        }
+        finally
+        {
+            this.metrics.valueCreationNanos += System.nanoTime() - start;
+        }
+    }
+    
+    /**
+     * Creates a blank node, sharing it with the parsers for other ranges of the document if there
+     * are any, and otherwise using the {@link RDFJSONPreferredParserSettings#BLANK_NODE_IDS}.
+     */
+    private BNode createSharedBNode(final String nodeID) throws RDFParseException
+    {
+        if(this.sharedBNodes == null && (this.blankNodeIds == null || this.preserveBNodeIDs()))
+        {
+            return super.createBNode(nodeID);
+        }
+        else if(this.sharedBNodes == null)
+        {
+            try
+            {
+                return this.blankNodeIds.get(nodeID);
+            }
+            catch(final IOException e)
+            {
+                throw new RDFParseException("Could not store blank node identifier", e);
+            }
+        }
+        
+        final BNode existing = this.sharedBNodes.get(nodeID);
+        if(existing != null)
+        {
+            return existing;
+        }
+        final BNode created =
+                this.preserveBNodeIDs() ? this.valueFactory.createBNode(nodeID) : this.valueFactory.createBNode();
+        final BNode previous = this.sharedBNodes.putIfAbsent(nodeID, created);
+        if(previous != null)
+        {
+            return previous;
+        }
+        if(this.checkpointBlankNodes != null)
+        {
+            this.checkpointBlankNodes.put(nodeID, created.getID());
+        }
+        return created;
+    }
+    
+    /**
+     * Creates a URI, reusing it from the cache if URIs are being cached.
+     */
+    private URI createCachedURI(final String uri) throws RDFParseException
+    {
+        if(this.uriCache == null)
+        {
+            return super.createURI(uri);
+        }
+        
+        URI result = this.uriCache.get(uri);
+        if(result == null)
+        {
+            result = super.createURI(uri);
+            this.uriCache.put(uri, result);
+        }
+        return result;
+    }
+    
+    /**
+     * Creates a blank node for strings starting with "_:", and a URI otherwise.
+     */
+    private Resource createResource(final String resource) throws RDFParseException
+    {
+        if(resource.startsWith("_:"))
+        {
+            return this.createBNode(resource.substring(2));
+        }
+        return this.createURI(resource);
+    }
+    
+    private String stripBNodePrefix(final String bnode)
+    {
+        return bnode.startsWith("_:") ? bnode.substring(2) : bnode;
+    }
+    
+    /**
+     * Skips the value starting with the given token, then returns to the given state.
+     */
+    private void skipValue(final JsonToken token, final State nextState)
+    {
+        if(token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY)
+        {
+            this.skipDepth = 1;
+            this.stateAfterSkip = nextState;
+            this.state = State.SKIP;
+        }
+        else
+        {
+            this.state = nextState;
+        }
+    }
+    
+    private void error(final String message, final RioSetting<Boolean> setting) throws RDFParseException
+    {
+        this.reportError(message, this.lineNr(this.tokenizer.getLineNr()), this.tokenizer.getColumnNr(), setting);
+    }
+    
+    private void fatal(final String message) throws RDFParseException
+    {
+        this.reportFatalError(message, this.lineNr(this.tokenizer.getLineNr()), this.tokenizer.getColumnNr());
+    }
+    
+    /**
+     * @return The subject and predicate for the current object, for error messages, which is only
+     *         created when an error is reported.
+     */
+    private String location()
+    {
+        return ": subject=" + this.subjectString + " predicate=" + this.predicateString;
+    }
+    
+    /**
+     * Converts a line number inside of the current range of subjects to a line number in the
+     * document.
+     */
+    private int lineNr(final int line)
+    {
+        return line < 0 ? line : line + this.lineOffset;
+    }
+    
+    /**
+     * Sends the batches of statements from a {@link ParallelChunkParser} or a
+     * {@link PipelinedParser} to the RDFHandler, as batches if it accepts them and one at a time
+     * otherwise, measuring the time spent in the RDFHandler if metrics are being collected.
+     */
+    private final class DeliveryHandler extends RDFHandlerWrapper implements BatchRDFHandler
+    {
+        /**
+         * The batch for single statements, which is reused as batches may be reused after they
+         * are handled.
+         */
+        private final Statement[] single = new Statement[1];
+        
+        DeliveryHandler()
+        {
+            super(RDFJSONPreferredParser.this.rdfHandler);
+        }
+        
+        @Override
+        public void handleStatement(final Statement st) throws RDFHandlerException
+        {
+            this.single[0] = st;
+            try
+            {
+                this.handleStatements(this.single, 0, 1);
+            }
+            finally
+            {
+                this.single[0] = null;
+            }
+        }
+        
+        @Override
+        public void handleStatements(final Statement[] statements, final int offset, final int length)
+            throws RDFHandlerException
+        {
+            final RDFHandler handler = RDFJSONPreferredParser.this.rdfHandler;
+            final RDFJSONMetrics nextMetrics = RDFJSONPreferredParser.this.metrics;
+            final long start = nextMetrics == null ? 0L : System.nanoTime();
+            try
+            {
+                if(handler instanceof BatchRDFHandler)
+                {
+                    ((BatchRDFHandler)handler).handleStatements(statements, offset, length);
+                }
+                else
+                {
+                    for(int i = offset; i < offset + length; i++)
+                    {
+                        handler.handleStatement(statements[i]);
+                    }
+                }
+            }
+            finally
+            {
+                if(nextMetrics != null)
+                {
+                    nextMetrics.handlerNanos += System.nanoTime() - start;
+                }
+            }
+            if(nextMetrics != null)
+            {
+                nextMetrics.statements += length;
+            }
+        }
+    }
+    
+    /**
+     * A map from strings to URIs that removes the least recently used URI when it grows past its
+     * maximum size.
+     */
+    private static final class URICache extends LinkedHashMap<String, URI>
+    {
+        private static final long serialVersionUID = 3213725364407339423L;
+        
+        private final int maxSize;
+        
+        URICache(final int maxSize)
+        {
+            super(Math.min(maxSize, 1024), 0.75f, true);
+            this.maxSize = maxSize;
+        }
+        
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, URI> eldest)
+        {
+            return this.size() > this.maxSize;
+        }
+    }
+}
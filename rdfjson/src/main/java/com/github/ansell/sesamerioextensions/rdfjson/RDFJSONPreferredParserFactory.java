@@ -1,26 +1,93 @@
 package com.github.ansell.sesamerioextensions.rdfjson;
 
 import org.kohsuke.MetaInfServices;
+import org.openrdf.model.impl.ValueFactoryImpl;
 import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.RDFParser;
 import org.openrdf.rio.RDFParserFactory;
-import org.openrdf.rio.rdfjson.RDFJSONParser;
 
 import com.github.ansell.sesamerioextensions.api.RDFFormatExtensions;
 
 /**
- * Parser Factory for the RDFJSONParser.
+ * Parser Factory for the RDFJSONPreferredParser.
+ * <p>
+ * In addition to creating a new parser for each document using {@link #getParser()}, parsers can be
+ * borrowed from a bounded pool using {@link #borrowParser()} and given back using
+ * {@link #releaseParser(RDFJSONPreferredParser)}, so that services that parse many small documents
+ * reuse the buffers of each parser instead of allocating them for each document.
  * 
  * @author fkleedorfer
  */
 @MetaInfServices(RDFParserFactory.class)
 public class RDFJSONPreferredParserFactory implements RDFParserFactory
 {
+    /**
+     * The maximum number of idle parsers kept by the factories created by the service loader.
+     */
+    public static final int DEFAULT_POOL_SIZE = 32;
+    
+    private final InstancePool<RDFJSONPreferredParser> pool;
+    
+    public RDFJSONPreferredParserFactory()
+    {
+        this(RDFJSONPreferredParserFactory.DEFAULT_POOL_SIZE);
+    }
+    
+    /**
+     * @param poolSize
+     *            The maximum number of idle parsers that are kept for {@link #borrowParser()}.
+     */
+    public RDFJSONPreferredParserFactory(final int poolSize)
+    {
+        this.pool = new InstancePool<RDFJSONPreferredParser>(poolSize)
+            {
+                @Override
+                RDFJSONPreferredParser create()
+                {
+                    return new RDFJSONPreferredParser(RDFJSONPreferredParserFactory.this.getRDFFormat());
+                }
+                
+                @Override
+                void reset(final RDFJSONPreferredParser instance)
+                {
+                    instance.setRDFHandler(null);
+                    instance.setParseErrorListener(null);
+                    instance.setParseLocationListener(null);
+                    instance.setValueFactory(ValueFactoryImpl.getInstance());
+                    instance.getParserConfig().useDefaults();
+                }
+            };
+    }
+    
+    /**
+     * Borrows a parser from the pool, or creates a new parser if there are no idle parsers. The
+     * parser has the default settings, and must only be used by one thread at a time until it is
+     * given back using {@link #releaseParser(RDFJSONPreferredParser)}.
+     * 
+     * @return A parser with the default settings and no RDFHandler.
+     */
+    public RDFJSONPreferredParser borrowParser()
+    {
+        return this.pool.borrow();
+    }
+    
+    /**
+     * Gives back a parser that was borrowed using {@link #borrowParser()}, after it has finished
+     * parsing. Its RDFHandler, listeners and settings are cleared, and it is kept for reuse unless
+     * the pool is full. The parser must not be used after it is given back.
+     * 
+     * @param parser
+     *            The parser to give back.
+     */
+    public void releaseParser(final RDFJSONPreferredParser parser)
+    {
+        this.pool.release(parser);
+    }
     
     @Override
     public RDFParser getParser()
     {
-        return new RDFJSONParser(this.getRDFFormat());
+        return new RDFJSONPreferredParser(this.getRDFFormat());
     }
     
     @Override
@@ -0,0 +1,251 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.File;
+import java.util.Set;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.URI;
+import org.openrdf.rio.RioSetting;
+import org.openrdf.rio.helpers.RioSettingImpl;
+
+/**
+ * ParserSettings for the {@link RDFJSONPreferredParser}.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public final class RDFJSONPreferredParserSettings
+{
+    /**
+     * Integer setting for parser to determine the number of threads that are used to parse an
+     * InputStream. If the value is greater than 1, the top level object is split into ranges of
+     * subjects that are parsed concurrently. Documents given to the parser as a Reader are always
+     * parsed on the calling thread.
+     * <p>
+     * Defaults to 1.
+     */
+    public static final RioSetting<Integer> PARALLEL_THREADS = new RioSettingImpl<Integer>(
+            "com.github.ansell.sesamerioextensions.rdfjson.parallelthreads",
+            "Number of threads used to parse subject ranges concurrently", 1);
+    
+    /**
+     * Integer setting for parser to determine the approximate number of bytes in each range of
+     * subjects that is parsed by a single thread when {@link #PARALLEL_THREADS} is greater than 1.
+     * Ranges are only split between subjects, so a range may be larger than this size.
+     * <p>
+     * Defaults to 4194304 (4MB).
+     */
+    public static final RioSetting<Integer> PARALLEL_CHUNK_SIZE = new RioSettingImpl<Integer>(
+            "com.github.ansell.sesamerioextensions.rdfjson.parallelchunksize",
+            "Approximate number of bytes in each range of subjects parsed by a single thread", 4194304);
+    
+    /**
+     * Boolean setting for parser to determine whether statements from concurrently parsed subject
+     * ranges are sent to the RDFHandler in document order. If false, the statements for each range
+     * are sent as soon as the range has been parsed, although statements inside of each range are
+     * still in document order.
+     * <p>
+     * Statements are always sent to the RDFHandler from the thread that called parse.
+     * <p>
+     * Defaults to true.
+     */
+    public static final RioSetting<Boolean> PARALLEL_PRESERVE_ORDER = new RioSettingImpl<Boolean>(
+            "com.github.ansell.sesamerioextensions.rdfjson.parallelpreserveorder",
+            "Send statements from concurrently parsed subject ranges to the RDFHandler in document order",
+            Boolean.TRUE);
+    
+    /**
+     * Boolean setting for parser to determine whether documents read from an InputStream are
+     * tokenized directly from their UTF-8 bytes, decoding strings only when they are used. If false,
+     * or if the document starts with bytes that show it is encoded using UTF-16 or UTF-32, the
+     * Jackson parser is used instead.
+     * <p>
+     * Defaults to true.
+     */
+    public static final RioSetting<Boolean> UTF8_TOKENIZER = new RioSettingImpl<Boolean>(
+            "com.github.ansell.sesamerioextensions.rdfjson.utf8tokenizer",
+            "Tokenize documents read from an InputStream directly from their UTF-8 bytes", Boolean.TRUE);
+    
+    /**
+     * Integer setting for parser to determine the maximum number of URIs that are cached while
+     * parsing a document, so that a predicate, datatype or other URI that is repeated in the
+     * document is the same URI object each time it appears. The least recently used URI is removed
+     * when the cache is full. If the value is 0, URIs are not cached, and a new URI is created for
+     * each occurrence.
+     * <p>
+     * Defaults to 0.
+     */
+    public static final RioSetting<Integer> URI_CACHE_SIZE = new RioSettingImpl<Integer>(
+            "com.github.ansell.sesamerioextensions.rdfjson.uricachesize",
+            "Maximum number of URIs cached and reused while parsing a document", 0);
+    
+    /**
+     * Setting for parser to give the listener that receives the {@link RDFJSONMetrics} for each
+     * document that is parsed. If the value is null, no metrics are collected, and parsing is not
+     * slowed down.
+     * <p>
+     * The time spent tokenizing and creating values is only measured when documents are parsed
+     * sequentially. If {@link #PIPELINE_BATCH_SIZE} is greater than 0 or {@link #PARALLEL_THREADS}
+     * is greater than 1, that work is done on other threads and is reported as 0, and only the
+     * statements, bytes, elapsed time and time spent in the RDFHandler are measured.
+     * <p>
+     * Defaults to null.
+     */
+    public static final RioSetting<RDFJSONMetricsListener> METRICS_LISTENER =
+            new RioSettingImpl<RDFJSONMetricsListener>("com.github.ansell.sesamerioextensions.rdfjson.parsermetrics",
+                    "Listener that receives the metrics for each document that is parsed", null);
+    
+    /**
+     * Integer setting for parser to determine the number of statements in each batch that is sent
+     * from the background thread to the RDFHandler when a document is pipelined. If the value is
+     * greater than 0, documents are tokenized and their values are created on a background thread,
+     * while the RDFHandler is called on the thread that called parse, so that an RDFHandler that
+     * does expensive work, such as adding statements to a repository, does not stall parsing. If
+     * the value is 0, documents are parsed on the calling thread.
+     * <p>
+     * Pipelining is not used when {@link #PARALLEL_THREADS} is greater than 1, as statements from
+     * concurrently parsed ranges are already sent to the RDFHandler from the calling thread.
+     * <p>
+     * Defaults to 0.
+     */
+    public static final RioSetting<Integer> PIPELINE_BATCH_SIZE = new RioSettingImpl<Integer>(
+            "com.github.ansell.sesamerioextensions.rdfjson.pipelinebatchsize",
+            "Number of statements in each batch sent from the background parsing thread to the RDFHandler", 0);
+    
+    /**
+     * Integer setting for parser to determine the maximum number of batches that are waiting for
+     * the RDFHandler when {@link #PIPELINE_BATCH_SIZE} is greater than 0. The background thread
+     * waits when this many batches are waiting, which bounds the memory used when the RDFHandler is
+     * slower than the parser. The value is rounded up to a power of two.
+     * <p>
+     * Defaults to 16.
+     */
+    public static final RioSetting<Integer> PIPELINE_BUFFER_SIZE = new RioSettingImpl<Integer>(
+            "com.github.ansell.sesamerioextensions.rdfjson.pipelinebuffersize",
+            "Maximum number of batches of statements waiting for the RDFHandler", 16);
+    
+    /**
+     * Setting for parser to give the subjects whose statements are parsed. If the value is not
+     * null, the objects for all other subjects are skipped by matching their brackets, without
+     * decoding their strings or creating their values, and are only checked for balanced
+     * brackets. Subjects are matched against the text in the document, so URIs must match exactly,
+     * and blank nodes match using the identifier in the document.
+     * <p>
+     * Defaults to null, which parses all subjects.
+     */
+    public static final RioSetting<Set<Resource>> SUBJECT_FILTER = new RioSettingImpl<Set<Resource>>(
+            "com.github.ansell.sesamerioextensions.rdfjson.subjectfilter",
+            "Subjects whose statements are parsed, skipping all other subjects", null);
+    
+    /**
+     * Setting for parser to give the predicates whose statements are parsed. If the value is not
+     * null, the arrays for all other predicates are skipped in the same way as subjects that do not
+     * match {@link #SUBJECT_FILTER}.
+     * <p>
+     * Defaults to null, which parses all predicates.
+     */
+    public static final RioSetting<Set<URI>> PREDICATE_FILTER = new RioSettingImpl<Set<URI>>(
+            "com.github.ansell.sesamerioextensions.rdfjson.predicatefilter",
+            "Predicates whose statements are parsed, skipping all other predicates", null);
+    
+    /**
+     * Setting for parser to give the contexts whose statements are parsed, where null matches the
+     * default graph. If the value is not null, statements in other contexts are dropped, and the
+     * value for an object is only created if it is in at least one of the contexts. As the graphs
+     * for an object are inside of the object, objects are still tokenized, so this filter saves
+     * less time than {@link #SUBJECT_FILTER} and {@link #PREDICATE_FILTER}.
+     * <p>
+     * Defaults to null, which parses all contexts.
+     */
+    public static final RioSetting<Set<Resource>> CONTEXT_FILTER = new RioSettingImpl<Set<Resource>>(
+            "com.github.ansell.sesamerioextensions.rdfjson.contextfilter",
+            "Contexts whose statements are parsed, where null matches the default graph", null);
+    
+    /**
+     * Setting for parser to give the listener that receives a {@link RDFJSONCheckpoint} after every
+     * {@link #CHECKPOINT_INTERVAL} subjects, from which the document can be parsed again using
+     * {@link RDFJSONPreferredParser#parse(java.io.InputStream, RDFJSONCheckpoint, String)} if
+     * parsing stops part way through. Checkpoints are only reported for documents read from an
+     * InputStream or a File that are parsed on the calling thread using the UTF-8 tokenizer, so they
+     * are not reported if {@link #PARALLEL_THREADS} is greater than 1, {@link #PIPELINE_BATCH_SIZE}
+     * is greater than 0, or {@link #UTF8_TOKENIZER} is false.
+     * <p>
+     * Defaults to null, which does not report checkpoints.
+     */
+    public static final RioSetting<RDFJSONCheckpointListener> CHECKPOINT_LISTENER =
+            new RioSettingImpl<RDFJSONCheckpointListener>("com.github.ansell.sesamerioextensions.rdfjson.checkpoint",
+                    "Listener that receives checkpoints from which a document can be parsed again", null);
+    
+    /**
+     * Integer setting for parser to determine the number of subjects between each checkpoint sent
+     * to the {@link #CHECKPOINT_LISTENER}. Each checkpoint only records the blank nodes created
+     * since the previous checkpoint, so the cost of a checkpoint does not depend on the number of
+     * blank nodes earlier in the document, but the full set of blank nodes is collected each time
+     * {@link RDFJSONCheckpoint#getBlankNodes()} is called or a checkpoint is serialized.
+     * <p>
+     * Defaults to 1000.
+     */
+    public static final RioSetting<Integer> CHECKPOINT_INTERVAL = new RioSettingImpl<Integer>(
+            "com.github.ansell.sesamerioextensions.rdfjson.checkpointinterval",
+            "Number of subjects between each checkpoint", 1000);
+    
+    /**
+     * Setting for parser to determine how blank node labels in a document are given identifiers.
+     * {@link RDFJSONBlankNodeIds#MAP} keeps every blank node in a map for the whole document, while
+     * {@link RDFJSONBlankNodeIds#HASH} and {@link RDFJSONBlankNodeIds#OFF_HEAP} avoid holding the
+     * blank nodes on the heap for documents with very many blank nodes. The setting is not used
+     * if {@link org.openrdf.rio.helpers.BasicParserSettings#PRESERVE_BNODE_IDS} is true, or for
+     * documents parsed with {@link #PARALLEL_THREADS} greater than 1 or a {@link #CHECKPOINT_LISTENER},
+     * which share a map of blank nodes between the ranges of the document or with the checkpoints.
+     * <p>
+     * Defaults to {@link RDFJSONBlankNodeIds#MAP}.
+     */
+    public static final RioSetting<RDFJSONBlankNodeIds> BLANK_NODE_IDS = new RioSettingImpl<RDFJSONBlankNodeIds>(
+            "com.github.ansell.sesamerioextensions.rdfjson.blanknodeids",
+            "How blank node labels are given identifiers", RDFJSONBlankNodeIds.MAP);
+    
+    /**
+     * Long setting for parser to determine the number of bytes of memory outside of the heap that
+     * the {@link RDFJSONBlankNodeIds#OFF_HEAP} table of blank node labels can use before it is
+     * moved to a memory mapped temporary file.
+     * <p>
+     * Defaults to 67108864 (64MB).
+     */
+    public static final RioSetting<Long> BLANK_NODE_MEMORY_LIMIT = new RioSettingImpl<Long>(
+            "com.github.ansell.sesamerioextensions.rdfjson.blanknodememorylimit",
+            "Number of bytes of memory used for blank node labels before spilling them to disk", 67108864L);
+    
+    /**
+     * Setting for parser to give the directory that the temporary files for
+     * {@link RDFJSONBlankNodeIds#OFF_HEAP} are created in. The files are removed after each
+     * document.
+     * <p>
+     * Defaults to null, which uses the default temporary directory for the JVM.
+     */
+    public static final RioSetting<File> BLANK_NODE_DIRECTORY = new RioSettingImpl<File>(
+            "com.github.ansell.sesamerioextensions.rdfjson.blanknodedirectory",
+            "Directory for temporary files holding blank node labels", null);
+    
+    /**
+     * Integer setting for parser to determine the number of bytes, as encoded in the document, at
+     * or above which literal values are kept as their undecoded UTF-8 bytes in a
+     * {@link StreamingLiteral}, and only decoded when they are used, instead of being decoded into
+     * a String when they are parsed. The labels of these literals are written in small chunks by
+     * {@link RDFJSONPreferredWriter}, so long literals can be copied between documents without
+     * decoding them. Literals whose values are verified or normalised for their datatype are always
+     * decoded. The setting is only used for documents read from an InputStream or a File using the
+     * UTF-8 tokenizer, and the literals are not created using the ValueFactory for the parser.
+     * <p>
+     * Defaults to 0, which decodes all literal values when they are parsed.
+     */
+    public static final RioSetting<Integer> LARGE_LITERAL_THRESHOLD = new RioSettingImpl<Integer>(
+            "com.github.ansell.sesamerioextensions.rdfjson.largeliteralthreshold",
+            "Number of bytes at or above which literal values are decoded when they are used", 0);
+    
+    /**
+     * Private default constructor.
+     */
+    private RDFJSONPreferredParserSettings()
+    {
+    }
+    
+}
@@ -0,0 +1,151 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+
+import com.github.ansell.sesamerioextensions.api.RDFFormatExtensions;
+
+/**
+ * A non-blocking parser for a single {@link RDFFormatExtensions#RDFJSONPREFERRED} or
+ * {@link RDFFormatExtensions#RDFJSON_LINES} document, which is pushed to the parser in fragments
+ * as they arrive, for example from an event loop that reads a request body without blocking.
+ * <p>
+ * Fragments can be split at any byte, including inside of strings and multi-byte characters. The
+ * state of the tokenizer and the parser is kept between fragments, and each statement is sent to
+ * the RDFHandler of the parser as soon as the fragment containing the end of its object value has
+ * been pushed, so only the bytes of the current token are kept between fragments, rather than the
+ * whole document.
+ * <p>
+ * The document is parsed using the RDFHandler, settings, ValueFactory and ParseErrorListener of the
+ * given parser, on the thread that calls {@link #feed(ByteBuffer)} and {@link #endOfInput()}. The
+ * document must be encoded using UTF-8, and
+ * {@link RDFJSONPreferredParserSettings#PARALLEL_THREADS},
+ * {@link RDFJSONPreferredParserSettings#PIPELINE_BATCH_SIZE},
+ * {@link RDFJSONPreferredParserSettings#UTF8_TOKENIZER} and
+ * {@link RDFJSONPreferredParserSettings#METRICS_LISTENER} are ignored. The parser must not be used
+ * for anything else until the document has ended, or this push parser has been closed.
+ * <p>
+ * Push parsers are not thread-safe, so the fragments for a document must be pushed by one thread
+ * at a time, in order.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class RDFJSONPreferredPushParser implements Closeable
+{
+    private final RDFJSONPreferredParser parser;
+    private final Utf8JsonTokenizer tokenizer = new Utf8JsonTokenizer();
+    private boolean started;
+    private boolean ended;
+    
+    /**
+     * Creates a push parser for a document using the given parser, which must have an RDFHandler.
+     * The start of the document is sent to the RDFHandler when the first fragment is pushed.
+     *
+     * @param parser
+     *            The parser that is used to parse the document, which may be a
+     *            {@link RDFJSONLinesParser} for an RDF/JSON Lines document.
+     */
+    public RDFJSONPreferredPushParser(final RDFJSONPreferredParser parser)
+    {
+        this.parser = parser;
+    }
+    
+    /**
+     * Parses the remaining bytes in the given buffer, after the bytes that have already been fed,
+     * sending the statements that they complete to the RDFHandler.
+     *
+     * @param bytes
+     *            The next fragment of the document, which is copied, and can be reused as soon as this
+     *            method returns.
+     * @throws IOException
+     *             If the fragment was not valid JSON.
+     * @throws RDFParseException
+     *             If the fragment was not valid RDF/JSON.
+     * @throws RDFHandlerException
+     *             If the RDFHandler threw an exception.
+     */
+    public void feed(final ByteBuffer bytes) throws IOException, RDFParseException, RDFHandlerException
+    {
+        this.checkNotEnded();
+        this.tokenizer.feed(bytes);
+        this.parse(false);
+    }
+    
+    /**
+     * Parses the rest of the document after the last fragment, and sends the end of the document to
+     * the RDFHandler.
+     *
+     * @throws IOException
+     *             If the document was not valid JSON.
+     * @throws RDFParseException
+     *             If the document was not valid RDF/JSON, including if it was not complete.
+     * @throws RDFHandlerException
+     *             If the RDFHandler threw an exception.
+     */
+    public void endOfInput() throws IOException, RDFParseException, RDFHandlerException
+    {
+        this.checkNotEnded();
+        this.tokenizer.endOfInput();
+        this.parse(true);
+    }
+    
+    /**
+     * Stops parsing a document that has not ended, for example because the connection that it was
+     * being read from was closed, without sending the end of the document to the RDFHandler. Does
+     * nothing if the document has already ended.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if(!this.ended)
+        {
+            this.ended = true;
+            if(this.started)
+            {
+                this.parser.endDocument();
+            }
+        }
+    }
+    
+    /**
+     * @return True if the document has ended, either at the end of the input, or because of an
+     *         error, or because this parser was closed.
+     */
+    public boolean isEnded()
+    {
+        return this.ended;
+    }
+    
+    private void checkNotEnded()
+    {
+        if(this.ended)
+        {
+            throw new IllegalStateException("Document has already ended");
+        }
+    }
+    
+    private void parse(final boolean endOfInput) throws IOException, RDFParseException, RDFHandlerException
+    {
+        boolean complete = false;
+        try
+        {
+            if(!this.started)
+            {
+                this.parser.checkHandler();
+                this.started = true;
+                this.parser.startDocument(this.tokenizer);
+            }
+            this.parser.handleTokens(endOfInput);
+            complete = true;
+        }
+        finally
+        {
+            // The parser has closed the tokenizer after an error or at the end of the input
+            this.ended = endOfInput || !complete;
+        }
+    }
+}
@@ -0,0 +1,681 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Model;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.TreeModel;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFWriter;
+import org.openrdf.rio.RioSetting;
+import org.openrdf.rio.helpers.BasicWriterSettings;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+import org.openrdf.rio.helpers.RDFWriterBase;
+import org.openrdf.rio.rdfjson.RDFJSONUtility;
+import org.openrdf.rio.rdfjson.RDFJSONWriter;
+
+/**
+ * RDFWriter for the RDF/JSON-preferred format.
+ * <p>
+ * By default the entire document is buffered in memory and written out in endRDF, in the same way
+ * as the Sesame {@link RDFJSONWriter}. If {@link RDFJSONPreferredWriterSettings#STREAMING} is
+ * enabled, each subject is written out as soon as the subject changes in the incoming statements,
+ * so that only the statements for the current subject are kept in memory.
+ * <p>
+ * When writing to an OutputStream, JSON is encoded directly to UTF-8 bytes in a reusable buffer
+ * instead of going through a general purpose JSON generator. The output is the same in both cases.
+ * <p>
+ * For {@link RDFJSONLinesWriter}, each subject is always streamed, as a complete RDF/JSON object
+ * on its own line.
+ * <p>
+ * If {@link RDFJSONPreferredWriterSettings#WRITE_THREADS} is greater than 1, subjects written to an
+ * OutputStream are encoded in batches on a pool of threads, and the encoded batches are written
+ * out in order, so the output is the same as when subjects are encoded on the calling thread.
+ * <p>
+ * If {@link RDFJSONPreferredWriterSettings#CANONICAL} is enabled, documents are streamed after
+ * sorting the statements by subject, using temporary files if there are too many to sort in memory,
+ * so that the same statements always produce the same document.
+ * <p>
+ * If {@link RDFJSONPreferredWriterSettings#METRICS_LISTENER} is set, the statements, bytes and time
+ * spent generating JSON are measured and sent to the listener after each document.
+ * <p>
+ * A writer can write any number of documents, one at a time, by calling {@link #reset(OutputStream)}
+ * or {@link #reset(Writer)} between documents. The UTF-8 buffer and the models used to group
+ * statements are kept, so reusing writers, for example using
+ * {@link RDFJSONPreferredWriterFactory#borrowWriter(OutputStream)}, avoids allocating them for each
+ * document.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class RDFJSONPreferredWriter extends RDFWriterBase implements RDFWriter
+{
+    /**
+     * Orders statements by subject, with blank nodes before URIs, to group them for streaming.
+     */
+    private static final Comparator<Statement> SUBJECT_ORDER = new Comparator<Statement>()
+        {
+            @Override
+            public int compare(final Statement o1, final Statement o2)
+            {
+                final boolean bnode1 = o1.getSubject() instanceof BNode;
+                final boolean bnode2 = o2.getSubject() instanceof BNode;
+                if(bnode1 != bnode2)
+                {
+                    return bnode1 ? -1 : 1;
+                }
+                return o1.getSubject().stringValue().compareTo(o2.getSubject().stringValue());
+            }
+        };
+    
+    private Writer writer;
+    private OutputStream outputStream;
+    private final RDFFormat actualFormat;
+    
+    /**
+     * True if each subject is written as a separate RDF/JSON object on its own line.
+     */
+    private final boolean lines;
+    
+    private boolean streaming;
+    private Model graph;
+    private JsonOutput output;
+    
+    /**
+     * The output used for the last document written to an OutputStream, which is reset for the next
+     * document.
+     */
+    private Utf8JsonOutput utf8Output;
+    
+    /**
+     * The writer that encodes subjects on other threads, or null if subjects are encoded on the
+     * calling thread.
+     */
+    private ParallelSubjectWriter parallelWriter;
+    private ExternalStatementSorter sorter;
+    private Resource currentSubject;
+    private Model currentSubjectStatements;
+    
+    /**
+     * The measurements for the current document, or null if metrics are not being collected.
+     */
+    private RDFJSONMetrics metrics;
+    private RDFJSONMetricsListener metricsListener;
+    private long metricsStart;
+    private CountingOutputStream countingStream;
+    
+    public RDFJSONPreferredWriter(final OutputStream out, final RDFFormat actualFormat)
+    {
+        this(out, actualFormat, false);
+    }
+    
+    public RDFJSONPreferredWriter(final Writer writer, final RDFFormat actualFormat)
+    {
+        this(writer, actualFormat, false);
+    }
+    
+    RDFJSONPreferredWriter(final OutputStream out, final RDFFormat actualFormat, final boolean lines)
+    {
+        this.outputStream = out;
+        this.writer = null;
+        this.actualFormat = actualFormat;
+        this.lines = lines;
+    }
+    
+    RDFJSONPreferredWriter(final Writer writer, final RDFFormat actualFormat, final boolean lines)
+    {
+        this.writer = writer;
+        this.outputStream = null;
+        this.actualFormat = actualFormat;
+        this.lines = lines;
+    }
+    
+    @Override
+    public void endRDF() throws RDFHandlerException
+    {
+        try
+        {
+            if(this.streaming)
+            {
+                if(this.sorter != null)
+                {
+                    this.sorter.drainTo(new RDFHandlerBase()
+                        {
+                            @Override
+                            public void handleStatement(final Statement st) throws RDFHandlerException
+                            {
+                                RDFJSONPreferredWriter.this.streamStatement(st);
+                            }
+                        });
+                }
+                this.writeCurrentSubject();
+                if(this.parallelWriter != null)
+                {
+                    this.parallelWriter.finish();
+                }
+                if(!this.lines)
+                {
+                    this.output.writeEndObject();
+                }
+            }
+            else
+            {
+                this.output = this.createJsonOutput();
+                this.output.writeStartObject();
+                this.startParallelWriter();
+                for(final Resource nextSubject : this.graph.subjects())
+                {
+                    if(this.parallelWriter != null)
+                    {
+                        // Workers must not share the graph, as a TreeModel may add indexes while reading
+                        this.writeSubject(nextSubject, new TreeModel(this.graph.filter(nextSubject, null, null)));
+                    }
+                    else
+                    {
+                        this.writeSubject(nextSubject, this.graph.filter(nextSubject, null, null));
+                    }
+                }
+                if(this.parallelWriter != null)
+                {
+                    this.parallelWriter.finish();
+                }
+                this.output.writeEndObject();
+            }
+            this.output.close();
+            if(this.writer != null)
+            {
+                this.writer.flush();
+            }
+            else
+            {
+                this.outputStream.flush();
+            }
+        }
+        catch(final IOException e)
+        {
+            throw new RDFHandlerException(e);
+        }
+        finally
+        {
+            if(this.metrics != null)
+            {
+                this.endMetrics();
+            }
+            this.clearDocument();
+        }
+    }
+    
+    /**
+     * Sets the stream that the next document is written to, so that this writer can be reused
+     * after endRDF. Must not be called while a document is being written, except to abandon it.
+     *
+     * @param out
+     *            The OutputStream to write the next document to.
+     */
+    public void reset(final OutputStream out)
+    {
+        if(out == null)
+        {
+            throw new NullPointerException("OutputStream must not be null");
+        }
+        this.clearDocument();
+        this.outputStream = out;
+        this.writer = null;
+    }
+    
+    /**
+     * Sets the Writer that the next document is written to, so that this writer can be reused
+     * after endRDF. Must not be called while a document is being written, except to abandon it.
+     *
+     * @param nextWriter
+     *            The Writer to write the next document to.
+     */
+    public void reset(final Writer nextWriter)
+    {
+        if(nextWriter == null)
+        {
+            throw new NullPointerException("Writer must not be null");
+        }
+        this.clearDocument();
+        this.writer = nextWriter;
+        this.outputStream = null;
+    }
+    
+    /**
+     * Discards the destination and any state for the current document, so that a writer that is
+     * kept in a pool does not keep them reachable.
+     */
+    void detach()
+    {
+        this.clearDocument();
+        this.outputStream = null;
+        this.writer = null;
+        if(this.utf8Output != null)
+        {
+            this.utf8Output.reset(null, false);
+        }
+    }
+    
+    /**
+     * Discards the state for the current document, keeping the models and buffers for reuse.
+     */
+    private void clearDocument()
+    {
+        if(this.parallelWriter != null)
+        {
+            this.parallelWriter.close();
+            this.parallelWriter = null;
+        }
+        if(this.sorter != null)
+        {
+            this.sorter.close();
+            this.sorter = null;
+        }
+        if(this.graph != null)
+        {
+            this.graph.clear();
+        }
+        if(this.currentSubjectStatements != null)
+        {
+            this.currentSubjectStatements.clear();
+        }
+        this.output = null;
+        this.currentSubject = null;
+        this.countingStream = null;
+    }
+    
+    @Override
+    public RDFFormat getRDFFormat()
+    {
+        return this.actualFormat;
+    }
+    
+    @Override
+    public Collection<RioSetting<?>> getSupportedSettings()
+    {
+        final Set<RioSetting<?>> results = new HashSet<RioSetting<?>>(super.getSupportedSettings());
+        
+        results.add(BasicWriterSettings.PRETTY_PRINT);
+        results.add(RDFJSONPreferredWriterSettings.STREAMING);
+        results.add(RDFJSONPreferredWriterSettings.SORT_SUBJECTS);
+        results.add(RDFJSONPreferredWriterSettings.SORT_BUFFER_SIZE);
+        results.add(RDFJSONPreferredWriterSettings.SORT_MEMORY_LIMIT);
+        results.add(RDFJSONPreferredWriterSettings.SORT_DIRECTORY);
+        results.add(RDFJSONPreferredWriterSettings.CANONICAL);
+        results.add(RDFJSONPreferredWriterSettings.WRITE_THREADS);
+        results.add(RDFJSONPreferredWriterSettings.METRICS_LISTENER);
+        
+        return results;
+    }
+    
+    @Override
+    public void handleComment(final String comment) throws RDFHandlerException
+    {
+        // Comments are ignored.
+    }
+    
+    @Override
+    public void handleNamespace(final String prefix, final String uri) throws RDFHandlerException
+    {
+        // Namespace prefixes are not used in RDF/JSON.
+    }
+    
+    @Override
+    public void handleStatement(final Statement statement) throws RDFHandlerException
+    {
+        if(!this.streaming)
+        {
+            this.graph.add(statement);
+        }
+        else if(this.sorter != null)
+        {
+            try
+            {
+                this.sorter.add(statement);
+            }
+            catch(final IOException e)
+            {
+                throw new RDFHandlerException(e);
+            }
+        }
+        else
+        {
+            this.streamStatement(statement);
+        }
+        
+        if(this.metrics != null)
+        {
+            this.metrics.statements++;
+            if(!this.streaming)
+            {
+                this.metrics.buffered(this.graph.size());
+            }
+        }
+    }
+    
+    @Override
+    public void startRDF() throws RDFHandlerException
+    {
+        this.metricsListener = this.getWriterConfig().get(RDFJSONPreferredWriterSettings.METRICS_LISTENER);
+        if(this.metricsListener != null)
+        {
+            this.metrics = new RDFJSONMetrics();
+            this.metricsStart = System.nanoTime();
+        }
+        
+        final boolean canonical = this.getWriterConfig().get(RDFJSONPreferredWriterSettings.CANONICAL);
+        this.streaming =
+                this.lines || canonical || this.getWriterConfig().get(RDFJSONPreferredWriterSettings.STREAMING);
+        
+        if(!this.streaming)
+        {
+            if(this.graph == null)
+            {
+                this.graph = new TreeModel();
+            }
+            return;
+        }
+        
+        if(this.currentSubjectStatements == null)
+        {
+            this.currentSubjectStatements = new TreeModel();
+        }
+        if(canonical || this.getWriterConfig().get(RDFJSONPreferredWriterSettings.SORT_SUBJECTS))
+        {
+            // Statements for each subject are ordered by the TreeModel, so only subjects are sorted
+            this.sorter =
+                    new ExternalStatementSorter(RDFJSONPreferredWriter.SUBJECT_ORDER, this.getWriterConfig().get(
+                            RDFJSONPreferredWriterSettings.SORT_BUFFER_SIZE), this.getWriterConfig().get(
+                            RDFJSONPreferredWriterSettings.SORT_MEMORY_LIMIT), this.getWriterConfig().get(
+                            RDFJSONPreferredWriterSettings.SORT_DIRECTORY), ValueFactoryImpl.getInstance());
+        }
+        
+        try
+        {
+            this.output = this.createJsonOutput();
+            if(!this.lines)
+            {
+                this.output.writeStartObject();
+            }
+            this.startParallelWriter();
+        }
+        catch(final IOException e)
+        {
+            throw new RDFHandlerException(e);
+        }
+    }
+    
+    /**
+     * Starts encoding subjects on other threads if {@link RDFJSONPreferredWriterSettings#WRITE_THREADS}
+     * is greater than 1 and the document is being written to an OutputStream.
+     */
+    private void startParallelWriter()
+    {
+        final int threads = this.getWriterConfig().get(RDFJSONPreferredWriterSettings.WRITE_THREADS);
+        if(threads > 1 && this.output == this.utf8Output)
+        {
+            this.parallelWriter =
+                    new ParallelSubjectWriter(this.utf8Output, !this.lines
+                            && this.getWriterConfig().get(BasicWriterSettings.PRETTY_PRINT), this.lines, threads,
+                            this.metrics);
+        }
+    }
+    
+    private JsonOutput createJsonOutput() throws IOException
+    {
+        final boolean prettyPrint = !this.lines && this.getWriterConfig().get(BasicWriterSettings.PRETTY_PRINT);
+        if(this.writer != null)
+        {
+            return new JacksonJsonOutput(RDFJSONUtility.JSON_FACTORY.createGenerator(this.writer), prettyPrint);
+        }
+        else if(this.outputStream != null)
+        {
+            OutputStream out = this.outputStream;
+            if(this.metrics != null)
+            {
+                this.countingStream = new CountingOutputStream(this.outputStream);
+                out = this.countingStream;
+            }
+            if(this.utf8Output == null)
+            {
+                this.utf8Output = new Utf8JsonOutput(out, prettyPrint);
+            }
+            else
+            {
+                this.utf8Output.reset(out, prettyPrint);
+            }
+            return this.utf8Output;
+        }
+        else
+        {
+            throw new IllegalStateException("The output stream and the writer were both null.");
+        }
+    }
+    
+    /**
+     * Sends the metrics for the current document to the listener, and stops collecting metrics.
+     */
+    private void endMetrics()
+    {
+        final RDFJSONMetrics result = this.metrics;
+        final RDFJSONMetricsListener listener = this.metricsListener;
+        this.metrics = null;
+        this.metricsListener = null;
+        result.elapsedNanos = System.nanoTime() - this.metricsStart;
+        if(this.countingStream != null)
+        {
+            result.bytes = this.countingStream.getCount();
+            this.countingStream = null;
+        }
+        listener.written(result);
+    }
+    
+    /**
+     * Adds the statement to the statements for the current subject, writing out the previous
+     * subject first if the subject has changed.
+     */
+    private void streamStatement(final Statement statement) throws RDFHandlerException
+    {
+        if(this.currentSubject != null && !this.currentSubject.equals(statement.getSubject()))
+        {
+            try
+            {
+                this.writeCurrentSubject();
+            }
+            catch(final IOException e)
+            {
+                throw new RDFHandlerException(e);
+            }
+        }
+        this.currentSubject = statement.getSubject();
+        this.currentSubjectStatements.add(statement);
+    }
+    
+    private void writeCurrentSubject() throws IOException
+    {
+        if(this.currentSubject == null)
+        {
+            return;
+        }
+        
+        this.writeSubject(this.currentSubject, this.currentSubjectStatements);
+        
+        this.currentSubject = null;
+        if(this.parallelWriter != null)
+        {
+            // The statements now belong to the worker that encodes them
+            this.currentSubjectStatements = new TreeModel();
+        }
+        else
+        {
+            this.currentSubjectStatements.clear();
+        }
+    }
+    
+    /**
+     * Writes the given subject and its statements, in the same order as the Sesame
+     * {@link RDFJSONWriter}.
+     */
+    private void writeSubject(final Resource subject, final Model subjectStatements) throws IOException
+    {
+        if(this.metrics == null && this.parallelWriter == null)
+        {
+            RDFJSONPreferredWriter.writeSubjectJson(this.output, subject, subjectStatements, this.lines);
+            return;
+        }
+        
+        final int size = subjectStatements.size();
+        if(this.parallelWriter != null)
+        {
+            // The time spent encoding is added by the parallel writer as each batch is written
+            this.parallelWriter.add(subject, subjectStatements);
+        }
+        else
+        {
+            final long start = System.nanoTime();
+            try
+            {
+                RDFJSONPreferredWriter.writeSubjectJson(this.output, subject, subjectStatements, this.lines);
+            }
+            finally
+            {
+                this.metrics.encodeNanos += System.nanoTime() - start;
+            }
+        }
+        if(this.metrics != null)
+        {
+            this.metrics.currentSubjectStatements = size;
+            this.metrics.endSubject();
+            if(this.streaming)
+            {
+                this.metrics.buffered(size);
+            }
+        }
+    }
+    
+    /**
+     * Writes the given subject and its statements to the given output, as a member of the top level
+     * object, or as a complete object followed by a line break if lines is true. Also used by the
+     * {@link ParallelSubjectWriter} on its worker threads.
+     */
+    static void writeSubjectJson(final JsonOutput output, final Resource subject, final Model subjectStatements,
+            final boolean lines) throws IOException
+    {
+        if(lines)
+        {
+            output.writeStartObject();
+        }
+        output.writeFieldName(RDFJSONWriter.resourceToString(subject));
+        output.writeStartObject();
+        for(final URI nextPredicate : subjectStatements.predicates())
+        {
+            output.writeFieldName(nextPredicate.stringValue());
+            output.writeStartArray();
+            final Model predicateStatements = subjectStatements.filter(subject, nextPredicate, null);
+            for(final Value nextObject : predicateStatements.objects())
+            {
+                RDFJSONPreferredWriter.writeObject(output, nextObject,
+                        predicateStatements.filter(subject, nextPredicate, nextObject).contexts());
+            }
+            output.writeEndArray();
+        }
+        output.writeEndObject();
+        if(lines)
+        {
+            output.writeEndObject();
+            output.writeLineBreak();
+        }
+    }
+    
+    /**
+     * Writes a single object value, and the graphs that it is in unless it is only in the default
+     * graph, in the same way as the Sesame {@link RDFJSONWriter}.
+     */
+    private static void writeObject(final JsonOutput output, final Value object, final Set<Resource> contexts)
+        throws IOException
+    {
+        output.writeStartObject();
+        if(object instanceof Literal)
+        {
+            final Literal literal = (Literal)object;
+            if(literal instanceof StreamingLiteral)
+            {
+                // Large labels are written as they are decoded, without materialising the string
+                output.writeFieldName(RDFJSONUtility.VALUE);
+                final Reader label = ((StreamingLiteral)literal).getLabelReader();
+                try
+                {
+                    output.writeString(label);
+                }
+                finally
+                {
+                    label.close();
+                }
+            }
+            else
+            {
+                RDFJSONPreferredWriter.writeField(output, RDFJSONUtility.VALUE, literal.getLabel());
+            }
+            RDFJSONPreferredWriter.writeField(output, RDFJSONUtility.TYPE, RDFJSONUtility.LITERAL);
+            if(literal.getLanguage() != null)
+            {
+                RDFJSONPreferredWriter.writeField(output, RDFJSONUtility.LANG, literal.getLanguage());
+            }
+            if(literal.getDatatype() != null)
+            {
+                RDFJSONPreferredWriter.writeField(output, RDFJSONUtility.DATATYPE, literal.getDatatype().stringValue());
+            }
+        }
+        else if(object instanceof BNode)
+        {
+            RDFJSONPreferredWriter.writeField(output, RDFJSONUtility.VALUE,
+                    RDFJSONWriter.resourceToString((BNode)object));
+            RDFJSONPreferredWriter.writeField(output, RDFJSONUtility.TYPE, RDFJSONUtility.BNODE);
+        }
+        else if(object instanceof URI)
+        {
+            RDFJSONPreferredWriter.writeField(output, RDFJSONUtility.VALUE,
+                    RDFJSONWriter.resourceToString((URI)object));
+            RDFJSONPreferredWriter.writeField(output, RDFJSONUtility.TYPE, RDFJSONUtility.URI);
+        }
+        
+        if(contexts != null && !contexts.isEmpty() && !(contexts.size() == 1 && contexts.iterator().next() == null))
+        {
+            output.writeFieldName(RDFJSONUtility.GRAPHS);
+            output.writeStartArray();
+            for(final Resource nextContext : contexts)
+            {
+                if(nextContext == null)
+                {
+                    output.writeNull();
+                }
+                else
+                {
+                    output.writeString(nextContext.stringValue());
+                }
+            }
+            output.writeEndArray();
+        }
+        output.writeEndObject();
+    }
+    
+    private static void writeField(final JsonOutput output, final String name, final String value)
+        throws IOException
+    {
+        output.writeFieldName(name);
+        output.writeString(value);
+    }
+}
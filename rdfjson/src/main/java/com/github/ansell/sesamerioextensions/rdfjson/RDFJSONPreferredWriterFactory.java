@@ -7,18 +7,106 @@ import org.kohsuke.MetaInfServices;
 import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.RDFWriter;
 import org.openrdf.rio.RDFWriterFactory;
-import org.openrdf.rio.rdfjson.RDFJSONWriter;
 
 import com.github.ansell.sesamerioextensions.api.RDFFormatExtensions;
 
 /**
- * Writer Factory for the RDFJSONWriter.
+ * Writer Factory for the RDFJSONPreferredWriter.
+ * <p>
+ * In addition to creating a new writer for each document using {@link #getWriter(OutputStream)},
+ * writers can be borrowed from a bounded pool using {@link #borrowWriter(OutputStream)} and given
+ * back using {@link #releaseWriter(RDFJSONPreferredWriter)}, so that services that write many
+ * small documents reuse the buffers of each writer instead of allocating them for each document.
  * 
  * @author fkleedorfer
  */
 @MetaInfServices(RDFWriterFactory.class)
 public class RDFJSONPreferredWriterFactory implements RDFWriterFactory
 {
+    /**
+     * The maximum number of idle writers kept by the factories created by the service loader.
+     */
+    public static final int DEFAULT_POOL_SIZE = 32;
+    
+    private final InstancePool<RDFJSONPreferredWriter> pool;
+    
+    public RDFJSONPreferredWriterFactory()
+    {
+        this(RDFJSONPreferredWriterFactory.DEFAULT_POOL_SIZE);
+    }
+    
+    /**
+     * @param poolSize
+     *            The maximum number of idle writers that are kept for
+     *            {@link #borrowWriter(OutputStream)}.
+     */
+    public RDFJSONPreferredWriterFactory(final int poolSize)
+    {
+        this.pool = new InstancePool<RDFJSONPreferredWriter>(poolSize)
+            {
+                @Override
+                RDFJSONPreferredWriter create()
+                {
+                    return new RDFJSONPreferredWriter((OutputStream)null,
+                            RDFJSONPreferredWriterFactory.this.getRDFFormat());
+                }
+                
+                @Override
+                void reset(final RDFJSONPreferredWriter instance)
+                {
+                    instance.detach();
+                    instance.getWriterConfig().useDefaults();
+                }
+            };
+    }
+    
+    /**
+     * Borrows a writer from the pool, or creates a new writer if there are no idle writers, and
+     * sets it to write to the given stream. The writer has the default settings, and must only be
+     * used by one thread at a time until it is given back using
+     * {@link #releaseWriter(RDFJSONPreferredWriter)}.
+     * 
+     * @param out
+     *            The OutputStream to write the document to.
+     * @return A writer with the default settings.
+     */
+    public RDFJSONPreferredWriter borrowWriter(final OutputStream out)
+    {
+        final RDFJSONPreferredWriter result = this.pool.borrow();
+        result.reset(out);
+        return result;
+    }
+    
+    /**
+     * Borrows a writer from the pool, or creates a new writer if there are no idle writers, and
+     * sets it to write to the given Writer. The writer has the default settings, and must only be
+     * used by one thread at a time until it is given back using
+     * {@link #releaseWriter(RDFJSONPreferredWriter)}.
+     * 
+     * @param writer
+     *            The Writer to write the document to.
+     * @return A writer with the default settings.
+     */
+    public RDFJSONPreferredWriter borrowWriter(final Writer writer)
+    {
+        final RDFJSONPreferredWriter result = this.pool.borrow();
+        result.reset(writer);
+        return result;
+    }
+    
+    /**
+     * Gives back a writer that was borrowed using {@link #borrowWriter(OutputStream)} or
+     * {@link #borrowWriter(Writer)}, after endRDF has been called. Its settings are cleared, and it
+     * is kept for reuse unless the pool is full. The writer must not be used after it is given
+     * back.
+     * 
+     * @param writer
+     *            The writer to give back.
+     */
+    public void releaseWriter(final RDFJSONPreferredWriter writer)
+    {
+        this.pool.release(writer);
+    }
     
     @Override
     public RDFFormat getRDFFormat()
@@ -29,13 +117,13 @@ public class RDFJSONPreferredWriterFactory implements RDFWriterFactory
     @Override
     public RDFWriter getWriter(final OutputStream out)
     {
-        return new RDFJSONWriter(out, this.getRDFFormat());
+        return new RDFJSONPreferredWriter(out, this.getRDFFormat());
     }
     
     @Override
     public RDFWriter getWriter(final Writer writer)
     {
-        return new RDFJSONWriter(writer, this.getRDFFormat());
+        return new RDFJSONPreferredWriter(writer, this.getRDFFormat());
     }
     
 }
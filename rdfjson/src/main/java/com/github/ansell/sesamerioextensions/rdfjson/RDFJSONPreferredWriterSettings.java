@@ -0,0 +1,165 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.File;
+
+import org.openrdf.rio.RioSetting;
+import org.openrdf.rio.helpers.RioSettingImpl;
+
+/**
+ * WriterSettings for the {@link RDFJSONPreferredWriter}.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public final class RDFJSONPreferredWriterSettings
+{
+    /**
+     * Boolean setting for writer to determine whether each subject is written out as soon as the
+     * subject changes in the incoming statements, instead of buffering the entire document in
+     * memory until endRDF is called.
+     * <p>
+     * If the input is not grouped by subject, a subject may appear more than once in the resulting
+     * document, unless {@link #SORT_SUBJECTS} is also enabled.
+     * <p>
+     * Defaults to false.
+     */
+    public static final RioSetting<Boolean> STREAMING = new RioSettingImpl<Boolean>(
+            "com.github.ansell.sesamerioextensions.rdfjson.streaming",
+            "Write each subject when the subject changes instead of buffering the whole document", Boolean.FALSE);
+    
+    /**
+     * Boolean setting for writer to determine whether statements are grouped by subject before
+     * being streamed, using a bounded in-memory buffer that spills sorted runs to temporary files
+     * when it fills up. Only used if {@link #STREAMING} is enabled.
+     * <p>
+     * Defaults to false.
+     */
+    public static final RioSetting<Boolean> SORT_SUBJECTS = new RioSettingImpl<Boolean>(
+            "com.github.ansell.sesamerioextensions.rdfjson.sortsubjects",
+            "Group unsorted statements by subject using a spill-to-disk sort before streaming them", Boolean.FALSE);
+    
+    /**
+     * Integer setting for writer to determine the maximum number of statements that are held in
+     * memory by {@link #SORT_SUBJECTS} before a sorted run is spilled to a temporary file.
+     * <p>
+     * Defaults to 100000.
+     */
+    public static final RioSetting<Integer> SORT_BUFFER_SIZE = new RioSettingImpl<Integer>(
+            "com.github.ansell.sesamerioextensions.rdfjson.sortbuffersize",
+            "Maximum number of statements held in memory before spilling a sorted run to disk", 100000);
+    
+    /**
+     * Long setting for writer to determine the approximate number of bytes of statements that are
+     * held in memory by {@link #SORT_SUBJECTS} before a sorted run is spilled to a temporary file,
+     * in addition to the limit set by {@link #SORT_BUFFER_SIZE}. The size of each statement is
+     * estimated from the length of its values, so this limits the memory used when values are
+     * long, such as large literals. If the value is 0, only the number of statements is limited.
+     * <p>
+     * Defaults to 0.
+     */
+    public static final RioSetting<Long> SORT_MEMORY_LIMIT = new RioSettingImpl<Long>(
+            "com.github.ansell.sesamerioextensions.rdfjson.sortmemorylimit",
+            "Approximate number of bytes of statements held in memory before spilling a sorted run to disk", 0L);
+    
+    /**
+     * Setting for writer to give the directory that the temporary files for {@link #SORT_SUBJECTS}
+     * are created in, which must have enough space for a copy of the statements when writing very
+     * large documents. The files are removed after each document.
+     * <p>
+     * Defaults to null, which uses the default temporary directory for the JVM.
+     */
+    public static final RioSetting<File> SORT_DIRECTORY = new RioSettingImpl<File>(
+            "com.github.ansell.sesamerioextensions.rdfjson.sortdirectory",
+            "Directory that the temporary files used to sort statements are created in", null);
+    
+    /**
+     * Boolean setting for writer to determine whether documents are written in canonical form,
+     * where subjects, predicates, objects and graphs are always in the same order, so that the
+     * same statements produce the same bytes, no matter what order they were sent to the writer
+     * in, which makes the documents suitable for diffing and content hashing.
+     * <p>
+     * Subjects are ordered with blank nodes before URIs, and then by their string values.
+     * Predicates are ordered by their string values, and objects and graphs are ordered with blank
+     * nodes before URIs before literals, and then by their values, which is the same order
+     * as the documents written when {@link #STREAMING} is not enabled. Blank nodes are written
+     * using their identifiers, so statements that are parsed again using new blank node
+     * identifiers will not produce the same bytes.
+     * <p>
+     * Canonical documents are always streamed and sorted, as if both {@link #STREAMING} and
+     * {@link #SORT_SUBJECTS} were enabled, so that documents larger than the heap can be written
+     * using {@link #SORT_BUFFER_SIZE}, {@link #SORT_MEMORY_LIMIT} and {@link #SORT_DIRECTORY} to
+     * limit memory use. Only the statements for a single subject are held in memory at once while
+     * the sorted statements are written.
+     * <p>
+     * Defaults to false.
+     */
+    public static final RioSetting<Boolean> CANONICAL = new RioSettingImpl<Boolean>(
+            "com.github.ansell.sesamerioextensions.rdfjson.canonical",
+            "Write subjects, predicates, objects and graphs in a fixed order, independent of input order",
+            Boolean.FALSE);
+    
+    /**
+     * Integer setting for writer to determine the number of threads that encode subjects to JSON
+     * concurrently when writing to an OutputStream. If the value is greater than 1, subjects are
+     * collected into batches that are encoded on a pool of threads, and the encoded batches are
+     * written to the stream in order on the thread that sent the statements, so the document is
+     * the same as a document encoded on a single thread. Documents written to a Writer are always
+     * encoded on the calling thread.
+     * <p>
+     * Defaults to 1.
+     */
+    public static final RioSetting<Integer> WRITE_THREADS = new RioSettingImpl<Integer>(
+            "com.github.ansell.sesamerioextensions.rdfjson.writethreads",
+            "Number of threads used to encode subjects concurrently when writing to an OutputStream", 1);
+    
+    /**
+     * Integer setting for the {@link RDFJSONPartitionedWriter} to determine the maximum number of
+     * statements that are buffered for each context before they are written out to the document
+     * for the context.
+     * <p>
+     * Defaults to 256.
+     */
+    public static final RioSetting<Integer> PARTITION_BUFFER_SIZE = new RioSettingImpl<Integer>(
+            "com.github.ansell.sesamerioextensions.rdfjson.partitionbuffersize",
+            "Maximum number of statements buffered for each context before writing them out", 256);
+    
+    /**
+     * Integer setting for the {@link RDFJSONPartitionedWriter} to determine the number of threads
+     * that write out the buffered statements for different contexts concurrently. Values less than
+     * 2 write each buffer on the thread that sends statements to the writer.
+     * <p>
+     * Defaults to 1.
+     */
+    public static final RioSetting<Integer> PARTITION_THREADS = new RioSettingImpl<Integer>(
+            "com.github.ansell.sesamerioextensions.rdfjson.partitionthreads",
+            "Number of threads used to write the documents for different contexts concurrently", 1);
+    
+    /**
+     * Boolean setting for the {@link CompressedRDFJSONWriter} to determine whether the document is
+     * compressed on a background thread while the rest of the document is being serialised, instead
+     * of on the thread that sends statements to the writer.
+     * <p>
+     * Defaults to true.
+     */
+    public static final RioSetting<Boolean> BACKGROUND_COMPRESSION = new RioSettingImpl<Boolean>(
+            "com.github.ansell.sesamerioextensions.rdfjson.backgroundcompression",
+            "Compress the document on a background thread while it is being serialised", Boolean.TRUE);
+    
+    /**
+     * Setting for writer to give the listener that receives the {@link RDFJSONMetrics} for each
+     * document that is written. If the value is null, no metrics are collected, and writing is not
+     * slowed down.
+     * <p>
+     * Defaults to null.
+     */
+    public static final RioSetting<RDFJSONMetricsListener> METRICS_LISTENER =
+            new RioSettingImpl<RDFJSONMetricsListener>("com.github.ansell.sesamerioextensions.rdfjson.writermetrics",
+                    "Listener that receives the metrics for each document that is written", null);
+    
+    /**
+     * Private default constructor.
+     */
+    private RDFJSONPreferredWriterSettings()
+    {
+    }
+    
+}
@@ -0,0 +1,379 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+
+/**
+ * A {@link StatementPublisher} that parses an RDF/JSON-preferred or RDF/JSON Lines document from a
+ * stream as its subscriber requests statements.
+ * <p>
+ * The stream is read in fragments that are parsed using a {@link RDFJSONPreferredPushParser}, and
+ * the next fragment is only read after all of the statements from the previous fragment have been
+ * requested, so a slow subscriber stops the document from being read instead of causing the
+ * statements to be buffered. Statements are read and sent on the thread that calls
+ * {@link StatementSubscription#request(long)}, in batches of up to the given batch size. If the
+ * document is not valid, the statements before the error are sent before the error.
+ * <p>
+ * Each publisher can only be subscribed to once, and closes the stream after the document has been
+ * sent, or if the subscription is cancelled, or if the document could not be parsed.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class RDFJSONStatementPublisher implements StatementPublisher
+{
+    /**
+     * The default maximum number of statements sent in each batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    
+    /**
+     * The number of bytes read from the stream for each fragment.
+     */
+    private static final int FRAGMENT_SIZE = 8192;
+    
+    /**
+     * Collects the statements parsed from each fragment until they are requested.
+     */
+    private final class PendingCollector extends RDFHandlerBase
+    {
+        @Override
+        public void handleStatement(final Statement st) throws RDFHandlerException
+        {
+            RDFJSONStatementPublisher.this.pending.add(st);
+        }
+    }
+    
+    /**
+     * The subscription for the subscriber, which sends statements while there is demand for them.
+     */
+    private final class PublisherSubscription implements StatementSubscription
+    {
+        private final StatementSubscriber subscriber;
+        private final Statement[] batch = new Statement[RDFJSONStatementPublisher.this.batchSize];
+        private final byte[] fragment = new byte[RDFJSONStatementPublisher.FRAGMENT_SIZE];
+        private RDFJSONPreferredPushParser pushParser;
+        
+        /**
+         * The error from parsing the document, which is sent after the statements that were parsed
+         * before it.
+         */
+        private Exception parseError;
+        private long demand;
+        
+        /**
+         * The error for a request that was not positive, which is sent to the subscriber by the
+         * thread that is sending statements.
+         */
+        private IllegalArgumentException invalidRequest;
+        private boolean draining;
+        private boolean cancelled;
+        private boolean done;
+        
+        PublisherSubscription(final StatementSubscriber subscriber)
+        {
+            this.subscriber = subscriber;
+        }
+        
+        @Override
+        public void request(final long n)
+        {
+            synchronized(this)
+            {
+                if(n <= 0 && this.invalidRequest == null)
+                {
+                    this.invalidRequest =
+                            new IllegalArgumentException("Requested number of statements must be positive: " + n);
+                }
+                else if(n > 0)
+                {
+                    // Demand that is too large to count is treated as unbounded
+                    this.demand = this.demand + n < 0 ? Long.MAX_VALUE : this.demand + n;
+                }
+                if(this.draining)
+                {
+                    return;
+                }
+                this.draining = true;
+            }
+            this.drain();
+        }
+        
+        @Override
+        public void cancel()
+        {
+            synchronized(this)
+            {
+                this.cancelled = true;
+                if(this.draining)
+                {
+                    return;
+                }
+                this.draining = true;
+            }
+            this.drain();
+        }
+        
+        /**
+         * Sends statements until there is no more demand, or until the subscription ends. Only one
+         * thread sends statements at a time, and requests and cancellations from other threads, or
+         * from the subscriber while it is receiving statements, are picked up by that thread.
+         */
+        private void drain()
+        {
+            while(true)
+            {
+                final long requested;
+                final IllegalArgumentException failure;
+                synchronized(this)
+                {
+                    if(this.done)
+                    {
+                        this.draining = false;
+                        return;
+                    }
+                    if(this.cancelled)
+                    {
+                        this.done = true;
+                        this.draining = false;
+                        break;
+                    }
+                    failure = this.invalidRequest;
+                    requested = this.demand;
+                    if(failure == null && requested == 0)
+                    {
+                        this.draining = false;
+                        return;
+                    }
+                }
+                
+                if(failure != null)
+                {
+                    this.fail(failure);
+                    continue;
+                }
+                try
+                {
+                    final int sent = this.sendNext(requested);
+                    synchronized(this)
+                    {
+                        this.demand -= sent;
+                    }
+                }
+                catch(final Exception e)
+                {
+                    this.fail(e);
+                }
+            }
+            this.close();
+        }
+        
+        /**
+         * Sends the next batch of statements if there are any pending, and otherwise reads the next
+         * fragment of the document, or completes the subscriber at the end of the document.
+         *
+         * @return The number of statements that were sent.
+         */
+        private int sendNext(final long requested) throws Exception
+        {
+            final List<Statement> statements = RDFJSONStatementPublisher.this.pending;
+            final int available = statements.size() - RDFJSONStatementPublisher.this.pendingIndex;
+            if(available > 0)
+            {
+                final int length = (int)Math.min(Math.min(requested, available), this.batch.length);
+                for(int i = 0; i < length; i++)
+                {
+                    this.batch[i] = statements.get(RDFJSONStatementPublisher.this.pendingIndex++);
+                }
+                if(RDFJSONStatementPublisher.this.pendingIndex == statements.size())
+                {
+                    statements.clear();
+                    RDFJSONStatementPublisher.this.pendingIndex = 0;
+                }
+                try
+                {
+                    this.subscriber.onNext(this.batch, 0, length);
+                }
+                finally
+                {
+                    for(int i = 0; i < length; i++)
+                    {
+                        this.batch[i] = null;
+                    }
+                }
+                return length;
+            }
+            
+            if(this.pushParser == null)
+            {
+                RDFJSONStatementPublisher.this.parser.setRDFHandler(new PendingCollector());
+                this.pushParser = new RDFJSONPreferredPushParser(RDFJSONStatementPublisher.this.parser);
+            }
+            if(this.parseError != null)
+            {
+                throw this.parseError;
+            }
+            if(!this.pushParser.isEnded())
+            {
+                try
+                {
+                    final int read = RDFJSONStatementPublisher.this.in.read(this.fragment);
+                    if(read < 0)
+                    {
+                        this.pushParser.endOfInput();
+                    }
+                    else
+                    {
+                        this.pushParser.feed(ByteBuffer.wrap(this.fragment, 0, read));
+                    }
+                }
+                catch(final Exception e)
+                {
+                    this.parseError = e;
+                }
+                return 0;
+            }
+            
+            synchronized(this)
+            {
+                this.done = true;
+            }
+            this.close();
+            this.subscriber.onComplete();
+            return 0;
+        }
+        
+        private void fail(final Throwable error)
+        {
+            synchronized(this)
+            {
+                if(this.done)
+                {
+                    // The subscriber threw an exception after it was completed
+                    return;
+                }
+                this.done = true;
+            }
+            this.close();
+            this.subscriber.onError(error);
+        }
+        
+        /**
+         * Stops parsing and closes the stream, ignoring any errors, as the subscriber is no longer
+         * interested in the document, or has already been told about the result.
+         */
+        private void close()
+        {
+            RDFJSONStatementPublisher.this.pending.clear();
+            try
+            {
+                if(this.pushParser != null)
+                {
+                    this.pushParser.close();
+                }
+            }
+            catch(final IOException e)
+            {
+                // Ignore, the document is not being parsed any further
+            }
+            try
+            {
+                RDFJSONStatementPublisher.this.in.close();
+            }
+            catch(final IOException e)
+            {
+                // Ignore, the document is not being read any further
+            }
+        }
+    }
+    
+    /**
+     * An empty subscription, sent before the error to a subscriber that subscribes to a publisher
+     * that has already been subscribed to.
+     */
+    private static final StatementSubscription REJECTED = new StatementSubscription()
+        {
+            @Override
+            public void request(final long n)
+            {
+                // Nothing will be sent
+            }
+            
+            @Override
+            public void cancel()
+            {
+                // Nothing is being sent
+            }
+        };
+    
+    private final RDFJSONPreferredParser parser;
+    private final InputStream in;
+    private final int batchSize;
+    
+    /**
+     * The statements from the fragments that have been parsed, and the index of the first one that
+     * has not been sent.
+     */
+    private final List<Statement> pending = new ArrayList<Statement>();
+    private int pendingIndex;
+    private boolean subscribed;
+    
+    /**
+     * Creates a publisher for the document in the given stream, using batches of up to
+     * {@link #DEFAULT_BATCH_SIZE} statements.
+     *
+     * @param parser
+     *            The parser for the document, whose RDFHandler is replaced when the document is
+     *            parsed.
+     * @param in
+     *            The stream containing the document, encoded using UTF-8.
+     */
+    public RDFJSONStatementPublisher(final RDFJSONPreferredParser parser, final InputStream in)
+    {
+        this(parser, in, RDFJSONStatementPublisher.DEFAULT_BATCH_SIZE);
+    }
+    
+    /**
+     * Creates a publisher for the document in the given stream.
+     *
+     * @param parser
+     *            The parser for the document, whose RDFHandler is replaced when the document is
+     *            parsed.
+     * @param in
+     *            The stream containing the document, encoded using UTF-8.
+     * @param batchSize
+     *            The maximum number of statements sent in each batch.
+     */
+    public RDFJSONStatementPublisher(final RDFJSONPreferredParser parser, final InputStream in, final int batchSize)
+    {
+        if(batchSize < 1)
+        {
+            throw new IllegalArgumentException("Batch size must be at least 1: " + batchSize);
+        }
+        this.parser = parser;
+        this.in = in;
+        this.batchSize = batchSize;
+    }
+    
+    @Override
+    public void subscribe(final StatementSubscriber subscriber)
+    {
+        synchronized(this)
+        {
+            if(this.subscribed)
+            {
+                subscriber.onSubscribe(RDFJSONStatementPublisher.REJECTED);
+                subscriber.onError(new IllegalStateException("Publisher has already been subscribed to"));
+                return;
+            }
+            this.subscribed = true;
+        }
+        subscriber.onSubscribe(new PublisherSubscription(subscriber));
+    }
+}
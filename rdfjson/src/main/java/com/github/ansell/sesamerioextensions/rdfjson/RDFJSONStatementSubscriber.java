@@ -0,0 +1,194 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFWriter;
+
+/**
+ * A {@link StatementSubscriber} that writes the statements that it receives to an RDFWriter, such
+ * as a {@link RDFJSONPreferredWriter}.
+ * <p>
+ * Statements are requested in batches of the given request size, and more are only requested after
+ * half of the previous statements have been written, so a publisher can never send statements
+ * faster than they are written, and at most the request size statements are waiting to be written
+ * at any time. The writer is started when the subscription starts, and ended when the publisher
+ * completes. If the writer throws an exception, the subscription is cancelled.
+ * <p>
+ * Each subscriber can only be subscribed once. The result can be waited for using {@link #await()}.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class RDFJSONStatementSubscriber implements StatementSubscriber
+{
+    /**
+     * The default number of statements requested at a time.
+     */
+    public static final int DEFAULT_REQUEST_SIZE = 1024;
+    
+    private final RDFWriter writer;
+    private final int requestSize;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private StatementSubscription subscription;
+    
+    /**
+     * The number of statements that have been requested but not received.
+     */
+    private long outstanding;
+    private volatile Throwable error;
+    private boolean done;
+    
+    /**
+     * Creates a subscriber that writes to the given writer, requesting up to
+     * {@link #DEFAULT_REQUEST_SIZE} statements at a time.
+     *
+     * @param writer
+     *            The writer for the statements.
+     */
+    public RDFJSONStatementSubscriber(final RDFWriter writer)
+    {
+        this(writer, RDFJSONStatementSubscriber.DEFAULT_REQUEST_SIZE);
+    }
+    
+    /**
+     * Creates a subscriber that writes to the given writer.
+     *
+     * @param writer
+     *            The writer for the statements.
+     * @param requestSize
+     *            The maximum number of statements that are requested but not written at any time.
+     */
+    public RDFJSONStatementSubscriber(final RDFWriter writer, final int requestSize)
+    {
+        if(requestSize < 1)
+        {
+            throw new IllegalArgumentException("Request size must be at least 1: " + requestSize);
+        }
+        this.writer = writer;
+        this.requestSize = requestSize;
+    }
+    
+    @Override
+    public void onSubscribe(final StatementSubscription nextSubscription)
+    {
+        if(this.subscription != null)
+        {
+            nextSubscription.cancel();
+            return;
+        }
+        this.subscription = nextSubscription;
+        try
+        {
+            this.writer.startRDF();
+        }
+        catch(final RDFHandlerException e)
+        {
+            this.cancel(e);
+            return;
+        }
+        this.outstanding = this.requestSize;
+        this.subscription.request(this.requestSize);
+    }
+    
+    @Override
+    public void onNext(final Statement[] statements, final int offset, final int length)
+    {
+        if(this.done)
+        {
+            return;
+        }
+        try
+        {
+            for(int i = offset; i < offset + length; i++)
+            {
+                this.writer.handleStatement(statements[i]);
+            }
+        }
+        catch(final RDFHandlerException e)
+        {
+            this.cancel(e);
+            return;
+        }
+        
+        this.outstanding -= length;
+        if(this.outstanding <= this.requestSize / 2)
+        {
+            final long next = this.requestSize - this.outstanding;
+            this.outstanding = this.requestSize;
+            this.subscription.request(next);
+        }
+    }
+    
+    @Override
+    public void onError(final Throwable nextError)
+    {
+        if(!this.done)
+        {
+            this.finish(nextError);
+        }
+    }
+    
+    @Override
+    public void onComplete()
+    {
+        if(this.done)
+        {
+            return;
+        }
+        try
+        {
+            this.writer.endRDF();
+            this.finish(null);
+        }
+        catch(final RDFHandlerException e)
+        {
+            this.finish(e);
+        }
+    }
+    
+    /**
+     * Waits until the publisher has completed and the document has been written, or until the
+     * subscription has failed.
+     *
+     * @throws InterruptedException
+     *             If the thread was interrupted while waiting.
+     * @throws RDFHandlerException
+     *             If the publisher or the writer failed.
+     */
+    public void await() throws InterruptedException, RDFHandlerException
+    {
+        this.finished.await();
+        final Throwable result = this.error;
+        if(result instanceof RDFHandlerException)
+        {
+            throw (RDFHandlerException)result;
+        }
+        else if(result != null)
+        {
+            throw new RDFHandlerException("Could not publish statements", result);
+        }
+    }
+    
+    /**
+     * @return True if the publisher has completed and the document has been written, or if the
+     *         subscription has failed.
+     */
+    public boolean isDone()
+    {
+        return this.finished.getCount() == 0;
+    }
+    
+    private void cancel(final RDFHandlerException e)
+    {
+        this.subscription.cancel();
+        this.finish(e);
+    }
+    
+    private void finish(final Throwable nextError)
+    {
+        this.done = true;
+        this.error = nextError;
+        this.finished.countDown();
+    }
+}
@@ -0,0 +1,216 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread safe {@link RDFJSONMetricsListener} that keeps running totals of the metrics for all of
+ * the documents that it receives, and that can be registered as a JMX MBean, for example:
+ *
+ * <pre>
+ * final RDFJSONStatistics statistics = new RDFJSONStatistics();
+ * ManagementFactory.getPlatformMBeanServer().registerMBean(statistics,
+ *         new ObjectName(RDFJSONStatistics.DEFAULT_OBJECT_NAME));
+ * parser.getParserConfig().set(RDFJSONPreferredParserSettings.METRICS_LISTENER, statistics);
+ * </pre>
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class RDFJSONStatistics implements RDFJSONMetricsListener, RDFJSONStatisticsMBean
+{
+    /**
+     * An object name that can be used to register a single instance with an MBeanServer.
+     */
+    public static final String DEFAULT_OBJECT_NAME =
+            "com.github.ansell.sesamerioextensions.rdfjson:type=RDFJSONStatistics";
+    
+    private final AtomicLong documentsParsed = new AtomicLong();
+    private final AtomicLong statementsParsed = new AtomicLong();
+    private final AtomicLong bytesParsed = new AtomicLong();
+    private final AtomicLong parseNanos = new AtomicLong();
+    private final AtomicLong tokenizeNanos = new AtomicLong();
+    private final AtomicLong valueCreationNanos = new AtomicLong();
+    private final AtomicLong handlerNanos = new AtomicLong();
+    private final AtomicLong largestParsedSubject = new AtomicLong();
+    private final AtomicLong parseBufferHighWater = new AtomicLong();
+    
+    private final AtomicLong documentsWritten = new AtomicLong();
+    private final AtomicLong statementsWritten = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong writeNanos = new AtomicLong();
+    private final AtomicLong encodeNanos = new AtomicLong();
+    private final AtomicLong largestWrittenSubject = new AtomicLong();
+    private final AtomicLong writeBufferHighWater = new AtomicLong();
+    
+    @Override
+    public void parsed(final RDFJSONMetrics metrics)
+    {
+        this.documentsParsed.incrementAndGet();
+        this.statementsParsed.addAndGet(metrics.getStatements());
+        if(metrics.getBytes() > 0)
+        {
+            this.bytesParsed.addAndGet(metrics.getBytes());
+        }
+        this.parseNanos.addAndGet(metrics.getElapsedNanos());
+        this.tokenizeNanos.addAndGet(metrics.getTokenizeNanos());
+        this.valueCreationNanos.addAndGet(metrics.getValueCreationNanos());
+        this.handlerNanos.addAndGet(metrics.getHandlerNanos());
+        RDFJSONStatistics.max(this.largestParsedSubject, metrics.getLargestSubject());
+        RDFJSONStatistics.max(this.parseBufferHighWater, metrics.getBufferHighWater());
+    }
+    
+    @Override
+    public void written(final RDFJSONMetrics metrics)
+    {
+        this.documentsWritten.incrementAndGet();
+        this.statementsWritten.addAndGet(metrics.getStatements());
+        if(metrics.getBytes() > 0)
+        {
+            this.bytesWritten.addAndGet(metrics.getBytes());
+        }
+        this.writeNanos.addAndGet(metrics.getElapsedNanos());
+        this.encodeNanos.addAndGet(metrics.getEncodeNanos());
+        RDFJSONStatistics.max(this.largestWrittenSubject, metrics.getLargestSubject());
+        RDFJSONStatistics.max(this.writeBufferHighWater, metrics.getBufferHighWater());
+    }
+    
+    @Override
+    public long getDocumentsParsed()
+    {
+        return this.documentsParsed.get();
+    }
+    
+    @Override
+    public long getStatementsParsed()
+    {
+        return this.statementsParsed.get();
+    }
+    
+    @Override
+    public long getBytesParsed()
+    {
+        return this.bytesParsed.get();
+    }
+    
+    @Override
+    public long getParseNanos()
+    {
+        return this.parseNanos.get();
+    }
+    
+    @Override
+    public long getTokenizeNanos()
+    {
+        return this.tokenizeNanos.get();
+    }
+    
+    @Override
+    public long getValueCreationNanos()
+    {
+        return this.valueCreationNanos.get();
+    }
+    
+    @Override
+    public long getHandlerNanos()
+    {
+        return this.handlerNanos.get();
+    }
+    
+    @Override
+    public double getParseStatementsPerSecond()
+    {
+        return RDFJSONMetrics.perSecond(this.statementsParsed.get(), this.parseNanos.get());
+    }
+    
+    @Override
+    public long getLargestParsedSubject()
+    {
+        return this.largestParsedSubject.get();
+    }
+    
+    @Override
+    public long getParseBufferHighWater()
+    {
+        return this.parseBufferHighWater.get();
+    }
+    
+    @Override
+    public long getDocumentsWritten()
+    {
+        return this.documentsWritten.get();
+    }
+    
+    @Override
+    public long getStatementsWritten()
+    {
+        return this.statementsWritten.get();
+    }
+    
+    @Override
+    public long getBytesWritten()
+    {
+        return this.bytesWritten.get();
+    }
+    
+    @Override
+    public long getWriteNanos()
+    {
+        return this.writeNanos.get();
+    }
+    
+    @Override
+    public long getEncodeNanos()
+    {
+        return this.encodeNanos.get();
+    }
+    
+    @Override
+    public double getWriteStatementsPerSecond()
+    {
+        return RDFJSONMetrics.perSecond(this.statementsWritten.get(), this.writeNanos.get());
+    }
+    
+    @Override
+    public long getLargestWrittenSubject()
+    {
+        return this.largestWrittenSubject.get();
+    }
+    
+    @Override
+    public long getWriteBufferHighWater()
+    {
+        return this.writeBufferHighWater.get();
+    }
+    
+    @Override
+    public void reset()
+    {
+        this.documentsParsed.set(0);
+        this.statementsParsed.set(0);
+        this.bytesParsed.set(0);
+        this.parseNanos.set(0);
+        this.tokenizeNanos.set(0);
+        this.valueCreationNanos.set(0);
+        this.handlerNanos.set(0);
+        this.largestParsedSubject.set(0);
+        this.parseBufferHighWater.set(0);
+        this.documentsWritten.set(0);
+        this.statementsWritten.set(0);
+        this.bytesWritten.set(0);
+        this.writeNanos.set(0);
+        this.encodeNanos.set(0);
+        this.largestWrittenSubject.set(0);
+        this.writeBufferHighWater.set(0);
+    }
+    
+    private static void max(final AtomicLong total, final long value)
+    {
+        long current;
+        while(value > (current = total.get()))
+        {
+            if(total.compareAndSet(current, value))
+            {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+/**
+ * The JMX management interface for {@link RDFJSONStatistics}.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public interface RDFJSONStatisticsMBean
+{
+    long getDocumentsParsed();
+    
+    long getStatementsParsed();
+    
+    long getBytesParsed();
+    
+    long getParseNanos();
+    
+    long getTokenizeNanos();
+    
+    long getValueCreationNanos();
+    
+    long getHandlerNanos();
+    
+    double getParseStatementsPerSecond();
+    
+    long getLargestParsedSubject();
+    
+    long getParseBufferHighWater();
+    
+    long getDocumentsWritten();
+    
+    long getStatementsWritten();
+    
+    long getBytesWritten();
+    
+    long getWriteNanos();
+    
+    long getEncodeNanos();
+    
+    double getWriteStatementsPerSecond();
+    
+    long getLargestWrittenSubject();
+    
+    long getWriteBufferHighWater();
+    
+    /**
+     * Sets all of the totals back to 0.
+     */
+    void reset();
+}
@@ -0,0 +1,498 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.Resource;
+import org.openrdf.rio.ParserConfig;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.helpers.RDFHandlerWrapper;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * A sidecar index of the byte ranges of the subjects in an RDF/JSON file, for parsing the
+ * statements for a single subject without reading the rest of the file.
+ * <p>
+ * An index is created using {@link #createIndex(File, File)}, which scans the file once, skipping
+ * the value for each subject without creating any values, and writes the text of each subject
+ * with the offset and length of its member of the top level object. Both RDF/JSON-preferred and
+ * RDF/JSON Lines files can be indexed, as each top level object in the file is indexed, and a
+ * subject that appears more than once has an entry for each occurrence. Files must be encoded
+ * using UTF-8.
+ * <p>
+ * The index file starts with a header containing the length of the document, followed by an
+ * array of fixed size entries sorted by the UTF-8 bytes of their subjects, and then the subjects
+ * themselves. An opened index is memory mapped, and subjects are found by binary search, so a
+ * lookup reads a few pages of the index and the bytes for the subject from the document.
+ * <p>
+ * Lookups may be made concurrently from multiple threads, as each lookup uses its own parser.
+ * An index can also be created from the command line:
+ *
+ * <pre>
+ * java com.github.ansell.sesamerioextensions.rdfjson.RDFJSONSubjectIndex document.rj [document.rj.idx]
+ * </pre>
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class RDFJSONSubjectIndex implements Closeable
+{
+    /**
+     * The file extension that is added to the name of a document for its default index file.
+     */
+    public static final String INDEX_EXTENSION = ".idx";
+    
+    private static final int MAGIC = 0x524A5349;
+    
+    private static final int VERSION = 1;
+    
+    private static final int HEADER_SIZE = 24;
+    
+    private static final int ENTRY_SIZE = 24;
+    
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    
+    private final RandomAccessFile document;
+    private final FileChannel documentChannel;
+    private final MappedByteBuffer index;
+    private final int entries;
+    private final int keysStart;
+    private final ParserConfig parserConfig = new ParserConfig();
+    
+    /**
+     * Opens the index for the given document from its default index file.
+     *
+     * @param document
+     *            The RDF/JSON file that was indexed.
+     * @throws IOException
+     *             If the index could not be read, or it was created for a different version of the
+     *             document.
+     */
+    public RDFJSONSubjectIndex(final File document) throws IOException
+    {
+        this(document, RDFJSONSubjectIndex.getIndexFile(document));
+    }
+    
+    /**
+     * Opens the given index for the given document.
+     *
+     * @param document
+     *            The RDF/JSON file that was indexed.
+     * @param indexFile
+     *            The index file.
+     * @throws IOException
+     *             If the index could not be read, or it was created for a different version of the
+     *             document.
+     */
+    public RDFJSONSubjectIndex(final File document, final File indexFile) throws IOException
+    {
+        final RandomAccessFile indexRaf = new RandomAccessFile(indexFile, "r");
+        try
+        {
+            this.index = indexRaf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, indexRaf.length());
+        }
+        finally
+        {
+            // The mapping stays valid after the file is closed
+            indexRaf.close();
+        }
+        
+        if(this.index.capacity() < RDFJSONSubjectIndex.HEADER_SIZE
+                || this.index.getInt(0) != RDFJSONSubjectIndex.MAGIC)
+        {
+            throw new IOException("Not an RDF/JSON subject index: " + indexFile);
+        }
+        if(this.index.getInt(4) != RDFJSONSubjectIndex.VERSION)
+        {
+            throw new IOException("Unsupported RDF/JSON subject index version " + this.index.getInt(4) + ": "
+                    + indexFile);
+        }
+        this.entries = this.index.getInt(16);
+        this.keysStart = RDFJSONSubjectIndex.HEADER_SIZE + this.entries * RDFJSONSubjectIndex.ENTRY_SIZE;
+        
+        this.document = new RandomAccessFile(document, "r");
+        this.documentChannel = this.document.getChannel();
+        if(this.documentChannel.size() != this.index.getLong(8))
+        {
+            this.document.close();
+            throw new IOException("RDF/JSON subject index is out of date for " + document);
+        }
+    }
+    
+    /**
+     * @return The default index file for the given document, which has the same name followed by
+     *         {@link #INDEX_EXTENSION}.
+     */
+    public static File getIndexFile(final File document)
+    {
+        return new File(document.getPath() + RDFJSONSubjectIndex.INDEX_EXTENSION);
+    }
+    
+    /**
+     * Creates an index for the given document in its default index file.
+     *
+     * @param document
+     *            The RDF/JSON file to index.
+     * @return The number of subjects in the index.
+     * @throws IOException
+     *             If the document could not be read, or the index could not be written.
+     * @throws RDFParseException
+     *             If the document was not a valid RDF/JSON-preferred or RDF/JSON Lines document.
+     */
+    public static int createIndex(final File document) throws IOException, RDFParseException
+    {
+        return RDFJSONSubjectIndex.createIndex(document, RDFJSONSubjectIndex.getIndexFile(document));
+    }
+    
+    /**
+     * Creates an index for the given document.
+     * <p>
+     * The subjects are sorted in memory, so the memory used is proportional to the number of
+     * subjects, but not to the size of the document.
+     *
+     * @param document
+     *            The RDF/JSON file to index.
+     * @param indexFile
+     *            The file to write the index to.
+     * @return The number of subjects in the index.
+     * @throws IOException
+     *             If the document could not be read, or the index could not be written.
+     * @throws RDFParseException
+     *             If the document was not a valid RDF/JSON-preferred or RDF/JSON Lines document.
+     */
+    public static int createIndex(final File document, final File indexFile) throws IOException, RDFParseException
+    {
+        final long documentLength = document.length();
+        final List<Entry> results = RDFJSONSubjectIndex.scan(document);
+        Collections.sort(results, Entry.COMPARATOR);
+        
+        long keysLength = 0;
+        for(final Entry nextEntry : results)
+        {
+            keysLength += nextEntry.key.length;
+        }
+        if(RDFJSONSubjectIndex.HEADER_SIZE + (long)results.size() * RDFJSONSubjectIndex.ENTRY_SIZE + keysLength
+                > Integer.MAX_VALUE)
+        {
+            throw new IOException("Too many subjects to index in " + document);
+        }
+        
+        final DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile), 65536));
+        try
+        {
+            out.writeInt(RDFJSONSubjectIndex.MAGIC);
+            out.writeInt(RDFJSONSubjectIndex.VERSION);
+            out.writeLong(documentLength);
+            out.writeInt(results.size());
+            out.writeInt((int)keysLength);
+            
+            int keyOffset = 0;
+            for(final Entry nextEntry : results)
+            {
+                out.writeInt(keyOffset);
+                out.writeInt(nextEntry.key.length);
+                out.writeLong(nextEntry.offset);
+                out.writeLong(nextEntry.length);
+                keyOffset += nextEntry.key.length;
+            }
+            for(final Entry nextEntry : results)
+            {
+                out.write(nextEntry.key);
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+        return results.size();
+    }
+    
+    /**
+     * Finds the byte range of each member of each top level object in the document.
+     */
+    private static List<Entry> scan(final File document) throws IOException, RDFParseException
+    {
+        final List<Entry> results = new ArrayList<Entry>();
+        final Utf8JsonTokenizer tokenizer = new Utf8JsonTokenizer(new MappedFileInputStream(document));
+        try
+        {
+            JsonToken nextToken;
+            while((nextToken = tokenizer.nextToken()) != null)
+            {
+                if(nextToken != JsonToken.START_OBJECT)
+                {
+                    throw RDFJSONSubjectIndex.error("Expected RDF/JSON document to start with an Object", tokenizer);
+                }
+                while((nextToken = tokenizer.nextToken()) == JsonToken.FIELD_NAME)
+                {
+                    final long start = tokenizer.getTokenOffset();
+                    final byte[] key = tokenizer.getText().getBytes(RDFJSONSubjectIndex.UTF_8);
+                    if(tokenizer.nextToken() != JsonToken.START_OBJECT)
+                    {
+                        throw RDFJSONSubjectIndex.error("Expected subject value to start with an Object", tokenizer);
+                    }
+                    tokenizer.skipChildren();
+                    results.add(new Entry(key, start, tokenizer.getOffset() - start));
+                }
+                if(nextToken != JsonToken.END_OBJECT)
+                {
+                    throw RDFJSONSubjectIndex.error("Unexpected end of RDF/JSON document", tokenizer);
+                }
+            }
+        }
+        catch(final JsonParseException e)
+        {
+            final JsonLocation location = e.getLocation();
+            if(location != null)
+            {
+                throw new RDFParseException(e, location.getLineNr(), location.getColumnNr());
+            }
+            throw new RDFParseException(e);
+        }
+        finally
+        {
+            tokenizer.close();
+        }
+        return results;
+    }
+    
+    private static RDFParseException error(final String message, final Utf8JsonTokenizer tokenizer)
+    {
+        return new RDFParseException(message, tokenizer.getLineNr(), tokenizer.getColumnNr());
+    }
+    
+    /**
+     * @return The settings for the parsers used for each lookup, which should not be changed while
+     *         lookups are running.
+     */
+    public ParserConfig getParserConfig()
+    {
+        return this.parserConfig;
+    }
+    
+    /**
+     * @return The number of subjects in the index, where a subject that appears more than once in
+     *         the document is counted once for each occurrence.
+     */
+    public int size()
+    {
+        return this.entries;
+    }
+    
+    /**
+     * @return True if the given subject appears in the document.
+     */
+    public boolean contains(final Resource subject)
+    {
+        return this.find(RDFJSONSubjectIndex.getKey(subject)) >= 0;
+    }
+    
+    /**
+     * Parses the statements for the given subject from the document, sending them to the given
+     * RDFHandler between a single call to startRDF and endRDF. If the subject appears more than
+     * once in the document, the statements for each occurrence are sent in document order.
+     *
+     * @param subject
+     *            The subject to find, where blank nodes are found using their identifier in the
+     *            document.
+     * @param handler
+     *            The RDFHandler to send the statements to.
+     * @return True if the subject was found, and false if it is not in the document, in which case
+     *         the RDFHandler is not called.
+     * @throws IOException
+     *             If the document could not be read.
+     * @throws RDFParseException
+     *             If the value for the subject was not valid RDF/JSON.
+     * @throws RDFHandlerException
+     *             If the RDFHandler threw an exception.
+     */
+    public boolean parse(final Resource subject, final RDFHandler handler) throws IOException, RDFParseException,
+        RDFHandlerException
+    {
+        final byte[] key = RDFJSONSubjectIndex.getKey(subject);
+        int nextEntry = this.find(key);
+        if(nextEntry < 0)
+        {
+            return false;
+        }
+        
+        final RDFJSONPreferredParser parser = new RDFJSONPreferredParser();
+        parser.setParserConfig(this.parserConfig);
+        parser.setRDFHandler(new RDFHandlerWrapper(handler)
+            {
+                @Override
+                public void startRDF()
+                {
+                    // Sent once for all of the occurrences
+                }
+                
+                @Override
+                public void endRDF()
+                {
+                    // Sent once for all of the occurrences
+                }
+            });
+        
+        handler.startRDF();
+        for(; nextEntry < this.entries && this.compare(nextEntry, key) == 0; nextEntry++)
+        {
+            final int entryStart = RDFJSONSubjectIndex.HEADER_SIZE + nextEntry * RDFJSONSubjectIndex.ENTRY_SIZE;
+            final long offset = this.index.getLong(entryStart + 8);
+            final long length = this.index.getLong(entryStart + 16);
+            if(length > Integer.MAX_VALUE - 2)
+            {
+                throw new IOException("Subject is too large to parse from the index: " + subject);
+            }
+            
+            // Wrap the member in braces to make it a complete RDF/JSON document
+            final byte[] bytes = new byte[(int)length + 2];
+            bytes[0] = '{';
+            bytes[bytes.length - 1] = '}';
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, (int)length);
+            while(buffer.hasRemaining())
+            {
+                if(this.documentChannel.read(buffer, offset + buffer.position() - 1) < 0)
+                {
+                    throw new IOException("RDF/JSON subject index is out of date for subject: " + subject);
+                }
+            }
+            parser.parseChunk(bytes, bytes.length, 0, null);
+        }
+        handler.endRDF();
+        return true;
+    }
+    
+    @Override
+    public void close() throws IOException
+    {
+        this.document.close();
+    }
+    
+    /**
+     * @return The index of the first entry for the given key, or -1 if there are no entries for it.
+     */
+    private int find(final byte[] key)
+    {
+        int low = 0;
+        int high = this.entries;
+        while(low < high)
+        {
+            final int middle = (low + high) >>> 1;
+            if(this.compare(middle, key) < 0)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        return low < this.entries && this.compare(low, key) == 0 ? low : -1;
+    }
+    
+    /**
+     * Compares the subject for the given entry with the given key, using the unsigned values of
+     * their bytes.
+     */
+    private int compare(final int entry, final byte[] key)
+    {
+        final int entryStart = RDFJSONSubjectIndex.HEADER_SIZE + entry * RDFJSONSubjectIndex.ENTRY_SIZE;
+        final int keyStart = this.keysStart + this.index.getInt(entryStart);
+        final int keyLength = this.index.getInt(entryStart + 4);
+        final int length = Math.min(keyLength, key.length);
+        for(int i = 0; i < length; i++)
+        {
+            final int difference = (this.index.get(keyStart + i) & 0xFF) - (key[i] & 0xFF);
+            if(difference != 0)
+            {
+                return difference;
+            }
+        }
+        return keyLength - key.length;
+    }
+    
+    /**
+     * @return The UTF-8 bytes of the given subject as it appears in an RDF/JSON document.
+     */
+    private static byte[] getKey(final Resource subject)
+    {
+        final String text = subject instanceof BNode ? "_:" + ((BNode)subject).getID() : subject.stringValue();
+        return text.getBytes(RDFJSONSubjectIndex.UTF_8);
+    }
+    
+    /**
+     * Creates the default index file for each document given on the command line, or the index
+     * file given after a document.
+     *
+     * @param args
+     *            The document to index, optionally followed by the index file.
+     */
+    public static void main(final String[] args) throws Exception
+    {
+        if(args.length < 1 || args.length > 2)
+        {
+            System.err.println("Usage: RDFJSONSubjectIndex document [index]");
+            System.exit(1);
+        }
+        final File document = new File(args[0]);
+        final File indexFile = args.length == 2 ? new File(args[1]) : RDFJSONSubjectIndex.getIndexFile(document);
+        final long start = System.currentTimeMillis();
+        final int count = RDFJSONSubjectIndex.createIndex(document, indexFile);
+        System.out.println("Indexed " + count + " subjects from " + document + " into " + indexFile + " in "
+                + (System.currentTimeMillis() - start) + "ms");
+    }
+    
+    /**
+     * The byte range of a single subject in a document.
+     */
+    private static final class Entry
+    {
+        private static final Comparator<Entry> COMPARATOR = new Comparator<Entry>()
+            {
+                @Override
+                public int compare(final Entry o1, final Entry o2)
+                {
+                    final int length = Math.min(o1.key.length, o2.key.length);
+                    for(int i = 0; i < length; i++)
+                    {
+                        final int difference = (o1.key[i] & 0xFF) - (o2.key[i] & 0xFF);
+                        if(difference != 0)
+                        {
+                            return difference;
+                        }
+                    }
+                    return o1.key.length - o2.key.length;
+                }
+            };
+        
+        private final byte[] key;
+        private final long offset;
+        private final long length;
+        
+        Entry(final byte[] key, final long offset, final long length)
+        {
+            this.key = key;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
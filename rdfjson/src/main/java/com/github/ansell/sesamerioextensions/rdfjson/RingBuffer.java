@@ -0,0 +1,187 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded queue for passing items from one producer thread to one consumer thread without locks,
+ * for {@link PipelinedParser}.
+ * <p>
+ * The producer and the consumer each own one of the two counters, and only read the other, so each
+ * slot is handed over with a single ordered write. A producer that finds the buffer full, or a
+ * consumer that finds it empty, spins briefly and then parks for short intervals until the other
+ * thread catches up, so a producer that is faster than the consumer is slowed down instead of
+ * using more memory.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+final class RingBuffer<E>
+{
+    private static final int SPIN_LIMIT = 100;
+    
+    private static final long PARK_NANOS = 50000L;
+    
+    private final Object[] slots;
+    private final int mask;
+    
+    /**
+     * The number of items that have been taken, written only by the consumer.
+     */
+    private final AtomicLong head = new AtomicLong();
+    
+    /**
+     * The number of items that have been put, written only by the producer.
+     */
+    private final AtomicLong tail = new AtomicLong();
+    
+    /**
+     * The last value of head seen by the producer, so that it only reads the head when the buffer
+     * looks full.
+     */
+    private long cachedHead;
+    
+    /**
+     * The last value of tail seen by the consumer, so that it only reads the tail when the buffer
+     * looks empty.
+     */
+    private long cachedTail;
+    
+    private volatile boolean finished;
+    private volatile Throwable error;
+    private volatile boolean closed;
+    
+    /**
+     * @param capacity
+     *            The minimum number of items that can be waiting, which is rounded up to a power of
+     *            two.
+     */
+    RingBuffer(final int capacity)
+    {
+        int size = 1;
+        while(size < capacity)
+        {
+            size <<= 1;
+        }
+        this.slots = new Object[size];
+        this.mask = size - 1;
+    }
+    
+    /**
+     * Adds an item, waiting for space if the buffer is full. Must only be called by the producer.
+     *
+     * @return True if the item was added, and false if the consumer has closed the buffer.
+     * @throws InterruptedIOException
+     *             If the producer was interrupted while waiting.
+     */
+    boolean put(final E item) throws InterruptedIOException
+    {
+        final long nextTail = this.tail.get();
+        int spins = 0;
+        while(nextTail - this.cachedHead == this.slots.length)
+        {
+            this.cachedHead = this.head.get();
+            if(nextTail - this.cachedHead < this.slots.length)
+            {
+                break;
+            }
+            if(this.closed)
+            {
+                return false;
+            }
+            spins = RingBuffer.await(spins);
+        }
+        if(this.closed)
+        {
+            return false;
+        }
+        
+        this.slots[(int)nextTail & this.mask] = item;
+        this.tail.lazySet(nextTail + 1);
+        return true;
+    }
+    
+    /**
+     * Marks the end of the items, after which {@link #take()} returns null once the waiting items
+     * have been taken. Must only be called by the producer.
+     *
+     * @param nextError
+     *            The error that stopped the producer, or null if it finished normally.
+     */
+    void finish(final Throwable nextError)
+    {
+        this.error = nextError;
+        this.finished = true;
+    }
+    
+    /**
+     * Removes the next item, waiting for one to be added if the buffer is empty. Must only be called
+     * by the consumer.
+     *
+     * @return The next item, or null if the producer has finished and all of its items have been
+     *         taken.
+     * @throws InterruptedIOException
+     *             If the consumer was interrupted while waiting.
+     */
+    @SuppressWarnings("unchecked")
+    E take() throws InterruptedIOException
+    {
+        final long nextHead = this.head.get();
+        int spins = 0;
+        while(nextHead == this.cachedTail)
+        {
+            // Read finished before tail, as an item put before finish must then be visible
+            final boolean nextFinished = this.finished;
+            this.cachedTail = this.tail.get();
+            if(nextHead != this.cachedTail)
+            {
+                break;
+            }
+            if(nextFinished)
+            {
+                return null;
+            }
+            spins = RingBuffer.await(spins);
+        }
+        
+        final int index = (int)nextHead & this.mask;
+        final E result = (E)this.slots[index];
+        this.slots[index] = null;
+        this.head.lazySet(nextHead + 1);
+        return result;
+    }
+    
+    /**
+     * Returns the error that the producer finished with, which is only visible after
+     * {@link #take()} has returned null.
+     */
+    Throwable getError()
+    {
+        return this.error;
+    }
+    
+    /**
+     * Tells the producer that no more items will be taken, so that it stops at its next
+     * {@link #put(Object)}. May be called by either thread.
+     */
+    void close()
+    {
+        this.closed = true;
+    }
+    
+    private static int await(final int spins) throws InterruptedIOException
+    {
+        if(Thread.interrupted())
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing RDF/JSON");
+        }
+        if(spins < RingBuffer.SPIN_LIMIT)
+        {
+            Thread.yield();
+            return spins + 1;
+        }
+        LockSupport.parkNanos(RingBuffer.PARK_NANOS);
+        return spins;
+    }
+}
@@ -0,0 +1,24 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+/**
+ * A source of statements that are sent to a {@link StatementSubscriber} as it requests them,
+ * following the same rules as a Reactive Streams Publisher, except that statements are sent in
+ * batches.
+ * <p>
+ * The interfaces are independent of the Reactive Streams API so that this module does not need any
+ * further dependencies, but each of them can be adapted to the matching Reactive Streams or
+ * java.util.concurrent.Flow interface by delegating each method.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public interface StatementPublisher
+{
+    /**
+     * Starts sending statements to the given subscriber, as it requests them using the
+     * {@link StatementSubscription} that is sent to {@link StatementSubscriber#onSubscribe}.
+     *
+     * @param subscriber
+     *            The subscriber to send statements to.
+     */
+    void subscribe(StatementSubscriber subscriber);
+}
@@ -0,0 +1,51 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import org.openrdf.model.Statement;
+
+/**
+ * Receives statements from a {@link StatementPublisher}, which never sends more statements than
+ * have been requested using the {@link StatementSubscription}. The methods are called by one thread
+ * at a time.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public interface StatementSubscriber
+{
+    /**
+     * Called once before any other method, with the subscription that is used to request
+     * statements.
+     *
+     * @param subscription
+     *            The subscription to the publisher.
+     */
+    void onSubscribe(StatementSubscription subscription);
+    
+    /**
+     * Receives a batch of statements, which counts as the given number of statements against the
+     * number that have been requested.
+     * <p>
+     * The array may be reused by the publisher for the next batch after this method returns, so
+     * implementations must copy any statements that they keep.
+     *
+     * @param statements
+     *            The array containing the statements.
+     * @param offset
+     *            The index of the first statement in the batch.
+     * @param length
+     *            The number of statements in the batch, which is always greater than 0.
+     */
+    void onNext(Statement[] statements, int offset, int length);
+    
+    /**
+     * Called if the publisher failed, after which no other methods are called.
+     *
+     * @param error
+     *            The reason that the publisher failed.
+     */
+    void onError(Throwable error);
+    
+    /**
+     * Called after all of the statements have been sent, after which no other methods are called.
+     */
+    void onComplete();
+}
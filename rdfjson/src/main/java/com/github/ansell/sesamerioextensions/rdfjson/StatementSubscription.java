@@ -0,0 +1,26 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+/**
+ * The link between a {@link StatementPublisher} and a {@link StatementSubscriber}, which the
+ * subscriber uses to request more statements, or to stop receiving them.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public interface StatementSubscription
+{
+    /**
+     * Allows the publisher to send up to the given number of further statements, in addition to
+     * any that have been requested but not sent yet.
+     *
+     * @param n
+     *            The number of statements, which must be greater than 0, or the subscriber is sent
+     *            an IllegalArgumentException using {@link StatementSubscriber#onError(Throwable)}.
+     */
+    void request(long n);
+    
+    /**
+     * Stops sending statements to the subscriber, and releases the resources used by the
+     * publisher. Statements that were already being sent may still be received.
+     */
+    void cancel();
+}
@@ -0,0 +1,26 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.Reader;
+
+import org.openrdf.model.Literal;
+
+/**
+ * A Literal whose label can be read as a stream of characters, without creating a String for the
+ * whole label, which is useful for literals with very long labels.
+ * <p>
+ * {@link RDFJSONPreferredParser} creates literals of this type for long values if
+ * {@link RDFJSONPreferredParserSettings#LARGE_LITERAL_THRESHOLD} is set, and
+ * {@link RDFJSONPreferredWriter} writes the labels of literals of this type in small chunks, so other
+ * implementations can be used to write literals whose labels are stored elsewhere, such as in
+ * files.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public interface StreamingLiteral extends Literal
+{
+    /**
+     * @return A new Reader for the characters of the label, which returns the same characters as
+     *         {@link #getLabel()}.
+     */
+    Reader getLabelReader();
+}
@@ -0,0 +1,471 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+/**
+ * A {@link JsonOutput} that encodes JSON directly to UTF-8 bytes in a reusable buffer, used when
+ * writing to an OutputStream.
+ * <p>
+ * Strings are escaped using a precomputed table for the ASCII range, and runs of ASCII characters
+ * that do not need escaping, which includes almost all IRIs, are copied straight into the buffer.
+ * Apart from growing the nesting stack and the chunk for the first string that is read from a
+ * Reader, nothing is allocated after construction, and the buffers are kept when the output is
+ * {@link #reset(OutputStream, boolean) reset} for the next document.
+ * <p>
+ * The output, including pretty printing, is byte for byte the same as the output from the Jackson
+ * UTF-8 generator with the default pretty printer, so documents do not change depending on whether
+ * they were written to an OutputStream or a Writer.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+final class Utf8JsonOutput implements JsonOutput
+{
+    private static final int BUFFER_SIZE = 8192;
+    
+    /**
+     * The maximum number of bytes written for a single character, which is the length of a six
+     * character unicode escape.
+     */
+    private static final int MAX_BYTES_PER_CHAR = 6;
+    
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(Charset.forName("US-ASCII"));
+    
+    /**
+     * For each ASCII character, 0 if it is written as is, -1 if it is written as a unicode escape,
+     * or otherwise the character to write after a backslash.
+     */
+    private static final byte[] ESCAPES = new byte[128];
+    
+    static
+    {
+        for(int i = 0; i < 32; i++)
+        {
+            Utf8JsonOutput.ESCAPES[i] = -1;
+        }
+        Utf8JsonOutput.ESCAPES['"'] = '"';
+        Utf8JsonOutput.ESCAPES['\\'] = '\\';
+        Utf8JsonOutput.ESCAPES['\b'] = 'b';
+        Utf8JsonOutput.ESCAPES['\t'] = 't';
+        Utf8JsonOutput.ESCAPES['\f'] = 'f';
+        Utf8JsonOutput.ESCAPES['\n'] = 'n';
+        Utf8JsonOutput.ESCAPES['\r'] = 'r';
+    }
+    
+    private static final byte[] LINE_SEPARATOR;
+    
+    static
+    {
+        final String separator = System.getProperty("line.separator");
+        LINE_SEPARATOR = (separator == null ? "\n" : separator).getBytes(Charset.forName("US-ASCII"));
+    }
+    
+    private OutputStream out;
+    private boolean prettyPrint;
+    private final byte[] buffer = new byte[Utf8JsonOutput.BUFFER_SIZE];
+    private int position;
+    
+    /**
+     * The chunk of characters for strings that are read from a Reader, which is allocated the
+     * first time that it is needed.
+     */
+    private char[] chars;
+    
+    /**
+     * The number of fields or values written so far in each open object or array.
+     */
+    private int[] counts = new int[16];
+    private boolean[] arrays = new boolean[16];
+    private int depth;
+    
+    /**
+     * The number of open objects, which is the indentation level for pretty printing. Arrays are
+     * written on a single line, so they do not change the indentation.
+     */
+    private int nesting;
+    
+    Utf8JsonOutput(final OutputStream out, final boolean prettyPrint)
+    {
+        this.out = out;
+        this.prettyPrint = prettyPrint;
+    }
+    
+    /**
+     * Starts a new document on the given stream, keeping the buffers from the previous document.
+     * Any bytes that were not written out by {@link #close()} are discarded.
+     */
+    void reset(final OutputStream nextOut, final boolean nextPrettyPrint)
+    {
+        this.out = nextOut;
+        this.prettyPrint = nextPrettyPrint;
+        this.position = 0;
+        this.depth = 0;
+        this.nesting = 0;
+        this.counts[0] = 0;
+    }
+    
+    /**
+     * Starts writing members of a top level object that already has members, written by another
+     * output, so that the first member that is written starts with a comma, for a
+     * {@link ParallelSubjectWriter}.
+     */
+    void startFragment()
+    {
+        this.push(false);
+        this.counts[this.depth] = 1;
+        if(this.prettyPrint)
+        {
+            this.nesting++;
+        }
+    }
+    
+    /**
+     * Writes the bytes from an output that was started using {@link #startFragment()} as members
+     * of the current object, or the bytes from an output that wrote complete top level values if
+     * this output is not inside of an object. The leading comma is removed if there are no members
+     * before the fragment.
+     */
+    void writeFragment(final byte[] bytes, final int length) throws IOException
+    {
+        int offset = 0;
+        if(this.depth > 0)
+        {
+            if(this.counts[this.depth] == 0)
+            {
+                offset = 1;
+            }
+            this.counts[this.depth]++;
+        }
+        if(length - offset <= this.buffer.length - this.position)
+        {
+            System.arraycopy(bytes, offset, this.buffer, this.position, length - offset);
+            this.position += length - offset;
+        }
+        else
+        {
+            this.flushBuffer();
+            this.out.write(bytes, offset, length - offset);
+        }
+    }
+    
+    @Override
+    public void close() throws IOException
+    {
+        this.flushBuffer();
+        this.out.flush();
+    }
+    
+    @Override
+    public void writeStartObject() throws IOException
+    {
+        this.beforeValue();
+        this.ensureCapacity(1);
+        this.buffer[this.position++] = '{';
+        this.push(false);
+        if(this.prettyPrint)
+        {
+            this.nesting++;
+        }
+    }
+    
+    @Override
+    public void writeEndObject() throws IOException
+    {
+        if(this.prettyPrint)
+        {
+            this.nesting--;
+            if(this.counts[this.depth] > 0)
+            {
+                this.writeIndentation();
+            }
+            else
+            {
+                this.ensureCapacity(1);
+                this.buffer[this.position++] = ' ';
+            }
+        }
+        this.ensureCapacity(1);
+        this.buffer[this.position++] = '}';
+        this.depth--;
+    }
+    
+    @Override
+    public void writeStartArray() throws IOException
+    {
+        this.beforeValue();
+        this.ensureCapacity(1);
+        this.buffer[this.position++] = '[';
+        this.push(true);
+    }
+    
+    @Override
+    public void writeEndArray() throws IOException
+    {
+        this.ensureCapacity(2);
+        if(this.prettyPrint)
+        {
+            this.buffer[this.position++] = ' ';
+        }
+        this.buffer[this.position++] = ']';
+        this.depth--;
+    }
+    
+    @Override
+    public void writeFieldName(final String name) throws IOException
+    {
+        if(this.counts[this.depth] > 0)
+        {
+            this.ensureCapacity(1);
+            this.buffer[this.position++] = ',';
+        }
+        if(this.prettyPrint)
+        {
+            this.writeIndentation();
+        }
+        this.counts[this.depth]++;
+        
+        this.writeQuoted(name);
+        
+        this.ensureCapacity(3);
+        if(this.prettyPrint)
+        {
+            this.buffer[this.position++] = ' ';
+            this.buffer[this.position++] = ':';
+            this.buffer[this.position++] = ' ';
+        }
+        else
+        {
+            this.buffer[this.position++] = ':';
+        }
+    }
+    
+    @Override
+    public void writeString(final String value) throws IOException
+    {
+        this.beforeValue();
+        this.writeQuoted(value);
+    }
+    
+    @Override
+    public void writeString(final Reader value) throws IOException
+    {
+        this.beforeValue();
+        this.writeQuoted(value);
+    }
+    
+    @Override
+    public void writeNull() throws IOException
+    {
+        this.beforeValue();
+        this.ensureCapacity(4);
+        this.buffer[this.position++] = 'n';
+        this.buffer[this.position++] = 'u';
+        this.buffer[this.position++] = 'l';
+        this.buffer[this.position++] = 'l';
+    }
+    
+    @Override
+    public void writeLineBreak() throws IOException
+    {
+        this.ensureCapacity(1);
+        this.buffer[this.position++] = '\n';
+    }
+    
+    /**
+     * Writes the separator before a value in an array. Values in objects follow a field name,
+     * which has already written the separator.
+     */
+    private void beforeValue() throws IOException
+    {
+        if(this.depth > 0 && this.arrays[this.depth])
+        {
+            this.ensureCapacity(2);
+            if(this.counts[this.depth] > 0)
+            {
+                this.buffer[this.position++] = ',';
+            }
+            if(this.prettyPrint)
+            {
+                this.buffer[this.position++] = ' ';
+            }
+            this.counts[this.depth]++;
+        }
+    }
+    
+    private void push(final boolean array)
+    {
+        this.depth++;
+        if(this.depth == this.counts.length)
+        {
+            final int[] nextCounts = new int[this.counts.length * 2];
+            System.arraycopy(this.counts, 0, nextCounts, 0, this.counts.length);
+            this.counts = nextCounts;
+            final boolean[] nextArrays = new boolean[this.arrays.length * 2];
+            System.arraycopy(this.arrays, 0, nextArrays, 0, this.arrays.length);
+            this.arrays = nextArrays;
+        }
+        this.counts[this.depth] = 0;
+        this.arrays[this.depth] = array;
+    }
+    
+    private void writeIndentation() throws IOException
+    {
+        final int spaces = this.nesting * 2;
+        this.ensureCapacity(Utf8JsonOutput.LINE_SEPARATOR.length + spaces);
+        System.arraycopy(Utf8JsonOutput.LINE_SEPARATOR, 0, this.buffer, this.position,
+                Utf8JsonOutput.LINE_SEPARATOR.length);
+        this.position += Utf8JsonOutput.LINE_SEPARATOR.length;
+        for(int i = 0; i < spaces; i++)
+        {
+            this.buffer[this.position++] = ' ';
+        }
+    }
+    
+    /**
+     * Writes the given string in quotes, escaping and encoding it as UTF-8.
+     */
+    private void writeQuoted(final String value) throws IOException
+    {
+        this.ensureCapacity(1);
+        this.buffer[this.position++] = '"';
+        
+        final int length = value.length();
+        int i = 0;
+        while(i < length)
+        {
+            // Copy as many plain ASCII characters as fit in the buffer without checking capacity
+            final int end = Math.min(length, i + this.buffer.length - this.position);
+            while(i < end)
+            {
+                final char c = value.charAt(i);
+                if(c >= 128 || Utf8JsonOutput.ESCAPES[c] != 0)
+                {
+                    break;
+                }
+                this.buffer[this.position++] = (byte)c;
+                i++;
+            }
+            if(i == length)
+            {
+                break;
+            }
+            
+            this.writeEscaped(value.charAt(i++));
+        }
+        
+        this.ensureCapacity(1);
+        this.buffer[this.position++] = '"';
+    }
+    
+    /**
+     * Writes a quoted string from the characters in the given reader, which are read and escaped in
+     * chunks, so the string never needs to be held in memory.
+     */
+    private void writeQuoted(final Reader value) throws IOException
+    {
+        if(this.chars == null)
+        {
+            this.chars = new char[Utf8JsonOutput.BUFFER_SIZE];
+        }
+        this.ensureCapacity(1);
+        this.buffer[this.position++] = '"';
+        
+        final char[] chunk = this.chars;
+        int length;
+        while((length = value.read(chunk, 0, chunk.length)) != -1)
+        {
+            int i = 0;
+            while(i < length)
+            {
+                final int end = Math.min(length, i + this.buffer.length - this.position);
+                while(i < end)
+                {
+                    final char c = chunk[i];
+                    if(c >= 128 || Utf8JsonOutput.ESCAPES[c] != 0)
+                    {
+                        break;
+                    }
+                    this.buffer[this.position++] = (byte)c;
+                    i++;
+                }
+                if(i < length)
+                {
+                    this.writeEscaped(chunk[i++]);
+                }
+            }
+        }
+        
+        this.ensureCapacity(1);
+        this.buffer[this.position++] = '"';
+    }
+    
+    /**
+     * Writes a character that is not plain ASCII, or needs to be escaped.
+     */
+    private void writeEscaped(final char c) throws IOException
+    {
+        this.ensureCapacity(Utf8JsonOutput.MAX_BYTES_PER_CHAR);
+        if(c < 128)
+        {
+            final byte escape = Utf8JsonOutput.ESCAPES[c];
+            if(escape == 0)
+            {
+                this.buffer[this.position++] = (byte)c;
+            }
+            else if(escape > 0)
+            {
+                this.buffer[this.position++] = '\\';
+                this.buffer[this.position++] = escape;
+            }
+            else
+            {
+                this.buffer[this.position++] = '\\';
+                this.buffer[this.position++] = 'u';
+                this.buffer[this.position++] = '0';
+                this.buffer[this.position++] = '0';
+                this.buffer[this.position++] = Utf8JsonOutput.HEX[c >> 4];
+                this.buffer[this.position++] = Utf8JsonOutput.HEX[c & 0xF];
+            }
+        }
+        else if(c < 0x800)
+        {
+            this.buffer[this.position++] = (byte)(0xC0 | (c >> 6));
+            this.buffer[this.position++] = (byte)(0x80 | (c & 0x3F));
+        }
+        else if(c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE)
+        {
+            this.buffer[this.position++] = (byte)(0xE0 | (c >> 12));
+            this.buffer[this.position++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+            this.buffer[this.position++] = (byte)(0x80 | (c & 0x3F));
+        }
+        else
+        {
+            // Surrogates are escaped individually, as the Jackson UTF-8 generator does
+            this.buffer[this.position++] = '\\';
+            this.buffer[this.position++] = 'u';
+            this.buffer[this.position++] = Utf8JsonOutput.HEX[c >> 12];
+            this.buffer[this.position++] = Utf8JsonOutput.HEX[(c >> 8) & 0xF];
+            this.buffer[this.position++] = Utf8JsonOutput.HEX[(c >> 4) & 0xF];
+            this.buffer[this.position++] = Utf8JsonOutput.HEX[c & 0xF];
+        }
+    }
+    
+    private void ensureCapacity(final int bytes) throws IOException
+    {
+        if(this.position + bytes > this.buffer.length)
+        {
+            this.flushBuffer();
+        }
+    }
+    
+    private void flushBuffer() throws IOException
+    {
+        if(this.position > 0)
+        {
+            this.out.write(this.buffer, 0, this.position);
+            this.position = 0;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.CharConversionException;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads the characters of a JSON string from its UTF-8 bytes, as they appear between the quotes in
+ * a document, decoding the escapes and UTF-8 sequences as the characters are read, so that long
+ * strings can be read in chunks without decoding all of the characters at once.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+final class Utf8JsonStringReader extends Reader
+{
+    private final byte[] bytes;
+    private final int end;
+    private int position;
+    
+    /**
+     * The low surrogate for a supplementary character whose high surrogate was the last character
+     * read, or 0 if there is none.
+     */
+    private char pendingLowSurrogate;
+    
+    /**
+     * @param bytes
+     *            The bytes of the string, without the quotes.
+     * @param start
+     *            The index of the first byte of the string.
+     * @param end
+     *            The index after the last byte of the string.
+     */
+    Utf8JsonStringReader(final byte[] bytes, final int start, final int end)
+    {
+        this.bytes = bytes;
+        this.position = start;
+        this.end = end;
+    }
+    
+    /**
+     * Decodes all of the characters in the given string.
+     *
+     * @param bytes
+     *            The bytes of the string, without the quotes.
+     * @return The decoded string.
+     * @throws CharConversionException
+     *             If the bytes are not a valid JSON string.
+     */
+    static String decode(final byte[] bytes) throws CharConversionException
+    {
+        // Each character takes at least one byte, or two bytes for each half of a surrogate pair
+        final char[] result = new char[bytes.length];
+        final Utf8JsonStringReader reader = new Utf8JsonStringReader(bytes, 0, bytes.length);
+        int count = 0;
+        int read;
+        while((read = reader.read(result, count, result.length - count)) > 0)
+        {
+            count += read;
+        }
+        return new String(result, 0, count);
+    }
+    
+    @Override
+    public int read(final char[] cbuf, final int off, final int len) throws CharConversionException
+    {
+        if(len == 0)
+        {
+            return 0;
+        }
+        
+        int count = 0;
+        if(this.pendingLowSurrogate != 0)
+        {
+            cbuf[off] = this.pendingLowSurrogate;
+            this.pendingLowSurrogate = 0;
+            count++;
+        }
+        final byte[] input = this.bytes;
+        while(count < len && this.position < this.end)
+        {
+            final int b = input[this.position];
+            if(b >= 0 && b != '\\')
+            {
+                cbuf[off + count++] = (char)b;
+                this.position++;
+                continue;
+            }
+            
+            final int c = this.readCodePoint();
+            if(c < Character.MIN_SUPPLEMENTARY_CODE_POINT)
+            {
+                cbuf[off + count++] = (char)c;
+            }
+            else
+            {
+                final int offset = c - Character.MIN_SUPPLEMENTARY_CODE_POINT;
+                cbuf[off + count++] = (char)(Character.MIN_HIGH_SURROGATE + (offset >> 10));
+                final char low = (char)(Character.MIN_LOW_SURROGATE + (offset & 0x3FF));
+                if(count < len)
+                {
+                    cbuf[off + count++] = low;
+                }
+                else
+                {
+                    this.pendingLowSurrogate = low;
+                }
+            }
+        }
+        return count == 0 ? -1 : count;
+    }
+    
+    @Override
+    public void close()
+    {
+        // Nothing to release
+    }
+    
+    /**
+     * Decodes the escape or multiple byte UTF-8 sequence at the current position.
+     */
+    private int readCodePoint() throws CharConversionException
+    {
+        final byte[] input = this.bytes;
+        final int b = input[this.position++];
+        if(b == '\\')
+        {
+            if(this.position >= this.end)
+            {
+                throw new CharConversionException("Unexpected end of string value in character escape");
+            }
+            final byte escape = input[this.position++];
+            switch(escape)
+            {
+                case '"':
+                case '\\':
+                case '/':
+                    return escape;
+                case 'b':
+                    return '\b';
+                case 't':
+                    return '\t';
+                case 'f':
+                    return '\f';
+                case 'n':
+                    return '\n';
+                case 'r':
+                    return '\r';
+                case 'u':
+                    if(this.position + 4 > this.end)
+                    {
+                        throw new CharConversionException("Unexpected end of string value in unicode escape");
+                    }
+                    int value = 0;
+                    for(int j = 0; j < 4; j++)
+                    {
+                        final int digit = Character.digit(input[this.position++], 16);
+                        if(digit < 0)
+                        {
+                            throw new CharConversionException(
+                                    "Unexpected character in unicode escape, expected a hex-digit");
+                        }
+                        value = (value << 4) | digit;
+                    }
+                    return value;
+                default:
+                    throw new CharConversionException("Unrecognized character escape (code " + escape + ")");
+            }
+        }
+        else if((b & 0xE0) == 0xC0)
+        {
+            return ((b & 0x1F) << 6) | this.continuation();
+        }
+        else if((b & 0xF0) == 0xE0)
+        {
+            final int c = ((b & 0x0F) << 12) | (this.continuation() << 6);
+            return c | this.continuation();
+        }
+        else if((b & 0xF8) == 0xF0)
+        {
+            int c = ((b & 0x07) << 18) | (this.continuation() << 12);
+            c |= this.continuation() << 6;
+            return c | this.continuation();
+        }
+        else
+        {
+            throw new CharConversionException("Invalid UTF-8 start byte 0x" + Integer.toHexString(b & 0xFF));
+        }
+    }
+    
+    private int continuation() throws CharConversionException
+    {
+        if(this.position >= this.end || (this.bytes[this.position] & 0xC0) != 0x80)
+        {
+            throw new CharConversionException("Invalid UTF-8 middle byte");
+        }
+        return this.bytes[this.position++] & 0x3F;
+    }
+}
@@ -0,0 +1,1291 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.CharConversionException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * A {@link JsonTokenizer} that tokenizes UTF-8 bytes directly, used for documents read from an
+ * InputStream.
+ * <p>
+ * Tokens are found by scanning the bytes in a reusable buffer, and the text of a string is only
+ * decoded when {@link #getText()} is called, so strings that are skipped are never decoded. Strings
+ * of up to 256 bytes are looked up by their bytes in a table of repeated strings, so the IRIs, blank
+ * node identifiers and field names that are repeated throughout a document are decoded once or
+ * twice, and then returned without creating an intermediate String. Objects and arrays that are
+ * skipped using {@link #skipChildren()} are scanned for their closing bracket without finding the
+ * tokens inside of them.
+ * <p>
+ * A tokenizer that reads from a stream can be {@link #reset(InputStream) reset} to read another
+ * document, keeping its buffer and its table of decoded strings, so that a parser that is reused
+ * for many small documents does not allocate them for each document.
+ * <p>
+ * A tokenizer created without a stream is fed its input using {@link #feed(ByteBuffer)}, and
+ * {@link #nextToken()} returns {@link JsonToken#NOT_AVAILABLE} instead of blocking if the next token
+ * has not been completely fed, until {@link #endOfInput()} is called. Skipping using
+ * {@link #skipChildren()} continues in later calls to {@link #nextToken()} if the closing bracket
+ * has not been fed yet.
+ * <p>
+ * Line and column numbers are counted in bytes, so column numbers after non-ASCII characters are
+ * larger than the character based column numbers reported by Jackson.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+final class Utf8JsonTokenizer implements JsonTokenizer
+{
+    private static final int BUFFER_SIZE = 65536;
+    
+    /**
+     * The number of entries in the table of decoded strings, which must be a power of two.
+     */
+    private static final int SYMBOL_TABLE_SIZE = 4096;
+    
+    /**
+     * The maximum number of bytes in a string that is looked up in the table of decoded strings.
+     * Longer strings are usually literal values that are not repeated.
+     */
+    private static final int MAX_SYMBOL_LENGTH = 256;
+    
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+    
+    private static final byte[] TRUE = "true".getBytes(Utf8JsonTokenizer.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(Utf8JsonTokenizer.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(Utf8JsonTokenizer.US_ASCII);
+    
+    /**
+     * True for each byte that ends a run of plain bytes inside of a string, which are quotes,
+     * backslashes and unescaped control characters.
+     */
+    private static final boolean[] STRING_SPECIAL = new boolean[256];
+    
+    static
+    {
+        for(int i = 0; i < 0x20; i++)
+        {
+            Utf8JsonTokenizer.STRING_SPECIAL[i] = true;
+        }
+        Utf8JsonTokenizer.STRING_SPECIAL['"'] = true;
+        Utf8JsonTokenizer.STRING_SPECIAL['\\'] = true;
+    }
+    
+    private static final byte CONTEXT_ROOT = 0;
+    private static final byte CONTEXT_OBJECT = 1;
+    private static final byte CONTEXT_ARRAY = 2;
+    
+    /**
+     * The stream to read from, or null if the whole document is already in the buffer.
+     */
+    private InputStream in;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    
+    /**
+     * The number of bytes that have been discarded from the start of the buffer.
+     */
+    private long bufferOffset;
+    private boolean endOfInput;
+    private boolean started;
+    
+    /**
+     * True if the input is fed to the tokenizer instead of being read from a stream.
+     */
+    private final boolean fed;
+    
+    /**
+     * The index in the buffer of the string that was last checked for its closing quote by
+     * {@link #isTokenAvailable()}, or -1, and the index to continue checking from, so that a long
+     * string that is fed in many parts is not scanned from its start each time.
+     */
+    private int checkedStringStart = -1;
+    private int checkedStringEnd;
+    
+    /**
+     * The state of a {@link #skipChildren()} that is waiting for more input to be fed.
+     */
+    private boolean skipping;
+    private int skipNested;
+    private boolean skipInString;
+    private boolean skipEscaped;
+    private boolean skipAfterCarriageReturn;
+    
+    private int line = 1;
+    
+    /**
+     * The index in the buffer of the first byte on the current line, which is negative if the start
+     * of the line has been discarded.
+     */
+    private int lineStart;
+    
+    private byte[] contexts = new byte[16];
+    private boolean[] nonEmpty = new boolean[16];
+    private int depth;
+    private boolean afterFieldName;
+    private boolean afterComma;
+    
+    private JsonToken currentToken;
+    private int tokenStart;
+    private int tokenLine = -1;
+    private int tokenColumn = -1;
+    
+    /**
+     * The bytes for the current token, which for strings excludes the quotes.
+     */
+    private int textStart;
+    private int textEnd;
+    
+    /**
+     * A hash of the bytes in the current string, which is calculated while finding the end of the
+     * string, and is only used to look up the string in the table of repeated strings.
+     */
+    private int textHash;
+    private String text;
+    
+    private final int[] symbolHashes = new int[Utf8JsonTokenizer.SYMBOL_TABLE_SIZE];
+    
+    /**
+     * The hash of the last string that was decoded for each entry in the table. A string is only
+     * added to the table the second time that it is seen, so that strings that only appear once,
+     * which are usually literal values, are not copied and do not replace strings that are
+     * repeated.
+     */
+    private final int[] candidateHashes = new int[Utf8JsonTokenizer.SYMBOL_TABLE_SIZE];
+    private final byte[][] symbolBytes = new byte[Utf8JsonTokenizer.SYMBOL_TABLE_SIZE][];
+    private final String[] symbolTexts = new String[Utf8JsonTokenizer.SYMBOL_TABLE_SIZE];
+    private char[] chars = new char[256];
+    
+    /**
+     * Creates a tokenizer that reads from the given stream, which is closed when the tokenizer is
+     * closed.
+     */
+    Utf8JsonTokenizer(final InputStream in)
+    {
+        this.in = in;
+        this.buffer = new byte[Utf8JsonTokenizer.BUFFER_SIZE];
+        this.fed = false;
+    }
+    
+    /**
+     * Creates a tokenizer that is fed its input using {@link #feed(ByteBuffer)}.
+     */
+    Utf8JsonTokenizer()
+    {
+        this.in = null;
+        this.buffer = new byte[Utf8JsonTokenizer.BUFFER_SIZE];
+        this.fed = true;
+    }
+    
+    /**
+     * Creates a tokenizer for the given bytes, which are not copied, and must not be modified while
+     * the tokenizer is in use.
+     */
+    Utf8JsonTokenizer(final byte[] bytes, final int length)
+    {
+        this.in = null;
+        this.buffer = bytes;
+        this.limit = length;
+        this.endOfInput = true;
+        this.fed = false;
+    }
+    
+    /**
+     * Adds the remaining bytes in the given buffer to the input of a tokenizer that is fed its
+     * input, first discarding the bytes before the current token.
+     *
+     * @param bytes
+     *            The next bytes of the document, which are copied, so the buffer can be reused as soon
+     *            as this method returns.
+     */
+    void feed(final ByteBuffer bytes)
+    {
+        if(this.endOfInput)
+        {
+            throw new IllegalStateException("Input has already ended");
+        }
+        this.discardBeforeToken();
+        final int length = bytes.remaining();
+        if(this.buffer.length - this.limit < length)
+        {
+            final byte[] next = new byte[Math.max(this.buffer.length * 2, this.limit + length)];
+            System.arraycopy(this.buffer, 0, next, 0, this.limit);
+            this.buffer = next;
+        }
+        bytes.get(this.buffer, this.limit, length);
+        this.limit += length;
+    }
+    
+    /**
+     * Marks the end of the input for a tokenizer that is fed its input, so that the tokens at the
+     * end of the document are returned, and a document that is not complete is reported.
+     */
+    void endOfInput()
+    {
+        this.endOfInput = true;
+    }
+    
+    /**
+     * Starts tokenizing a new document from the given stream, keeping the buffer, unless it grew
+     * for a very long token, and the table of decoded strings, which are the same for any document.
+     * Must only be called for a tokenizer that was created to read from a stream.
+     */
+    void reset(final InputStream nextIn)
+    {
+        this.in = nextIn;
+        if(this.buffer.length > Utf8JsonTokenizer.BUFFER_SIZE)
+        {
+            this.buffer = new byte[Utf8JsonTokenizer.BUFFER_SIZE];
+        }
+        this.position = 0;
+        this.limit = 0;
+        this.bufferOffset = 0;
+        this.endOfInput = false;
+        this.started = false;
+        this.line = 1;
+        this.lineStart = 0;
+        this.depth = 0;
+        this.afterFieldName = false;
+        this.afterComma = false;
+        this.skipping = false;
+        this.checkedStringStart = -1;
+        this.currentToken = null;
+        this.tokenStart = 0;
+        this.tokenLine = -1;
+        this.tokenColumn = -1;
+        this.textStart = 0;
+        this.textEnd = 0;
+        this.text = null;
+    }
+    
+    /**
+     * Starts tokenizing at a position after a member of the top level object, which is where the
+     * next byte from the stream or buffer is in the document, so that the rest of the object can be
+     * tokenized without the part of the document before it.
+     *
+     * @param offset
+     *            The offset in bytes of the position from the start of the document.
+     * @param nextLine
+     *            The line number of the position.
+     * @param column
+     *            The column number of the position.
+     */
+    void resume(final long offset, final int nextLine, final int column)
+    {
+        this.started = true;
+        this.bufferOffset = offset - this.position;
+        this.line = nextLine;
+        this.lineStart = this.position + 1 - column;
+        this.depth = 0;
+        this.push(Utf8JsonTokenizer.CONTEXT_OBJECT);
+        this.nonEmpty[this.depth] = true;
+        this.afterFieldName = false;
+        this.afterComma = false;
+    }
+    
+    /**
+     * Checks whether the given bytes from the start of a document could be UTF-8. JSON documents
+     * start with an ASCII character, so a document encoded using UTF-16 or UTF-32 has a zero byte
+     * in its first four bytes, unless it starts with a UTF-16 byte order mark.
+     *
+     * @param prefix
+     *            The first bytes of the document.
+     * @param length
+     *            The number of bytes in the prefix, up to 4.
+     * @return False if the document is definitely not UTF-8, and true otherwise.
+     */
+    static boolean isUtf8(final byte[] prefix, final int length)
+    {
+        if(length >= 2 && ((prefix[0] == (byte)0xFE && prefix[1] == (byte)0xFF)
+                || (prefix[0] == (byte)0xFF && prefix[1] == (byte)0xFE)))
+        {
+            return false;
+        }
+        for(int i = 0; i < length; i++)
+        {
+            if(prefix[i] == 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    public void close() throws IOException
+    {
+        if(this.in != null)
+        {
+            this.in.close();
+            // Do not keep the stream if the tokenizer is kept for reuse
+            this.in = null;
+        }
+    }
+    
+    @Override
+    public int getColumnNr()
+    {
+        return this.tokenColumn;
+    }
+    
+    @Override
+    public int getLineNr()
+    {
+        return this.tokenLine;
+    }
+    
+    /**
+     * @return The offset in bytes from the start of the input of the first byte of the current
+     *         token.
+     */
+    long getTokenOffset()
+    {
+        return this.bufferOffset + this.tokenStart;
+    }
+    
+    /**
+     * @return The offset in bytes from the start of the input of the byte after the current token.
+     */
+    long getOffset()
+    {
+        return this.bufferOffset + this.position;
+    }
+    
+    /**
+     * @return The line number of the byte after the current token.
+     */
+    int getOffsetLineNr()
+    {
+        return this.line;
+    }
+    
+    /**
+     * @return The column number of the byte after the current token.
+     */
+    int getOffsetColumnNr()
+    {
+        return this.position - this.lineStart + 1;
+    }
+    
+    @Override
+    public String getText() throws IOException
+    {
+        if(this.text == null && this.currentToken != null)
+        {
+            switch(this.currentToken)
+            {
+                case FIELD_NAME:
+                case VALUE_STRING:
+                    this.text = this.decodeString();
+                    break;
+                case VALUE_NUMBER_INT:
+                case VALUE_NUMBER_FLOAT:
+                    this.text =
+                            new String(this.buffer, this.textStart, this.textEnd - this.textStart,
+                                    Utf8JsonTokenizer.US_ASCII);
+                    break;
+                default:
+                    this.text = this.currentToken.asString();
+                    break;
+            }
+        }
+        return this.text;
+    }
+    
+    /**
+     * Checks whether the current string token is in the given set, comparing its bytes without
+     * decoding it unless it contains escapes.
+     */
+    boolean isStringIn(final Utf8StringSet set) throws IOException
+    {
+        if(this.text == null)
+        {
+            for(int i = this.textStart; i < this.textEnd; i++)
+            {
+                if(this.buffer[i] == '\\')
+                {
+                    return set.contains(this.getText());
+                }
+            }
+            return set.contains(this.buffer, this.textStart, this.textEnd);
+        }
+        return set.contains(this.text);
+    }
+    
+    /**
+     * @return The number of bytes in the current string token before it is decoded.
+     */
+    int getStringLength()
+    {
+        return this.textEnd - this.textStart;
+    }
+    
+    /**
+     * Copies the bytes of the current string token without decoding them, for strings that are too
+     * long to decode until they are used.
+     *
+     * @return The bytes of the string between the quotes, which have been checked to be a valid JSON
+     *         string.
+     * @throws IOException
+     *             If the string was not valid.
+     */
+    byte[] getStringBytes() throws IOException
+    {
+        final int length = this.textEnd - this.textStart;
+        final byte[] result = new byte[length];
+        System.arraycopy(this.buffer, this.textStart, result, 0, length);
+        final Utf8JsonStringReader reader = new Utf8JsonStringReader(result, 0, length);
+        try
+        {
+            while(reader.read(this.chars, 0, this.chars.length) > 0)
+            {
+                // Decode the string in chunks to check it
+            }
+        }
+        catch(final CharConversionException e)
+        {
+            throw this.error(e.getMessage());
+        }
+        return result;
+    }
+    
+    @Override
+    public JsonToken nextToken() throws IOException
+    {
+        this.text = null;
+        this.currentToken = null;
+        if(this.skipping)
+        {
+            this.continueSkip();
+            if(this.skipping)
+            {
+                return this.currentToken = JsonToken.NOT_AVAILABLE;
+            }
+            this.currentToken = null;
+        }
+        if(this.fed && !this.endOfInput && !this.isTokenAvailable())
+        {
+            return this.currentToken = JsonToken.NOT_AVAILABLE;
+        }
+        this.checkedStringStart = -1;
+        if(!this.started)
+        {
+            this.started = true;
+            this.skipByteOrderMark();
+        }
+        if(!this.skipWhitespace())
+        {
+            return null;
+        }
+        
+        if(this.afterFieldName)
+        {
+            if(this.buffer[this.position] != ':')
+            {
+                throw this.unexpected("was expecting a colon to separate field name and value");
+            }
+            this.position++;
+            this.afterFieldName = false;
+            if(!this.skipWhitespace())
+            {
+                return null;
+            }
+            return this.currentToken = this.readValue();
+        }
+        
+        final byte context = this.contexts[this.depth];
+        if(context == Utf8JsonTokenizer.CONTEXT_ROOT)
+        {
+            return this.currentToken = this.readValue();
+        }
+        
+        final byte close = context == Utf8JsonTokenizer.CONTEXT_OBJECT ? (byte)'}' : (byte)']';
+        if(this.buffer[this.position] != close && this.nonEmpty[this.depth])
+        {
+            if(this.buffer[this.position] != ',')
+            {
+                throw this.unexpected("was expecting comma to separate "
+                        + (context == Utf8JsonTokenizer.CONTEXT_OBJECT ? "OBJECT" : "ARRAY") + " entries");
+            }
+            this.position++;
+            this.afterComma = true;
+            if(!this.skipWhitespace())
+            {
+                return null;
+            }
+        }
+        
+        if(this.buffer[this.position] == close)
+        {
+            if(this.afterComma)
+            {
+                throw this.unexpected("was expecting a value after the comma");
+            }
+            this.markToken();
+            this.position++;
+            this.depth--;
+            return this.currentToken =
+                    context == Utf8JsonTokenizer.CONTEXT_OBJECT ? JsonToken.END_OBJECT : JsonToken.END_ARRAY;
+        }
+        
+        if(context == Utf8JsonTokenizer.CONTEXT_ARRAY)
+        {
+            return this.currentToken = this.readValue();
+        }
+        
+        if(this.buffer[this.position] != '"')
+        {
+            throw this.unexpected("was expecting double-quote to start field name");
+        }
+        this.markToken();
+        this.readString();
+        this.afterFieldName = true;
+        return this.currentToken = JsonToken.FIELD_NAME;
+    }
+    
+    /**
+     * Scans for the bracket that closes the current object or array, tracking only the nesting
+     * depth, whether the scan is inside of a string, and line breaks.
+     */
+    @Override
+    public void skipChildren() throws IOException
+    {
+        if(this.currentToken != JsonToken.START_OBJECT && this.currentToken != JsonToken.START_ARRAY)
+        {
+            return;
+        }
+        
+        this.text = null;
+        this.skipNested = 1;
+        this.skipInString = false;
+        this.skipEscaped = false;
+        this.skipAfterCarriageReturn = false;
+        this.skipping = true;
+        this.continueSkip();
+    }
+    
+    /**
+     * Continues scanning for the bracket that closes the object or array being skipped, saving the
+     * state of the scan if a tokenizer that is fed its input needs more input.
+     */
+    private void continueSkip() throws IOException
+    {
+        int nested = this.skipNested;
+        boolean inString = this.skipInString;
+        boolean escaped = this.skipEscaped;
+        boolean afterCarriageReturn = this.skipAfterCarriageReturn;
+        while(true)
+        {
+            final byte[] bytes = this.buffer;
+            final int end = this.limit;
+            int p = this.position;
+            while(p < end)
+            {
+                final byte b = bytes[p++];
+                if(afterCarriageReturn)
+                {
+                    afterCarriageReturn = false;
+                    if(b == '\n')
+                    {
+                        this.lineStart = p;
+                        continue;
+                    }
+                }
+                if(inString)
+                {
+                    if(escaped)
+                    {
+                        escaped = false;
+                    }
+                    else if(b == '\\')
+                    {
+                        escaped = true;
+                    }
+                    else if(b == '"')
+                    {
+                        inString = false;
+                    }
+                    continue;
+                }
+                
+                switch(b)
+                {
+                    case '"':
+                        inString = true;
+                        break;
+                    case '{':
+                    case '[':
+                        nested++;
+                        break;
+                    case '}':
+                    case ']':
+                        nested--;
+                        if(nested == 0)
+                        {
+                            this.position = p - 1;
+                            final boolean object = this.contexts[this.depth] == Utf8JsonTokenizer.CONTEXT_OBJECT;
+                            if((b == '}') != object)
+                            {
+                                throw this.unexpected("was expecting a close marker for "
+                                        + (object ? "OBJECT" : "ARRAY"));
+                            }
+                            this.markToken();
+                            this.position = p;
+                            this.depth--;
+                            this.currentToken = object ? JsonToken.END_OBJECT : JsonToken.END_ARRAY;
+                            this.skipping = false;
+                            return;
+                        }
+                        break;
+                    case '\n':
+                        this.line++;
+                        this.lineStart = p;
+                        break;
+                    case '\r':
+                        this.line++;
+                        this.lineStart = p;
+                        afterCarriageReturn = true;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            this.position = p;
+            this.tokenStart = p;
+            if(!this.loadMore() && this.fed && !this.endOfInput)
+            {
+                this.skipNested = nested;
+                this.skipInString = inString;
+                this.skipEscaped = escaped;
+                this.skipAfterCarriageReturn = afterCarriageReturn;
+                return;
+            }
+            else if(this.position >= this.limit)
+            {
+                this.skipping = false;
+                throw this.error("Unexpected end-of-input: expected close marker for "
+                        + (this.contexts[this.depth] == Utf8JsonTokenizer.CONTEXT_OBJECT ? "OBJECT" : "ARRAY"));
+            }
+        }
+    }
+    
+    /**
+     * Records the location of a token starting at the current position, and marks the current
+     * object or array as containing a value.
+     */
+    private void markToken()
+    {
+        this.tokenStart = this.position;
+        this.tokenLine = this.line;
+        this.tokenColumn = this.position - this.lineStart + 1;
+        this.nonEmpty[this.depth] = true;
+        this.afterComma = false;
+    }
+    
+    private JsonToken readValue() throws IOException
+    {
+        this.markToken();
+        switch(this.buffer[this.position])
+        {
+            case '{':
+                this.position++;
+                this.push(Utf8JsonTokenizer.CONTEXT_OBJECT);
+                return JsonToken.START_OBJECT;
+            case '[':
+                this.position++;
+                this.push(Utf8JsonTokenizer.CONTEXT_ARRAY);
+                return JsonToken.START_ARRAY;
+            case '"':
+                this.readString();
+                return JsonToken.VALUE_STRING;
+            case 't':
+                this.readKeyword(Utf8JsonTokenizer.TRUE);
+                return JsonToken.VALUE_TRUE;
+            case 'f':
+                this.readKeyword(Utf8JsonTokenizer.FALSE);
+                return JsonToken.VALUE_FALSE;
+            case 'n':
+                this.readKeyword(Utf8JsonTokenizer.NULL);
+                return JsonToken.VALUE_NULL;
+            case '-':
+            case '0':
+            case '1':
+            case '2':
+            case '3':
+            case '4':
+            case '5':
+            case '6':
+            case '7':
+            case '8':
+            case '9':
+                return this.readNumber();
+            default:
+                throw this.unexpected("expected a valid value (number, String, array, object, 'true', 'false' or 'null')");
+        }
+    }
+    
+    private void push(final byte context)
+    {
+        this.depth++;
+        if(this.depth == this.contexts.length)
+        {
+            final byte[] nextContexts = new byte[this.contexts.length * 2];
+            System.arraycopy(this.contexts, 0, nextContexts, 0, this.contexts.length);
+            this.contexts = nextContexts;
+            final boolean[] nextNonEmpty = new boolean[this.nonEmpty.length * 2];
+            System.arraycopy(this.nonEmpty, 0, nextNonEmpty, 0, this.nonEmpty.length);
+            this.nonEmpty = nextNonEmpty;
+        }
+        this.contexts[this.depth] = context;
+        this.nonEmpty[this.depth] = false;
+    }
+    
+    /**
+     * Finds the end of the string starting at the current position, without decoding it.
+     */
+    private void readString() throws IOException
+    {
+        this.position++;
+        this.textStart = this.position;
+        int hash = 0;
+        while(true)
+        {
+            final byte[] bytes = this.buffer;
+            final int end = this.limit;
+            int p = this.position;
+            while(p < end)
+            {
+                final byte b = bytes[p];
+                if(!Utf8JsonTokenizer.STRING_SPECIAL[b & 0xFF])
+                {
+                    hash = 31 * hash + b;
+                    p++;
+                }
+                else if(b == '"')
+                {
+                    this.textEnd = p;
+                    this.textHash = hash;
+                    this.position = p + 1;
+                    return;
+                }
+                else if(b == '\\')
+                {
+                    // Skip the escaped character, which may not have been read yet
+                    p += 2;
+                }
+                else
+                {
+                    this.position = p;
+                    throw this.error("Illegal unquoted character (code " + b
+                            + "): has to be escaped using backslash to be included in string value");
+                }
+            }
+            this.position = p;
+            if(!this.loadMore())
+            {
+                throw this.error("Unexpected end-of-input in string value");
+            }
+        }
+    }
+    
+    private void readKeyword(final byte[] keyword) throws IOException
+    {
+        for(final byte expected : keyword)
+        {
+            if(this.peek() != expected)
+            {
+                throw this.unexpected("was expecting 'true', 'false' or 'null'");
+            }
+            this.position++;
+        }
+        this.checkEndOfValue();
+    }
+    
+    private JsonToken readNumber() throws IOException
+    {
+        this.textStart = this.position;
+        boolean floatingPoint = false;
+        if(this.peek() == '-')
+        {
+            this.position++;
+        }
+        final int first = this.peek();
+        if(first == '0')
+        {
+            this.position++;
+        }
+        else if(this.skipDigits() == 0)
+        {
+            throw this.unexpected("expected digit (0-9) to follow minus sign, for valid numeric value");
+        }
+        if(this.peek() == '.')
+        {
+            floatingPoint = true;
+            this.position++;
+            if(this.skipDigits() == 0)
+            {
+                throw this.unexpected("Decimal point not followed by a digit");
+            }
+        }
+        final int exponent = this.peek();
+        if(exponent == 'e' || exponent == 'E')
+        {
+            floatingPoint = true;
+            this.position++;
+            final int sign = this.peek();
+            if(sign == '+' || sign == '-')
+            {
+                this.position++;
+            }
+            if(this.skipDigits() == 0)
+            {
+                throw this.unexpected("Exponent indicator not followed by a digit");
+            }
+        }
+        this.textEnd = this.position;
+        this.checkEndOfValue();
+        return floatingPoint ? JsonToken.VALUE_NUMBER_FLOAT : JsonToken.VALUE_NUMBER_INT;
+    }
+    
+    private int skipDigits() throws IOException
+    {
+        int count = 0;
+        int next;
+        while((next = this.peek()) >= '0' && next <= '9')
+        {
+            this.position++;
+            count++;
+        }
+        return count;
+    }
+    
+    /**
+     * Checks that the value that has just been read is followed by whitespace, a separator, or the
+     * end of the input.
+     */
+    private void checkEndOfValue() throws IOException
+    {
+        switch(this.peek())
+        {
+            case -1:
+            case ' ':
+            case '\t':
+            case '\n':
+            case '\r':
+            case ',':
+            case '}':
+            case ']':
+                return;
+            default:
+                throw this.unexpected("was expecting a separator after the value");
+        }
+    }
+    
+    private void skipByteOrderMark() throws IOException
+    {
+        while(this.limit - this.position < 3 && this.loadMore())
+        {
+            // Read until there are enough bytes to check for the mark
+        }
+        if(this.limit - this.position >= 3 && this.buffer[this.position] == (byte)0xEF
+                && this.buffer[this.position + 1] == (byte)0xBB && this.buffer[this.position + 2] == (byte)0xBF)
+        {
+            this.position += 3;
+            this.lineStart = this.position;
+        }
+    }
+    
+    /**
+     * Skips whitespace, counting lines as it goes.
+     *
+     * @return True if there is a byte at the current position, or false at the end of the input.
+     */
+    private boolean skipWhitespace() throws IOException
+    {
+        while(true)
+        {
+            final byte[] bytes = this.buffer;
+            final int end = this.limit;
+            int p = this.position;
+            while(p < end)
+            {
+                final byte b = bytes[p];
+                if(b == ' ' || b == '\t')
+                {
+                    p++;
+                }
+                else if(b == '\n')
+                {
+                    p++;
+                    this.line++;
+                    this.lineStart = p;
+                }
+                else if(b == '\r')
+                {
+                    if(p + 1 == end && !this.endOfInput)
+                    {
+                        // Read the next byte before deciding whether this is the end of the line
+                        break;
+                    }
+                    p++;
+                    if(p < end && bytes[p] == '\n')
+                    {
+                        p++;
+                    }
+                    this.line++;
+                    this.lineStart = p;
+                }
+                else
+                {
+                    this.position = p;
+                    this.tokenStart = p;
+                    return true;
+                }
+            }
+            this.position = p;
+            this.tokenStart = p;
+            if(!this.loadMore() && this.position >= this.limit)
+            {
+                return false;
+            }
+        }
+    }
+    
+    /**
+     * @return The byte at the current position, or -1 at the end of the input.
+     */
+    private int peek() throws IOException
+    {
+        if(this.position >= this.limit && !this.loadMore())
+        {
+            return -1;
+        }
+        return this.buffer[this.position];
+    }
+    
+    /**
+     * Reads more bytes into the buffer, first discarding the bytes before the current token, or
+     * growing the buffer if the current token fills it.
+     *
+     * @return False if there are no more bytes to read.
+     */
+    private boolean loadMore() throws IOException
+    {
+        if(this.endOfInput || this.fed)
+        {
+            return false;
+        }
+        
+        if(this.tokenStart > 0)
+        {
+            this.discardBeforeToken();
+        }
+        else if(this.limit == this.buffer.length)
+        {
+            final byte[] next = new byte[this.buffer.length * 2];
+            System.arraycopy(this.buffer, 0, next, 0, this.limit);
+            this.buffer = next;
+        }
+        
+        final int read = this.in.read(this.buffer, this.limit, this.buffer.length - this.limit);
+        if(read < 0)
+        {
+            this.endOfInput = true;
+            return false;
+        }
+        this.limit += read;
+        return true;
+    }
+    
+    /**
+     * Discards the bytes before the current token from the start of the buffer.
+     */
+    private void discardBeforeToken()
+    {
+        final int discard = this.tokenStart;
+        if(discard == 0)
+        {
+            return;
+        }
+        System.arraycopy(this.buffer, discard, this.buffer, 0, this.limit - discard);
+        this.limit -= discard;
+        this.position -= discard;
+        this.tokenStart = 0;
+        this.textStart -= discard;
+        this.textEnd -= discard;
+        this.lineStart -= discard;
+        this.checkedStringStart -= discard;
+        this.checkedStringEnd -= discard;
+        this.bufferOffset += discard;
+    }
+    
+    /**
+     * Checks whether the next token has been completely fed to a tokenizer that is fed its input,
+     * including the byte after a number or keyword, which shows where it ends, so that
+     * {@link #nextToken()} does not reach the end of the buffer before the end of the token.
+     * Invalid input is reported as available, so that it is reported by {@link #nextToken()}.
+     */
+    private boolean isTokenAvailable()
+    {
+        int p = this.position;
+        if(!this.started)
+        {
+            if(this.limit - p < 3)
+            {
+                return false;
+            }
+            if(this.buffer[p] == (byte)0xEF && this.buffer[p + 1] == (byte)0xBB && this.buffer[p + 2] == (byte)0xBF)
+            {
+                p += 3;
+            }
+        }
+        p = this.skipBufferedWhitespace(p);
+        if(p < this.limit && this.buffer[p] == (this.afterFieldName ? ':' : ','))
+        {
+            p = this.skipBufferedWhitespace(p + 1);
+        }
+        if(p >= this.limit)
+        {
+            return false;
+        }
+        
+        switch(this.buffer[p])
+        {
+            case '{':
+            case '[':
+            case '}':
+            case ']':
+                return true;
+            case '"':
+                int q = this.checkedStringStart == p ? this.checkedStringEnd : p + 1;
+                while(q < this.limit)
+                {
+                    final byte b = this.buffer[q];
+                    if(b == '"')
+                    {
+                        return true;
+                    }
+                    else if(b == '\\' && q + 1 == this.limit)
+                    {
+                        // Check the escaped character again after it has been fed
+                        break;
+                    }
+                    q += b == '\\' ? 2 : 1;
+                }
+                this.checkedStringStart = p;
+                this.checkedStringEnd = q;
+                return false;
+            default:
+                // Numbers and keywords end at the first byte that can not be part of them
+                while(++p < this.limit)
+                {
+                    final byte b = this.buffer[p];
+                    if(!((b >= '0' && b <= '9') || (b >= 'a' && b <= 'z') || b == 'E' || b == '.' || b == '+'
+                            || b == '-'))
+                    {
+                        return true;
+                    }
+                }
+                return false;
+        }
+    }
+    
+    /**
+     * @return The index of the first byte in the buffer at or after the given index that is not
+     *         whitespace, or the limit of the buffer if there is no such byte, or if a carriage
+     *         return is the last byte, as it may be followed by a line feed.
+     */
+    private int skipBufferedWhitespace(final int start)
+    {
+        int p = start;
+        while(p < this.limit)
+        {
+            final byte b = this.buffer[p];
+            if(b == '\r' && p + 1 == this.limit)
+            {
+                return this.limit;
+            }
+            else if(b != ' ' && b != '\t' && b != '\n' && b != '\r')
+            {
+                return p;
+            }
+            p++;
+        }
+        return p;
+    }
+    
+    /**
+     * Returns the decoded text of the current string, from the table of decoded strings if the same
+     * bytes have been decoded recently.
+     */
+    private String decodeString() throws IOException
+    {
+        final int length = this.textEnd - this.textStart;
+        if(length > Utf8JsonTokenizer.MAX_SYMBOL_LENGTH)
+        {
+            return this.decode();
+        }
+        
+        final byte[] bytes = this.buffer;
+        final int hash = this.textHash;
+        final int index = (hash ^ (hash >>> 16)) & (Utf8JsonTokenizer.SYMBOL_TABLE_SIZE - 1);
+        
+        final byte[] symbol = this.symbolBytes[index];
+        if(symbol != null && this.symbolHashes[index] == hash && symbol.length == length)
+        {
+            int i = 0;
+            while(i < length && symbol[i] == bytes[this.textStart + i])
+            {
+                i++;
+            }
+            if(i == length)
+            {
+                return this.symbolTexts[index];
+            }
+        }
+        
+        final String result = this.decode();
+        if(this.candidateHashes[index] == hash)
+        {
+            final byte[] nextSymbol = new byte[length];
+            System.arraycopy(bytes, this.textStart, nextSymbol, 0, length);
+            this.symbolHashes[index] = hash;
+            this.symbolBytes[index] = nextSymbol;
+            this.symbolTexts[index] = result;
+        }
+        else
+        {
+            this.candidateHashes[index] = hash;
+        }
+        return result;
+    }
+    
+    /**
+     * Decodes the UTF-8 bytes and escapes in the current string.
+     */
+    private String decode() throws IOException
+    {
+        final int start = this.textStart;
+        final int end = this.textEnd;
+        if(this.chars.length < end - start)
+        {
+            this.chars = new char[Math.max(end - start, this.chars.length * 2)];
+        }
+        final byte[] bytes = this.buffer;
+        final char[] result = this.chars;
+        int i = start;
+        // Copy the plain ASCII prefix, which is usually the whole string, without further checks
+        while(i < end && bytes[i] > 0 && bytes[i] != '\\')
+        {
+            result[i - start] = (char)bytes[i];
+            i++;
+        }
+        int count = i - start;
+        while(i < end)
+        {
+            final int b = bytes[i++];
+            if(b >= 0 && b != '\\')
+            {
+                result[count++] = (char)b;
+            }
+            else if(b == '\\')
+            {
+                final byte escape = bytes[i++];
+                switch(escape)
+                {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        result[count++] = (char)escape;
+                        break;
+                    case 'b':
+                        result[count++] = '\b';
+                        break;
+                    case 't':
+                        result[count++] = '\t';
+                        break;
+                    case 'f':
+                        result[count++] = '\f';
+                        break;
+                    case 'n':
+                        result[count++] = '\n';
+                        break;
+                    case 'r':
+                        result[count++] = '\r';
+                        break;
+                    case 'u':
+                        if(i + 4 > end)
+                        {
+                            throw this.error("Unexpected end of string value in unicode escape");
+                        }
+                        int value = 0;
+                        for(int j = 0; j < 4; j++)
+                        {
+                            final int digit = Character.digit(bytes[i++], 16);
+                            if(digit < 0)
+                            {
+                                throw this.error("Unexpected character in unicode escape, expected a hex-digit");
+                            }
+                            value = (value << 4) | digit;
+                        }
+                        result[count++] = (char)value;
+                        break;
+                    default:
+                        throw this.error("Unrecognized character escape (code " + escape + ")");
+                }
+            }
+            else if((b & 0xE0) == 0xC0)
+            {
+                result[count++] = (char)(((b & 0x1F) << 6) | this.continuation(i++, end));
+            }
+            else if((b & 0xF0) == 0xE0)
+            {
+                final int c = ((b & 0x0F) << 12) | (this.continuation(i++, end) << 6);
+                result[count++] = (char)(c | this.continuation(i++, end));
+            }
+            else if((b & 0xF8) == 0xF0)
+            {
+                int c = ((b & 0x07) << 18) | (this.continuation(i++, end) << 12);
+                c |= this.continuation(i++, end) << 6;
+                c |= this.continuation(i++, end);
+                c -= 0x10000;
+                result[count++] = (char)(Character.MIN_HIGH_SURROGATE + (c >> 10));
+                result[count++] = (char)(Character.MIN_LOW_SURROGATE + (c & 0x3FF));
+            }
+            else
+            {
+                throw this.error("Invalid UTF-8 start byte 0x" + Integer.toHexString(b & 0xFF));
+            }
+        }
+        return new String(result, 0, count);
+    }
+    
+    private int continuation(final int index, final int end) throws JsonParseException
+    {
+        if(index >= end || (this.buffer[index] & 0xC0) != 0x80)
+        {
+            throw this.error("Invalid UTF-8 middle byte");
+        }
+        return this.buffer[index] & 0x3F;
+    }
+    
+    private JsonParseException unexpected(final String message)
+    {
+        if(this.position >= this.limit)
+        {
+            return this.error("Unexpected end-of-input: " + message);
+        }
+        final int b = this.buffer[this.position] & 0xFF;
+        return this.error("Unexpected character ('" + (char)b + "' (code " + b + ")): " + message);
+    }
+    
+    private JsonParseException error(final String message)
+    {
+        return new JsonParseException(message, new JsonLocation(null, this.bufferOffset + this.position, -1L,
+                this.line, this.position - this.lineStart + 1));
+    }
+}
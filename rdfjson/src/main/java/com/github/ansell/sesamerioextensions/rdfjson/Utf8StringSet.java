@@ -0,0 +1,100 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.nio.charset.Charset;
+import java.util.Set;
+
+/**
+ * A set of strings that can also be looked up using their UTF-8 bytes, so that the
+ * {@link Utf8JsonTokenizer} can check whether a string in a document is in the set without decoding
+ * it.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+final class Utf8StringSet
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    
+    private final Set<String> strings;
+    
+    /**
+     * The UTF-8 bytes of the strings, in an open addressing hash table that is at most half full.
+     */
+    private final byte[][] table;
+    private final int mask;
+    
+    /**
+     * @param strings
+     *            The strings in the set, which may include null.
+     */
+    Utf8StringSet(final Set<String> strings)
+    {
+        this.strings = strings;
+        int capacity = 2;
+        while(capacity < strings.size() * 2)
+        {
+            capacity <<= 1;
+        }
+        this.table = new byte[capacity][];
+        this.mask = capacity - 1;
+        for(final String nextString : strings)
+        {
+            if(nextString != null)
+            {
+                final byte[] bytes = nextString.getBytes(Utf8StringSet.UTF8);
+                int index = Utf8StringSet.hash(bytes, 0, bytes.length) & this.mask;
+                while(this.table[index] != null)
+                {
+                    index = (index + 1) & this.mask;
+                }
+                this.table[index] = bytes;
+            }
+        }
+    }
+    
+    boolean contains(final String text)
+    {
+        return this.strings.contains(text);
+    }
+    
+    /**
+     * @return True if the UTF-8 bytes in the given range of the buffer are the bytes of one of the
+     *         strings in the set.
+     */
+    boolean contains(final byte[] buffer, final int start, final int end)
+    {
+        final int length = end - start;
+        int index = Utf8StringSet.hash(buffer, start, end) & this.mask;
+        byte[] next;
+        while((next = this.table[index]) != null)
+        {
+            if(next.length == length && Utf8StringSet.equals(next, buffer, start))
+            {
+                return true;
+            }
+            index = (index + 1) & this.mask;
+        }
+        return false;
+    }
+    
+    private static boolean equals(final byte[] bytes, final byte[] buffer, final int start)
+    {
+        for(int i = 0; i < bytes.length; i++)
+        {
+            if(bytes[i] != buffer[start + i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static int hash(final byte[] buffer, final int start, final int end)
+    {
+        int result = 1;
+        for(int i = start; i < end; i++)
+        {
+            result = 31 * result + buffer[i];
+        }
+        return result ^ (result >>> 16);
+    }
+}
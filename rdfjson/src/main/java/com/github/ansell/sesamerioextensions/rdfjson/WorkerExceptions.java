@@ -0,0 +1,47 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.IOException;
+
+/**
+ * Rethrows the causes of the ExecutionExceptions from tasks on worker threads on the thread that
+ * waited for the task, so that they can be thrown without being wrapped.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+final class WorkerExceptions
+{
+    /**
+     * Throws the given exception from a worker if it is unchecked, and returns otherwise.
+     */
+    static void rethrowUnchecked(final Throwable cause)
+    {
+        if(cause instanceof RuntimeException)
+        {
+            throw (RuntimeException)cause;
+        }
+        else if(cause instanceof Error)
+        {
+            throw (Error)cause;
+        }
+    }
+    
+    /**
+     * Throws the given exception from a worker if it is an IOException or is unchecked, and returns
+     * otherwise.
+     */
+    static void rethrowIO(final Throwable cause) throws IOException
+    {
+        if(cause instanceof IOException)
+        {
+            throw (IOException)cause;
+        }
+        WorkerExceptions.rethrowUnchecked(cause);
+    }
+    
+    /**
+     * Private default constructor.
+     */
+    private WorkerExceptions()
+    {
+    }
+}
@@ -0,0 +1,31 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import org.kohsuke.MetaInfServices;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.RDFParserFactory;
+
+import com.github.ansell.sesamerioextensions.api.RDFFormatExtensions;
+
+/**
+ * Parser Factory for the CompressedRDFJSONParser using ZSTD compression.
+ * 
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+@MetaInfServices(RDFParserFactory.class)
+public class ZstdRDFJSONParserFactory implements RDFParserFactory
+{
+    
+    @Override
+    public RDFParser getParser()
+    {
+        return new CompressedRDFJSONParser(this.getRDFFormat(), RDFJSONCompression.ZSTD);
+    }
+    
+    @Override
+    public RDFFormat getRDFFormat()
+    {
+        return RDFFormatExtensions.RDFJSONPREFERRED_ZSTD;
+    }
+    
+}
@@ -0,0 +1,34 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+
+/**
+ * Creates the zstd-jni streams for {@link RDFJSONCompression#ZSTD}, in a separate class so that
+ * zstd-jni is only loaded if Zstandard compression is used.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+final class ZstdStreams
+{
+    static InputStream decompress(final InputStream in) throws IOException
+    {
+        return new ZstdInputStream(in);
+    }
+    
+    static OutputStream compress(final OutputStream out) throws IOException
+    {
+        return new ZstdOutputStream(out);
+    }
+    
+    /**
+     * Private default constructor.
+     */
+    private ZstdStreams()
+    {
+    }
+}
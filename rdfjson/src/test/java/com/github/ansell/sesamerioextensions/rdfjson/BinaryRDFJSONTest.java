@@ -0,0 +1,173 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Model;
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.model.vocabulary.XMLSchema;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.Rio;
+import org.openrdf.rio.helpers.BasicParserSettings;
+import org.openrdf.rio.helpers.StatementCollector;
+
+import com.github.ansell.sesamerioextensions.api.RDFFormatExtensions;
+
+/**
+ * Tests for {@link BinaryRDFJSONParser} and {@link BinaryRDFJSONWriter}.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class BinaryRDFJSONTest
+{
+    private final ValueFactory vf = ValueFactoryImpl.getInstance();
+    
+    private byte[] write(final Iterable<Statement> statements, final int dictionarySize) throws Exception
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final BinaryRDFJSONWriter writer = new BinaryRDFJSONWriter(out);
+        writer.getWriterConfig().set(BinaryRDFJSONWriterSettings.DICTIONARY_SIZE, dictionarySize);
+        writer.startRDF();
+        for(final Statement nextStatement : statements)
+        {
+            writer.handleStatement(nextStatement);
+        }
+        writer.endRDF();
+        return out.toByteArray();
+    }
+    
+    private List<Statement> parse(final byte[] bytes) throws Exception
+    {
+        final Model model = new LinkedHashModel();
+        final BinaryRDFJSONParser parser = new BinaryRDFJSONParser();
+        parser.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+        parser.setRDFHandler(new StatementCollector(model));
+        parser.parse(new ByteArrayInputStream(bytes), RDFJSONTestConstants.BASE_URI);
+        return new ArrayList<Statement>(model);
+    }
+    
+    private List<Statement> createStatements()
+    {
+        return Arrays.asList(
+                this.vf.createStatement(RDFJSONTestConstants.ARTHUR, RDFJSONTestConstants.ABOUT,
+                        this.vf.createLiteral("Arthur Dent")),
+                this.vf.createStatement(RDFJSONTestConstants.ARTHUR, RDFJSONTestConstants.ABOUT,
+                        this.vf.createLiteral("Arthur Dent", "en"), RDFJSONTestConstants.GRAPH1),
+                this.vf.createStatement(RDFJSONTestConstants.ARTHUR, RDFJSONTestConstants.FOAF.KNOWS,
+                        RDFJSONTestConstants.P1, RDFJSONTestConstants.P1),
+                this.vf.createStatement(RDFJSONTestConstants.P1, RDFJSONTestConstants.FOAF.NAME,
+                        this.vf.createLiteral("Ford Prefect \u00e9\u4e2d\ud83d\ude00", "en")),
+                this.vf.createStatement(RDFJSONTestConstants.P1, RDFJSONTestConstants.ABOUT,
+                        this.vf.createLiteral("42", XMLSchema.INT), RDFJSONTestConstants.GRAPH1),
+                this.vf.createStatement(RDFJSONTestConstants.ARTHUR, RDFJSONTestConstants.ABOUT,
+                        this.vf.createLiteral("", XMLSchema.STRING)));
+    }
+    
+    @Test
+    public void testRoundTrip() throws Exception
+    {
+        final List<Statement> statements = this.createStatements();
+        
+        Assert.assertEquals(statements, this.parse(this.write(statements, 1000)));
+    }
+    
+    @Test
+    public void testRoundTripSmallDictionary() throws Exception
+    {
+        final List<Statement> statements = this.createStatements();
+        
+        Assert.assertEquals(statements, this.parse(this.write(statements, 0)));
+        Assert.assertEquals(statements, this.parse(this.write(statements, 1)));
+        Assert.assertTrue(this.write(statements, 0).length > this.write(statements, 1000).length);
+    }
+    
+    @Test
+    public void testRoundTripBio2RDFConfiguration() throws Exception
+    {
+        final InputStream in = this.getClass().getResourceAsStream("bio2rdf-configuration.ttl");
+        final Model expected;
+        try
+        {
+            expected = Rio.parse(in, RDFJSONTestConstants.BASE_URI, RDFFormat.TURTLE);
+        }
+        finally
+        {
+            in.close();
+        }
+        
+        final byte[] binary = this.write(expected, 262144);
+        Assert.assertEquals(new ArrayList<Statement>(expected), this.parse(binary));
+        
+        final ByteArrayOutputStream text = new ByteArrayOutputStream();
+        Rio.write(expected, new RDFJSONPreferredWriter(text, RDFFormatExtensions.RDFJSONPREFERRED));
+        Assert.assertTrue(binary.length < text.size() / 2);
+    }
+    
+    @Test
+    public void testEmptyDocument() throws Exception
+    {
+        Assert.assertTrue(this.parse(this.write(new ArrayList<Statement>(), 1000)).isEmpty());
+    }
+    
+    @Test
+    public void testTruncatedDocument() throws Exception
+    {
+        final byte[] bytes = this.write(this.createStatements(), 1000);
+        try
+        {
+            this.parse(Arrays.copyOf(bytes, bytes.length - 3));
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final RDFParseException e)
+        {
+            Assert.assertTrue(e.getMessage().contains("Unexpected end of binary RDF/JSON document"));
+        }
+    }
+    
+    @Test
+    public void testTruncatedLargeString() throws Exception
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(BinaryRDFJSON.MAGIC);
+        out.write(0);
+        out.write(BinaryRDFJSON.SUBJECT);
+        out.write(BinaryRDFJSON.URI_VALUE);
+        out.write(0);
+        // A length of Integer.MAX_VALUE for a string that is not in the document
+        out.write(new byte[] { (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x07 });
+        out.write("http://example.org/".getBytes("UTF-8"));
+        try
+        {
+            this.parse(out.toByteArray());
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final RDFParseException e)
+        {
+            Assert.assertTrue(e.getMessage().contains("Unexpected end of binary RDF/JSON document"));
+        }
+    }
+    
+    @Test
+    public void testNotBinaryRDFJSON() throws Exception
+    {
+        try
+        {
+            this.parse("{}".getBytes("UTF-8"));
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final RDFParseException e)
+        {
+            Assert.assertTrue(e.getMessage().contains("Not a binary RDF/JSON document"));
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Model;
+import org.openrdf.model.Statement;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.RDFWriter;
+import org.openrdf.rio.Rio;
+import org.openrdf.rio.helpers.BasicParserSettings;
+import org.openrdf.rio.helpers.StatementCollector;
+
+import com.github.ansell.sesamerioextensions.api.RDFFormatExtensions;
+
+/**
+ * Tests for {@link CompressedRDFJSONParser} and {@link CompressedRDFJSONWriter}.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class CompressedRDFJSONTest
+{
+    /**
+     * Creates a model that is large enough to fill more than one compression buffer.
+     */
+    private Model createLargeModel()
+    {
+        final Model model = new LinkedHashModel();
+        for(int i = 0; i < 5000; i++)
+        {
+            model.add(ValueFactoryImpl.getInstance().createURI("http://example.org/subject/" + i),
+                    RDFJSONTestConstants.ABOUT, ValueFactoryImpl.getInstance().createLiteral("value " + i),
+                    RDFJSONTestConstants.GRAPH1);
+        }
+        return model;
+    }
+    
+    private byte[] writeCompressed(final RDFJSONCompression compression, final boolean background,
+            final Model model) throws Exception
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final RDFWriter writer =
+                new CompressedRDFJSONWriter(out, RDFFormatExtensions.RDFJSONPREFERRED_GZIP, compression);
+        writer.getWriterConfig().set(RDFJSONPreferredWriterSettings.BACKGROUND_COMPRESSION, background);
+        return RDFJSONTestUtils.write(writer, out, model);
+    }
+    
+    private byte[] writeUncompressed(final Model model) throws Exception
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        return RDFJSONTestUtils.write(new RDFJSONPreferredWriter(out, RDFFormatExtensions.RDFJSONPREFERRED), out,
+                model);
+    }
+    
+    private List<Statement> parse(final RDFParser parser, final byte[] bytes) throws Exception
+    {
+        final List<Statement> results = new ArrayList<Statement>();
+        parser.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+        parser.setRDFHandler(new StatementCollector(results));
+        parser.parse(new ByteArrayInputStream(bytes), RDFJSONTestConstants.BASE_URI);
+        return results;
+    }
+    
+    private void assertRoundTrip(final RDFJSONCompression compression, final Model model) throws Exception
+    {
+        final byte[] uncompressed = this.writeUncompressed(model);
+        final List<Statement> expected = this.parse(new RDFJSONPreferredParser(), uncompressed);
+        
+        for(final boolean nextBackground : new boolean[] { true, false })
+        {
+            final byte[] compressed = this.writeCompressed(compression, nextBackground, model);
+            
+            Assert.assertArrayEquals(uncompressed,
+                    RDFJSONTestUtils.readFully(compression.decompress(new ByteArrayInputStream(compressed))));
+            Assert.assertEquals(expected, this.parse(new CompressedRDFJSONParser(
+                    RDFFormatExtensions.RDFJSONPREFERRED_GZIP, compression), compressed));
+        }
+    }
+    
+    @Test
+    public void testGzipRoundTrip() throws Exception
+    {
+        this.assertRoundTrip(RDFJSONCompression.GZIP,
+                RDFJSONTestUtils.parseResource("bio2rdf-configuration.ttl", RDFFormat.TURTLE));
+        this.assertRoundTrip(RDFJSONCompression.GZIP, this.createLargeModel());
+    }
+    
+    @Test
+    public void testGzipIsStandard() throws Exception
+    {
+        final Model model = this.createLargeModel();
+        
+        final byte[] compressed = this.writeCompressed(RDFJSONCompression.GZIP, true, model);
+        
+        Assert.assertArrayEquals(this.writeUncompressed(model),
+                RDFJSONTestUtils.readFully(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+        Assert.assertTrue(compressed.length < this.writeUncompressed(model).length / 4);
+    }
+    
+    @Test
+    public void testZstdRoundTrip() throws Exception
+    {
+        this.assertRoundTrip(RDFJSONCompression.ZSTD,
+                RDFJSONTestUtils.parseResource("bio2rdf-configuration.ttl", RDFFormat.TURTLE));
+        this.assertRoundTrip(RDFJSONCompression.ZSTD, this.createLargeModel());
+    }
+    
+    @Test
+    public void testResetGzipWriter() throws Exception
+    {
+        final Model firstModel = this.createLargeModel();
+        final Model secondModel = RDFJSONTestUtils.parseResource("bio2rdf-configuration.ttl", RDFFormat.TURTLE);
+        
+        final ByteArrayOutputStream firstOut = new ByteArrayOutputStream();
+        final CompressedRDFJSONWriter writer =
+                new CompressedRDFJSONWriter(firstOut, RDFFormatExtensions.RDFJSONPREFERRED_GZIP,
+                        RDFJSONCompression.GZIP);
+        final byte[] first = RDFJSONTestUtils.write(writer, firstOut, firstModel);
+        
+        final ByteArrayOutputStream secondOut = new ByteArrayOutputStream();
+        writer.reset(secondOut);
+        final byte[] second = RDFJSONTestUtils.write(writer, secondOut, secondModel);
+        
+        Assert.assertArrayEquals(first, firstOut.toByteArray());
+        Assert.assertArrayEquals(this.writeUncompressed(firstModel),
+                RDFJSONTestUtils.readFully(new GZIPInputStream(new ByteArrayInputStream(first))));
+        Assert.assertArrayEquals(this.writeUncompressed(secondModel),
+                RDFJSONTestUtils.readFully(new GZIPInputStream(new ByteArrayInputStream(second))));
+        Assert.assertEquals(this.parse(new RDFJSONPreferredParser(), this.writeUncompressed(secondModel)),
+                this.parse(new CompressedRDFJSONParser(RDFFormatExtensions.RDFJSONPREFERRED_GZIP,
+                        RDFJSONCompression.GZIP), second));
+    }
+    
+    @Test(expected = UnsupportedOperationException.class)
+    public void testResetNeedsOutputStream() throws Exception
+    {
+        new CompressedRDFJSONWriter(new ByteArrayOutputStream(), RDFFormatExtensions.RDFJSONPREFERRED_GZIP,
+                RDFJSONCompression.GZIP).reset(new StringWriter());
+    }
+    
+    @Test
+    public void testOutputStreamNotClosed() throws Exception
+    {
+        final boolean[] closed = new boolean[1];
+        final ByteArrayOutputStream out = new ByteArrayOutputStream()
+            {
+                @Override
+                public void close() throws IOException
+                {
+                    closed[0] = true;
+                }
+            };
+        
+        RDFJSONTestUtils.write(new CompressedRDFJSONWriter(out, RDFFormatExtensions.RDFJSONPREFERRED_GZIP,
+                RDFJSONCompression.GZIP), out, this.createLargeModel());
+        
+        Assert.assertFalse(closed[0]);
+    }
+    
+    @Test
+    public void testBackgroundCompressionError() throws Exception
+    {
+        final IOException failure = new IOException("Disk full");
+        final ByteArrayOutputStream out = new ByteArrayOutputStream()
+            {
+                private boolean headerWritten;
+                
+                @Override
+                public synchronized void write(final byte[] b, final int off, final int len)
+                {
+                    // Allow the header that is written on the writing thread in startRDF
+                    if(this.headerWritten)
+                    {
+                        throw new IllegalStateException(failure);
+                    }
+                    this.headerWritten = true;
+                    super.write(b, off, len);
+                }
+            };
+        
+        try
+        {
+            RDFJSONTestUtils.write(new CompressedRDFJSONWriter(out, RDFFormatExtensions.RDFJSONPREFERRED_GZIP,
+                    RDFJSONCompression.GZIP), out, this.createLargeModel());
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final IllegalStateException e)
+        {
+            Assert.assertSame(failure, e.getCause());
+        }
+        
+        this.assertCompressorsStopped();
+    }
+    
+    /**
+     * Waits for the compression threads to stop after a document was abandoned.
+     */
+    private void assertCompressorsStopped() throws InterruptedException
+    {
+        for(final Thread nextThread : Thread.getAllStackTraces().keySet())
+        {
+            if(nextThread.getName().startsWith("rdfjson-compressor-"))
+            {
+                nextThread.join(5000);
+                Assert.assertFalse(nextThread.getName(), nextThread.isAlive());
+            }
+        }
+    }
+    
+    @Test
+    public void testFactories() throws Exception
+    {
+        final Model model = RDFJSONTestUtils.parseResource("example0.json", RDFFormatExtensions.RDFJSONPREFERRED);
+        
+        for(final RDFFormat nextFormat : new RDFFormat[] { RDFFormatExtensions.RDFJSONPREFERRED_GZIP,
+                RDFFormatExtensions.RDFJSONPREFERRED_ZSTD })
+        {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Rio.write(model, out, nextFormat);
+            
+            final Model actual =
+                    Rio.parse(new ByteArrayInputStream(out.toByteArray()), RDFJSONTestConstants.BASE_URI, nextFormat);
+            Assert.assertEquals(nextFormat.getName(), model.size(), actual.size());
+        }
+    }
+    
+    @Test(expected = UnsupportedOperationException.class)
+    public void testWriterFactoryNeedsOutputStream() throws Exception
+    {
+        Rio.createWriter(RDFFormatExtensions.RDFJSONPREFERRED_GZIP, new StringWriter());
+    }
+    
+    @Test
+    public void testFormatForFileName() throws Exception
+    {
+        Assert.assertEquals(RDFFormatExtensions.RDFJSONPREFERRED_GZIP,
+                RDFFormatExtensions.getFormatForFileName("/data/example.rj.gz"));
+        Assert.assertEquals(RDFFormatExtensions.RDFJSONPREFERRED_GZIP,
+                RDFFormatExtensions.getFormatForFileName("Example.JSON.GZ"));
+        Assert.assertEquals(RDFFormatExtensions.RDFJSONPREFERRED_ZSTD,
+                RDFFormatExtensions.getFormatForFileName("example.json.zst"));
+        Assert.assertEquals(RDFFormat.TURTLE, RDFFormatExtensions.getFormatForFileName("example.ttl"));
+        Assert.assertNull(RDFFormatExtensions.getFormatForFileName("example.gz"));
+    }
+}
@@ -0,0 +1,332 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.helpers.StatementCollector;
+
+import com.github.ansell.sesamerioextensions.api.RDFFormatExtensions;
+
+/**
+ * Tests for parsing documents from the checkpoints reported by {@link RDFJSONPreferredParser}.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class RDFJSONCheckpointTest
+{
+    /**
+     * A listener that records each checkpoint, along with the number of statements that had been
+     * handled when it was reported.
+     */
+    private static final class RecordingListener implements RDFJSONCheckpointListener
+    {
+        private final List<Statement> statements;
+        private final List<RDFJSONCheckpoint> checkpoints = new ArrayList<RDFJSONCheckpoint>();
+        private final List<Integer> counts = new ArrayList<Integer>();
+        
+        RecordingListener(final List<Statement> statements)
+        {
+            this.statements = statements;
+        }
+        
+        @Override
+        public void checkpoint(final RDFJSONCheckpoint checkpoint)
+        {
+            this.checkpoints.add(checkpoint);
+            this.counts.add(this.statements.size());
+        }
+    }
+    
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+    
+    private byte[] createDocument(final int subjects, final boolean lines) throws Exception
+    {
+        final StringBuilder result = new StringBuilder(lines ? "" : "{\r\n");
+        for(int i = 0; i < subjects; i++)
+        {
+            if(lines)
+            {
+                result.append("{");
+            }
+            else if(i > 0)
+            {
+                result.append(",\n  ");
+            }
+            result.append("\"http://example.org/subject/").append(i).append("\" : {\"http://example.org/about\":[");
+            result.append("{\"type\":\"literal\",\"value\":\"\u00e9t\u00e9 ").append(i);
+            result.append(lines ? "\"}," : "\"},\n");
+            result.append("{\"type\":\"bnode\",\"value\":\"_:b").append(i % 3).append("\"}]}");
+            if(lines)
+            {
+                result.append("}\n");
+            }
+        }
+        result.append(lines ? "" : "\n}");
+        return result.toString().getBytes("UTF-8");
+    }
+    
+    private <T extends RDFJSONPreferredParser> T createParser(final T parser)
+    {
+        parser.getParserConfig().set(RDFJSONPreferredParserSettings.CHECKPOINT_INTERVAL, 1);
+        return parser;
+    }
+    
+    private RecordingListener parse(final RDFJSONPreferredParser parser, final byte[] document,
+            final List<Statement> results) throws Exception
+    {
+        final RecordingListener listener = new RecordingListener(results);
+        parser.getParserConfig().set(RDFJSONPreferredParserSettings.CHECKPOINT_LISTENER, listener);
+        parser.setRDFHandler(new StatementCollector(results));
+        parser.parse(new ByteArrayInputStream(document), RDFJSONTestConstants.BASE_URI);
+        return listener;
+    }
+    
+    private List<Statement> resume(final RDFJSONPreferredParser parser, final byte[] document,
+            final RDFJSONCheckpoint checkpoint) throws Exception
+    {
+        final List<Statement> results = new ArrayList<Statement>();
+        parser.getParserConfig().set(RDFJSONPreferredParserSettings.CHECKPOINT_LISTENER, null);
+        parser.setRDFHandler(new StatementCollector(results));
+        parser.parse(new ByteArrayInputStream(document), checkpoint, RDFJSONTestConstants.BASE_URI);
+        return results;
+    }
+    
+    private void assertResumeMatches(final RDFJSONPreferredParser parser, final byte[] document,
+            final int expectedCheckpoints) throws Exception
+    {
+        final List<Statement> expected = new ArrayList<Statement>();
+        final RecordingListener listener = this.parse(parser, document, expected);
+        Assert.assertEquals(expectedCheckpoints, listener.checkpoints.size());
+        
+        for(int i = 0; i < listener.checkpoints.size(); i++)
+        {
+            final List<Statement> results =
+                    new ArrayList<Statement>(expected.subList(0, listener.counts.get(i).intValue()));
+            results.addAll(this.resume(parser, document, listener.checkpoints.get(i)));
+            // Blank nodes that were not seen before the checkpoint are created again, so the
+            // results are only isomorphic
+            Assert.assertEquals("checkpoint=" + listener.checkpoints.get(i), new LinkedHashModel(expected),
+                    new LinkedHashModel(results));
+        }
+    }
+    
+    @Test
+    public void testResumeFromEachCheckpoint() throws Exception
+    {
+        this.assertResumeMatches(this.createParser(new RDFJSONPreferredParser()), this.createDocument(20, false), 20);
+    }
+    
+    @Test
+    public void testResumeFromEachCheckpointLines() throws Exception
+    {
+        this.assertResumeMatches(this.createParser(new RDFJSONLinesParser()), this.createDocument(20, true), 20);
+    }
+    
+    @Test
+    public void testResumeFromEachCheckpointCompressed() throws Exception
+    {
+        for(final RDFJSONCompression nextCompression : RDFJSONCompression.values())
+        {
+            final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            final OutputStream out = nextCompression.compress(compressed);
+            out.write(this.createDocument(20, false));
+            out.close();
+            
+            // Checkpoints are offsets in the decompressed document
+            this.assertResumeMatches(this.createParser(new CompressedRDFJSONParser(
+                    RDFFormatExtensions.RDFJSONPREFERRED_GZIP, nextCompression)), compressed.toByteArray(), 20);
+        }
+    }
+    
+    @Test
+    public void testResumeCompressedFile() throws Exception
+    {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        final OutputStream compressor = RDFJSONCompression.GZIP.compress(compressed);
+        compressor.write(this.createDocument(20, false));
+        compressor.close();
+        final byte[] document = compressed.toByteArray();
+        final File file = this.tempDir.newFile("checkpoint.json.gz");
+        final FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(document);
+        }
+        finally
+        {
+            out.close();
+        }
+        
+        final RDFJSONPreferredParser parser =
+                this.createParser(new CompressedRDFJSONParser(RDFFormatExtensions.RDFJSONPREFERRED_GZIP,
+                        RDFJSONCompression.GZIP));
+        final List<Statement> expected = new ArrayList<Statement>();
+        final RecordingListener listener = this.parse(parser, document, expected);
+        
+        final List<Statement> results = new ArrayList<Statement>(expected.subList(0, listener.counts.get(9)));
+        parser.getParserConfig().set(RDFJSONPreferredParserSettings.CHECKPOINT_LISTENER, null);
+        parser.setRDFHandler(new StatementCollector(results));
+        parser.parse(file, listener.checkpoints.get(9), RDFJSONTestConstants.BASE_URI);
+        Assert.assertEquals(new LinkedHashModel(expected), new LinkedHashModel(results));
+    }
+    
+    @Test
+    public void testCheckpointInterval() throws Exception
+    {
+        final RDFJSONPreferredParser parser = new RDFJSONPreferredParser();
+        parser.getParserConfig().set(RDFJSONPreferredParserSettings.CHECKPOINT_INTERVAL, 7);
+        this.assertResumeMatches(parser, this.createDocument(20, false), 2);
+    }
+    
+    @Test
+    public void testResumeWithSubjectFilter() throws Exception
+    {
+        final RDFJSONPreferredParser parser = this.createParser(new RDFJSONPreferredParser());
+        parser.getParserConfig().set(RDFJSONPreferredParserSettings.SUBJECT_FILTER,
+                new HashSet<Resource>(Arrays.asList(RDFJSONTestConstants.vf.createURI("http://example.org/subject/4"),
+                        RDFJSONTestConstants.vf.createURI("http://example.org/subject/15"))));
+        // Subjects that are skipped still have checkpoints after them
+        this.assertResumeMatches(parser, this.createDocument(20, false), 20);
+    }
+    
+    @Test
+    public void testCheckpointPosition() throws Exception
+    {
+        final List<Statement> results = new ArrayList<Statement>();
+        final RecordingListener listener =
+                this.parse(this.createParser(new RDFJSONPreferredParser()), this.createDocument(3, false), results);
+        final RDFJSONCheckpoint first = listener.checkpoints.get(0);
+        Assert.assertEquals(3, first.getLine());
+        Assert.assertEquals(34, first.getColumn());
+        Assert.assertEquals(1, first.getBlankNodes().size());
+        Assert.assertEquals(3, listener.checkpoints.get(2).getBlankNodes().size());
+        Assert.assertEquals(6, results.size());
+    }
+    
+    @Test
+    public void testCheckpointsAfterResume() throws Exception
+    {
+        final byte[] document = this.createDocument(20, false);
+        final RDFJSONPreferredParser parser = this.createParser(new RDFJSONPreferredParser());
+        final RecordingListener listener = this.parse(parser, document, new ArrayList<Statement>());
+        final RDFJSONCheckpoint first = listener.checkpoints.get(0);
+        
+        final List<Statement> results = new ArrayList<Statement>();
+        final RecordingListener resumed = new RecordingListener(results);
+        parser.getParserConfig().set(RDFJSONPreferredParserSettings.CHECKPOINT_LISTENER, resumed);
+        parser.setRDFHandler(new StatementCollector(results));
+        parser.parse(new ByteArrayInputStream(document), first, RDFJSONTestConstants.BASE_URI);
+        
+        // Later checkpoints include the blank nodes from the checkpoint that parsing resumed from
+        Assert.assertEquals(19, resumed.checkpoints.size());
+        final RDFJSONCheckpoint last = resumed.checkpoints.get(18);
+        Assert.assertEquals(listener.checkpoints.get(19).getOffset(), last.getOffset());
+        Assert.assertEquals(listener.checkpoints.get(19).getBlankNodes().keySet(), last.getBlankNodes().keySet());
+        Assert.assertEquals(first.getBlankNodes().get("b0"), last.getBlankNodes().get("b0"));
+    }
+    
+    @Test
+    public void testResumeErrorLineNumber() throws Exception
+    {
+        final byte[] document =
+                ("{\"http://example.org/Arthur\":{\"http://example.org/about\":"
+                        + "[{\"type\":\"literal\",\"value\":\"x\"}]},\n\n\"http://example.org/Ford\":{\n"
+                        + "\"http://example.org/about\":[{\"value\":\"y\"}]}}").getBytes("UTF-8");
+        final List<Statement> results = new ArrayList<Statement>();
+        final RDFJSONPreferredParser parser = this.createParser(new RDFJSONPreferredParser());
+        final RecordingListener listener = new RecordingListener(results);
+        parser.getParserConfig().set(RDFJSONPreferredParserSettings.CHECKPOINT_LISTENER, listener);
+        parser.setRDFHandler(new StatementCollector(results));
+        try
+        {
+            parser.parse(new ByteArrayInputStream(document), RDFJSONTestConstants.BASE_URI);
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final RDFParseException e)
+        {
+            Assert.assertEquals(4, e.getLineNumber());
+        }
+        
+        Assert.assertEquals(1, listener.checkpoints.size());
+        try
+        {
+            this.resume(parser, document, listener.checkpoints.get(0));
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final RDFParseException e)
+        {
+            Assert.assertEquals(4, e.getLineNumber());
+        }
+    }
+    
+    @Test
+    public void testResumeFileAfterSerializing() throws Exception
+    {
+        final byte[] document = this.createDocument(20, false);
+        final File file = this.tempDir.newFile("checkpoint.json");
+        final FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(document);
+        }
+        finally
+        {
+            out.close();
+        }
+        
+        final RDFJSONPreferredParser parser = this.createParser(new RDFJSONPreferredParser());
+        final List<Statement> expected = new ArrayList<Statement>();
+        final RecordingListener listener = this.parse(parser, document, expected);
+        
+        final ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        final ObjectOutputStream objectOut = new ObjectOutputStream(serialized);
+        objectOut.writeObject(listener.checkpoints.get(9));
+        objectOut.close();
+        final RDFJSONCheckpoint checkpoint =
+                (RDFJSONCheckpoint)new ObjectInputStream(new ByteArrayInputStream(serialized.toByteArray()))
+                        .readObject();
+        
+        final List<Statement> results = new ArrayList<Statement>(expected.subList(0, listener.counts.get(9)));
+        parser.getParserConfig().set(RDFJSONPreferredParserSettings.CHECKPOINT_LISTENER, null);
+        parser.setRDFHandler(new StatementCollector(results));
+        parser.parse(file, checkpoint, RDFJSONTestConstants.BASE_URI);
+        Assert.assertEquals(new LinkedHashModel(expected), new LinkedHashModel(results));
+    }
+    
+    @Test
+    public void testResumeAfterEndOfDocument() throws Exception
+    {
+        final byte[] document = this.createDocument(2, false);
+        final RDFJSONCheckpoint checkpoint =
+                new RDFJSONCheckpoint(document.length + 1, 1, 1, new HashMap<String, String>());
+        try
+        {
+            this.resume(new RDFJSONPreferredParser(), document, checkpoint);
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final EOFException e)
+        {
+            // expected
+        }
+    }
+}
@@ -1,16 +1,27 @@
 package com.github.ansell.sesamerioextensions.rdfjson;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.StringWriter;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.openrdf.model.Model;
+import org.openrdf.model.Statement;
+import org.openrdf.model.impl.LinkedHashModel;
 import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFParseException;
 import org.openrdf.rio.RDFParser;
 import org.openrdf.rio.RDFWriter;
 import org.openrdf.rio.Rio;
+import org.openrdf.rio.helpers.BasicParserSettings;
+import org.openrdf.rio.helpers.BasicWriterSettings;
+import org.openrdf.rio.helpers.StatementCollector;
 import org.openrdf.rio.rdfjson.RDFJSONParser;
 import org.openrdf.rio.rdfjson.RDFJSONWriter;
 
+import com.github.ansell.sesamerioextensions.api.RDFFormatExtensions;
+
 /**
  * @author Peter Ansell p_ansell@yahoo.com
  */
@@ -31,7 +42,7 @@ public class RDFJSONFactoriesTest
         final RDFFormat fmt = Rio.getParserFormatForMIMEType("application/json");
         Assert.assertNotNull("Could not find the RDF/JSON RDFFormat instance", fmt);
         final RDFParser parser = Rio.createParser(fmt);
-        Assert.assertTrue(parser instanceof RDFJSONParser);
+        Assert.assertTrue(parser instanceof RDFJSONPreferredParser);
     }
     
     @Test
@@ -49,6 +60,142 @@ public class RDFJSONFactoriesTest
         final RDFFormat fmt = Rio.getWriterFormatForMIMEType("application/json");
         Assert.assertNotNull("Could not find the RDF/JSON RDFFormat instance", fmt);
         final RDFWriter writer = Rio.createWriter(fmt, new StringWriter());
-        Assert.assertTrue(writer instanceof RDFJSONWriter);
+        Assert.assertTrue(writer instanceof RDFJSONPreferredWriter);
+    }
+    
+    @Test
+    public void testBinaryParserFactoryRegistered()
+    {
+        final RDFFormat fmt = Rio.getParserFormatForMIMEType("application/x-binary-rdf+json");
+        Assert.assertNotNull("Could not find the binary RDF/JSON RDFFormat instance", fmt);
+        final RDFParser parser = Rio.createParser(fmt);
+        Assert.assertTrue(parser instanceof BinaryRDFJSONParser);
+    }
+    
+    @Test
+    public void testBinaryWriterFactoryRegistered()
+    {
+        final RDFFormat fmt = Rio.getWriterFormatForFileName("test.brj");
+        Assert.assertNotNull("Could not find the binary RDF/JSON RDFFormat instance", fmt);
+        final RDFWriter writer = Rio.createWriter(fmt, new ByteArrayOutputStream());
+        Assert.assertTrue(writer instanceof BinaryRDFJSONWriter);
+    }
+    
+    @Test
+    public void testLinesParserFactoryRegistered()
+    {
+        final RDFFormat fmt = Rio.getParserFormatForMIMEType("application/x-rdf+json-lines");
+        Assert.assertNotNull("Could not find the RDF/JSON Lines RDFFormat instance", fmt);
+        final RDFParser parser = Rio.createParser(fmt);
+        Assert.assertTrue(parser instanceof RDFJSONLinesParser);
+    }
+    
+    @Test
+    public void testLinesWriterFactoryRegistered()
+    {
+        final RDFFormat fmt = Rio.getWriterFormatForFileName("test.rjl");
+        Assert.assertNotNull("Could not find the RDF/JSON Lines RDFFormat instance", fmt);
+        final RDFWriter writer = Rio.createWriter(fmt, new StringWriter());
+        Assert.assertTrue(writer instanceof RDFJSONLinesWriter);
+    }
+    
+    private Model createModel(final int subjects)
+    {
+        final Model model = new LinkedHashModel();
+        for(int i = 0; i < subjects; i++)
+        {
+            model.add(RDFJSONTestConstants.vf.createURI("http://example.org/subject/" + i),
+                    RDFJSONTestConstants.ABOUT, RDFJSONTestConstants.vf.createLiteral("value \u00e9 " + i),
+                    RDFJSONTestConstants.GRAPH1);
+            model.add(RDFJSONTestConstants.vf.createURI("http://example.org/subject/" + i),
+                    RDFJSONTestConstants.FOAF.KNOWS, RDFJSONTestConstants.ARTHUR);
+        }
+        return model;
+    }
+    
+    private byte[] write(final Model model) throws Exception
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        return RDFJSONTestUtils.write(new RDFJSONPreferredWriter(out, RDFFormatExtensions.RDFJSONPREFERRED), out,
+                model);
+    }
+    
+    private Model parse(final RDFParser parser, final byte[] bytes) throws Exception
+    {
+        final Model results = new LinkedHashModel();
+        parser.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+        parser.setRDFHandler(new StatementCollector(results));
+        parser.parse(new ByteArrayInputStream(bytes), RDFJSONTestConstants.BASE_URI);
+        return results;
+    }
+    
+    @Test
+    public void testBorrowedParserReused() throws Exception
+    {
+        final RDFJSONPreferredParserFactory factory = new RDFJSONPreferredParserFactory(1);
+        final Model large = this.createModel(5000);
+        final Model small = this.createModel(3);
+        final byte[] largeBytes = this.write(large);
+        final byte[] smallBytes = this.write(small);
+        
+        final RDFJSONPreferredParser parser = factory.borrowParser();
+        Assert.assertEquals(large, this.parse(parser, largeBytes));
+        factory.releaseParser(parser);
+        
+        final RDFJSONPreferredParser reused = factory.borrowParser();
+        Assert.assertSame(parser, reused);
+        Assert.assertNull(reused.getRDFHandler());
+        Assert.assertFalse(reused.getParserConfig().isSet(BasicParserSettings.PRESERVE_BNODE_IDS));
+        
+        // A document that fails part way through must not leave state behind for the next document
+        try
+        {
+            this.parse(reused, new String(largeBytes, "UTF-8").substring(0, 70000).getBytes("UTF-8"));
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final RDFParseException e)
+        {
+            Assert.assertTrue(e.getLineNumber() >= 1);
+        }
+        Assert.assertEquals(small, this.parse(reused, smallBytes));
+        
+        // The second borrower gets a new parser as the only idle parser is borrowed
+        Assert.assertNotSame(reused, factory.borrowParser());
+    }
+    
+    @Test
+    public void testBorrowedWriterReused() throws Exception
+    {
+        final RDFJSONPreferredWriterFactory factory = new RDFJSONPreferredWriterFactory(1);
+        final Model large = this.createModel(5000);
+        final Model small = this.createModel(3);
+        
+        final ByteArrayOutputStream out1 = new ByteArrayOutputStream();
+        final RDFJSONPreferredWriter writer = factory.borrowWriter(out1);
+        writer.getWriterConfig().set(BasicWriterSettings.PRETTY_PRINT, true);
+        final byte[] largeBytes = RDFJSONTestUtils.write(writer, out1, large);
+        factory.releaseWriter(writer);
+        
+        final ByteArrayOutputStream out2 = new ByteArrayOutputStream();
+        final RDFJSONPreferredWriter reused = factory.borrowWriter(out2);
+        Assert.assertSame(writer, reused);
+        Assert.assertFalse(reused.getWriterConfig().isSet(BasicWriterSettings.PRETTY_PRINT));
+        final byte[] smallBytes = RDFJSONTestUtils.write(reused, out2, small);
+        
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        Assert.assertArrayEquals(RDFJSONTestUtils.write(factory.getWriter(expected), expected, small), smallBytes);
+        Assert.assertEquals(large, Rio.parse(new ByteArrayInputStream(largeBytes), RDFJSONTestConstants.BASE_URI,
+                RDFFormatExtensions.RDFJSONPREFERRED));
+        
+        // A writer can also be reset directly, including to write to a Writer
+        final StringWriter stringWriter = new StringWriter();
+        reused.reset(stringWriter);
+        reused.startRDF();
+        for(final Statement nextStatement : small)
+        {
+            reused.handleStatement(nextStatement);
+        }
+        reused.endRDF();
+        Assert.assertEquals(new String(smallBytes, "UTF-8"), stringWriter.toString());
     }
 }
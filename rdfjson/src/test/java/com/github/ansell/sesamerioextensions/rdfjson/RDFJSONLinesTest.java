@@ -0,0 +1,210 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openrdf.model.Model;
+import org.openrdf.model.Statement;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.RDFWriter;
+import org.openrdf.rio.helpers.BasicParserSettings;
+import org.openrdf.rio.helpers.BasicWriterSettings;
+import org.openrdf.rio.helpers.StatementCollector;
+import org.openrdf.rio.rdfjson.RDFJSONParser;
+
+import com.github.ansell.sesamerioextensions.api.RDFFormatExtensions;
+
+/**
+ * Tests for {@link RDFJSONLinesParser} and {@link RDFJSONLinesWriter}.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class RDFJSONLinesTest
+{
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+    
+    private byte[] write(final Model model) throws Exception
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        return RDFJSONTestUtils.write(new RDFJSONLinesWriter(out), out, model);
+    }
+    
+    private RDFJSONLinesParser createParser(final List<Statement> results)
+    {
+        final RDFJSONLinesParser result = new RDFJSONLinesParser();
+        result.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+        result.setRDFHandler(new StatementCollector(results));
+        return result;
+    }
+    
+    private List<Statement> parse(final byte[] bytes) throws Exception
+    {
+        final List<Statement> results = new ArrayList<Statement>();
+        this.createParser(results).parse(new ByteArrayInputStream(bytes), RDFJSONTestConstants.BASE_URI);
+        return results;
+    }
+    
+    private File writeFile(final byte[] bytes) throws Exception
+    {
+        final File result = this.tempDir.newFile("test.rjl");
+        final FileOutputStream out = new FileOutputStream(result);
+        try
+        {
+            out.write(bytes);
+        }
+        finally
+        {
+            out.close();
+        }
+        return result;
+    }
+    
+    private List<Statement> parseRange(final File file, final long start, final long end) throws Exception
+    {
+        final List<Statement> results = new ArrayList<Statement>();
+        this.createParser(results).parse(file, start, end, RDFJSONTestConstants.BASE_URI);
+        return results;
+    }
+    
+    @Test
+    public void testOneSubjectPerLine() throws Exception
+    {
+        final Model model = RDFJSONTestUtils.parseResource("bio2rdf-configuration.ttl", RDFFormat.TURTLE);
+        
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final RDFJSONLinesWriter writer = new RDFJSONLinesWriter(out);
+        writer.getWriterConfig().set(BasicWriterSettings.PRETTY_PRINT, true);
+        final String[] lines = new String(RDFJSONTestUtils.write(writer, out, model), "UTF-8").split("\n");
+        
+        Assert.assertEquals(model.subjects().size(), lines.length);
+        for(final String nextLine : lines)
+        {
+            final Model lineModel = new LinkedHashModel();
+            final RDFJSONParser lineParser = new RDFJSONParser();
+            lineParser.setRDFHandler(new StatementCollector(lineModel));
+            lineParser.parse(new ByteArrayInputStream(nextLine.getBytes("UTF-8")), RDFJSONTestConstants.BASE_URI);
+            Assert.assertEquals(nextLine, 1, lineModel.subjects().size());
+        }
+    }
+    
+    @Test
+    public void testRoundTrip() throws Exception
+    {
+        final Model model = RDFJSONTestUtils.parseResource("bio2rdf-configuration.ttl", RDFFormat.TURTLE);
+        
+        final List<Statement> actual = this.parse(this.write(model));
+        
+        Assert.assertEquals(model.size(), actual.size());
+        Assert.assertEquals(new HashSet<Statement>(model), new HashSet<Statement>(actual));
+    }
+    
+    @Test
+    public void testWriterMatchesOutputStream() throws Exception
+    {
+        final Model model = RDFJSONTestUtils.parseResource("example0.json", RDFFormatExtensions.RDFJSONPREFERRED);
+        
+        final StringWriter writer = new StringWriter();
+        final RDFWriter testWriter = new RDFJSONLinesWriter(writer);
+        testWriter.startRDF();
+        for(final Statement nextStatement : model)
+        {
+            testWriter.handleStatement(nextStatement);
+        }
+        testWriter.endRDF();
+        
+        Assert.assertEquals(new String(this.write(model), "UTF-8"), writer.toString());
+    }
+    
+    @Test
+    public void testParallel() throws Exception
+    {
+        final byte[] bytes = this.write(RDFJSONTestUtils.parseResource("bio2rdf-configuration.ttl", RDFFormat.TURTLE));
+        final List<Statement> expected = this.parse(bytes);
+        
+        final List<Statement> actual = new ArrayList<Statement>();
+        final RDFJSONLinesParser parser = this.createParser(actual);
+        parser.getParserConfig().set(RDFJSONPreferredParserSettings.PARALLEL_THREADS, 4);
+        parser.getParserConfig().set(RDFJSONPreferredParserSettings.PARALLEL_CHUNK_SIZE, 1);
+        parser.getParserConfig().set(RDFJSONPreferredParserSettings.PARALLEL_PRESERVE_ORDER, true);
+        parser.parse(new ByteArrayInputStream(bytes), RDFJSONTestConstants.BASE_URI);
+        
+        Assert.assertEquals(expected, actual);
+    }
+    
+    @Test
+    public void testParseFileRanges() throws Exception
+    {
+        final byte[] bytes =
+                this.write(RDFJSONTestUtils.parseResource("example0.json", RDFFormatExtensions.RDFJSONPREFERRED));
+        final List<Statement> expected = this.parse(bytes);
+        final File file = this.writeFile(bytes);
+        
+        for(int i = 0; i <= bytes.length; i++)
+        {
+            final List<Statement> actual = this.parseRange(file, 0, i);
+            actual.addAll(this.parseRange(file, i, bytes.length));
+            Assert.assertEquals("Split at " + i, expected, actual);
+        }
+        
+        final List<Statement> thirds = this.parseRange(file, 0, bytes.length / 3);
+        thirds.addAll(this.parseRange(file, bytes.length / 3, 2 * bytes.length / 3));
+        thirds.addAll(this.parseRange(file, 2 * bytes.length / 3, Long.MAX_VALUE));
+        Assert.assertEquals(expected, thirds);
+    }
+    
+    @Test
+    public void testEmptyDocument() throws Exception
+    {
+        Assert.assertTrue(this.parse(new byte[0]).isEmpty());
+        Assert.assertTrue(this.parse("\n  \n".getBytes("UTF-8")).isEmpty());
+    }
+    
+    @Test
+    public void testObjectAcrossLines() throws Exception
+    {
+        final String document =
+                "{ \"http://example.org/Arthur\" : {\n \"http://example.org/about\" : [ { \"type\" : \"literal\", "
+                        + "\"value\" : \"Arthur\" } ] } }\n";
+        try
+        {
+            this.parse(document.getBytes("UTF-8"));
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final RDFParseException e)
+        {
+            Assert.assertTrue(e.getMessage().contains("Expected each RDF/JSON object to be on a single line"));
+            Assert.assertEquals(2, e.getLineNumber());
+        }
+    }
+    
+    @Test
+    public void testTwoObjectsOnOneLine() throws Exception
+    {
+        final String line =
+                "{ \"http://example.org/Arthur\" : { \"http://example.org/about\" : [ { \"type\" : \"literal\", "
+                        + "\"value\" : \"Arthur\" } ] } }";
+        try
+        {
+            this.parse((line + "\n" + line + " " + line + "\n").getBytes("UTF-8"));
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final RDFParseException e)
+        {
+            Assert.assertTrue(e.getMessage().contains("Expected each RDF/JSON object to start on a new line"));
+            Assert.assertEquals(2, e.getLineNumber());
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.model.Model;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.StatementCollector;
+
+import com.github.ansell.sesamerioextensions.api.RDFFormatExtensions;
+
+/**
+ * Tests for {@link RDFJSONPartitionedWriter}.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class RDFJSONPartitionedWriterTest
+{
+    private final ValueFactory vf = ValueFactoryImpl.getInstance();
+    
+    /**
+     * The bytes written for each context, and the contexts whose streams have been closed.
+     */
+    private Map<Resource, ByteArrayOutputStream> testOutputs;
+    private Set<Resource> testClosed;
+    private RDFJSONPartitionedWriter testWriter;
+    
+    @Before
+    public void setUp() throws Exception
+    {
+        this.testOutputs = Collections.synchronizedMap(new HashMap<Resource, ByteArrayOutputStream>());
+        this.testClosed = Collections.synchronizedSet(new HashSet<Resource>());
+        this.testWriter = new RDFJSONPartitionedWriter(new ContextOutputStreamFactory()
+            {
+                @Override
+                public OutputStream openStream(final Resource context) throws IOException
+                {
+                    Assert.assertFalse("Stream opened twice for " + context,
+                            RDFJSONPartitionedWriterTest.this.testOutputs.containsKey(context));
+                    final ByteArrayOutputStream result = new ByteArrayOutputStream()
+                        {
+                            @Override
+                            public void close() throws IOException
+                            {
+                                RDFJSONPartitionedWriterTest.this.testClosed.add(context);
+                            }
+                        };
+                    RDFJSONPartitionedWriterTest.this.testOutputs.put(context, result);
+                    return result;
+                }
+            }, RDFFormatExtensions.RDFJSONPREFERRED);
+    }
+    
+    @After
+    public void tearDown() throws Exception
+    {
+        this.testOutputs = null;
+        this.testClosed = null;
+        this.testWriter = null;
+    }
+    
+    /**
+     * Creates statements for the given number of subjects in each of the given number of named
+     * graphs and the default graph, interleaving the graphs.
+     */
+    private Model createStatements(final int graphs, final int subjects)
+    {
+        final Model result = new LinkedHashModel();
+        for(int i = 0; i < subjects; i++)
+        {
+            final URI subject = this.vf.createURI("urn:test:subject:" + i);
+            for(int j = 0; j < 3; j++)
+            {
+                for(int k = 0; k <= graphs; k++)
+                {
+                    final Resource context = k == graphs ? null : this.vf.createURI("urn:test:graph:" + k);
+                    result.add(subject, this.vf.createURI("urn:test:predicate:" + j),
+                            this.vf.createLiteral("value " + i + " " + j + " " + k), context);
+                }
+            }
+        }
+        return result;
+    }
+    
+    private void assertPartitions(final Model expected) throws Exception
+    {
+        Assert.assertEquals(expected.contexts(), this.testOutputs.keySet());
+        Assert.assertEquals(expected.contexts(), this.testClosed);
+        
+        for(final Resource nextContext : expected.contexts())
+        {
+            final Model actual = new LinkedHashModel();
+            final RDFJSONPreferredParser parser = new RDFJSONPreferredParser();
+            parser.setRDFHandler(new StatementCollector(actual));
+            parser.parse(new ByteArrayInputStream(this.testOutputs.get(nextContext).toByteArray()),
+                    RDFJSONTestConstants.BASE_URI);
+            
+            final Model expectedTriples = new LinkedHashModel();
+            for(final Statement nextStatement : expected.filter(null, null, null, nextContext))
+            {
+                expectedTriples.add(nextStatement.getSubject(), nextStatement.getPredicate(),
+                        nextStatement.getObject());
+            }
+            Assert.assertEquals("Context: " + nextContext, expectedTriples, actual);
+        }
+    }
+    
+    private void write(final Iterable<Statement> statements) throws Exception
+    {
+        this.testWriter.startRDF();
+        for(final Statement nextStatement : statements)
+        {
+            this.testWriter.handleStatement(nextStatement);
+        }
+        this.testWriter.endRDF();
+    }
+    
+    @Test
+    public void testPartitions() throws Exception
+    {
+        final Model model = this.createStatements(5, 20);
+        
+        this.write(model);
+        
+        this.assertPartitions(model);
+    }
+    
+    @Test
+    public void testPartitionsConcurrentSmallBuffers() throws Exception
+    {
+        final Model model = this.createStatements(20, 50);
+        this.testWriter.getWriterConfig().set(RDFJSONPreferredWriterSettings.PARTITION_BUFFER_SIZE, 2);
+        this.testWriter.getWriterConfig().set(RDFJSONPreferredWriterSettings.PARTITION_THREADS, 4);
+        
+        this.write(model);
+        
+        this.assertPartitions(model);
+    }
+    
+    @Test
+    public void testPartitionsEmpty() throws Exception
+    {
+        this.write(new LinkedHashModel());
+        
+        Assert.assertTrue(this.testOutputs.isEmpty());
+    }
+    
+    @Test
+    public void testPartitionsStreamFailure() throws Exception
+    {
+        final RDFJSONPartitionedWriter writer = new RDFJSONPartitionedWriter(new ContextOutputStreamFactory()
+            {
+                @Override
+                public OutputStream openStream(final Resource context) throws IOException
+                {
+                    throw new IOException("Test failure");
+                }
+            }, RDFFormatExtensions.RDFJSONPREFERRED);
+        writer.getWriterConfig().set(RDFJSONPreferredWriterSettings.PARTITION_THREADS, 2);
+        
+        writer.startRDF();
+        writer.handleStatement(this.vf.createStatement(this.vf.createURI("urn:test:subject"),
+                this.vf.createURI("urn:test:predicate"), this.vf.createLiteral("value")));
+        try
+        {
+            writer.endRDF();
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final RDFHandlerException e)
+        {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+}
@@ -0,0 +1,1379 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Model;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.model.util.ModelUtil;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.Rio;
+import org.openrdf.rio.helpers.BasicParserSettings;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+import org.openrdf.rio.helpers.RDFJSONParserSettings;
+import org.openrdf.rio.helpers.StatementCollector;
+import org.openrdf.rio.rdfjson.RDFJSONParser;
+import org.openrdf.rio.rdfjson.RDFJSONWriter;
+
+import com.github.ansell.sesamerioextensions.api.BatchRDFHandler;
+import com.github.ansell.sesamerioextensions.api.RDFFormatExtensions;
+
+/**
+ * Tests for {@link RDFJSONPreferredParser}, using the Sesame {@link RDFJSONParser} as the
+ * reference implementation.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class RDFJSONPreferredParserTest
+{
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+    
+    private RDFJSONPreferredParser testParser;
+    private Model testModel;
+    
+    @Before
+    public void setUp() throws Exception
+    {
+        this.testParser = new RDFJSONPreferredParser();
+        this.testModel = new LinkedHashModel();
+        this.testParser.setRDFHandler(new StatementCollector(this.testModel));
+    }
+    
+    @After
+    public void tearDown() throws Exception
+    {
+        this.testParser = null;
+        this.testModel = null;
+    }
+    
+    private Model parseResource(final RDFParser p, final String fileName) throws Exception
+    {
+        final Model model = new LinkedHashModel();
+        p.setRDFHandler(new StatementCollector(model));
+        final InputStream in = this.getClass().getResourceAsStream(fileName);
+        Assert.assertNotNull("Could not find test resource: " + fileName, in);
+        try
+        {
+            p.parse(in, RDFJSONTestConstants.BASE_URI);
+        }
+        finally
+        {
+            in.close();
+        }
+        return model;
+    }
+    
+    private void assertSameAsSesame(final String fileName, final int expectedSize) throws Exception
+    {
+        final Model expected = this.parseResource(new RDFJSONParser(), fileName);
+        final Model actual = this.parseResource(this.testParser, fileName);
+        
+        Assert.assertEquals(expectedSize, actual.size());
+        Assert.assertTrue(ModelUtil.equals(expected, actual));
+    }
+    
+    @Test
+    public void testExample0() throws Exception
+    {
+        this.assertSameAsSesame("example0.json", 12);
+    }
+    
+    @Test
+    public void testExample1() throws Exception
+    {
+        this.assertSameAsSesame("example1.json", 6);
+    }
+    
+    @Test
+    public void testExample2() throws Exception
+    {
+        this.assertSameAsSesame("example2.json", 6);
+    }
+    
+    @Test
+    public void testExample4() throws Exception
+    {
+        this.assertSameAsSesame("example4.json", 2);
+    }
+    
+    @Test
+    public void testExample5() throws Exception
+    {
+        this.assertSameAsSesame("example5.json", 1);
+    }
+    
+    @Test
+    public void testReader() throws Exception
+    {
+        this.testParser.parse(new StringReader("{\"http://example.org/Arthur\":{\"http://example.org/about\":"
+                + "[{\"type\":\"literal\",\"value\":\"Arthur Dent\",\"lang\":\"en\"}]}}"),
+                RDFJSONTestConstants.BASE_URI);
+        
+        Assert.assertEquals(1, this.testModel.size());
+        Assert.assertEquals("en", this.testModel.objectLiteral().getLanguage());
+    }
+    
+    @Test
+    public void testPreserveBNodeIDs() throws Exception
+    {
+        this.testParser.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+        final Model model = this.parseResource(this.testParser, "example1.json");
+        
+        Assert.assertTrue(model.contains(RDFJSONTestConstants.P1, null, null));
+        Assert.assertTrue(model.contains(RDFJSONTestConstants.ARTHUR, null, RDFJSONTestConstants.P1));
+    }
+    
+    @Test
+    public void testStatementsHandledBeforeEndOfDocument() throws Exception
+    {
+        try
+        {
+            this.testParser.parse(new StringReader("{\"http://example.org/Arthur\":{\"http://example.org/about\":"
+                    + "[{\"type\":\"uri\",\"value\":\"http://example.org/graph1\"}]},"
+                    + "\"http://example.org/graph1\":5}"), RDFJSONTestConstants.BASE_URI);
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final RDFParseException e)
+        {
+            Assert.assertTrue(e.getMessage().contains("Expected subject value to start with an Object"));
+        }
+        
+        Assert.assertEquals(1, this.testModel.size());
+        final Statement statement = this.testModel.iterator().next();
+        Assert.assertEquals(RDFJSONTestConstants.ARTHUR, statement.getSubject());
+        Assert.assertEquals(RDFJSONTestConstants.GRAPH1, statement.getObject());
+    }
+    
+    @Test
+    public void testNoType() throws Exception
+    {
+        try
+        {
+            this.testParser.parse(new StringReader("{\"http://example.org/Arthur\":{\"http://example.org/about\":"
+                    + "[{\"value\":\"Arthur Dent\"}]}}"), RDFJSONTestConstants.BASE_URI);
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final RDFParseException e)
+        {
+            Assert.assertTrue(e.getMessage().contains("No type for object"));
+            Assert.assertEquals(1, e.getLineNumber());
+        }
+    }
+    
+    @Test
+    public void testInvalidJson() throws Exception
+    {
+        try
+        {
+            this.testParser.parse(new StringReader("{\"http://example.org/Arthur\":{\"http://example.org/about\":"
+                    + "[{\"value\":\"Arthur Dent\",]}}"), RDFJSONTestConstants.BASE_URI);
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final RDFParseException e)
+        {
+            Assert.assertEquals(1, e.getLineNumber());
+        }
+    }
+    
+    @Test
+    public void testTruncatedDocument() throws Exception
+    {
+        try
+        {
+            this.testParser.parse(new StringReader("{\"http://example.org/Arthur\":{\"http://example.org/about\":"
+                    + "[{\"type\":\"literal\",\"value\":\"Arthur Dent\"}]}"), RDFJSONTestConstants.BASE_URI);
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final RDFParseException e)
+        {
+            // expected
+        }
+        
+        Assert.assertEquals(1, this.testModel.size());
+    }
+    
+    @Test
+    public void testUnknownPropertyIgnored() throws Exception
+    {
+        this.testParser.getParserConfig().set(RDFJSONParserSettings.FAIL_ON_UNKNOWN_PROPERTY, false);
+        
+        this.testParser.parse(new StringReader("{\"http://example.org/Arthur\":{\"http://example.org/about\":"
+                + "[{\"type\":\"literal\",\"extra\":{\"nested\":[1,{\"value\":\"x\"}]},\"value\":\"Arthur Dent\"}]}}"),
+                RDFJSONTestConstants.BASE_URI);
+        
+        Assert.assertEquals(1, this.testModel.size());
+        Assert.assertEquals("Arthur Dent", this.testModel.objectString());
+    }
+    
+    @Test
+    public void testUnknownPropertyFails() throws Exception
+    {
+        try
+        {
+            this.testParser.parse(new StringReader("{\"http://example.org/Arthur\":{\"http://example.org/about\":"
+                    + "[{\"type\":\"literal\",\"extra\":true,\"value\":\"Arthur Dent\"}]}}"),
+                    RDFJSONTestConstants.BASE_URI);
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final RDFParseException e)
+        {
+            Assert.assertTrue(e.getMessage().contains("fieldname=extra"));
+        }
+    }
+    
+    @Test
+    public void testDuplicateGraphs() throws Exception
+    {
+        this.testParser.parse(new StringReader("{\"http://example.org/Arthur\":{\"http://example.org/about\":"
+                + "[{\"type\":\"literal\",\"value\":\"Arthur Dent\",\"graphs\":[null,\"http://example.org/graph1\","
+                + "null,\"http://example.org/graph1\"]}]}}"), RDFJSONTestConstants.BASE_URI);
+        
+        Assert.assertEquals(2, this.testModel.size());
+        Assert.assertTrue(this.testModel.contains(null, null, null, (org.openrdf.model.Resource)null));
+        Assert.assertTrue(this.testModel.contains(null, null, null, RDFJSONTestConstants.GRAPH1));
+    }
+    
+    private List<String> parseInOrder(final RDFParser p, final String fileName) throws Exception
+    {
+        final List<String> results = new ArrayList<String>();
+        p.setRDFHandler(new RDFHandlerBase()
+            {
+                @Override
+                public void handleStatement(final Statement st)
+                {
+                    results.add(st.toString());
+                }
+            });
+        final InputStream in = this.getClass().getResourceAsStream(fileName);
+        try
+        {
+            p.parse(in, RDFJSONTestConstants.BASE_URI);
+        }
+        finally
+        {
+            in.close();
+        }
+        return results;
+    }
+    
+    private void setParallel(final int chunkSize, final boolean preserveOrder)
+    {
+        this.testParser.getParserConfig().set(RDFJSONPreferredParserSettings.PARALLEL_THREADS, 4);
+        this.testParser.getParserConfig().set(RDFJSONPreferredParserSettings.PARALLEL_CHUNK_SIZE, chunkSize);
+        this.testParser.getParserConfig().set(RDFJSONPreferredParserSettings.PARALLEL_PRESERVE_ORDER, preserveOrder);
+    }
+    
+    @Test
+    public void testParallelOrdered() throws Exception
+    {
+        for(final String nextFile : new String[] { "example0.json", "example1.json", "example2.json", "example4.json",
+                "example5.json" })
+        {
+            final RDFJSONPreferredParser sequential = new RDFJSONPreferredParser();
+            sequential.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+            final List<String> expected = this.parseInOrder(sequential, nextFile);
+            
+            this.setUp();
+            this.setParallel(1, true);
+            this.testParser.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+            
+            Assert.assertEquals(nextFile, expected, this.parseInOrder(this.testParser, nextFile));
+        }
+    }
+    
+    @Test
+    public void testParallelUnorderedSharesBNodes() throws Exception
+    {
+        this.setParallel(1, false);
+        
+        final Model expected = this.parseResource(new RDFJSONParser(), "example1.json");
+        final Model actual = this.parseResource(this.testParser, "example1.json");
+        
+        Assert.assertEquals(6, actual.size());
+        Assert.assertTrue(ModelUtil.equals(expected, actual));
+    }
+    
+    @Test
+    public void testParallelErrorLineNumber() throws Exception
+    {
+        this.setParallel(1, true);
+        
+        final String document =
+                "{\n  \"http://example.org/Arthur\" : { \"http://example.org/about\" : [ { \"type\" : \"uri\", "
+                        + "\"value\" : \"http://example.org/graph1\" } ] },\n"
+                        + "  \"http://example.org/graph1\" : {\n    \"http://example.org/about\" : [ { \"value\" : \"x\" } ] }\n}";
+        try
+        {
+            this.testParser.parse(new ByteArrayInputStream(document.getBytes("UTF-8")), RDFJSONTestConstants.BASE_URI);
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final RDFParseException e)
+        {
+            Assert.assertTrue(e.getMessage().contains("No type for object"));
+            Assert.assertEquals(4, e.getLineNumber());
+        }
+        
+        Assert.assertEquals(1, this.testModel.size());
+    }
+    
+    @Test
+    public void testParallelEmptyDocument() throws Exception
+    {
+        this.setParallel(1, true);
+        
+        this.testParser.parse(new ByteArrayInputStream(" { } ".getBytes("UTF-8")), RDFJSONTestConstants.BASE_URI);
+        
+        Assert.assertTrue(this.testModel.isEmpty());
+    }
+    
+    @Test
+    public void testParallelEmptySubjects() throws Exception
+    {
+        final String subject =
+                "\"http://example.org/Arthur\":{\"http://example.org/about\":[{\"type\":\"literal\",\"value\":\"x\"}]}";
+        for(final String nextDocument : new String[] { "{" + subject + ",}", "{" + subject + ",\n," + subject + "}",
+                "{," + subject + "}" })
+        {
+            for(final int nextThreads : new int[] { 1, 4 })
+            {
+                final RDFJSONPreferredParser parser = new RDFJSONPreferredParser();
+                parser.getParserConfig().set(RDFJSONPreferredParserSettings.PARALLEL_THREADS, nextThreads);
+                parser.getParserConfig().set(RDFJSONPreferredParserSettings.PARALLEL_CHUNK_SIZE, 1);
+                parser.setRDFHandler(new StatementCollector(new LinkedHashModel()));
+                try
+                {
+                    parser.parse(new ByteArrayInputStream(nextDocument.getBytes("UTF-8")),
+                            RDFJSONTestConstants.BASE_URI);
+                    Assert.fail("Did not find expected exception: threads=" + nextThreads + " " + nextDocument);
+                }
+                catch(final RDFParseException e)
+                {
+                    // expected
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testParallelNotAnObject() throws Exception
+    {
+        this.setParallel(1, true);
+        
+        try
+        {
+            this.testParser.parse(new ByteArrayInputStream(" [ ] ".getBytes("UTF-8")), RDFJSONTestConstants.BASE_URI);
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final RDFParseException e)
+        {
+            Assert.assertTrue(e.getMessage().contains("Expected RDF/JSON document to start with an Object"));
+        }
+    }
+    
+    @Test
+    public void testParallelTruncatedDocument() throws Exception
+    {
+        this.setParallel(1, true);
+        
+        try
+        {
+            this.testParser.parse(new ByteArrayInputStream(("{\"http://example.org/Arthur\":{\"http://example.org/about\":"
+                    + "[{\"type\":\"literal\",\"value\":\"Arthur, Dent }\"}]}").getBytes("UTF-8")),
+                    RDFJSONTestConstants.BASE_URI);
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final RDFParseException e)
+        {
+            // expected
+        }
+        
+        Assert.assertEquals(1, this.testModel.size());
+    }
+    
+    private void setPipelined(final int batchSize, final int bufferSize)
+    {
+        this.testParser.getParserConfig().set(RDFJSONPreferredParserSettings.PIPELINE_BATCH_SIZE, batchSize);
+        this.testParser.getParserConfig().set(RDFJSONPreferredParserSettings.PIPELINE_BUFFER_SIZE, bufferSize);
+    }
+    
+    /**
+     * Creates a document with the given number of subjects, each with a single literal.
+     */
+    private byte[] createLargeDocument(final int subjects) throws Exception
+    {
+        final StringBuilder result = new StringBuilder("{");
+        for(int i = 0; i < subjects; i++)
+        {
+            if(i > 0)
+            {
+                result.append(",\n");
+            }
+            result.append("\"http://example.org/subject/").append(i)
+                    .append("\":{\"http://example.org/about\":[{\"type\":\"literal\",\"value\":\"value ").append(i)
+                    .append("\"}]}");
+        }
+        return result.append("}").toString().getBytes("UTF-8");
+    }
+    
+    @Test
+    public void testPipelinedOrdered() throws Exception
+    {
+        for(final int nextBatchSize : new int[] { 1, 3, 1000 })
+        {
+            for(final String nextFile : new String[] { "example0.json", "example1.json", "example2.json",
+                    "example4.json", "example5.json" })
+            {
+                final RDFJSONPreferredParser sequential = new RDFJSONPreferredParser();
+                sequential.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+                final List<String> expected = this.parseInOrder(sequential, nextFile);
+                
+                this.setUp();
+                this.setPipelined(nextBatchSize, 1);
+                this.testParser.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+                
+                Assert.assertEquals(nextFile, expected, this.parseInOrder(this.testParser, nextFile));
+            }
+        }
+    }
+    
+    @Test
+    public void testPipelinedHandlerOnCallingThread() throws Exception
+    {
+        this.setPipelined(7, 2);
+        final Thread caller = Thread.currentThread();
+        final List<Statement> results = new ArrayList<Statement>();
+        this.testParser.setRDFHandler(new RDFHandlerBase()
+            {
+                @Override
+                public void handleStatement(final Statement st)
+                {
+                    Assert.assertSame(caller, Thread.currentThread());
+                    results.add(st);
+                }
+            });
+        
+        this.testParser.parse(new ByteArrayInputStream(this.createLargeDocument(1000)), RDFJSONTestConstants.BASE_URI);
+        
+        Assert.assertEquals(1000, results.size());
+        Assert.assertEquals("value 999", results.get(999).getObject().stringValue());
+    }
+    
+    @Test
+    public void testPipelinedReader() throws Exception
+    {
+        this.setPipelined(1, 1);
+        
+        this.testParser.parse(new StringReader("{\"http://example.org/Arthur\":{\"http://example.org/about\":"
+                + "[{\"type\":\"literal\",\"value\":\"Arthur Dent\",\"lang\":\"en\"}]}}"),
+                RDFJSONTestConstants.BASE_URI);
+        
+        Assert.assertEquals(1, this.testModel.size());
+    }
+    
+    @Test
+    public void testPipelinedErrorLineNumber() throws Exception
+    {
+        this.setPipelined(1, 1);
+        
+        final String document =
+                "{\n  \"http://example.org/Arthur\" : { \"http://example.org/about\" : [ { \"type\" : \"uri\", "
+                        + "\"value\" : \"http://example.org/graph1\" } ] },\n"
+                        + "  \"http://example.org/graph1\" : {\n    \"http://example.org/about\" : [ { \"value\" : \"x\" } ] }\n}";
+        try
+        {
+            this.testParser.parse(new ByteArrayInputStream(document.getBytes("UTF-8")), RDFJSONTestConstants.BASE_URI);
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final RDFParseException e)
+        {
+            Assert.assertTrue(e.getMessage().contains("No type for object"));
+            Assert.assertEquals(4, e.getLineNumber());
+        }
+        
+        Assert.assertEquals(1, this.testModel.size());
+    }
+    
+    @Test
+    public void testPipelinedHandlerErrorStopsParser() throws Exception
+    {
+        this.setPipelined(1, 1);
+        final RDFHandlerException failure = new RDFHandlerException("Repository unavailable");
+        this.testParser.setRDFHandler(new RDFHandlerBase()
+            {
+                @Override
+                public void handleStatement(final Statement st) throws RDFHandlerException
+                {
+                    throw failure;
+                }
+            });
+        final byte[] bytes = this.createLargeDocument(100000);
+        final long[] read = new long[1];
+        final InputStream in = new FilterInputStream(new ByteArrayInputStream(bytes))
+            {
+                @Override
+                public int read(final byte[] b, final int off, final int len) throws IOException
+                {
+                    final int result = super.read(b, off, len);
+                    read[0] += Math.max(0, result);
+                    return result;
+                }
+            };
+        
+        try
+        {
+            this.testParser.parse(in, RDFJSONTestConstants.BASE_URI);
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final RDFHandlerException e)
+        {
+            Assert.assertSame(failure, e);
+        }
+        
+        final long readAfterParse = read[0];
+        Assert.assertTrue(readAfterParse < bytes.length);
+        Thread.sleep(50);
+        Assert.assertEquals(readAfterParse, read[0]);
+    }
+    
+    /**
+     * Records each batch of statements, failing if a statement is sent on its own.
+     */
+    private static final class RecordingBatchHandler extends RDFHandlerBase implements BatchRDFHandler
+    {
+        private final List<List<Statement>> batches = new ArrayList<List<Statement>>();
+        
+        @Override
+        public void handleStatement(final Statement st)
+        {
+            Assert.fail("Statement was not sent in a batch: " + st);
+        }
+        
+        @Override
+        public void handleStatements(final Statement[] statements, final int offset, final int length)
+        {
+            Assert.assertTrue(length > 0);
+            this.batches.add(new ArrayList<Statement>(Arrays.asList(statements).subList(offset, offset + length)));
+        }
+        
+        List<String> getStatements()
+        {
+            final List<String> results = new ArrayList<String>();
+            for(final List<Statement> nextBatch : this.batches)
+            {
+                for(final Statement nextStatement : nextBatch)
+                {
+                    results.add(nextStatement.toString());
+                }
+            }
+            return results;
+        }
+    }
+    
+    private RecordingBatchHandler parseBatches(final byte[] bytes) throws Exception
+    {
+        final RecordingBatchHandler handler = new RecordingBatchHandler();
+        this.testParser.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+        this.testParser.setRDFHandler(handler);
+        this.testParser.parse(new ByteArrayInputStream(bytes), RDFJSONTestConstants.BASE_URI);
+        return handler;
+    }
+    
+    @Test
+    public void testBatchHandlerOneSubjectPerBatch() throws Exception
+    {
+        final RDFJSONPreferredParser sequential = new RDFJSONPreferredParser();
+        sequential.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+        final List<String> expected = this.parseInOrder(sequential, "example0.json");
+        
+        final RecordingBatchHandler handler =
+                this.parseBatches(RDFJSONTestUtils.readFully(this.getClass().getResourceAsStream("example0.json")));
+        
+        Assert.assertEquals(expected, handler.getStatements());
+        for(int i = 0; i < handler.batches.size(); i++)
+        {
+            final List<Statement> nextBatch = handler.batches.get(i);
+            for(final Statement nextStatement : nextBatch)
+            {
+                Assert.assertEquals(nextBatch.get(0).getSubject(), nextStatement.getSubject());
+            }
+            if(i > 0)
+            {
+                Assert.assertFalse(nextBatch.get(0).getSubject().equals(
+                        handler.batches.get(i - 1).get(0).getSubject()));
+            }
+        }
+    }
+    
+    @Test
+    public void testBatchHandlerLargeSubject() throws Exception
+    {
+        final StringBuilder document = new StringBuilder("{\"http://example.org/Arthur\":{\"http://example.org/about\":[");
+        for(int i = 0; i < 2500; i++)
+        {
+            document.append(i > 0 ? "," : "").append("{\"type\":\"literal\",\"value\":\"").append(i).append("\"}");
+        }
+        document.append("]}}");
+        
+        final RecordingBatchHandler handler = this.parseBatches(document.toString().getBytes("UTF-8"));
+        
+        Assert.assertEquals(3, handler.batches.size());
+        Assert.assertEquals(1024, handler.batches.get(0).size());
+        Assert.assertEquals(1024, handler.batches.get(1).size());
+        Assert.assertEquals(452, handler.batches.get(2).size());
+        Assert.assertEquals("2499", handler.batches.get(2).get(451).getObject().stringValue());
+    }
+    
+    @Test
+    public void testBatchHandlerParallelAndPipelined() throws Exception
+    {
+        final byte[] bytes = this.createLargeDocument(1000);
+        final List<String> expected = this.parseBatches(bytes).getStatements();
+        
+        this.setUp();
+        this.setParallel(1000, true);
+        Assert.assertEquals(expected, this.parseBatches(bytes).getStatements());
+        
+        this.setUp();
+        this.setPipelined(100, 2);
+        final RecordingBatchHandler pipelined = this.parseBatches(bytes);
+        Assert.assertEquals(expected, pipelined.getStatements());
+        Assert.assertEquals(10, pipelined.batches.size());
+    }
+    
+    @Test
+    public void testBatchHandlerStatementsBeforeError() throws Exception
+    {
+        final RecordingBatchHandler handler = new RecordingBatchHandler();
+        this.testParser.setRDFHandler(handler);
+        try
+        {
+            this.testParser.parse(new StringReader("{\"http://example.org/Arthur\":{\"http://example.org/about\":"
+                    + "[{\"type\":\"literal\",\"value\":\"Arthur\"},{\"value\":\"x\"}]}}"),
+                    RDFJSONTestConstants.BASE_URI);
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final RDFParseException e)
+        {
+            Assert.assertTrue(e.getMessage().contains("No type for object"));
+        }
+        
+        Assert.assertEquals(1, handler.getStatements().size());
+    }
+    
+    @Test
+    public void testBatchHandlerMetrics() throws Exception
+    {
+        final RecordingMetricsListener listener = new RecordingMetricsListener();
+        this.testParser.getParserConfig().set(RDFJSONPreferredParserSettings.METRICS_LISTENER, listener);
+        
+        this.parseBatches(RDFJSONTestUtils.readFully(this.getClass().getResourceAsStream("example0.json")));
+        
+        Assert.assertEquals(1, listener.parsed.size());
+        Assert.assertEquals(12, listener.parsed.get(0).getStatements());
+        Assert.assertTrue(listener.parsed.get(0).getLargestSubject() > 0);
+    }
+    
+    /**
+     * Parses the given document with both tokenizers, checking that they find the same statements.
+     */
+    private Model parseFiltered(final RDFParser parser, final byte[] bytes) throws Exception
+    {
+        Model result = null;
+        for(final boolean nextUtf8Tokenizer : new boolean[] { true, false })
+        {
+            final Model model = new LinkedHashModel();
+            parser.getParserConfig().set(RDFJSONPreferredParserSettings.UTF8_TOKENIZER, nextUtf8Tokenizer);
+            parser.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+            parser.setRDFHandler(new StatementCollector(model));
+            parser.parse(new ByteArrayInputStream(bytes), RDFJSONTestConstants.BASE_URI);
+            if(result != null)
+            {
+                Assert.assertEquals(result, model);
+            }
+            result = model;
+        }
+        return result;
+    }
+    
+    @Test
+    public void testSubjectFilter() throws Exception
+    {
+        final byte[] bytes = RDFJSONTestUtils.readFully(this.getClass().getResourceAsStream("example0.json"));
+        final Model all = this.parseBytes(true, new ByteArrayInputStream(bytes));
+        
+        this.testParser.getParserConfig().set(RDFJSONPreferredParserSettings.SUBJECT_FILTER,
+                new HashSet<Resource>(Arrays.asList(RDFJSONTestConstants.PERSON)));
+        final Model actual = this.parseFiltered(this.testParser, bytes);
+        
+        Assert.assertFalse(actual.isEmpty());
+        Assert.assertEquals(all.filter(RDFJSONTestConstants.PERSON, null, null), actual);
+        
+        this.testParser.getParserConfig().set(RDFJSONPreferredParserSettings.SUBJECT_FILTER,
+                new HashSet<Resource>(Arrays.asList(RDFJSONTestConstants.ABOUT)));
+        Assert.assertEquals(all.filter(RDFJSONTestConstants.ABOUT, null, null),
+                this.parseFiltered(this.testParser, bytes));
+    }
+    
+    @Test
+    public void testSubjectFilterNonAsciiAndEscapedKeys() throws Exception
+    {
+        final String object = "{\"http://example.org/about\":[{\"type\":\"literal\",\"value\":\"a\"}]}";
+        final byte[] bytes =
+                ("{\"http://example.org/caf\u00e9\":" + object + ",\"http://example.org/caf\\u00e9\\/x\":" + object
+                        + ",\"http://example.org/caf\":" + object + "}").getBytes("UTF-8");
+        final URI plain = ValueFactoryImpl.getInstance().createURI("http://example.org/caf\u00e9");
+        final URI escaped = ValueFactoryImpl.getInstance().createURI("http://example.org/caf\u00e9/x");
+        
+        this.testParser.getParserConfig().set(RDFJSONPreferredParserSettings.SUBJECT_FILTER,
+                new HashSet<Resource>(Arrays.asList(plain, escaped)));
+        final Model actual = this.parseFiltered(this.testParser, bytes);
+        
+        Assert.assertEquals(2, actual.size());
+        Assert.assertTrue(actual.contains(plain, null, null));
+        Assert.assertTrue(actual.contains(escaped, null, null));
+    }
+    
+    @Test
+    public void testPredicateFilter() throws Exception
+    {
+        final byte[] bytes = RDFJSONTestUtils.readFully(this.getClass().getResourceAsStream("example0.json"));
+        final Model all = this.parseBytes(true, new ByteArrayInputStream(bytes));
+        
+        this.testParser.getParserConfig().set(RDFJSONPreferredParserSettings.PREDICATE_FILTER,
+                new HashSet<URI>(Arrays.asList(RDFJSONTestConstants.FOAF.NAME)));
+        final Model actual = this.parseFiltered(this.testParser, bytes);
+        
+        Assert.assertEquals(1, actual.size());
+        Assert.assertEquals(all.filter(null, RDFJSONTestConstants.FOAF.NAME, null), actual);
+    }
+    
+    @Test
+    public void testContextFilter() throws Exception
+    {
+        final byte[] bytes =
+                ("{\"http://example.org/Arthur\":{\"http://example.org/about\":["
+                        + "{\"type\":\"literal\",\"value\":\"default\"},"
+                        + "{\"type\":\"literal\",\"value\":\"both\",\"graphs\":[null,\"http://example.org/graph1\"]},"
+                        + "{\"type\":\"literal\",\"value\":\"graph1\",\"graphs\":[\"http://example.org/graph1\"]},"
+                        + "{\"type\":\"literal\",\"value\":\"graph2\",\"graphs\":[\"http://example.org/graph2\"]}]}}")
+                        .getBytes("UTF-8");
+        
+        this.testParser.getParserConfig().set(RDFJSONPreferredParserSettings.CONTEXT_FILTER,
+                new HashSet<Resource>(Arrays.asList(RDFJSONTestConstants.GRAPH1)));
+        final Model graph1 = this.parseFiltered(this.testParser, bytes);
+        Assert.assertEquals(2, graph1.size());
+        Assert.assertEquals(2, graph1.filter(null, null, null, RDFJSONTestConstants.GRAPH1).size());
+        
+        this.testParser.getParserConfig().set(RDFJSONPreferredParserSettings.CONTEXT_FILTER,
+                new HashSet<Resource>(Arrays.asList((Resource)null)));
+        final Model defaultGraph = this.parseFiltered(this.testParser, bytes);
+        Assert.assertEquals(2, defaultGraph.size());
+        Assert.assertEquals(2, defaultGraph.filter(null, null, null, (Resource)null).size());
+    }
+    
+    @Test
+    public void testFilterSkipsValueCreation() throws Exception
+    {
+        final int[] created = new int[1];
+        this.testParser.setValueFactory(new ValueFactoryImpl()
+            {
+                @Override
+                public URI createURI(final String uri)
+                {
+                    created[0]++;
+                    return super.createURI(uri);
+                }
+                
+                @Override
+                public Literal createLiteral(final String label)
+                {
+                    created[0]++;
+                    return super.createLiteral(label);
+                }
+            });
+        this.testParser.getParserConfig().set(RDFJSONPreferredParserSettings.SUBJECT_FILTER,
+                new HashSet<Resource>());
+        
+        this.parseFiltered(this.testParser, this.createLargeDocument(1000));
+        
+        Assert.assertEquals(0, created[0]);
+    }
+    
+    @Test
+    public void testFilterSkipsNestedStructures() throws Exception
+    {
+        final String document =
+                "{\n  \"http://example.org/skipped\" : {\r\n \"http://example.org/about\" : [ { \"type\" : \"literal\",\n"
+                        + "\"value\" : \"} ] \\\" { [\", \"unknown\" : { \"a\" : [ [ ], { } ] } } ] },\n"
+                        + "  \"http://example.org/Arthur\" : {\n    \"http://example.org/about\" : [ { \"value\" : \"x\" } ] }\n}";
+        this.testParser.getParserConfig().set(RDFJSONPreferredParserSettings.SUBJECT_FILTER,
+                new HashSet<Resource>(Arrays.asList(RDFJSONTestConstants.ARTHUR)));
+        
+        for(final boolean nextUtf8Tokenizer : new boolean[] { true, false })
+        {
+            this.testParser.getParserConfig().set(RDFJSONPreferredParserSettings.UTF8_TOKENIZER, nextUtf8Tokenizer);
+            try
+            {
+                this.testParser.parse(new ByteArrayInputStream(document.getBytes("UTF-8")),
+                        RDFJSONTestConstants.BASE_URI);
+                Assert.fail("Did not find expected exception");
+            }
+            catch(final RDFParseException e)
+            {
+                Assert.assertTrue(e.getMessage().contains("No type for object"));
+                Assert.assertEquals(6, e.getLineNumber());
+            }
+        }
+    }
+    
+    @Test
+    public void testFilterUnbalancedSkippedSubject() throws Exception
+    {
+        this.testParser.getParserConfig().set(RDFJSONPreferredParserSettings.SUBJECT_FILTER,
+                new HashSet<Resource>());
+        try
+        {
+            this.testParser.parse(new ByteArrayInputStream("{\"http://example.org/Arthur\":{\"a\":[}}"
+                    .getBytes("UTF-8")), RDFJSONTestConstants.BASE_URI);
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final RDFParseException e)
+        {
+            // expected
+        }
+    }
+    
+    @Test
+    public void testFilterParallelAndLines() throws Exception
+    {
+        final byte[] bytes = this.createLargeDocument(1000);
+        final Set<Resource> subjects = new HashSet<Resource>();
+        for(int i = 0; i < 1000; i += 7)
+        {
+            subjects.add(RDFJSONTestConstants.vf.createURI("http://example.org/subject/" + i));
+        }
+        this.testParser.getParserConfig().set(RDFJSONPreferredParserSettings.SUBJECT_FILTER, subjects);
+        final Model expected = this.parseFiltered(this.testParser, bytes);
+        Assert.assertEquals(subjects, expected.subjects());
+        
+        this.setParallel(1000, true);
+        Assert.assertEquals(expected, this.parseFiltered(this.testParser, bytes));
+        
+        final ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        Rio.write(this.parseBytes(true, new ByteArrayInputStream(bytes)), lines,
+                RDFFormatExtensions.RDFJSON_LINES);
+        final RDFJSONLinesParser linesParser = new RDFJSONLinesParser();
+        linesParser.getParserConfig().set(RDFJSONPreferredParserSettings.SUBJECT_FILTER, subjects);
+        Assert.assertEquals(expected, this.parseFiltered(linesParser, lines.toByteArray()));
+    }
+    
+    private Model parseBytes(final boolean utf8Tokenizer, final InputStream in) throws Exception
+    {
+        final RDFJSONPreferredParser parser = new RDFJSONPreferredParser();
+        parser.getParserConfig().set(RDFJSONPreferredParserSettings.UTF8_TOKENIZER, utf8Tokenizer);
+        parser.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+        final Model model = new LinkedHashModel();
+        parser.setRDFHandler(new StatementCollector(model));
+        parser.parse(in, RDFJSONTestConstants.BASE_URI);
+        return model;
+    }
+    
+    @Test
+    public void testUtf8TokenizerBio2RDFConfiguration() throws Exception
+    {
+        final InputStream in = this.getClass().getResourceAsStream("bio2rdf-configuration.ttl");
+        final Model expected;
+        try
+        {
+            expected = Rio.parse(in, RDFJSONTestConstants.BASE_URI, RDFFormat.TURTLE);
+        }
+        finally
+        {
+            in.close();
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Rio.write(expected, new RDFJSONWriter(out, RDFFormat.RDFJSON));
+        final byte[] document = out.toByteArray();
+        
+        final Model jackson = this.parseBytes(false, new ByteArrayInputStream(document));
+        final Model utf8 = this.parseBytes(true, new ByteArrayInputStream(document));
+        
+        // Blank node identifiers are preserved, so the statements can be compared without checking
+        // for isomorphism, which is very slow for a model of this size
+        Assert.assertEquals(expected.size(), utf8.size());
+        Assert.assertEquals(new ArrayList<Statement>(jackson), new ArrayList<Statement>(utf8));
+        
+        // Return a single byte from each read so that every token crosses the end of the buffer
+        final Model singleBytes = this.parseBytes(true, new FilterInputStream(new ByteArrayInputStream(document))
+            {
+                @Override
+                public int read(final byte[] b, final int off, final int len) throws IOException
+                {
+                    return super.read(b, off, Math.min(len, 1));
+                }
+            });
+        Assert.assertEquals(new ArrayList<Statement>(jackson), new ArrayList<Statement>(singleBytes));
+    }
+    
+    @Test
+    public void testUtf8TokenizerEscapes() throws Exception
+    {
+        final String document =
+                "\ufeff{ \"http://example.org/Arthur\" : { \"http://example.org/about\" : [ { \"type\" : \"literal\", "
+                        + "\"value\" : \"quote \\\" backslash \\\\ slash \\/ controls \\b\\f\\n\\r\\t "
+                        + "escaped \\u00e9\\uD834\\uDD1E raw \u00e9\u4e2d\uD834\uDD1E\" } ] } }";
+        
+        final Model jackson = this.parseBytes(false, new ByteArrayInputStream(document.getBytes("UTF-8")));
+        final Model utf8 = this.parseBytes(true, new ByteArrayInputStream(document.getBytes("UTF-8")));
+        
+        Assert.assertEquals(1, utf8.size());
+        Assert.assertEquals(new ArrayList<Statement>(jackson), new ArrayList<Statement>(utf8));
+        Assert.assertEquals("quote \" backslash \\ slash / controls \b\f\n\r\t escaped \u00e9\uD834\uDD1E raw "
+                + "\u00e9\u4e2d\uD834\uDD1E", ((Literal)utf8.objectValue()).getLabel());
+    }
+    
+    @Test
+    public void testUtf8TokenizerUtf16Document() throws Exception
+    {
+        final String document =
+                "{\"http://example.org/Arthur\":{\"http://example.org/about\":"
+                        + "[{\"type\":\"literal\",\"value\":\"Arthur Dent\",\"lang\":\"en\"}]}}";
+        
+        final Model utf8 = this.parseBytes(true, new ByteArrayInputStream(document.getBytes("UTF-16LE")));
+        
+        Assert.assertEquals(1, utf8.size());
+        Assert.assertEquals("Arthur Dent", ((Literal)utf8.objectValue()).getLabel());
+    }
+    
+    @Test
+    public void testUtf8TokenizerInvalidJson() throws Exception
+    {
+        try
+        {
+            this.testParser.parse(new ByteArrayInputStream(("{\"http://example.org/Arthur\":\n{\"http://example.org/about\":"
+                    + "[{\"value\":\"Arthur Dent\",]}}").getBytes("UTF-8")), RDFJSONTestConstants.BASE_URI);
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final RDFParseException e)
+        {
+            Assert.assertEquals(2, e.getLineNumber());
+        }
+    }
+    
+    @Test
+    public void testURICache() throws Exception
+    {
+        final String document =
+                "{\"http://example.org/Arthur\":{\"http://example.org/about\":[{\"type\":\"uri\",\"value\":\"http://example.org/Person\"}]},"
+                        + "\"http://example.org/Ford\":{\"http://example.org/about\":[{\"type\":\"uri\",\"value\":\"http://example.org/Person\"}]},"
+                        + "\"http://example.org/Person\":{\"http://example.org/p1\":[{\"type\":\"literal\",\"value\":\"1\",\"datatype\":\"http://www.w3.org/2001/XMLSchema#int\"},"
+                        + "{\"type\":\"literal\",\"value\":\"2\",\"datatype\":\"http://www.w3.org/2001/XMLSchema#int\"}]}}";
+        this.testParser.getParserConfig().set(RDFJSONPreferredParserSettings.URI_CACHE_SIZE, 16);
+        
+        final List<Statement> statements = new ArrayList<Statement>();
+        this.testParser.setRDFHandler(new StatementCollector(statements));
+        this.testParser.parse(new StringReader(document), RDFJSONTestConstants.BASE_URI);
+        
+        Assert.assertEquals(4, statements.size());
+        Assert.assertSame(statements.get(0).getPredicate(), statements.get(1).getPredicate());
+        Assert.assertSame(statements.get(0).getObject(), statements.get(1).getObject());
+        Assert.assertSame(statements.get(0).getObject(), statements.get(2).getSubject());
+        Assert.assertSame(((Literal)statements.get(2).getObject()).getDatatype(),
+                ((Literal)statements.get(3).getObject()).getDatatype());
+        
+        // A cache that is smaller than the number of URIs still creates the same statements
+        final RDFJSONPreferredParser evicting = new RDFJSONPreferredParser();
+        evicting.getParserConfig().set(RDFJSONPreferredParserSettings.URI_CACHE_SIZE, 1);
+        final List<Statement> evictingStatements = new ArrayList<Statement>();
+        evicting.setRDFHandler(new StatementCollector(evictingStatements));
+        evicting.parse(new StringReader(document), RDFJSONTestConstants.BASE_URI);
+        
+        Assert.assertEquals(statements, evictingStatements);
+    }
+    
+    private List<Statement> parseBlankNodes(final RDFJSONBlankNodeIds ids, final int subjects, final int labels)
+        throws Exception
+    {
+        final StringBuilder document = new StringBuilder("{");
+        for(int i = 0; i < subjects; i++)
+        {
+            document.append(i > 0 ? "," : "").append("\"http://example.org/subject/").append(i);
+            document.append("\":{\"http://example.org/about\":[{\"type\":\"bnode\",\"value\":\"_:b");
+            document.append(i % labels).append("\"}]}");
+        }
+        document.append("}");
+        
+        this.testParser.getParserConfig().set(RDFJSONPreferredParserSettings.BLANK_NODE_IDS, ids);
+        final List<Statement> statements = new ArrayList<Statement>();
+        this.testParser.setRDFHandler(new StatementCollector(statements));
+        this.testParser.parse(new ByteArrayInputStream(document.toString().getBytes("UTF-8")),
+                RDFJSONTestConstants.BASE_URI);
+        
+        Assert.assertEquals(subjects, statements.size());
+        final Set<Resource> distinct = new HashSet<Resource>();
+        for(int i = 0; i < subjects; i++)
+        {
+            // Each label is given the same blank node every time it appears
+            Assert.assertEquals(statements.get(i % labels).getObject(), statements.get(i).getObject());
+            distinct.add((Resource)statements.get(i).getObject());
+        }
+        Assert.assertEquals(labels, distinct.size());
+        return statements;
+    }
+    
+    @Test
+    public void testBlankNodeIdsMap() throws Exception
+    {
+        this.parseBlankNodes(RDFJSONBlankNodeIds.MAP, 100, 7);
+    }
+    
+    @Test
+    public void testBlankNodeIdsHash() throws Exception
+    {
+        final List<Statement> first = this.parseBlankNodes(RDFJSONBlankNodeIds.HASH, 20000, 9000);
+        final List<Statement> second = this.parseBlankNodes(RDFJSONBlankNodeIds.HASH, 20000, 9000);
+        
+        // Each document has its own salt, so the same labels are different blank nodes
+        Assert.assertFalse(first.get(0).getObject().equals(second.get(0).getObject()));
+    }
+    
+    @Test
+    public void testBlankNodeIdsOffHeap() throws Exception
+    {
+        this.parseBlankNodes(RDFJSONBlankNodeIds.OFF_HEAP, 20000, 9000);
+    }
+    
+    @Test
+    public void testBlankNodeIdsOffHeapSpill() throws Exception
+    {
+        final File directory = this.tempDir.newFolder("blanknodes");
+        this.testParser.getParserConfig().set(RDFJSONPreferredParserSettings.BLANK_NODE_MEMORY_LIMIT, 1L);
+        this.testParser.getParserConfig().set(RDFJSONPreferredParserSettings.BLANK_NODE_DIRECTORY, directory);
+        this.parseBlankNodes(RDFJSONBlankNodeIds.OFF_HEAP, 20000, 9000);
+        
+        // The table was in temporary files that are removed after the document
+        Assert.assertEquals(0, directory.list().length);
+    }
+    
+    @Test
+    public void testBlankNodeIdsPreserved() throws Exception
+    {
+        this.testParser.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+        final List<Statement> statements = this.parseBlankNodes(RDFJSONBlankNodeIds.HASH, 10, 3);
+        Assert.assertEquals("b1", ((Resource)statements.get(1).getObject()).stringValue());
+    }
+    
+    private List<Statement> parseLargeLiterals(final RDFParser parser, final int threshold, final String document)
+        throws Exception
+    {
+        parser.getParserConfig().set(RDFJSONPreferredParserSettings.LARGE_LITERAL_THRESHOLD, threshold);
+        final List<Statement> results = new ArrayList<Statement>();
+        parser.setRDFHandler(new StatementCollector(results));
+        parser.parse(new ByteArrayInputStream(document.getBytes("UTF-8")), RDFJSONTestConstants.BASE_URI);
+        return results;
+    }
+    
+    private String createLargeLiteralDocument(final String value, final String datatype)
+    {
+        return "{\"http://example.org/subject\":{\"http://example.org/predicate\":[" + "{\"value\":\"" + value
+                + "\",\"type\":\"literal\"}," + "{\"value\":\"" + value + "\",\"type\":\"literal\",\"lang\":\"EN-GB\"},"
+                + "{\"value\":\"" + value + "\",\"type\":\"literal\",\"datatype\":\"" + datatype + "\"},"
+                + "{\"value\":\"short\",\"type\":\"literal\"}]}}";
+    }
+    
+    @Test
+    public void testLargeLiteralThreshold() throws Exception
+    {
+        final StringBuilder value = new StringBuilder();
+        for(int i = 0; i < 500; i++)
+        {
+            // Escapes, surrogate pairs and multiple byte characters that cross the chunk boundaries
+            value.append("plain \\\"quoted\\\" \\u00e9 \u00e9 \\ud83d\\ude00 \ud83d\ude00 \u4e2d \\n\\t\\/ ");
+        }
+        final String document = this.createLargeLiteralDocument(value.toString(), "http://example.org/datatype");
+        
+        final List<Statement> expected = this.parseLargeLiterals(new RDFJSONPreferredParser(), 0, document);
+        final List<Statement> actual = this.parseLargeLiterals(new RDFJSONPreferredParser(), 64, document);
+        
+        Assert.assertEquals(4, actual.size());
+        Assert.assertEquals(expected, actual);
+        for(int i = 0; i < expected.size(); i++)
+        {
+            final Literal expectedLiteral = (Literal)expected.get(i).getObject();
+            final Literal actualLiteral = (Literal)actual.get(i).getObject();
+            Assert.assertEquals(String.valueOf(i), i < 3, actualLiteral instanceof StreamingLiteral);
+            Assert.assertEquals(expectedLiteral, actualLiteral);
+            Assert.assertEquals(expectedLiteral.hashCode(), actualLiteral.hashCode());
+            Assert.assertEquals(expectedLiteral.getLabel(), actualLiteral.getLabel());
+            Assert.assertEquals(expectedLiteral.stringValue(), actualLiteral.stringValue());
+            Assert.assertEquals(expectedLiteral.toString(), actualLiteral.toString());
+            Assert.assertEquals(expectedLiteral.getLanguage(), actualLiteral.getLanguage());
+            Assert.assertEquals(expectedLiteral.getDatatype(), actualLiteral.getDatatype());
+        }
+        Assert.assertEquals("en-gb", ((Literal)actual.get(1).getObject()).getLanguage());
+        Assert.assertFalse(actual.get(0).getObject().equals(actual.get(1).getObject()));
+        Assert.assertFalse(actual.get(0).getObject().equals(actual.get(3).getObject()));
+    }
+    
+    @Test
+    public void testLargeLiteralThresholdVerifiedDatatype() throws Exception
+    {
+        final String document =
+                this.createLargeLiteralDocument("a long enough value", "http://www.w3.org/2001/XMLSchema#string");
+        final List<Statement> verified = this.parseLargeLiterals(new RDFJSONPreferredParser(), 1, document);
+        
+        Assert.assertTrue(verified.get(0).getObject() instanceof StreamingLiteral);
+        // Values with datatypes that are recognised are decoded when they are verified
+        Assert.assertFalse(verified.get(2).getObject() instanceof StreamingLiteral);
+        
+        final RDFJSONPreferredParser parser = new RDFJSONPreferredParser();
+        parser.getParserConfig().set(BasicParserSettings.VERIFY_DATATYPE_VALUES, false);
+        final List<Statement> unverified = this.parseLargeLiterals(parser, 1, document);
+        Assert.assertTrue(unverified.get(2).getObject() instanceof StreamingLiteral);
+    }
+    
+    @Test
+    public void testLargeLiteralThresholdJacksonTokenizer() throws Exception
+    {
+        final RDFJSONPreferredParser parser = new RDFJSONPreferredParser();
+        parser.getParserConfig().set(RDFJSONPreferredParserSettings.UTF8_TOKENIZER, false);
+        final List<Statement> results = this.parseLargeLiterals(parser, 1,
+                this.createLargeLiteralDocument("a long enough value", "http://example.org/datatype"));
+        
+        Assert.assertFalse(results.get(0).getObject() instanceof StreamingLiteral);
+    }
+    
+    @Test
+    public void testLargeLiteralThresholdInvalidEscape() throws Exception
+    {
+        try
+        {
+            this.parseLargeLiterals(new RDFJSONPreferredParser(), 1,
+                    this.createLargeLiteralDocument("a long value with an invalid \\q escape",
+                            "http://example.org/datatype"));
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final RDFParseException e)
+        {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("Unrecognized character escape"));
+        }
+    }
+    
+    private File copyResource(final String fileName) throws Exception
+    {
+        final File result = this.tempDir.newFile(fileName);
+        final InputStream in = this.getClass().getResourceAsStream(fileName);
+        final FileOutputStream out = new FileOutputStream(result);
+        try
+        {
+            final byte[] buffer = new byte[4096];
+            int read;
+            while((read = in.read(buffer)) != -1)
+            {
+                out.write(buffer, 0, read);
+            }
+        }
+        finally
+        {
+            in.close();
+            out.close();
+        }
+        return result;
+    }
+    
+    @Test
+    public void testParseFile() throws Exception
+    {
+        for(final String nextFile : new String[] { "example0.json", "example1.json", "example2.json", "example4.json",
+                "example5.json" })
+        {
+            final RDFJSONPreferredParser streamParser = new RDFJSONPreferredParser();
+            streamParser.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+            final List<String> expected = this.parseInOrder(streamParser, nextFile);
+            
+            final List<String> actual = new ArrayList<String>();
+            final RDFJSONPreferredParser fileParser = new RDFJSONPreferredParser();
+            fileParser.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+            fileParser.setRDFHandler(new RDFHandlerBase()
+                {
+                    @Override
+                    public void handleStatement(final Statement st)
+                    {
+                        actual.add(st.toString());
+                    }
+                });
+            fileParser.parse(this.copyResource(nextFile), RDFJSONTestConstants.BASE_URI);
+            
+            Assert.assertEquals(nextFile, expected, actual);
+        }
+    }
+    
+    @Test
+    public void testParseFileSegments() throws Exception
+    {
+        final File file = this.copyResource("example0.json");
+        final Model expected = this.parseBytes(true, new ByteArrayInputStream(
+                RDFJSONTestUtils.readFully(new MappedFileInputStream(file))));
+        
+        // Segments that are smaller than most tokens, so that tokens cross segment boundaries
+        final Model actual = this.parseBytes(true, new MappedFileInputStream(file, 7));
+        
+        Assert.assertEquals(12, actual.size());
+        Assert.assertEquals(new ArrayList<Statement>(expected), new ArrayList<Statement>(actual));
+    }
+    
+    @Test
+    public void testParseEmptyFile() throws Exception
+    {
+        try
+        {
+            this.testParser.parse(this.tempDir.newFile("empty.json"), RDFJSONTestConstants.BASE_URI);
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final RDFParseException e)
+        {
+            Assert.assertTrue(e.getMessage().contains("Unexpected end of RDF/JSON document"));
+        }
+    }
+    
+    /**
+     * Records the metrics for each document that is parsed.
+     */
+    private static final class RecordingMetricsListener implements RDFJSONMetricsListener
+    {
+        private final List<RDFJSONMetrics> parsed = new ArrayList<RDFJSONMetrics>();
+        
+        @Override
+        public void parsed(final RDFJSONMetrics metrics)
+        {
+            this.parsed.add(metrics);
+        }
+        
+        @Override
+        public void written(final RDFJSONMetrics metrics)
+        {
+            Assert.fail("Parser reported written metrics");
+        }
+    }
+    
+    @Test
+    public void testMetrics() throws Exception
+    {
+        final RecordingMetricsListener listener = new RecordingMetricsListener();
+        this.testParser.getParserConfig().set(RDFJSONPreferredParserSettings.METRICS_LISTENER, listener);
+        final byte[] bytes = RDFJSONTestUtils.readFully(this.getClass().getResourceAsStream("example0.json"));
+        
+        this.testParser.parse(new ByteArrayInputStream(bytes), RDFJSONTestConstants.BASE_URI);
+        
+        Assert.assertEquals(12, this.testModel.size());
+        Assert.assertEquals(1, listener.parsed.size());
+        final RDFJSONMetrics metrics = listener.parsed.get(0);
+        Assert.assertEquals(12, metrics.getStatements());
+        Assert.assertEquals(bytes.length, metrics.getBytes());
+        Assert.assertTrue(metrics.getElapsedNanos() > 0);
+        Assert.assertTrue(metrics.getTokenizeNanos() > 0);
+        Assert.assertTrue(metrics.getValueCreationNanos() > 0);
+        Assert.assertTrue(metrics.getElapsedNanos() >= metrics.getTokenizeNanos() + metrics.getValueCreationNanos()
+                + metrics.getHandlerNanos());
+        Assert.assertEquals(0, metrics.getEncodeNanos());
+        Assert.assertTrue(metrics.getLargestSubject() > 0);
+        Assert.assertTrue(metrics.getLargestSubject() < 12);
+        Assert.assertTrue(metrics.getBufferHighWater() > 0);
+        Assert.assertTrue(metrics.getStatementsPerSecond() > 0);
+    }
+    
+    @Test
+    public void testMetricsReaderAndParallel() throws Exception
+    {
+        final RecordingMetricsListener listener = new RecordingMetricsListener();
+        this.testParser.getParserConfig().set(RDFJSONPreferredParserSettings.METRICS_LISTENER, listener);
+        
+        this.testParser.parse(new StringReader("{\"http://example.org/Arthur\":{\"http://example.org/about\":"
+                + "[{\"type\":\"literal\",\"value\":\"Arthur Dent\",\"lang\":\"en\"}]}}"),
+                RDFJSONTestConstants.BASE_URI);
+        
+        this.testParser.getParserConfig().set(RDFJSONPreferredParserSettings.PARALLEL_THREADS, 2);
+        this.testParser.getParserConfig().set(RDFJSONPreferredParserSettings.PARALLEL_CHUNK_SIZE, 100);
+        this.testParser.parse(this.getClass().getResourceAsStream("example0.json"), RDFJSONTestConstants.BASE_URI);
+        
+        Assert.assertEquals(2, listener.parsed.size());
+        Assert.assertEquals(1, listener.parsed.get(0).getStatements());
+        Assert.assertEquals(-1L, listener.parsed.get(0).getBytes());
+        Assert.assertEquals(12, listener.parsed.get(1).getStatements());
+        Assert.assertTrue(listener.parsed.get(1).getBytes() > 0);
+    }
+    
+    @Test
+    public void testMetricsReportedOnError() throws Exception
+    {
+        final RecordingMetricsListener listener = new RecordingMetricsListener();
+        this.testParser.getParserConfig().set(RDFJSONPreferredParserSettings.METRICS_LISTENER, listener);
+        try
+        {
+            this.testParser.parse(new StringReader("{\"http://example.org/Arthur\":{"),
+                    RDFJSONTestConstants.BASE_URI);
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final RDFParseException e)
+        {
+            Assert.assertEquals(1, listener.parsed.size());
+        }
+    }
+    
+    @Test
+    public void testStatisticsMBean() throws Exception
+    {
+        final RDFJSONStatistics statistics = new RDFJSONStatistics();
+        this.testParser.getParserConfig().set(RDFJSONPreferredParserSettings.METRICS_LISTENER, statistics);
+        this.parseResource(this.testParser, "example0.json");
+        this.parseResource(this.testParser, "example1.json");
+        
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName(RDFJSONStatistics.DEFAULT_OBJECT_NAME);
+        server.registerMBean(statistics, name);
+        try
+        {
+            Assert.assertEquals(2L, server.getAttribute(name, "DocumentsParsed"));
+            Assert.assertEquals(18L, server.getAttribute(name, "StatementsParsed"));
+            Assert.assertEquals(0L, server.getAttribute(name, "DocumentsWritten"));
+            Assert.assertTrue((Long)server.getAttribute(name, "BytesParsed") > 0);
+            
+            server.invoke(name, "reset", new Object[0], new String[0]);
+            Assert.assertEquals(0L, statistics.getStatementsParsed());
+        }
+        finally
+        {
+            server.unregisterMBean(name);
+        }
+    }
+}
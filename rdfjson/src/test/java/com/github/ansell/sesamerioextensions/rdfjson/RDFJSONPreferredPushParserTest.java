@@ -0,0 +1,221 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Model;
+import org.openrdf.model.Resource;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.helpers.StatementCollector;
+
+/**
+ * Tests for {@link RDFJSONPreferredPushParser}, using the blocking {@link RDFJSONPreferredParser}
+ * as the reference.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class RDFJSONPreferredPushParserTest
+{
+    /**
+     * A handler that records whether the end of the document has been sent to it.
+     */
+    private static final class EndCollector extends StatementCollector
+    {
+        private boolean ended;
+        
+        EndCollector(final Model model)
+        {
+            super(model);
+        }
+        
+        @Override
+        public void endRDF() throws RDFHandlerException
+        {
+            this.ended = true;
+        }
+    }
+    
+    private static final String ESCAPES = "\uFEFF{\r\n\"http://example.org/\u00e9t\u00e9\":{\r\n"
+            + "\"http://example.org/about\":[{\"type\":\"literal\",\"value\":\"quote \\\" backslash \\\\ \\u0041 "
+            + "\\n \u03b1 \u4e2d \ud83d\ude00\",\"lang\":\"en\"},\r\n"
+            + "{\"type\":\"bnode\",\"value\":\"_:person\",\"graphs\":[null,\"http://example.org/graph1\"]}]},\r\n"
+            + "\"_:person\":{\"http://example.org/about\":"
+            + "[{\"type\":\"uri\",\"value\":\"http://example.org/Arthur\"}]}}";
+    
+    private Model parseBlocking(final RDFJSONPreferredParser parser, final byte[] document) throws Exception
+    {
+        final Model results = new LinkedHashModel();
+        parser.setRDFHandler(new StatementCollector(results));
+        parser.parse(new ByteArrayInputStream(document), RDFJSONTestConstants.BASE_URI);
+        return results;
+    }
+    
+    private Model push(final RDFJSONPreferredParser parser, final byte[] document, final int fragmentSize)
+        throws Exception
+    {
+        final Model results = new LinkedHashModel();
+        final EndCollector handler = new EndCollector(results);
+        parser.setRDFHandler(handler);
+        final RDFJSONPreferredPushParser pushParser = new RDFJSONPreferredPushParser(parser);
+        final ByteBuffer fragment = ByteBuffer.allocate(fragmentSize);
+        for(int offset = 0; offset < document.length; offset += fragmentSize)
+        {
+            fragment.clear();
+            fragment.put(document, offset, Math.min(fragmentSize, document.length - offset));
+            fragment.flip();
+            pushParser.feed(fragment);
+            Assert.assertFalse(fragment.hasRemaining());
+        }
+        Assert.assertFalse(handler.ended);
+        pushParser.endOfInput();
+        Assert.assertTrue(handler.ended);
+        Assert.assertTrue(pushParser.isEnded());
+        return results;
+    }
+    
+    private void assertFragmentsMatchBlocking(final RDFJSONPreferredParser parser, final byte[] document)
+        throws Exception
+    {
+        final Model expected = this.parseBlocking(parser, document);
+        Assert.assertFalse(expected.isEmpty());
+        for(final int nextFragmentSize : new int[] { 1, 2, 3, 7, 64, 4096, document.length })
+        {
+            Assert.assertEquals("fragmentSize=" + nextFragmentSize, expected,
+                    this.push(parser, document, nextFragmentSize));
+        }
+    }
+    
+    @Test
+    public void testFragments() throws Exception
+    {
+        this.assertFragmentsMatchBlocking(new RDFJSONPreferredParser(),
+                RDFJSONTestUtils.readFully(this.getClass().getResourceAsStream("example0.json")));
+    }
+    
+    @Test
+    public void testFragmentsSplitEscapesAndCharacters() throws Exception
+    {
+        this.assertFragmentsMatchBlocking(new RDFJSONPreferredParser(), RDFJSONPreferredPushParserTest.ESCAPES
+                .getBytes("UTF-8"));
+    }
+    
+    @Test
+    public void testFragmentsLines() throws Exception
+    {
+        this.assertFragmentsMatchBlocking(new RDFJSONLinesParser(),
+                ("{\"http://example.org/Arthur\":{\"http://example.org/about\":"
+                        + "[{\"type\":\"literal\",\"value\":\"1\"}]}}\n"
+                        + "{\"_:person\":{\"http://example.org/about\":[{\"type\":\"literal\",\"value\":\"2\"}]}}\r\n")
+                        .getBytes("UTF-8"));
+    }
+    
+    @Test
+    public void testFragmentsFilterSkipsAcrossFragments() throws Exception
+    {
+        final RDFJSONPreferredParser parser = new RDFJSONPreferredParser();
+        parser.getParserConfig().set(RDFJSONPreferredParserSettings.SUBJECT_FILTER,
+                new HashSet<Resource>(Arrays.asList(RDFJSONTestConstants.PERSON)));
+        this.assertFragmentsMatchBlocking(parser, RDFJSONPreferredPushParserTest.ESCAPES.getBytes("UTF-8"));
+        Assert.assertEquals(1, this.push(parser, RDFJSONPreferredPushParserTest.ESCAPES.getBytes("UTF-8"), 1)
+                .size());
+    }
+    
+    @Test
+    public void testStatementsHandledBeforeEndOfInput() throws Exception
+    {
+        final RDFJSONPreferredParser parser = new RDFJSONPreferredParser();
+        final Model results = new LinkedHashModel();
+        parser.setRDFHandler(new StatementCollector(results));
+        final RDFJSONPreferredPushParser pushParser = new RDFJSONPreferredPushParser(parser);
+        
+        pushParser.feed(ByteBuffer.wrap("{\"http://example.org/Arthur\":{\"http://example.org/about\":[{\"type\":"
+                .getBytes("UTF-8")));
+        Assert.assertTrue(results.isEmpty());
+        pushParser.feed(ByteBuffer.wrap("\"literal\",\"value\":\"first\"},{\"type\":\"literal\",\"val"
+                .getBytes("UTF-8")));
+        Assert.assertEquals(1, results.size());
+        pushParser.feed(ByteBuffer.wrap("ue\":\"second\"}]}}".getBytes("UTF-8")));
+        Assert.assertEquals(2, results.size());
+        pushParser.endOfInput();
+    }
+    
+    @Test
+    public void testTruncatedDocument() throws Exception
+    {
+        final RDFJSONPreferredParser parser = new RDFJSONPreferredParser();
+        final Model results = new LinkedHashModel();
+        parser.setRDFHandler(new StatementCollector(results));
+        final RDFJSONPreferredPushParser pushParser = new RDFJSONPreferredPushParser(parser);
+        pushParser.feed(ByteBuffer.wrap(("{\"http://example.org/Arthur\":{\"http://example.org/about\":"
+                + "[{\"type\":\"literal\",\"value\":\"Arthur Dent\"}]}").getBytes("UTF-8")));
+        Assert.assertEquals(1, results.size());
+        try
+        {
+            pushParser.endOfInput();
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final RDFParseException e)
+        {
+            Assert.assertTrue(pushParser.isEnded());
+        }
+    }
+    
+    @Test
+    public void testErrorLineNumber() throws Exception
+    {
+        final byte[] document =
+                ("{\n  \"http://example.org/Arthur\" : {\r\n \"http://example.org/about\" : [\n"
+                        + "{ \"type\" : \"literal\", \"value\" : \"x\" },\n\n{ \"value\" : \"y\" } ] }\n}")
+                        .getBytes("UTF-8");
+        final RDFJSONPreferredParser parser = new RDFJSONPreferredParser();
+        final RDFJSONPreferredPushParser pushParser = new RDFJSONPreferredPushParser(parser);
+        parser.setRDFHandler(new StatementCollector());
+        try
+        {
+            for(final byte nextByte : document)
+            {
+                pushParser.feed(ByteBuffer.wrap(new byte[] { nextByte }));
+            }
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final RDFParseException e)
+        {
+            Assert.assertTrue(e.getMessage().contains("No type for object"));
+            Assert.assertEquals(6, e.getLineNumber());
+            Assert.assertTrue(pushParser.isEnded());
+        }
+        
+        try
+        {
+            pushParser.feed(ByteBuffer.wrap(new byte[] { ' ' }));
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final IllegalStateException e)
+        {
+            // expected
+        }
+    }
+    
+    @Test
+    public void testClose() throws Exception
+    {
+        final RDFJSONPreferredParser parser = new RDFJSONPreferredParser();
+        final EndCollector handler = new EndCollector(new LinkedHashModel());
+        parser.setRDFHandler(handler);
+        final RDFJSONPreferredPushParser pushParser = new RDFJSONPreferredPushParser(parser);
+        pushParser.feed(ByteBuffer.wrap("{\"http://example.org/Arthur\":{".getBytes("UTF-8")));
+        pushParser.close();
+        Assert.assertTrue(pushParser.isEnded());
+        Assert.assertFalse(handler.ended);
+        
+        // The parser can be used for another document after the push parser is closed
+        final byte[] document = RDFJSONPreferredPushParserTest.ESCAPES.getBytes("UTF-8");
+        Assert.assertEquals(this.parseBlocking(parser, document), this.push(parser, document, 5));
+    }
+}
@@ -0,0 +1,490 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Model;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.model.util.ModelUtil;
+import org.openrdf.rio.RDFWriter;
+import org.openrdf.rio.helpers.BasicWriterSettings;
+import org.openrdf.rio.helpers.StatementCollector;
+import org.openrdf.rio.rdfjson.RDFJSONParser;
+import org.openrdf.rio.rdfjson.RDFJSONWriter;
+
+import com.github.ansell.sesamerioextensions.api.RDFFormatExtensions;
+
+/**
+ * Tests for the buffered and streaming modes of {@link RDFJSONPreferredWriter}.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class RDFJSONPreferredWriterTest
+{
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+    
+    private final ValueFactory vf = ValueFactoryImpl.getInstance();
+    private StringWriter testWriter;
+    
+    @Before
+    public void setUp() throws Exception
+    {
+        this.testWriter = new StringWriter();
+    }
+    
+    @After
+    public void tearDown() throws Exception
+    {
+        this.testWriter = null;
+    }
+    
+    private Model parse(final String json) throws Exception
+    {
+        final RDFJSONParser p = new RDFJSONParser();
+        final Model model = new LinkedHashModel();
+        p.setRDFHandler(new StatementCollector(model));
+        p.parse(new StringReader(json), RDFJSONTestConstants.BASE_URI);
+        return model;
+    }
+    
+    private Model parseResource(final String fileName) throws Exception
+    {
+        final RDFJSONParser p = new RDFJSONParser();
+        final Model model = new LinkedHashModel();
+        p.setRDFHandler(new StatementCollector(model));
+        final InputStream in = this.getClass().getResourceAsStream(fileName);
+        Assert.assertNotNull("Could not find test resource: " + fileName, in);
+        try
+        {
+            p.parse(in, RDFJSONTestConstants.BASE_URI);
+        }
+        finally
+        {
+            in.close();
+        }
+        return model;
+    }
+    
+    private void write(final RDFWriter w, final Iterable<Statement> statements) throws Exception
+    {
+        w.startRDF();
+        for(final Statement nextStatement : statements)
+        {
+            w.handleStatement(nextStatement);
+        }
+        w.endRDF();
+    }
+    
+    private int countSubjectKeys(final String json, final String subject)
+    {
+        final String key = "\"" + subject + "\":{";
+        int count = 0;
+        int index = json.indexOf(key);
+        while(index >= 0)
+        {
+            count++;
+            index = json.indexOf(key, index + key.length());
+        }
+        return count;
+    }
+    
+    /**
+     * Creates statements that interleave the given number of subjects, so that no two consecutive
+     * statements share a subject.
+     */
+    private Model createInterleavedStatements(final int subjects, final int statementsPerSubject)
+    {
+        final Model model = new LinkedHashModel();
+        final URI predicate = this.vf.createURI("http://example.org/predicate");
+        for(int i = 0; i < statementsPerSubject; i++)
+        {
+            for(int j = 0; j < subjects; j++)
+            {
+                model.add(this.vf.createURI("http://example.org/subject/" + j), predicate,
+                        this.vf.createLiteral("value " + i), RDFJSONTestConstants.GRAPH1);
+            }
+        }
+        return model;
+    }
+    
+    @Test
+    public void testBufferedMatchesSesameWriter() throws Exception
+    {
+        final Model model = this.parseResource("example0.json");
+        
+        final StringWriter expected = new StringWriter();
+        this.write(new RDFJSONWriter(expected, RDFFormatExtensions.RDFJSONPREFERRED), model);
+        
+        this.write(new RDFJSONPreferredWriter(this.testWriter, RDFFormatExtensions.RDFJSONPREFERRED), model);
+        
+        Assert.assertEquals(expected.toString(), this.testWriter.toString());
+    }
+    
+    @Test
+    public void testStreamingRoundTrip() throws Exception
+    {
+        final Model model = this.parseResource("example0.json");
+        
+        final RDFWriter w = new RDFJSONPreferredWriter(this.testWriter, RDFFormatExtensions.RDFJSONPREFERRED);
+        w.getWriterConfig().set(RDFJSONPreferredWriterSettings.STREAMING, true);
+        this.write(w, model);
+        
+        Assert.assertTrue(ModelUtil.equals(model, this.parse(this.testWriter.toString())));
+    }
+    
+    @Test
+    public void testStreamingRoundTripGraphs() throws Exception
+    {
+        final Model model = this.parseResource("example2.json");
+        
+        final RDFWriter w = new RDFJSONPreferredWriter(this.testWriter, RDFFormatExtensions.RDFJSONPREFERRED);
+        w.getWriterConfig().set(RDFJSONPreferredWriterSettings.STREAMING, true);
+        this.write(w, model);
+        
+        final Model results = this.parse(this.testWriter.toString());
+        Assert.assertEquals(6, results.size());
+        Assert.assertTrue(ModelUtil.equals(model, results));
+    }
+    
+    @Test
+    public void testStreamingUnsortedRepeatsSubjects() throws Exception
+    {
+        final Model model = this.createInterleavedStatements(3, 2);
+        
+        final RDFWriter w = new RDFJSONPreferredWriter(this.testWriter, RDFFormatExtensions.RDFJSONPREFERRED);
+        w.getWriterConfig().set(RDFJSONPreferredWriterSettings.STREAMING, true);
+        w.getWriterConfig().set(BasicWriterSettings.PRETTY_PRINT, false);
+        this.write(w, model);
+        
+        final String output = this.testWriter.toString();
+        Assert.assertEquals(2, this.countSubjectKeys(output, "http://example.org/subject/0"));
+        Assert.assertTrue(ModelUtil.equals(model, this.parse(output)));
+    }
+    
+    @Test
+    public void testStreamingSortedInMemory() throws Exception
+    {
+        final Model model = this.createInterleavedStatements(3, 2);
+        
+        final RDFWriter w = new RDFJSONPreferredWriter(this.testWriter, RDFFormatExtensions.RDFJSONPREFERRED);
+        w.getWriterConfig().set(RDFJSONPreferredWriterSettings.STREAMING, true);
+        w.getWriterConfig().set(RDFJSONPreferredWriterSettings.SORT_SUBJECTS, true);
+        w.getWriterConfig().set(BasicWriterSettings.PRETTY_PRINT, false);
+        this.write(w, model);
+        
+        final String output = this.testWriter.toString();
+        for(int i = 0; i < 3; i++)
+        {
+            Assert.assertEquals(1, this.countSubjectKeys(output, "http://example.org/subject/" + i));
+        }
+        Assert.assertTrue(ModelUtil.equals(model, this.parse(output)));
+    }
+    
+    @Test
+    public void testStreamingSortedSpillsToDisk() throws Exception
+    {
+        // 2000 statements with a buffer of 7 forces more runs than can be merged at once
+        final Model model = this.createInterleavedStatements(50, 40);
+        
+        final RDFWriter w = new RDFJSONPreferredWriter(this.testWriter, RDFFormatExtensions.RDFJSONPREFERRED);
+        w.getWriterConfig().set(RDFJSONPreferredWriterSettings.STREAMING, true);
+        w.getWriterConfig().set(RDFJSONPreferredWriterSettings.SORT_SUBJECTS, true);
+        w.getWriterConfig().set(RDFJSONPreferredWriterSettings.SORT_BUFFER_SIZE, 7);
+        w.getWriterConfig().set(BasicWriterSettings.PRETTY_PRINT, false);
+        this.write(w, model);
+        
+        final String output = this.testWriter.toString();
+        for(int i = 0; i < 50; i++)
+        {
+            Assert.assertEquals(1, this.countSubjectKeys(output, "http://example.org/subject/" + i));
+        }
+        final Model results = this.parse(output);
+        Assert.assertEquals(2000, results.size());
+        Assert.assertTrue(ModelUtil.equals(model, results));
+    }
+    
+    private byte[] writeCanonical(final List<Statement> statements, final int bufferSize) throws Exception
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final RDFWriter w = new RDFJSONPreferredWriter(out, RDFFormatExtensions.RDFJSONPREFERRED);
+        w.getWriterConfig().set(RDFJSONPreferredWriterSettings.CANONICAL, true);
+        w.getWriterConfig().set(RDFJSONPreferredWriterSettings.SORT_BUFFER_SIZE, bufferSize);
+        this.write(w, statements);
+        return out.toByteArray();
+    }
+    
+    @Test
+    public void testCanonicalIgnoresInputOrder() throws Exception
+    {
+        final List<Statement> statements = new ArrayList<Statement>(this.createInterleavedStatements(20, 10));
+        statements.addAll(this.createEscapingStatements());
+        
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        this.write(new RDFJSONPreferredWriter(expected, RDFFormatExtensions.RDFJSONPREFERRED), statements);
+        
+        final Random random = new Random(42);
+        for(int i = 0; i < 5; i++)
+        {
+            Collections.shuffle(statements, random);
+            // Duplicate statements must not change the output
+            final List<Statement> input = new ArrayList<Statement>(statements);
+            input.addAll(statements.subList(0, 10));
+            
+            Assert.assertArrayEquals(expected.toByteArray(), this.writeCanonical(input, 100000));
+            Assert.assertArrayEquals(expected.toByteArray(), this.writeCanonical(input, 3));
+        }
+    }
+    
+    @Test
+    public void testCanonicalMemoryLimitSpillsToDirectory() throws Exception
+    {
+        final List<Statement> statements = new ArrayList<Statement>(this.createInterleavedStatements(30, 20));
+        Collections.shuffle(statements, new Random(42));
+        final File directory = this.tempDir.newFolder("sort");
+        
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final RDFWriter w = new RDFJSONPreferredWriter(out, RDFFormatExtensions.RDFJSONPREFERRED);
+        w.getWriterConfig().set(RDFJSONPreferredWriterSettings.CANONICAL, true);
+        w.getWriterConfig().set(RDFJSONPreferredWriterSettings.SORT_MEMORY_LIMIT, 10000L);
+        w.getWriterConfig().set(RDFJSONPreferredWriterSettings.SORT_DIRECTORY, directory);
+        w.startRDF();
+        for(final Statement nextStatement : statements)
+        {
+            w.handleStatement(nextStatement);
+        }
+        // Each statement is estimated at several hundred bytes, so 600 statements need many runs
+        Assert.assertTrue(directory.list().length > 10);
+        w.endRDF();
+        Assert.assertEquals(0, directory.list().length);
+        
+        Assert.assertArrayEquals(this.writeCanonical(statements, 100000), out.toByteArray());
+    }
+    
+    private byte[] writeThreads(final RDFWriter w, final ByteArrayOutputStream out, final List<Statement> statements,
+            final boolean prettyPrint, final boolean streaming, final boolean canonical, final int threads)
+        throws Exception
+    {
+        w.getWriterConfig().set(BasicWriterSettings.PRETTY_PRINT, prettyPrint);
+        w.getWriterConfig().set(RDFJSONPreferredWriterSettings.STREAMING, streaming);
+        w.getWriterConfig().set(RDFJSONPreferredWriterSettings.CANONICAL, canonical);
+        w.getWriterConfig().set(RDFJSONPreferredWriterSettings.WRITE_THREADS, threads);
+        this.write(w, statements);
+        return out.toByteArray();
+    }
+    
+    private void assertThreadsMatchSequential(final List<Statement> statements) throws Exception
+    {
+        for(final boolean prettyPrint : new boolean[] { false, true })
+        {
+            for(final boolean[] modes : new boolean[][] { { false, false }, { true, false }, { true, true } })
+            {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                final byte[] expected =
+                        this.writeThreads(new RDFJSONPreferredWriter(out, RDFFormatExtensions.RDFJSONPREFERRED),
+                                out, statements, prettyPrint, modes[0], modes[1], 1);
+                out = new ByteArrayOutputStream();
+                final byte[] actual =
+                        this.writeThreads(new RDFJSONPreferredWriter(out, RDFFormatExtensions.RDFJSONPREFERRED),
+                                out, statements, prettyPrint, modes[0], modes[1], 4);
+                Assert.assertArrayEquals("prettyPrint=" + prettyPrint + " streaming=" + modes[0] + " canonical="
+                        + modes[1], expected, actual);
+            }
+        }
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] expected = this.writeThreads(new RDFJSONLinesWriter(out), out, statements, false, true, false, 1);
+        out = new ByteArrayOutputStream();
+        Assert.assertArrayEquals(expected,
+                this.writeThreads(new RDFJSONLinesWriter(out), out, statements, false, true, false, 4));
+    }
+    
+    @Test
+    public void testWriteThreadsMatchSequential() throws Exception
+    {
+        final List<Statement> statements = new ArrayList<Statement>(this.createInterleavedStatements(200, 20));
+        statements.addAll(this.createEscapingStatements());
+        
+        this.assertThreadsMatchSequential(statements);
+        
+        // Parse the parallel output back to check that the framing between batches is valid
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        this.writeThreads(new RDFJSONPreferredWriter(out, RDFFormatExtensions.RDFJSONPREFERRED), out, statements,
+                true, true, false, 4);
+        Assert.assertEquals(new LinkedHashModel(statements), this.parse(out.toString("UTF-8")));
+    }
+    
+    @Test
+    public void testWriteThreadsEmpty() throws Exception
+    {
+        this.assertThreadsMatchSequential(new ArrayList<Statement>());
+    }
+    
+    @Test
+    public void testStreamingEmpty() throws Exception
+    {
+        final RDFWriter w = new RDFJSONPreferredWriter(this.testWriter, RDFFormatExtensions.RDFJSONPREFERRED);
+        w.getWriterConfig().set(RDFJSONPreferredWriterSettings.STREAMING, true);
+        w.getWriterConfig().set(BasicWriterSettings.PRETTY_PRINT, false);
+        this.write(w, new LinkedHashModel());
+        
+        Assert.assertEquals("{}", this.testWriter.toString());
+    }
+    
+    private Model createEscapingStatements()
+    {
+        final Model model = new LinkedHashModel();
+        final URI predicate = this.vf.createURI("http://example.org/predicate");
+        final URI subject = this.vf.createURI("http://example.org/subject/\u00e9t\u00e9");
+        model.add(subject, predicate, this.vf.createLiteral("quote \" backslash \\ slash / tab \t newline \n return \r"));
+        model.add(subject, predicate, this.vf.createLiteral("control \u0000 \u0001 \u001f \u007f \b \f"));
+        model.add(subject, predicate, this.vf.createLiteral("latin \u00e9 greek \u03b1 cjk \u4e2d emoji \ud83d\ude00", "en"));
+        model.add(subject, predicate, this.vf.createLiteral("42", this.vf.createURI("http://www.w3.org/2001/XMLSchema#int")));
+        model.add(subject, predicate, this.vf.createBNode("b1"), this.vf.createURI("http://example.org/graph2"));
+        model.add(subject, predicate, this.vf.createURI("http://example.org/object"), RDFJSONTestConstants.GRAPH1);
+        model.add(subject, predicate, this.vf.createURI("http://example.org/object"));
+        model.add(this.vf.createBNode("b1"), predicate, this.vf.createLiteral(""));
+        return model;
+    }
+    
+    private void assertBytesMatchSesameWriter(final Model model, final boolean prettyPrint, final boolean streaming)
+        throws Exception
+    {
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        final RDFWriter sesameWriter = new RDFJSONWriter(expected, RDFFormatExtensions.RDFJSONPREFERRED);
+        sesameWriter.getWriterConfig().set(BasicWriterSettings.PRETTY_PRINT, prettyPrint);
+        this.write(sesameWriter, model);
+        
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        final RDFWriter preferredWriter = new RDFJSONPreferredWriter(actual, RDFFormatExtensions.RDFJSONPREFERRED);
+        preferredWriter.getWriterConfig().set(BasicWriterSettings.PRETTY_PRINT, prettyPrint);
+        preferredWriter.getWriterConfig().set(RDFJSONPreferredWriterSettings.STREAMING, streaming);
+        preferredWriter.getWriterConfig().set(RDFJSONPreferredWriterSettings.SORT_SUBJECTS, streaming);
+        this.write(preferredWriter, model);
+        
+        Assert.assertEquals(expected.toString("UTF-8"), actual.toString("UTF-8"));
+        Assert.assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+    }
+    
+    @Test
+    public void testOutputStreamMatchesSesameWriter() throws Exception
+    {
+        for(final String nextFile : new String[] { "example0.json", "example1.json", "example2.json" })
+        {
+            final Model model = this.parseResource(nextFile);
+            this.assertBytesMatchSesameWriter(model, false, false);
+            this.assertBytesMatchSesameWriter(model, true, false);
+        }
+    }
+    
+    @Test
+    public void testStreamingLiteralsMatchSesameWriter() throws Exception
+    {
+        final Model model = this.createEscapingStatements();
+        final StringBuilder value = new StringBuilder();
+        for(int i = 0; i < 3000; i++)
+        {
+            // Longer than the output buffer, with characters that are escaped or encoded across its boundaries
+            value.append("text \" \\ \u00e9 \ud83d\ude00 \u0001 ");
+        }
+        final Literal literal = this.vf.createLiteral(value.toString(), "en");
+        model.add(this.vf.createURI("http://example.org/subject/large"),
+                this.vf.createURI("http://example.org/predicate"), literal);
+        
+        final ByteArrayOutputStream document = new ByteArrayOutputStream();
+        this.write(new RDFJSONWriter(document, RDFFormatExtensions.RDFJSONPREFERRED), model);
+        final RDFJSONPreferredParser parser = new RDFJSONPreferredParser();
+        parser.getParserConfig().set(RDFJSONPreferredParserSettings.LARGE_LITERAL_THRESHOLD, 1);
+        final Model large = new LinkedHashModel();
+        parser.setRDFHandler(new StatementCollector(large));
+        parser.parse(new ByteArrayInputStream(document.toByteArray()), RDFJSONTestConstants.BASE_URI);
+        Assert.assertEquals(model, large);
+        Assert.assertTrue(large.filter(null, null, literal).objectValue() instanceof StreamingLiteral);
+        
+        this.assertBytesMatchSesameWriter(large, false, false);
+        this.assertBytesMatchSesameWriter(large, true, true);
+        
+        final StringWriter expected = new StringWriter();
+        this.write(new RDFJSONWriter(expected, RDFFormatExtensions.RDFJSONPREFERRED), large);
+        this.write(new RDFJSONPreferredWriter(this.testWriter, RDFFormatExtensions.RDFJSONPREFERRED), large);
+        Assert.assertEquals(expected.toString(), this.testWriter.toString());
+    }
+    
+    @Test
+    public void testOutputStreamEscapingMatchesSesameWriter() throws Exception
+    {
+        final Model model = this.createEscapingStatements();
+        this.assertBytesMatchSesameWriter(model, false, false);
+        this.assertBytesMatchSesameWriter(model, true, false);
+        
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        this.write(new RDFJSONPreferredWriter(out, RDFFormatExtensions.RDFJSONPREFERRED), model);
+        Assert.assertTrue(ModelUtil.equals(model, this.parse(out.toString("UTF-8"))));
+    }
+    
+    @Test
+    public void testOutputStreamLargeLiteral() throws Exception
+    {
+        final StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < 5000; i++)
+        {
+            builder.append("ascii \"\u00e9\u4e2d\ud83d\ude00\n");
+        }
+        final Model model = new LinkedHashModel();
+        model.add(RDFJSONTestConstants.ARTHUR, this.vf.createURI("http://example.org/about"),
+                this.vf.createLiteral(builder.toString()));
+        
+        this.assertBytesMatchSesameWriter(model, false, false);
+        this.assertBytesMatchSesameWriter(model, true, true);
+    }
+    
+    @Test
+    public void testMetrics() throws Exception
+    {
+        final Model model = this.parseResource("example0.json");
+        final RDFJSONStatistics statistics = new RDFJSONStatistics();
+        
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final RDFWriter buffered = new RDFJSONPreferredWriter(out, RDFFormatExtensions.RDFJSONPREFERRED);
+        buffered.getWriterConfig().set(RDFJSONPreferredWriterSettings.METRICS_LISTENER, statistics);
+        this.write(buffered, model);
+        
+        Assert.assertEquals(1, statistics.getDocumentsWritten());
+        Assert.assertEquals(12, statistics.getStatementsWritten());
+        Assert.assertEquals(out.size(), statistics.getBytesWritten());
+        Assert.assertEquals(12, statistics.getWriteBufferHighWater());
+        Assert.assertTrue(statistics.getLargestWrittenSubject() > 0);
+        Assert.assertTrue(statistics.getEncodeNanos() > 0);
+        Assert.assertTrue(statistics.getWriteNanos() >= statistics.getEncodeNanos());
+        Assert.assertEquals(0, statistics.getDocumentsParsed());
+        
+        final RDFWriter streaming = new RDFJSONPreferredWriter(this.testWriter, RDFFormatExtensions.RDFJSONPREFERRED);
+        streaming.getWriterConfig().set(RDFJSONPreferredWriterSettings.STREAMING, true);
+        streaming.getWriterConfig().set(RDFJSONPreferredWriterSettings.METRICS_LISTENER, statistics);
+        this.write(streaming, this.createInterleavedStatements(1, 20));
+        
+        Assert.assertEquals(2, statistics.getDocumentsWritten());
+        Assert.assertEquals(32, statistics.getStatementsWritten());
+        Assert.assertEquals(out.size(), statistics.getBytesWritten());
+        Assert.assertEquals(20, statistics.getLargestWrittenSubject());
+    }
+}
@@ -0,0 +1,255 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Model;
+import org.openrdf.model.Statement;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFWriter;
+import org.openrdf.rio.helpers.StatementCollector;
+
+import com.github.ansell.sesamerioextensions.api.RDFFormatExtensions;
+
+/**
+ * Tests for {@link RDFJSONStatementPublisher} and {@link RDFJSONStatementSubscriber}.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class RDFJSONStatementPublisherTest
+{
+    /**
+     * A stream that records the number of reads and whether it was closed.
+     */
+    private static final class RecordingInputStream extends FilterInputStream
+    {
+        private int reads;
+        private boolean closed;
+        
+        RecordingInputStream(final byte[] bytes)
+        {
+            super(new ByteArrayInputStream(bytes));
+        }
+        
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException
+        {
+            this.reads++;
+            return super.read(b, off, len);
+        }
+        
+        @Override
+        public void close() throws IOException
+        {
+            this.closed = true;
+            super.close();
+        }
+    }
+    
+    /**
+     * A subscriber that records the signals that it receives, and only requests statements when
+     * the test asks it to.
+     */
+    private static final class RecordingSubscriber implements StatementSubscriber
+    {
+        private StatementSubscription subscription;
+        private final List<Statement> statements = new ArrayList<Statement>();
+        private final List<Integer> batches = new ArrayList<Integer>();
+        private Throwable error;
+        private boolean complete;
+        
+        @Override
+        public void onSubscribe(final StatementSubscription nextSubscription)
+        {
+            this.subscription = nextSubscription;
+        }
+        
+        @Override
+        public void onNext(final Statement[] nextStatements, final int offset, final int length)
+        {
+            for(int i = offset; i < offset + length; i++)
+            {
+                this.statements.add(nextStatements[i]);
+            }
+            this.batches.add(length);
+        }
+        
+        @Override
+        public void onError(final Throwable nextError)
+        {
+            Assert.assertNull(this.error);
+            this.error = nextError;
+        }
+        
+        @Override
+        public void onComplete()
+        {
+            Assert.assertFalse(this.complete);
+            this.complete = true;
+        }
+    }
+    
+    private byte[] createDocument(final int subjects) throws Exception
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final RDFWriter writer = new RDFJSONPreferredWriter(out, RDFFormatExtensions.RDFJSONPREFERRED);
+        writer.startRDF();
+        for(int i = 0; i < subjects; i++)
+        {
+            writer.handleStatement(RDFJSONTestConstants.vf.createStatement(
+                    RDFJSONTestConstants.vf.createURI("http://example.org/subject/" + i), RDFJSONTestConstants.ABOUT,
+                    RDFJSONTestConstants.vf.createLiteral("value " + i)));
+        }
+        writer.endRDF();
+        return out.toByteArray();
+    }
+    
+    private Model parse(final byte[] document) throws Exception
+    {
+        final Model results = new LinkedHashModel();
+        final RDFJSONPreferredParser parser = new RDFJSONPreferredParser();
+        parser.setRDFHandler(new StatementCollector(results));
+        parser.parse(new ByteArrayInputStream(document), RDFJSONTestConstants.BASE_URI);
+        return results;
+    }
+    
+    @Test
+    public void testPublishToWriter() throws Exception
+    {
+        final byte[] document = this.createDocument(2000);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final RDFJSONStatementSubscriber subscriber =
+                new RDFJSONStatementSubscriber(new RDFJSONPreferredWriter(out, RDFFormatExtensions.RDFJSONPREFERRED),
+                        10);
+        
+        new RDFJSONStatementPublisher(new RDFJSONPreferredParser(), new ByteArrayInputStream(document), 3)
+                .subscribe(subscriber);
+        Assert.assertTrue(subscriber.isDone());
+        subscriber.await();
+        
+        Assert.assertEquals(this.parse(document), this.parse(out.toByteArray()));
+    }
+    
+    @Test
+    public void testDemand() throws Exception
+    {
+        final RecordingInputStream in = new RecordingInputStream(this.createDocument(2000));
+        final RecordingSubscriber subscriber = new RecordingSubscriber();
+        new RDFJSONStatementPublisher(new RDFJSONPreferredParser(), in, 4).subscribe(subscriber);
+        Assert.assertEquals(0, in.reads);
+        
+        subscriber.subscription.request(1);
+        Assert.assertEquals(1, subscriber.statements.size());
+        // Only the fragment containing the first statement has been read
+        Assert.assertEquals(1, in.reads);
+        
+        subscriber.subscription.request(10);
+        Assert.assertEquals(11, subscriber.statements.size());
+        Assert.assertEquals(4, subscriber.batches.get(1).intValue());
+        Assert.assertEquals(1, in.reads);
+        
+        subscriber.subscription.request(Long.MAX_VALUE);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        Assert.assertEquals(2000, subscriber.statements.size());
+        Assert.assertTrue(subscriber.complete);
+        Assert.assertNull(subscriber.error);
+        Assert.assertTrue(in.closed);
+    }
+    
+    @Test
+    public void testCancel() throws Exception
+    {
+        final RecordingInputStream in = new RecordingInputStream(this.createDocument(2000));
+        final RecordingSubscriber subscriber = new RecordingSubscriber();
+        new RDFJSONStatementPublisher(new RDFJSONPreferredParser(), in).subscribe(subscriber);
+        
+        subscriber.subscription.request(5);
+        subscriber.subscription.cancel();
+        Assert.assertTrue(in.closed);
+        subscriber.subscription.request(5);
+        Assert.assertEquals(5, subscriber.statements.size());
+        Assert.assertFalse(subscriber.complete);
+        Assert.assertNull(subscriber.error);
+    }
+    
+    @Test
+    public void testInvalidDocument() throws Exception
+    {
+        final RecordingInputStream in =
+                new RecordingInputStream(("{\"http://example.org/Arthur\":{\"http://example.org/about\":"
+                        + "[{\"type\":\"literal\",\"value\":\"Arthur Dent\"}]},\"http://example.org/graph1\":5}")
+                        .getBytes("UTF-8"));
+        final RecordingSubscriber subscriber = new RecordingSubscriber();
+        new RDFJSONStatementPublisher(new RDFJSONPreferredParser(), in).subscribe(subscriber);
+        
+        subscriber.subscription.request(Long.MAX_VALUE);
+        Assert.assertEquals(1, subscriber.statements.size());
+        Assert.assertNotNull(subscriber.error);
+        Assert.assertFalse(subscriber.complete);
+        Assert.assertTrue(in.closed);
+    }
+    
+    @Test
+    public void testNonPositiveRequest() throws Exception
+    {
+        final RecordingSubscriber subscriber = new RecordingSubscriber();
+        new RDFJSONStatementPublisher(new RDFJSONPreferredParser(), new ByteArrayInputStream(this.createDocument(1)))
+                .subscribe(subscriber);
+        
+        subscriber.subscription.request(0);
+        Assert.assertTrue(subscriber.error instanceof IllegalArgumentException);
+        subscriber.subscription.request(1);
+        Assert.assertTrue(subscriber.statements.isEmpty());
+    }
+    
+    @Test
+    public void testSubscribeTwice() throws Exception
+    {
+        final StatementPublisher publisher =
+                new RDFJSONStatementPublisher(new RDFJSONPreferredParser(), new ByteArrayInputStream(
+                        this.createDocument(1)));
+        publisher.subscribe(new RecordingSubscriber());
+        final RecordingSubscriber second = new RecordingSubscriber();
+        publisher.subscribe(second);
+        
+        Assert.assertNotNull(second.subscription);
+        Assert.assertTrue(second.error instanceof IllegalStateException);
+    }
+    
+    @Test
+    public void testWriterErrorCancels() throws Exception
+    {
+        final RecordingInputStream in = new RecordingInputStream(this.createDocument(2000));
+        final RDFJSONStatementSubscriber subscriber =
+                new RDFJSONStatementSubscriber(new RDFJSONPreferredWriter(new ByteArrayOutputStream(),
+                        RDFFormatExtensions.RDFJSONPREFERRED)
+                    {
+                        @Override
+                        public void handleStatement(final Statement st) throws RDFHandlerException
+                        {
+                            throw new RDFHandlerException("Test");
+                        }
+                    });
+        new RDFJSONStatementPublisher(new RDFJSONPreferredParser(), in).subscribe(subscriber);
+        
+        Assert.assertTrue(subscriber.isDone());
+        Assert.assertTrue(in.closed);
+        try
+        {
+            subscriber.await();
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final RDFHandlerException e)
+        {
+            Assert.assertEquals("Test", e.getMessage());
+        }
+    }
+}
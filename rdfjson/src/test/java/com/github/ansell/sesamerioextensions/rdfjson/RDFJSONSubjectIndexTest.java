@@ -0,0 +1,192 @@
+package com.github.ansell.sesamerioextensions.rdfjson;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openrdf.model.Model;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFWriter;
+import org.openrdf.rio.helpers.BasicParserSettings;
+import org.openrdf.rio.helpers.BasicWriterSettings;
+import org.openrdf.rio.helpers.StatementCollector;
+
+import com.github.ansell.sesamerioextensions.api.RDFFormatExtensions;
+
+/**
+ * Tests for {@link RDFJSONSubjectIndex}.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class RDFJSONSubjectIndexTest
+{
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+    
+    private File writeFile(final byte[] bytes) throws Exception
+    {
+        final File result = this.tempDir.newFile("test.rj");
+        final FileOutputStream out = new FileOutputStream(result);
+        try
+        {
+            out.write(bytes);
+        }
+        finally
+        {
+            out.close();
+        }
+        return result;
+    }
+    
+    private File writeFile(final String document) throws Exception
+    {
+        return this.writeFile(document.getBytes("UTF-8"));
+    }
+    
+    private File writeModel(final Model model, final boolean prettyPrint) throws Exception
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final RDFWriter writer = new RDFJSONPreferredWriter(out, RDFFormatExtensions.RDFJSONPREFERRED);
+        writer.getWriterConfig().set(BasicWriterSettings.PRETTY_PRINT, prettyPrint);
+        writer.startRDF();
+        for(final Statement nextStatement : model)
+        {
+            writer.handleStatement(nextStatement);
+        }
+        writer.endRDF();
+        return this.writeFile(out.toByteArray());
+    }
+    
+    private RDFJSONSubjectIndex openIndex(final File document) throws Exception
+    {
+        RDFJSONSubjectIndex.createIndex(document);
+        final RDFJSONSubjectIndex result = new RDFJSONSubjectIndex(document);
+        result.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+        return result;
+    }
+    
+    private Model lookup(final RDFJSONSubjectIndex index, final Resource subject) throws Exception
+    {
+        final Model results = new LinkedHashModel();
+        Assert.assertTrue("Subject was not indexed: " + subject,
+                index.parse(subject, new StatementCollector(results)));
+        return results;
+    }
+    
+    private void assertAllSubjects(final Model model, final boolean prettyPrint) throws Exception
+    {
+        final RDFJSONSubjectIndex index = this.openIndex(this.writeModel(model, prettyPrint));
+        try
+        {
+            Assert.assertEquals(model.subjects().size(), index.size());
+            for(final Resource nextSubject : model.subjects())
+            {
+                Assert.assertTrue(index.contains(nextSubject));
+                Assert.assertEquals(new LinkedHashModel(model.filter(nextSubject, null, null)),
+                        this.lookup(index, nextSubject));
+            }
+        }
+        finally
+        {
+            index.close();
+        }
+    }
+    
+    @Test
+    public void testAllSubjects() throws Exception
+    {
+        this.assertAllSubjects(RDFJSONTestUtils.parseResource("bio2rdf-configuration.ttl", RDFFormat.TURTLE), false);
+    }
+    
+    @Test
+    public void testAllSubjectsPrettyPrinted() throws Exception
+    {
+        this.assertAllSubjects(RDFJSONTestUtils.parseResource("bio2rdf-configuration.ttl", RDFFormat.TURTLE), true);
+    }
+    
+    @Test
+    public void testBlankNodeSubject() throws Exception
+    {
+        final Model model = new LinkedHashModel();
+        model.add(RDFJSONTestConstants.PERSON, RDFJSONTestConstants.FOAF.NAME,
+                RDFJSONTestConstants.vf.createLiteral("Arthur \u00e9"), RDFJSONTestConstants.GRAPH1);
+        model.add(RDFJSONTestConstants.ARTHUR, RDFJSONTestConstants.FOAF.KNOWS, RDFJSONTestConstants.PERSON);
+        this.assertAllSubjects(model, false);
+    }
+    
+    @Test
+    public void testMissingSubject() throws Exception
+    {
+        final RDFJSONSubjectIndex index =
+                this.openIndex(this.writeFile("{\"http://example.org/Arthur\":{\"http://example.org/about\":"
+                        + "[{\"type\":\"literal\",\"value\":\"x\"}]}}"));
+        try
+        {
+            Assert.assertEquals(1, index.size());
+            Assert.assertFalse(index.contains(RDFJSONTestConstants.GRAPH1));
+            Assert.assertFalse(index.parse(RDFJSONTestConstants.GRAPH1, new StatementCollector()));
+            Assert.assertTrue(index.contains(RDFJSONTestConstants.ARTHUR));
+        }
+        finally
+        {
+            index.close();
+        }
+    }
+    
+    @Test
+    public void testLinesWithRepeatedSubject() throws Exception
+    {
+        final RDFJSONSubjectIndex index =
+                this.openIndex(this.writeFile("\uFEFF{\"http://example.org/Arthur\":{\"http://example.org/about\":"
+                        + "[{\"type\":\"literal\",\"value\":\"first\"}]}}\n"
+                        + "{\"_:person\":{\"http://example.org/about\":[{\"type\":\"literal\",\"value\":\"x\"}]}}\r\n"
+                        + "{\"http://example.org/Arthur\":{\"http://example.org/about\":"
+                        + "[{\"type\":\"literal\",\"value\":\"second\"}]}}\n"));
+        try
+        {
+            Assert.assertEquals(3, index.size());
+            final Model results = this.lookup(index, RDFJSONTestConstants.ARTHUR);
+            Assert.assertEquals(2, results.size());
+            Assert.assertEquals("first", results.iterator().next().getObject().stringValue());
+            Assert.assertEquals(1, this.lookup(index, RDFJSONTestConstants.PERSON).size());
+        }
+        finally
+        {
+            index.close();
+        }
+    }
+    
+    @Test
+    public void testOutOfDateIndex() throws Exception
+    {
+        final File document = this.writeFile("{\"http://example.org/Arthur\":{}}");
+        RDFJSONSubjectIndex.createIndex(document);
+        final FileOutputStream out = new FileOutputStream(document, true);
+        try
+        {
+            out.write(' ');
+        }
+        finally
+        {
+            out.close();
+        }
+        
+        try
+        {
+            new RDFJSONSubjectIndex(document).close();
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final IOException e)
+        {
+            Assert.assertTrue(e.getMessage().contains("out of date"));
+        }
+    }
+}
@@ -3,6 +3,8 @@
  */
 package com.github.ansell.sesamerioextensions.rdfjson;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
@@ -10,8 +12,11 @@ import java.io.Writer;
 
 import org.junit.Assert;
 import org.openrdf.model.Model;
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.RDFParser;
 import org.openrdf.rio.RDFWriter;
+import org.openrdf.rio.Rio;
 import org.openrdf.rio.helpers.BasicWriterSettings;
 import org.openrdf.rio.helpers.StatementCollector;
 import org.openrdf.rio.rdfjson.RDFJSONParser;
@@ -29,6 +34,61 @@ import com.github.ansell.sesamerioextensions.api.RDFFormatExtensions;
  */
 public final class RDFJSONTestUtils
 {
+    /**
+     * Parses a test resource in the given format into a Model.
+     */
+    public static final Model parseResource(final String fileName, final RDFFormat format) throws Exception
+    {
+        final InputStream in = RDFJSONTestUtils.class.getResourceAsStream(fileName);
+        Assert.assertNotNull("Could not find test resource: " + fileName, in);
+        try
+        {
+            return Rio.parse(in, RDFJSONTestConstants.BASE_URI, format);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+    
+    /**
+     * Reads all of the bytes from the given stream, and closes it.
+     */
+    public static final byte[] readFully(final InputStream in) throws IOException
+    {
+        final ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try
+        {
+            final byte[] buffer = new byte[4096];
+            int read;
+            while((read = in.read(buffer)) != -1)
+            {
+                result.write(buffer, 0, read);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return result.toByteArray();
+    }
+    
+    /**
+     * Writes the statements in the given model using the given writer, and returns the bytes that
+     * were written to the given stream.
+     */
+    public static final byte[] write(final RDFWriter writer, final ByteArrayOutputStream out,
+            final Model model) throws Exception
+    {
+        writer.startRDF();
+        for(final Statement nextStatement : model)
+        {
+            writer.handleStatement(nextStatement);
+        }
+        writer.endRDF();
+        return out.toByteArray();
+    }
+    
     public static final void parseJsonAndWriteJson(final String fileName, final Model results) throws Exception
     {
         final RDFJSONParser p = new RDFJSONParser();